@@ -0,0 +1,25 @@
+package org.github.forax.tuplefactory.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always enabled, so the allocation rate
+ * ({@code gc.alloc.rate.norm}) shows if the varargs array and the boxes are removed by the JIT.
+ *
+ * Usage: {@code java -jar target/benchmarks.jar [regexp] [jmh options]}
+ */
+public class BenchmarkMain {
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    var commandLineOptions = new CommandLineOptions(args);
+    var options = new OptionsBuilder()
+        .parent(commandLineOptions)
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
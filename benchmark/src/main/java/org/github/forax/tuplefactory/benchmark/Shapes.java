@@ -0,0 +1,27 @@
+package org.github.forax.tuplefactory.benchmark;
+
+import org.github.forax.tuplefactory.TupleFactory;
+
+/**
+ * Shapes shared by the benchmarks, each one is available as a tuple factory and as an equivalent hand-written record.
+ */
+final class Shapes {
+  private Shapes() {
+    throw new AssertionError();
+  }
+
+  static final TupleFactory MIXED = TupleFactory.of(String.class, int.class, long.class, double.class);
+
+  record Mixed(String s, int i, long l, double d) {}
+
+  static final TupleFactory WIDE = TupleFactory.of(
+      String.class, int.class, long.class, double.class,
+      String.class, int.class, long.class, double.class,
+      String.class, int.class, long.class, double.class,
+      String.class, int.class, long.class, double.class);
+
+  record Wide(String s0, int i1, long l2, double d3,
+              String s4, int i5, long l6, double d7,
+              String s8, int i9, long l10, double d11,
+              String s12, int i13, long l14, double d15) {}
+}
@@ -0,0 +1,73 @@
+package org.github.forax.tuplefactory.benchmark;
+
+import org.github.forax.tuplefactory.TupleFactory;
+import org.github.forax.tuplefactory.benchmark.Shapes.Mixed;
+import org.github.forax.tuplefactory.benchmark.Shapes.Wide;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.github.forax.tuplefactory.benchmark.Shapes.MIXED;
+import static org.github.forax.tuplefactory.benchmark.Shapes.WIDE;
+
+// java -jar target/benchmarks.jar TupleAccessBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TupleAccessBenchmark {
+  // not final, so the JIT can not consider the factories as constants
+  private TupleFactory mixed = MIXED;
+  private TupleFactory wide = WIDE;
+
+  private Object mixedTuple = MIXED.tuple("foo", 42, 1234567890123L, 3.14);
+  private Mixed mixedRecord = new Mixed("foo", 42, 1234567890123L, 3.14);
+  private Object wideTuple = WIDE.tuple(
+      "foo", 1, 2L, 3.0, "bar", 5, 6L, 7.0, "baz", 9, 10L, 11.0, "whizz", 13, 14L, 15.0);
+  private Wide wideRecord = new Wide(
+      "foo", 1, 2L, 3.0, "bar", 5, 6L, 7.0, "baz", 9, 10L, 11.0, "whizz", 13, 14L, 15.0);
+
+  @Benchmark
+  public double mixed_static_final() {
+    String s = MIXED.get(mixedTuple, 0);
+    return s.length() + MIXED.getInt(mixedTuple, 1) + MIXED.getLong(mixedTuple, 2) + MIXED.getDouble(mixedTuple, 3);
+  }
+
+  @Benchmark
+  public double mixed_field() {
+    String s = mixed.get(mixedTuple, 0);
+    return s.length() + mixed.getInt(mixedTuple, 1) + mixed.getLong(mixedTuple, 2) + mixed.getDouble(mixedTuple, 3);
+  }
+
+  @Benchmark
+  public double mixed_record() {
+    return mixedRecord.s().length() + mixedRecord.i() + mixedRecord.l() + mixedRecord.d();
+  }
+
+  @Benchmark
+  public double wide_static_final() {
+    String s = WIDE.get(wideTuple, 12);
+    return s.length() + WIDE.getInt(wideTuple, 13) + WIDE.getLong(wideTuple, 14) + WIDE.getDouble(wideTuple, 15);
+  }
+
+  @Benchmark
+  public double wide_field() {
+    String s = wide.get(wideTuple, 12);
+    return s.length() + wide.getInt(wideTuple, 13) + wide.getLong(wideTuple, 14) + wide.getDouble(wideTuple, 15);
+  }
+
+  @Benchmark
+  public double wide_record() {
+    return wideRecord.s12().length() + wideRecord.i13() + wideRecord.l14() + wideRecord.d15();
+  }
+}
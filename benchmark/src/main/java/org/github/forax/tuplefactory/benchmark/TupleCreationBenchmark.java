@@ -0,0 +1,67 @@
+package org.github.forax.tuplefactory.benchmark;
+
+import org.github.forax.tuplefactory.TupleFactory;
+import org.github.forax.tuplefactory.benchmark.Shapes.Mixed;
+import org.github.forax.tuplefactory.benchmark.Shapes.Wide;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.github.forax.tuplefactory.benchmark.Shapes.MIXED;
+import static org.github.forax.tuplefactory.benchmark.Shapes.WIDE;
+
+// java -jar target/benchmarks.jar TupleCreationBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TupleCreationBenchmark {
+  // not final, so the JIT can not consider the factories as constants
+  private TupleFactory mixed = MIXED;
+  private TupleFactory wide = WIDE;
+
+  private String s = "foo";
+  private int i = 42;
+  private long l = 1234567890123L;
+  private double d = 3.14;
+
+  @Benchmark
+  public Object mixed_static_final() {
+    return MIXED.tuple(s, i, l, d);
+  }
+
+  @Benchmark
+  public Object mixed_field() {
+    return mixed.tuple(s, i, l, d);
+  }
+
+  @Benchmark
+  public Object mixed_record() {
+    return new Mixed(s, i, l, d);
+  }
+
+  @Benchmark
+  public Object wide_static_final() {
+    return WIDE.tuple(s, i, l, d, s, i, l, d, s, i, l, d, s, i, l, d);
+  }
+
+  @Benchmark
+  public Object wide_field() {
+    return wide.tuple(s, i, l, d, s, i, l, d, s, i, l, d, s, i, l, d);
+  }
+
+  @Benchmark
+  public Object wide_record() {
+    return new Wide(s, i, l, d, s, i, l, d, s, i, l, d, s, i, l, d);
+  }
+}
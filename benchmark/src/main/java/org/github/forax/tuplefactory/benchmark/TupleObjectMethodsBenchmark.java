@@ -0,0 +1,104 @@
+package org.github.forax.tuplefactory.benchmark;
+
+import org.github.forax.tuplefactory.benchmark.Shapes.Mixed;
+import org.github.forax.tuplefactory.benchmark.Shapes.Wide;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.github.forax.tuplefactory.benchmark.Shapes.MIXED;
+import static org.github.forax.tuplefactory.benchmark.Shapes.WIDE;
+
+// java -jar target/benchmarks.jar TupleObjectMethodsBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TupleObjectMethodsBenchmark {
+  // two different instances with the same values, so equals() has to compare all the components
+  private Object mixedTuple = MIXED.tuple("foo", 42, 1234567890123L, 3.14);
+  private Object mixedTuple2 = MIXED.tuple(new String("foo"), 42, 1234567890123L, 3.14);
+  private Mixed mixedRecord = new Mixed("foo", 42, 1234567890123L, 3.14);
+  private Mixed mixedRecord2 = new Mixed(new String("foo"), 42, 1234567890123L, 3.14);
+
+  private Object wideTuple = WIDE.tuple(
+      "foo", 1, 2L, 3.0, "bar", 5, 6L, 7.0, "baz", 9, 10L, 11.0, "whizz", 13, 14L, 15.0);
+  private Object wideTuple2 = WIDE.tuple(
+      new String("foo"), 1, 2L, 3.0, new String("bar"), 5, 6L, 7.0,
+      new String("baz"), 9, 10L, 11.0, new String("whizz"), 13, 14L, 15.0);
+  private Wide wideRecord = new Wide(
+      "foo", 1, 2L, 3.0, "bar", 5, 6L, 7.0, "baz", 9, 10L, 11.0, "whizz", 13, 14L, 15.0);
+  private Wide wideRecord2 = new Wide(
+      new String("foo"), 1, 2L, 3.0, new String("bar"), 5, 6L, 7.0,
+      new String("baz"), 9, 10L, 11.0, new String("whizz"), 13, 14L, 15.0);
+
+  @Benchmark
+  public boolean mixed_tuple_equals() {
+    return mixedTuple.equals(mixedTuple2);
+  }
+
+  @Benchmark
+  public boolean mixed_record_equals() {
+    return mixedRecord.equals(mixedRecord2);
+  }
+
+  @Benchmark
+  public int mixed_tuple_hashCode() {
+    return mixedTuple.hashCode();
+  }
+
+  @Benchmark
+  public int mixed_record_hashCode() {
+    return mixedRecord.hashCode();
+  }
+
+  @Benchmark
+  public String mixed_tuple_toString() {
+    return mixedTuple.toString();
+  }
+
+  @Benchmark
+  public String mixed_record_toString() {
+    return mixedRecord.toString();
+  }
+
+  @Benchmark
+  public boolean wide_tuple_equals() {
+    return wideTuple.equals(wideTuple2);
+  }
+
+  @Benchmark
+  public boolean wide_record_equals() {
+    return wideRecord.equals(wideRecord2);
+  }
+
+  @Benchmark
+  public int wide_tuple_hashCode() {
+    return wideTuple.hashCode();
+  }
+
+  @Benchmark
+  public int wide_record_hashCode() {
+    return wideRecord.hashCode();
+  }
+
+  @Benchmark
+  public String wide_tuple_toString() {
+    return wideTuple.toString();
+  }
+
+  @Benchmark
+  public String wide_record_toString() {
+    return wideRecord.toString();
+  }
+}
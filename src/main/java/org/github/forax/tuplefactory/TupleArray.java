@@ -0,0 +1,528 @@
+package org.github.forax.tuplefactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A growable array of tuples that all have the same shape, stored column by column:
+ * each component has its own array, a primitive array if the type of the component is a primitive type
+ * ({@code long[]}, {@code int[]}, {@code double[]}, etc.) or an {@code Object[]} otherwise.
+ * Unlike an array of tuples, there is neither an object header nor a reference per tuple.
+ * <pre>
+ *   var factory = TupleFactory.of(long.class, int.class, double.class);
+ *   var array = TupleArray.of(factory);
+ *   var row = array.addRow();
+ *   array.setLong(row, 0, 42L);
+ *   ...
+ *   var value = array.getLong(row, 0);
+ *   var tuple = array.tuple(row);   // creates a tuple of the factory
+ * </pre>
+ *
+ * This class is not thread safe.
+ *
+ * @see #of(TupleFactory)
+ */
+public final class TupleArray {
+  private final TupleFactoryImpl factory;
+  private final MethodHandle rowConstructor;
+  private final Object[] columns;
+  private int capacity;
+  private int size;
+
+  private TupleArray(TupleFactoryImpl factory, int capacity) {
+    var methodType = factory.shape.constructor().type();
+    var columns = new Object[methodType.parameterCount()];
+    for(var i = 0; i < columns.length; i++) {
+      columns[i] = Array.newInstance(methodType.parameterType(i), capacity);
+    }
+    this.factory = factory;
+    this.rowConstructor = rowConstructor(factory.shape.constructor());
+    this.columns = columns;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Creates an empty array of tuples
+   * @param factory the factory of the tuples
+   * @return a new empty array of tuples
+   * @throws NullPointerException if the factory is null
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  public static TupleArray of(TupleFactory factory) {
+    return of(factory, 16);
+  }
+
+  /**
+   * Creates an empty array of tuples with an initial capacity
+   * @param factory the factory of the tuples
+   * @param initialCapacity the initial capacity
+   * @return a new empty array of tuples
+   * @throws NullPointerException if the factory is null
+   * @throws IllegalArgumentException if the initial capacity is negative
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  public static TupleArray of(TupleFactory factory, int initialCapacity) {
+    requireNonNull(factory);
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("initialCapacity < 0");
+    }
+    return new TupleArray(TupleFactoryImpl.narrow(factory), initialCapacity);
+  }
+
+  // creates a method handle (Object[] columns, int row)Object
+  static MethodHandle rowConstructor(MethodHandle constructor) {
+    var elementGetters = new MethodHandle[constructor.type().parameterCount()];
+    for(var i = 0; i < elementGetters.length; i++) {
+      var arrayType = constructor.type().parameterType(i).arrayType();
+      var column = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, i)
+          .asType(methodType(arrayType, Object[].class));
+      elementGetters[i] = MethodHandles.filterArguments(MethodHandles.arrayElementGetter(arrayType), 0, column);
+    }
+    return TupleFactoryImpl.rowConstructor(constructor, elementGetters, methodType(Object.class, Object[].class, int.class));
+  }
+
+  /**
+   * Returns the factory of the tuples of this array.
+   * @return the factory of the tuples of this array.
+   */
+  public TupleFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Returns the number of rows.
+   * @return the number of rows.
+   */
+  public int size() {
+    return size;
+  }
+
+  private void grow() {
+    var newCapacity = capacity == 0 ? 16 : capacity << 1;
+    if (newCapacity < 0) {
+      throw new OutOfMemoryError("array too big");
+    }
+    for(var i = 0; i < columns.length; i++) {
+      var column = columns[i];
+      var newColumn = Array.newInstance(column.getClass().componentType(), newCapacity);
+      System.arraycopy(column, 0, newColumn, 0, size);
+      columns[i] = newColumn;
+    }
+    capacity = newCapacity;
+  }
+
+  /**
+   * Appends a new row, all the components of the row are initialized with their default value.
+   * @return the index of the new row
+   */
+  public int addRow() {
+    if (size == capacity) {
+      grow();
+    }
+    return size++;
+  }
+
+  /**
+   * Appends a new row with the values of the components of a tuple.
+   * The values are extracted using the typed getters of the factory, so they are not boxed.
+   * @param tuple a tuple created by a factory compatible with the factory of this array
+   * @return the index of the new row
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the factory of this array
+   */
+  public int add(Object tuple) {
+    factory.requireTuple(tuple);
+    var row = addRow();
+    setRow(row, tuple);
+    return row;
+  }
+
+  /**
+   * Appends all the rows of another array, the values are copied column by column.
+   * @param array an array of tuples created by a factory compatible with the factory of this array
+   * @throws NullPointerException if the array is null
+   * @throws ClassCastException if the array is not compatible with the factory of this array
+   */
+  public void addAll(TupleArray array) {
+    requireNonNull(array);
+    if (array.factory.shape.tupleClass() != factory.shape.tupleClass()) {
+      throw new ClassCastException("the array is not compatible with the factory of this array");
+    }
+    var arraySize = array.size;
+    while (capacity - size < arraySize) {
+      grow();
+    }
+    for(var i = 0; i < columns.length; i++) {
+      System.arraycopy(array.columns[i], 0, columns[i], size, arraySize);
+    }
+    size += arraySize;
+  }
+
+  // the columns trimmed to the size of this array, with the component types of the method type
+  Object[] columns(MethodType methodType) {
+    var columns = this.columns.clone();
+    for(var i = 0; i < columns.length; i++) {
+      var column = columns[i];
+      var componentType = methodType.parameterType(i);
+      if (capacity != size || column.getClass().componentType() != componentType) {
+        var newColumn = Array.newInstance(componentType, size);
+        System.arraycopy(column, 0, newColumn, 0, size);
+        columns[i] = newColumn;
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * A spliterator on the rows of some columns that creates a tuple per row.
+   * The spliterator is split in halves, so the rows are evenly split across the threads of a parallel stream.
+   */
+  static final class RowSpliterator implements Spliterator<Object> {
+    private final MethodHandle rowConstructor;
+    private final Object[] columns;
+    private int row;
+    private final int end;
+
+    RowSpliterator(MethodHandle rowConstructor, Object[] columns, int row, int end) {
+      this.rowConstructor = rowConstructor;
+      this.columns = columns;
+      this.row = row;
+      this.end = end;
+    }
+
+    private Object tuple(int row) {
+      try {
+        return rowConstructor.invokeExact(columns, row);
+      } catch (Throwable e) {
+        throw TupleFactoryImpl.rethrow(e);
+      }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action) {
+      requireNonNull(action);
+      if (row == end) {
+        return false;
+      }
+      action.accept(tuple(row++));
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Object> action) {
+      requireNonNull(action);
+      var end = this.end;
+      for(var row = this.row; row < end; row++) {
+        action.accept(tuple(row));
+      }
+      this.row = end;
+    }
+
+    @Override
+    public Spliterator<Object> trySplit() {
+      var middle = (row + end) >>> 1;
+      if (middle == row) {
+        return null;
+      }
+      var prefix = new RowSpliterator(rowConstructor, columns, row, middle);
+      row = middle;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return end - row;
+    }
+
+    @Override
+    public int characteristics() {
+      return SIZED | SUBSIZED | ORDERED | IMMUTABLE | NONNULL;
+    }
+  }
+
+  private void setRow(int row, Object tuple) {
+    for(var i = 0; i < columns.length; i++) {
+      switch (columns[i]) {
+        case boolean[] column -> column[row] = factory.getBoolean(tuple, i);
+        case byte[] column -> column[row] = factory.getByte(tuple, i);
+        case short[] column -> column[row] = factory.getShort(tuple, i);
+        case char[] column -> column[row] = factory.getChar(tuple, i);
+        case int[] column -> column[row] = factory.getInt(tuple, i);
+        case float[] column -> column[row] = factory.getFloat(tuple, i);
+        case long[] column -> column[row] = factory.getLong(tuple, i);
+        case double[] column -> column[row] = factory.getDouble(tuple, i);
+        case Object[] column -> column[row] = factory.get(tuple, i);
+        default -> throw new AssertionError();
+      }
+    }
+  }
+
+  /**
+   * Sorts the rows in parallel using a comparator of tuples.
+   * The rows are converted to tuples, the tuples are sorted using {@link Arrays#parallelSort(Object[], Comparator)}
+   * and then the values of the sorted tuples are written back into the columns.
+   * The sort is stable.
+   * <pre>
+   *   var factory = TupleFactory.of(long.class, int.class, String.class);
+   *   var array = TupleArray.of(factory);
+   *   ...
+   *   array.parallelSort(factory.comparator(0, 1, 2));
+   * </pre>
+   *
+   * @param comparator a comparator of the tuples of the factory of this array
+   * @throws NullPointerException if the comparator is null
+   *
+   * @see TupleFactory#comparator(java.util.List)
+   */
+  public void parallelSort(Comparator<Object> comparator) {
+    requireNonNull(comparator);
+    var tuples = new Object[size];
+    IntStream.range(0, size).parallel().forEach(row -> tuples[row] = tuple(row));
+    Arrays.parallelSort(tuples, comparator);
+    IntStream.range(0, size).parallel().forEach(row -> setRow(row, tuples[row]));
+  }
+
+  /**
+   * Creates a tuple with the values of a row.
+   * @param row the index of the row
+   * @return a new tuple created by the factory of this array
+   * @throws IndexOutOfBoundsException if the row index is not valid
+   */
+  public Object tuple(int row) {
+    Objects.checkIndex(row, size);
+    try {
+      return rowConstructor.invokeExact(columns, row);
+    } catch (Throwable e) {
+      throw TupleFactoryImpl.rethrow(e);
+    }
+  }
+
+  /**
+   * Extract an object value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @param <R> the type of the return value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not an object
+   */
+  @SuppressWarnings("unchecked")
+  public <R> R get(int row, int componentIndex) {
+    return (R) ((Object[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract a boolean value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a boolean
+   */
+  public boolean getBoolean(int row, int componentIndex) {
+    return ((boolean[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract a byte value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a byte
+   */
+  public byte getByte(int row, int componentIndex) {
+    return ((byte[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract a short value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a short
+   */
+  public short getShort(int row, int componentIndex) {
+    return ((short[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract a char value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a char
+   */
+  public char getChar(int row, int componentIndex) {
+    return ((char[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract an int value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not an int
+   */
+  public int getInt(int row, int componentIndex) {
+    return ((int[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract a float value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a float
+   */
+  public float getFloat(int row, int componentIndex) {
+    return ((float[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract a long value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a long
+   */
+  public long getLong(int row, int componentIndex) {
+    return ((long[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Extract a double value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a double
+   */
+  public double getDouble(int row, int componentIndex) {
+    return ((double[]) columns[componentIndex])[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Change an object value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not an object
+   */
+  public void set(int row, int componentIndex, Object value) {
+    ((Object[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change a boolean value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a boolean
+   */
+  public void setBoolean(int row, int componentIndex, boolean value) {
+    ((boolean[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change a byte value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a byte
+   */
+  public void setByte(int row, int componentIndex, byte value) {
+    ((byte[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change a short value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a short
+   */
+  public void setShort(int row, int componentIndex, short value) {
+    ((short[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change a char value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a char
+   */
+  public void setChar(int row, int componentIndex, char value) {
+    ((char[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change an int value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not an int
+   */
+  public void setInt(int row, int componentIndex, int value) {
+    ((int[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change a float value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a float
+   */
+  public void setFloat(int row, int componentIndex, float value) {
+    ((float[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change a long value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a long
+   */
+  public void setLong(int row, int componentIndex, long value) {
+    ((long[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+
+  /**
+   * Change a double value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws ClassCastException if the component is not a double
+   */
+  public void setDouble(int row, int componentIndex, double value) {
+    ((double[]) columns[componentIndex])[Objects.checkIndex(row, size)] = value;
+  }
+}
@@ -0,0 +1,450 @@
+package org.github.forax.tuplefactory;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.invoke.WrongMethodTypeException;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A fixed size array of tuples stored in a {@link MemorySegment}, outside the Java heap,
+ * using the {@link TupleFactory#layout() layout} of the factory.
+ * All the components of the factory must be primitive types.
+ * <pre>
+ *   var factory = TupleFactory.of(long.class, int.class, double.class);
+ *   try(var arena = Arena.ofConfined()) {
+ *     var buffer = TupleBuffer.allocate(factory, arena, 1_000);
+ *     buffer.setLong(0, 0, 42L);
+ *     buffer.store(1, factory.tuple(1L, 2, 3.0));
+ *     ...
+ *     var value = buffer.getLong(0, 0);  // does not allocate
+ *   }
+ * </pre>
+ * If the buffer is backed by a memory mapped file, the tuples can be read by another run of the JVM.
+ *
+ * This class is not thread safe.
+ *
+ * @see #allocate(TupleFactory, Arena, long)
+ * @see #map(TupleFactory, FileChannel, FileChannel.MapMode, Arena, long)
+ */
+public final class TupleBuffer {
+  private final TupleFactoryImpl factory;
+  private final StructLayout layout;
+  private final MemorySegment segment;
+  private final long capacity;
+  private final long[] offsets;
+  private final MethodHandle rowConstructor;
+
+  private TupleBuffer(TupleFactoryImpl factory, StructLayout layout, MemorySegment segment) {
+    var parameterCount = factory.methodType.parameterCount();
+    var offsets = new long[parameterCount];
+    var elementGetters = new MethodHandle[parameterCount];
+    for(var i = 0; i < parameterCount; i++) {
+      var path = MemoryLayout.PathElement.groupElement("_" + i);
+      offsets[i] = layout.byteOffset(path);
+      elementGetters[i] = MethodHandles.insertArguments(
+          layout.arrayElementVarHandle(path).toMethodHandle(VarHandle.AccessMode.GET), 1, 0L);
+    }
+    this.factory = factory;
+    this.layout = layout;
+    this.segment = segment;
+    this.capacity = layout.byteSize() == 0 ? 0 : segment.byteSize() / layout.byteSize();
+    this.offsets = offsets;
+    this.rowConstructor = TupleFactoryImpl.rowConstructor(factory.shape.constructor(), elementGetters,
+        methodType(Object.class, MemorySegment.class, long.class));
+  }
+
+  /**
+   * Allocates an off-heap buffer of tuples.
+   * @param factory the factory of the tuples
+   * @param arena the arena used to allocate the memory
+   * @param capacity the number of tuples
+   * @return a new buffer of tuples with all the components of all the tuples initialized to zero
+   * @throws NullPointerException if either the factory or the arena is null
+   * @throws UnsupportedOperationException if one of the components of the factory is not a primitive type
+   *         or if the tuples are wide
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  public static TupleBuffer allocate(TupleFactory factory, Arena arena, long capacity) {
+    requireNonNull(factory);
+    requireNonNull(arena);
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity < 0");
+    }
+    var layout = factory.layout();
+    var segment = arena.allocate(layout.byteSize() * capacity, layout.byteAlignment());
+    return new TupleBuffer(TupleFactoryImpl.narrow(factory), layout, segment);
+  }
+
+  /**
+   * Creates a buffer of tuples backed by a memory mapped file.
+   * The file is extended if it is too small to store all the tuples.
+   * @param factory the factory of the tuples
+   * @param channel the channel of the file
+   * @param mode the mode of the mapping
+   * @param arena the arena that control the lifetime of the mapping
+   * @param capacity the number of tuples
+   * @return a new buffer of tuples backed by the file
+   * @throws NullPointerException if either the factory, the channel, the mode or the arena is null
+   * @throws UnsupportedOperationException if one of the components of the factory is not a primitive type
+   *         or if the tuples are wide
+   * @throws IllegalArgumentException if the capacity is negative
+   * @throws IOException if an I/O error occurs
+   *
+   * @see FileChannel#map(FileChannel.MapMode, long, long, Arena)
+   */
+  public static TupleBuffer map(TupleFactory factory, FileChannel channel, FileChannel.MapMode mode, Arena arena, long capacity) throws IOException {
+    requireNonNull(factory);
+    requireNonNull(channel);
+    requireNonNull(mode);
+    requireNonNull(arena);
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity < 0");
+    }
+    var layout = factory.layout();
+    var segment = channel.map(mode, 0, layout.byteSize() * capacity, arena);
+    return new TupleBuffer(TupleFactoryImpl.narrow(factory), layout, segment);
+  }
+
+  /**
+   * Creates a buffer of tuples that uses an existing memory segment.
+   * The capacity is the size of the segment divided by the size of the layout of a tuple.
+   * @param factory the factory of the tuples
+   * @param segment the memory segment
+   * @return a new buffer of tuples backed by the memory segment
+   * @throws NullPointerException if either the factory or the segment is null
+   * @throws UnsupportedOperationException if one of the components of the factory is not a primitive type
+   *         or if the tuples are wide
+   */
+  public static TupleBuffer wrap(TupleFactory factory, MemorySegment segment) {
+    requireNonNull(factory);
+    requireNonNull(segment);
+    var layout = factory.layout();
+    return new TupleBuffer(TupleFactoryImpl.narrow(factory), layout, segment);
+  }
+
+  /**
+   * Returns a var handle to access to a component of the tuples of a memory segment.
+   * The coordinates of the var handle are {@code (MemorySegment segment, long baseOffset, long row)}.
+   * For good performance, the var handle should be stored as static final constant.
+   * @param factory the factory of the tuples
+   * @param componentIndex the index of the component
+   * @return a var handle to access the component of a tuple
+   * @throws NullPointerException if the factory is null
+   * @throws UnsupportedOperationException if one of the components of the factory is not a primitive type
+   * @throws IllegalArgumentException if the component index is not valid
+   *
+   * @see MemoryLayout#arrayElementVarHandle(MemoryLayout.PathElement...)
+   */
+  public static VarHandle varHandle(TupleFactory factory, int componentIndex) {
+    requireNonNull(factory);
+    return factory.layout().arrayElementVarHandle(MemoryLayout.PathElement.groupElement("_" + componentIndex));
+  }
+
+  /**
+   * Returns the factory of the tuples of this buffer.
+   * @return the factory of the tuples of this buffer.
+   */
+  public TupleFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Returns the layout of a tuple.
+   * @return the layout of a tuple.
+   */
+  public StructLayout layout() {
+    return layout;
+  }
+
+  /**
+   * Returns the memory segment containing the tuples.
+   * @return the memory segment containing the tuples.
+   */
+  public MemorySegment segment() {
+    return segment;
+  }
+
+  /**
+   * Returns the number of tuples of this buffer.
+   * @return the number of tuples of this buffer.
+   */
+  public long capacity() {
+    return capacity;
+  }
+
+  private long offset(long row, int componentIndex, Class<?> type) {
+    var offset = offsets[componentIndex];
+    if (factory.methodType.parameterType(componentIndex) != type) {
+      throw new WrongMethodTypeException("component " + componentIndex + " is not a " + type.getName());
+    }
+    return Objects.checkIndex(row, capacity) * layout.byteSize() + offset;
+  }
+
+  /**
+   * Stores the values of the components of a tuple.
+   * The values are extracted using the typed getters of the factory, so they are not boxed.
+   * @param row the index of the row
+   * @param tuple a tuple created by a factory compatible with the factory of this buffer
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the factory of this buffer
+   * @throws IndexOutOfBoundsException if the row index is not valid
+   */
+  public void store(long row, Object tuple) {
+    factory.requireTuple(tuple);
+    var base = Objects.checkIndex(row, capacity) * layout.byteSize();
+    for(var i = 0; i < offsets.length; i++) {
+      var offset = base + offsets[i];
+      switch (factory.methodType.parameterType(i).descriptorString()) {
+        case "Z" -> segment.set(ValueLayout.JAVA_BOOLEAN, offset, factory.getBoolean(tuple, i));
+        case "B" -> segment.set(ValueLayout.JAVA_BYTE, offset, factory.getByte(tuple, i));
+        case "S" -> segment.set(ValueLayout.JAVA_SHORT, offset, factory.getShort(tuple, i));
+        case "C" -> segment.set(ValueLayout.JAVA_CHAR, offset, factory.getChar(tuple, i));
+        case "I" -> segment.set(ValueLayout.JAVA_INT, offset, factory.getInt(tuple, i));
+        case "F" -> segment.set(ValueLayout.JAVA_FLOAT, offset, factory.getFloat(tuple, i));
+        case "J" -> segment.set(ValueLayout.JAVA_LONG, offset, factory.getLong(tuple, i));
+        case "D" -> segment.set(ValueLayout.JAVA_DOUBLE, offset, factory.getDouble(tuple, i));
+        default -> throw new AssertionError();
+      }
+    }
+  }
+
+  /**
+   * Creates a tuple with the values of a row.
+   * @param row the index of the row
+   * @return a new tuple created by the factory of this buffer
+   * @throws IndexOutOfBoundsException if the row index is not valid
+   */
+  public Object tuple(long row) {
+    Objects.checkIndex(row, capacity);
+    try {
+      return rowConstructor.invokeExact(segment, row);
+    } catch (Throwable e) {
+      throw TupleFactoryImpl.rethrow(e);
+    }
+  }
+
+  /**
+   * Copies several consecutive tuples of this buffer to another buffer.
+   * The two buffers can be the same buffer, and the source and destination rows can overlap.
+   * @param fromRow the index of the first row in this buffer
+   * @param destination the destination buffer
+   * @param toRow the index of the first row in the destination buffer
+   * @param rowCount the number of tuples to copy
+   * @throws NullPointerException if the destination is null
+   * @throws IllegalArgumentException if the layout of the destination is not the same as the layout of this buffer
+   * @throws IndexOutOfBoundsException if the rows are not valid
+   */
+  public void copy(long fromRow, TupleBuffer destination, long toRow, long rowCount) {
+    requireNonNull(destination);
+    if (!layout.equals(destination.layout)) {
+      throw new IllegalArgumentException("incompatible layouts " + layout + " " + destination.layout);
+    }
+    Objects.checkFromIndexSize(fromRow, rowCount, capacity);
+    Objects.checkFromIndexSize(toRow, rowCount, destination.capacity);
+    var byteSize = layout.byteSize();
+    MemorySegment.copy(segment, fromRow * byteSize, destination.segment, toRow * byteSize, rowCount * byteSize);
+  }
+
+  /**
+   * Extract a boolean value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a boolean
+   */
+  public boolean getBoolean(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_BOOLEAN, offset(row, componentIndex, boolean.class));
+  }
+
+  /**
+   * Extract a byte value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a byte
+   */
+  public byte getByte(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_BYTE, offset(row, componentIndex, byte.class));
+  }
+
+  /**
+   * Extract a short value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a short
+   */
+  public short getShort(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_SHORT, offset(row, componentIndex, short.class));
+  }
+
+  /**
+   * Extract a char value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a char
+   */
+  public char getChar(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_CHAR, offset(row, componentIndex, char.class));
+  }
+
+  /**
+   * Extract an int value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not an int
+   */
+  public int getInt(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_INT, offset(row, componentIndex, int.class));
+  }
+
+  /**
+   * Extract a float value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a float
+   */
+  public float getFloat(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_FLOAT, offset(row, componentIndex, float.class));
+  }
+
+  /**
+   * Extract a long value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a long
+   */
+  public long getLong(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_LONG, offset(row, componentIndex, long.class));
+  }
+
+  /**
+   * Extract a double value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @return the value of the component of the row
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a double
+   */
+  public double getDouble(long row, int componentIndex) {
+    return segment.get(ValueLayout.JAVA_DOUBLE, offset(row, componentIndex, double.class));
+  }
+
+  /**
+   * Change a boolean value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a boolean
+   */
+  public void setBoolean(long row, int componentIndex, boolean value) {
+    segment.set(ValueLayout.JAVA_BOOLEAN, offset(row, componentIndex, boolean.class), value);
+  }
+
+  /**
+   * Change a byte value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a byte
+   */
+  public void setByte(long row, int componentIndex, byte value) {
+    segment.set(ValueLayout.JAVA_BYTE, offset(row, componentIndex, byte.class), value);
+  }
+
+  /**
+   * Change a short value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a short
+   */
+  public void setShort(long row, int componentIndex, short value) {
+    segment.set(ValueLayout.JAVA_SHORT, offset(row, componentIndex, short.class), value);
+  }
+
+  /**
+   * Change a char value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a char
+   */
+  public void setChar(long row, int componentIndex, char value) {
+    segment.set(ValueLayout.JAVA_CHAR, offset(row, componentIndex, char.class), value);
+  }
+
+  /**
+   * Change an int value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not an int
+   */
+  public void setInt(long row, int componentIndex, int value) {
+    segment.set(ValueLayout.JAVA_INT, offset(row, componentIndex, int.class), value);
+  }
+
+  /**
+   * Change a float value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a float
+   */
+  public void setFloat(long row, int componentIndex, float value) {
+    segment.set(ValueLayout.JAVA_FLOAT, offset(row, componentIndex, float.class), value);
+  }
+
+  /**
+   * Change a long value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a long
+   */
+  public void setLong(long row, int componentIndex, long value) {
+    segment.set(ValueLayout.JAVA_LONG, offset(row, componentIndex, long.class), value);
+  }
+
+  /**
+   * Change a double value given its row and its component index
+   * @param row the index of the row
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @throws IndexOutOfBoundsException if either the row index or the component index is not valid
+   * @throws WrongMethodTypeException if the component is not a double
+   */
+  public void setDouble(long row, int componentIndex, double value) {
+    segment.set(ValueLayout.JAVA_DOUBLE, offset(row, componentIndex, double.class), value);
+  }
+}
@@ -0,0 +1,138 @@
+package org.github.forax.tuplefactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A mutable builder of tuples that stores the values of the components until a tuple is built.
+ * The builder class is generated for each shape, it has one field per component,
+ * so the typed setters do not box the values and {@link #build()} calls the constructor of the tuple directly.
+ * <pre>
+ *   var factory = TupleFactory.of(String.class, int.class, long.class);
+ *   var builder = factory.builder();
+ *   var tuple = builder.set(0, "foo").setInt(1, 42).setLong(2, 3L).build();
+ * </pre>
+ *
+ * A builder can be reused to build several tuples, {@link #build()} does not change the values of the components
+ * and {@link #reset()} resets all the components to their default values.
+ * This class is not thread safe, a builder should be used by one thread at a time.
+ *
+ * @see TupleFactory#builder()
+ */
+public abstract class TupleBuilder {
+  final TupleFactoryImpl factory;
+
+  TupleBuilder(TupleFactoryImpl factory) {
+    this.factory = requireNonNull(factory);
+  }
+
+  /**
+   * Returns the factory of the tuples created by this builder.
+   * @return the factory of the tuples created by this builder.
+   */
+  public final TupleFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Change an object value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not an object
+   */
+  public abstract TupleBuilder set(int componentIndex, Object value);
+
+  /**
+   * Change a boolean value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a boolean
+   */
+  public abstract TupleBuilder setBoolean(int componentIndex, boolean value);
+
+  /**
+   * Change a byte value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a byte
+   */
+  public abstract TupleBuilder setByte(int componentIndex, byte value);
+
+  /**
+   * Change a short value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a short
+   */
+  public abstract TupleBuilder setShort(int componentIndex, short value);
+
+  /**
+   * Change a char value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a char
+   */
+  public abstract TupleBuilder setChar(int componentIndex, char value);
+
+  /**
+   * Change an int value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not an int
+   */
+  public abstract TupleBuilder setInt(int componentIndex, int value);
+
+  /**
+   * Change a float value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a float
+   */
+  public abstract TupleBuilder setFloat(int componentIndex, float value);
+
+  /**
+   * Change a long value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a long
+   */
+  public abstract TupleBuilder setLong(int componentIndex, long value);
+
+  /**
+   * Change a double value given its component index
+   * @param componentIndex the index of the component
+   * @param value the new value
+   * @return this builder
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a double
+   */
+  public abstract TupleBuilder setDouble(int componentIndex, double value);
+
+  /**
+   * Resets all the components to their default values, null, false or zero.
+   * @return this builder
+   */
+  public abstract TupleBuilder reset();
+
+  /**
+   * Creates a tuple with the current values of the components.
+   * The values of the components are not changed, so this method can be called several times.
+   * @return a new tuple created by the factory of this builder
+   */
+  public abstract Object build();
+}
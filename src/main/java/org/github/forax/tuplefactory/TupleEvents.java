@@ -0,0 +1,126 @@
+package org.github.forax.tuplefactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The JDK Flight Recorder events and the counters about the creation of the factories,
+ * the generation of the classes and the calls to the factories.
+ * The events are only recorded if a recording is started and the event is enabled.
+ *
+ * @see TupleFactory#statistics()
+ */
+final class TupleEvents {
+  private TupleEvents() {
+    throw new AssertionError();
+  }
+
+  @Name("org.github.forax.tuplefactory.ShapeDefinition")
+  @Label("Tuple Shape Definition")
+  @Category("Tuple Factory")
+  @Description("The definition of the classes of a new shape, the duration is the time spent to generate and define the classes")
+  static final class ShapeDefinitionEvent extends Event {
+    @Label("Descriptor")
+    String descriptor;
+
+    @Label("Options")
+    String options;
+
+    @Label("Pregenerated")
+    @Description("true if the classes are loaded from pregenerated class files")
+    boolean pregenerated;
+
+    @Label("Class File Size")
+    @DataAmount
+    int classFileSize;
+  }
+
+  @Name("org.github.forax.tuplefactory.HiddenClassDefinition")
+  @Label("Tuple Hidden Class Definition")
+  @Category("Tuple Factory")
+  @Description("The definition of a hidden class, the duration is the time spent to define the class")
+  static final class HiddenClassDefinitionEvent extends Event {
+    @Label("Kind")
+    @Description("Tuple, GeneratedTupleFactory, GeneratedTupleBuilder, TupleComparator or TupleCopier")
+    String kind;
+
+    @Label("Defined Class")
+    Class<?> definedClass;
+
+    @Label("Class File Size")
+    @DataAmount
+    int classFileSize;
+  }
+
+  @Name("org.github.forax.tuplefactory.FactoryCreation")
+  @Label("Tuple Factory Creation")
+  @Category("Tuple Factory")
+  @Description("A call to TupleFactory.of(), the duration includes the definition of the shape if needed, "
+      + "a lot of cache hits means that a factory is not stored in a constant")
+  static final class FactoryCreationEvent extends Event {
+    @Label("Method Type")
+    String methodType;
+
+    @Label("Options")
+    String options;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+  }
+
+  @Name("org.github.forax.tuplefactory.Sample")
+  @Label("Tuple Factory Call Sample")
+  @Category("Tuple Factory")
+  @Description("A sampled call to a method of a factory, only emitted if the system property "
+      + SAMPLE_RATE_PROPERTY + " is set")
+  static final class SampleEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Method Type")
+    String methodType;
+  }
+
+  /**
+   * The name of the system property that enables the sampling of the calls to {@link TupleFactory#tuple(Object...)}
+   * and to the getters, one call out of the sample rate (on average) emits a {@link SampleEvent}.
+   * The getters are only sampled if the property is set before the shape is defined
+   * and the classes of the shape are not pregenerated.
+   */
+  static final String SAMPLE_RATE_PROPERTY = "org.github.forax.tuplefactory.sampleRate";
+
+  /**
+   * The sample rate, 0 if the sampling is disabled.
+   */
+  static final int SAMPLE_RATE = Math.max(0, Integer.getInteger(SAMPLE_RATE_PROPERTY, 0));
+
+  static final LongAdder SHAPE_COUNT = new LongAdder();
+  static final LongAdder PREGENERATED_SHAPE_COUNT = new LongAdder();
+  static final LongAdder FACTORY_CACHE_HITS = new LongAdder();
+  static final LongAdder FACTORY_CACHE_MISSES = new LongAdder();
+  static final LongAdder GENERATED_CLASS_COUNT = new LongAdder();
+  static final LongAdder GENERATED_CLASS_BYTES = new LongAdder();
+  static final LongAdder GENERATION_NANOS = new LongAdder();
+  static final LongAdder SAMPLED_CALLS = new LongAdder();
+
+  // counts the call and emits an event once every SAMPLE_RATE calls on average
+  static void sample(String operation, TupleFactoryImpl factory) {
+    SAMPLED_CALLS.increment();
+    if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+      return;
+    }
+    var event = new SampleEvent();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.methodType = factory.methodTypeString();
+      event.commit();
+    }
+  }
+}
@@ -1,15 +1,233 @@
 package org.github.forax.tuplefactory;
 
-import static java.lang.invoke.MethodType.methodType;
+import java.lang.foreign.StructLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
 import static java.util.Objects.requireNonNull;
 
 /**
  * A factory of tuples that all have the same shape (the component types).
  * For good performance, instance of {@link TupleFactory} should be stored as static final constant.
  *
+ * <p>A shape is wide if its components need more than 254 parameter slots (a long or a double uses two slots),
+ * the JVM limits the number of parameter slots of a constructor or a method handle to 255.
+ * The constructor of a wide tuple class takes one array per kind of component and copies the values into the fields,
+ * so the getters, {@code equals} and {@code hashCode} read the fields directly like for any other tuple.
+ * A wide tuple is created using {@link #tuple(Object...)} or, without boxing, using a {@link #builder()},
+ * the methods that need a constructor with one parameter per component, like {@link #constructor()},
+ * {@link #with(Object, int, Object) with} or {@link #decode(ByteBuffer)}, throw an
+ * {@link UnsupportedOperationException}.
+ * The only options supported by a wide shape are {@link Option#INLINE_EQUALS_HASHCODE}, which is always enabled,
+ * and {@link Option#CACHED_HASH}.
+ *
  * @see #of(Class[])
  */
-public interface TupleFactory {
+public sealed interface TupleFactory permits TupleFactoryImpl {
+  /**
+   * Options that change how the tuple class is generated.
+   *
+   * @see #of(Set, Class[])
+   */
+  enum Option {
+    /**
+     * Packs the boolean and the byte components into int fields,
+     * each boolean uses one bit and each byte uses 8 bits.
+     * The components are only packed if it reduces the size of the instance.
+     *
+     * @see #estimatedInstanceSize()
+     */
+    COMPACT,
+
+    /**
+     * Generates the methods {@code equals} and {@code hashCode} of the tuple class as straight-line bytecode
+     * instead of delegating to {@link java.lang.runtime.ObjectMethods}.
+     * The method {@code equals} compares the primitive components first, then the other components,
+     * the method {@code hashCode} combines the hash of each component and mixes the result,
+     * so tuples with close values have hashes that are spread.
+     * The semantics of {@code equals} is the same as the semantics of the method {@code equals} of a record.
+     */
+    INLINE_EQUALS_HASHCODE,
+
+    /**
+     * Caches the hash of a tuple in a field of the tuple, like {@link String} does,
+     * the hash is computed the first time {@code hashCode} is called.
+     * The method {@code equals} compares the cached hashes first if they are both computed.
+     * This option is useful for tuples with reference components used as keys of a map,
+     * it implies {@link #INLINE_EQUALS_HASHCODE} and adds 4 bytes to the size of a tuple.
+     *
+     * @see #estimatedInstanceSize()
+     */
+    CACHED_HASH,
+
+    /**
+     * Stores the components typed by a wrapper class ({@link Integer}, {@link Double}, etc.)
+     * as primitive fields plus a bit per component, packed into int fields, that records if the value is null.
+     * The method {@link #get(Object, int)} boxes the value on demand,
+     * the primitive getters, by example {@link #getInt(Object, int)} on a component typed {@link Integer},
+     * return the value without allocation and throw a {@link NullPointerException} if the value is null,
+     * the method {@link #isNull(Object, int)} does not allocate either.
+     * The semantics of {@code equals} and {@code hashCode} is unchanged.
+     * A tuple class that uses this option is never pregenerated.
+     *
+     * @see #estimatedInstanceSize()
+     */
+    UNBOXED_WRAPPERS,
+
+    /**
+     * Generates a tuple class with fields that are not final, so the components of a tuple can be updated in place
+     * using the var handles returned by {@link #varHandle(int)}, or using the methods
+     * {@link #getAndAddInt(Object, int, int)}, {@link #getAndAddLong(Object, int, long)}
+     * and {@link #compareAndSet(Object, int, long, long) compareAndSet}.
+     * The getters read the components with a plain read, the var handles provide the other memory orderings.
+     * The methods {@code equals} and {@code hashCode} use the current values of the components,
+     * so a tuple should not be updated while it is used as a key of a map.
+     * This option is not compatible with the options {@link #COMPACT}, {@link #CACHED_HASH}
+     * and {@link #UNBOXED_WRAPPERS}.
+     * A tuple class that uses this option is never pregenerated.
+     */
+    MUTABLE,
+
+    /**
+     * Adds 128 bytes of padding fields before each component and after the last component
+     * so the components of a tuple updated by different threads do not share the same cache line (false sharing).
+     * The VM lays out the fields of the same size in declaration order, so the padding fields of a component
+     * have the type of the component, the padding is a best effort as the VM is free to lay out the fields differently.
+     * This option implies {@link #MUTABLE} and adds 128 bytes per padding to the size of a tuple.
+     *
+     * @see #estimatedInstanceSize()
+     */
+    PADDED
+  }
+
+  /**
+   * Statistics about the factories and the classes generated by all the factories.
+   * The same information is also available as JDK Flight Recorder events in the category "Tuple Factory".
+   *
+   * @param shapeCount the number of shapes, each shape (the erased types and the options)
+   *                   has its own tuple class and factory class,
+   *                   including the shapes of the views (see {@link #ofView(Class)})
+   * @param pregeneratedShapeCount the number of shapes that use pregenerated classes
+   * @param factoryCount the number of factories cached, one per types and options
+   * @param factoryCacheHits the number of calls to {@link #of(Set, Class[])} that returned a cached factory,
+   *                         a number that grows means that a factory is not stored in a constant
+   * @param factoryCacheMisses the number of calls to {@link #of(Set, Class[])} that created a factory
+   * @param generatedClassCount the number of hidden classes generated at runtime,
+   *                            the tuple classes, the factory classes, the builders, the comparators and the copiers
+   * @param classFileBytes the size in bytes of the classes generated at runtime
+   * @param generationNanos the time spent to generate and define the classes, in nanoseconds
+   * @param estimatedMetaspaceBytes an estimation of the metaspace used by the classes generated at runtime
+   * @param sampledCalls the number of calls to {@link #tuple(Object...)} and to the getters counted by the sampling,
+   *                     0 if the sampling is not enabled with the system property
+   *                     {@code org.github.forax.tuplefactory.sampleRate}
+   *
+   * @see #statistics()
+   * @see TupleShape
+   */
+  record Statistics(int shapeCount, int pregeneratedShapeCount, int factoryCount,
+                    long factoryCacheHits, long factoryCacheMisses,
+                    long generatedClassCount, long classFileBytes, long generationNanos, long estimatedMetaspaceBytes,
+                    long sampledCalls) {}
+
+  /**
+   * How a component is compared by a comparator of tuples.
+   * The values of a primitive component are compared using the method {@code compare} of the corresponding wrapper
+   * class, by example {@link Long#compare(long, long)}, the values of the other components must be
+   * {@link Comparable} and are compared using their natural order.
+   *
+   * @param componentIndex the index of the component
+   * @param descending true if the values are sorted in descending order
+   * @param nullsFirst true if the null values are sorted before the non null values whatever the order,
+   *                   false if they are sorted after
+   *
+   * @see #comparator(List)
+   */
+  record ComponentOrder(int componentIndex, boolean descending, boolean nullsFirst) {
+    /**
+     * Returns an ascending order on a component with the null values last.
+     * @param componentIndex the index of the component
+     * @return an ascending order on a component with the null values last.
+     */
+    public static ComponentOrder ascending(int componentIndex) {
+      return new ComponentOrder(componentIndex, false, false);
+    }
+
+    /**
+     * Returns a descending order on a component with the null values last.
+     * @param componentIndex the index of the component
+     * @return a descending order on a component with the null values last.
+     */
+    public static ComponentOrder descending(int componentIndex) {
+      return new ComponentOrder(componentIndex, true, false);
+    }
+
+    /**
+     * Returns the same order on the same component with the null values first.
+     * @return the same order on the same component with the null values first.
+     */
+    public ComponentOrder withNullsFirst() {
+      return new ComponentOrder(componentIndex, descending, true);
+    }
+  }
+
+  /**
+   * A projection of the tuples of a factory on some components.
+   *
+   * @param factory the factory of the projected tuples
+   * @param copier a method handle of type (Object)Object that takes a tuple and returns a projected tuple
+   *               created by the factory of the projection
+   *
+   * @see #projection(int...)
+   */
+  record Projection(TupleFactory factory, MethodHandle copier) {
+    /**
+     * Creates a projected tuple from a tuple.
+     * For good performance, the copier should be stored as static final constant and called with
+     * {@link MethodHandle#invokeExact(Object...)} instead.
+     *
+     * @param tuple a tuple created by the factory used to create this projection
+     * @return a new tuple created by the factory of this projection
+     * @throws NullPointerException if the tuple is null
+     * @throws ClassCastException if the tuple is not compatible with the factory used to create this projection
+     */
+    public Object project(Object tuple) {
+      try {
+        return (Object) copier.invokeExact(tuple);
+      } catch (Throwable e) {
+        throw TupleFactoryImpl.rethrow(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the options used to create the current factory,
+   * including the options implied by another option like {@link Option#INLINE_EQUALS_HASHCODE}
+   * for {@link Option#CACHED_HASH}.
+   * @return an unmodifiable set of the options used to create the current factory.
+   *
+   * @see #of(Set, Class[])
+   */
+  Set<Option> options();
+
+  /**
+   * Returns an estimation of the size in bytes of a tuple, not counting the objects referenced by the tuple.
+   * The estimation supposes a 64-bit VM with compressed class pointers and compressed references,
+   * an object header of 12 bytes and objects aligned on 8 bytes.
+   *
+   * @return an estimation of the size in bytes of a tuple.
+   *
+   * @see Option#COMPACT
+   */
+  long estimatedInstanceSize();
+
   /**
    * Checks that a tuple is compatible the current factory
    * @param tuple a tuple
@@ -30,6 +248,140 @@ public interface TupleFactory {
    */
   Object tuple(Object... args);
 
+  /**
+   * Returns a method handle that creates a tuple, the parameter types of the method handle are
+   * the types used to create the current factory and its return type is Object.
+   * Unlike {@link #tuple(Object...)}, a call to this method handle using
+   * {@link MethodHandle#invokeExact(Object...)} neither allocates an array nor boxes the arguments,
+   * even if the current factory is not a constant.
+   * For good performance, the method handle should be stored as static final constant.
+   * <pre>
+   *   private static final MethodHandle CONSTRUCTOR = TupleFactory.of(String.class, int.class).constructor();
+   *   ...
+   *   var tuple = (Object) CONSTRUCTOR.invokeExact("foo", 2);
+   * </pre>
+   *
+   * @return a method handle that creates a tuple
+   * @throws UnsupportedOperationException if the tuples are wide
+   *
+   * @see TupleFactory#of(Class[])
+   */
+  MethodHandle constructor();
+
+  /**
+   * Returns the memory layout of a tuple, a struct with one member per component named "_" + componentIndex,
+   * in the order of the components with the padding necessary so each member and each element of
+   * an array of structs is aligned.
+   * This layout is used to store tuples outside the Java heap.
+   *
+   * @return the memory layout of a tuple
+   * @throws UnsupportedOperationException if one of the component is not a primitive type
+   *
+   * @see TupleBuffer
+   */
+  StructLayout layout();
+
+  /**
+   * Writes the components of a tuple into a byte buffer.
+   * Each primitive value is written using its fixed width (a boolean is written as a byte),
+   * a String is written as its length in bytes (an int, -1 for null) followed by its bytes in UTF-8.
+   * This method is generated for each shape, so no value is boxed.
+   *
+   * @param tuple a tuple created with the current factory
+   * @param buffer the byte buffer
+   * @throws NullPointerException if either the tuple or the buffer is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory or
+   *         if a component which is not a primitive is not a String
+   * @throws java.nio.BufferOverflowException if there is not enough space in the buffer,
+   *         in that case the position of the buffer is not changed
+   * @throws UnsupportedOperationException if a component is neither a primitive type nor a super type of String
+   *
+   * @see #decode(ByteBuffer)
+   */
+  void encode(Object tuple, ByteBuffer buffer);
+
+  /**
+   * Reads the components of a tuple from a byte buffer and creates a tuple.
+   * This method is generated for each shape, the values are read and
+   * the constructor of the tuple is called without boxing.
+   *
+   * @param buffer the byte buffer
+   * @return a new tuple
+   * @throws NullPointerException if the buffer is null
+   * @throws java.nio.BufferUnderflowException if there is not enough bytes in the buffer
+   *         or if the length of a String is corrupted
+   * @throws UnsupportedOperationException if the tuples are wide or
+   *         if a component is neither a primitive type nor a super type of String
+   *
+   * @see #encode(Object, ByteBuffer)
+   */
+  Object decode(ByteBuffer buffer);
+
+  /**
+   * Writes the components of several tuples into a byte buffer until either
+   * all tuples are written or there is not enough space in the buffer to write the next one.
+   * The buffer can then be drained and this method called again with the returned index.
+   *
+   * @param tuples an array of tuples created with the current factory
+   * @param fromIndex the index of the first tuple to write
+   * @param toIndex the index after the last tuple to write
+   * @param buffer the byte buffer
+   * @return the index of the first tuple that was not written, {@code toIndex} if all the tuples were written
+   * @throws NullPointerException if either the array, one of the tuple or the buffer is null
+   * @throws IndexOutOfBoundsException if the range is not valid
+   * @throws java.nio.BufferOverflowException if a tuple does not fit in the buffer even if the buffer is empty
+   * @throws UnsupportedOperationException if a component is neither a primitive type nor a super type of String
+   *
+   * @see #encode(Object, ByteBuffer)
+   */
+  int encodeAll(Object[] tuples, int fromIndex, int toIndex, ByteBuffer buffer);
+
+  /**
+   * Reads all the tuples of a byte buffer and sends them to a consumer.
+   * If the end of the buffer only contains the beginning of a tuple, those bytes are not consumed,
+   * so the buffer can be compacted, filled and this method called again.
+   *
+   * @param buffer the byte buffer
+   * @param consumer the consumer of the tuples
+   * @return the number of tuples read
+   * @throws NullPointerException if either the buffer or the consumer is null
+   * @throws UnsupportedOperationException if the tuples are wide or
+   *         if a component is neither a primitive type nor a super type of String
+   *
+   * @see #decode(ByteBuffer)
+   */
+  int decodeAll(ByteBuffer buffer, Consumer<Object> consumer);
+
+  /**
+   * Calls the visitor once for each component of a tuple, in the order of the components,
+   * with the method of the visitor corresponding to the type of the component.
+   * This method is generated for each shape, the components are read one after the other
+   * and sent to the visitor, so no value is boxed if the visitor overrides the method of each primitive type.
+   *
+   * @param tuple a tuple created with the current factory
+   * @param visitor the visitor
+   * @throws NullPointerException if either the tuple or the visitor is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   *
+   * @see TupleVisitor
+   */
+  void accept(Object tuple, TupleVisitor visitor);
+
+  /**
+   * Returns true if the value of a component of a tuple is null.
+   * A component of a primitive type is never null.
+   * If the factory uses the option {@link Option#UNBOXED_WRAPPERS},
+   * a component typed by a wrapper is tested without boxing its value.
+   *
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @return true if the value of the component is null
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   */
+  boolean isNull(Object tuple, int componentIndex);
+
   /**
    * Extract an object value of a type given its component index
    * @param tuple a tuple created with the current factory
@@ -121,9 +473,500 @@ public interface TupleFactory {
    */
   double getDouble(Object tuple, int componentIndex);
 
+  /**
+   * Returns a comparator that compares tuples component by component in ascending order, with the null values last.
+   * This is equivalent to {@code comparator(List.of(ComponentOrder.ascending(componentIndexes[0]), ...))}.
+   *
+   * @param componentIndexes the index of the components to compare, from the most significant to the least significant
+   * @return a comparator of the tuples created by the current factory
+   * @throws NullPointerException if componentIndexes is null
+   * @throws IndexOutOfBoundsException if one of the component indexes is not valid
+   *
+   * @see #comparator(List)
+   */
+  Comparator<Object> comparator(int... componentIndexes);
+
+  /**
+   * Returns a comparator that compares tuples component by component.
+   * The comparator class is generated for each shape and each list of component orders,
+   * the primitive values are read and compared without being boxed.
+   * The comparator throws a {@link ClassCastException} if a tuple is not compatible with the current factory
+   * or if a value of a component which is not a primitive is not {@link Comparable}.
+   * <pre>
+   *   var factory = TupleFactory.of(long.class, int.class, String.class);
+   *   var comparator = factory.comparator(List.of(ComponentOrder.descending(0), ComponentOrder.ascending(2).withNullsFirst()));
+   *   Arrays.parallelSort(tuples, comparator);
+   * </pre>
+   *
+   * @param componentOrders the orders of the components to compare, from the most significant to the least significant
+   * @return a comparator of the tuples created by the current factory
+   * @throws NullPointerException if componentOrders or one of the component orders is null
+   * @throws IndexOutOfBoundsException if the index of one of the components is not valid
+   *
+   * @see TupleArray#parallelSort(Comparator)
+   */
+  Comparator<Object> comparator(List<ComponentOrder> componentOrders);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the object value of a component.
+   * The values are copied from one tuple to the other without being boxed.
+   * <pre>
+   *   var factory = TupleFactory.of(String.class, int.class);
+   *   var tuple = factory.tuple("foo", 2);
+   *   var tuple2 = factory.with(tuple, 0, "bar");  // ("bar", 2)
+   * </pre>
+   *
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not an object
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, Object value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the boolean value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a boolean
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, boolean value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the byte value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a byte
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, byte value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the short value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a short
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, short value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the char value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a char
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, char value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the int value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not an int
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, int value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the float value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a float
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, float value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the long value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a long
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, long value);
+
+  /**
+   * Creates a new tuple with the same values as a tuple except the double value of a component.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param value the new value of the component
+   * @return a new tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a double
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  Object with(Object tuple, int componentIndex, double value);
+
+  /**
+   * Returns a var handle that accesses a component of the tuples created by the current factory.
+   * The var handle has one coordinate, the tuple typed as an Object, and the type of the variable is
+   * the erased type of the component. It supports all the access modes, in particular the plain, opaque,
+   * acquire/release and volatile reads and writes, the atomic updates and the numeric atomic updates.
+   * For good performance, the var handle should be stored as static final constant.
+   * <pre>
+   *   private static final TupleFactory FACTORY = TupleFactory.of(Set.of(Option.MUTABLE), long.class, long.class);
+   *   private static final VarHandle SUM = FACTORY.varHandle(1);
+   *   ...
+   *   var sum = (long) SUM.getAcquire(tuple);
+   * </pre>
+   *
+   * @param componentIndex an index
+   * @return a var handle that accesses the component
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   */
+  VarHandle varHandle(int componentIndex);
+
+  /**
+   * Atomically adds a delta to the int value of a component of a tuple.
+   * <pre>
+   *   var factory = TupleFactory.of(Set.of(Option.MUTABLE), int.class);
+   *   var counter = factory.tuple(0);
+   *   factory.getAndAddInt(counter, 0, 1);
+   * </pre>
+   *
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param delta the value to add
+   * @return the value of the component before the addition
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not an int
+   */
+  int getAndAddInt(Object tuple, int componentIndex, int delta);
+
+  /**
+   * Atomically adds a delta to the long value of a component of a tuple.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param delta the value to add
+   * @return the value of the component before the addition
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a long
+   *
+   * @see #getAndAddInt(Object, int, int)
+   */
+  long getAndAddLong(Object tuple, int componentIndex, long delta);
+
+  /**
+   * Atomically sets the object value of a component of a tuple to a new value
+   * if the current value is the expected value, the values are compared using {@code ==}.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not an object
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, Object expectedValue, Object newValue);
+
+  /**
+   * Atomically sets the boolean value of a component of a tuple to a new value if the current value is the expected value.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a boolean
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, boolean expectedValue, boolean newValue);
+
+  /**
+   * Atomically sets the byte value of a component of a tuple to a new value if the current value is the expected value.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a byte
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, byte expectedValue, byte newValue);
+
+  /**
+   * Atomically sets the short value of a component of a tuple to a new value if the current value is the expected value.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a short
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, short expectedValue, short newValue);
+
+  /**
+   * Atomically sets the char value of a component of a tuple to a new value if the current value is the expected value.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a char
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, char expectedValue, char newValue);
+
+  /**
+   * Atomically sets the int value of a component of a tuple to a new value if the current value is the expected value.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not an int
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, int expectedValue, int newValue);
+
+  /**
+   * Atomically sets the float value of a component of a tuple to a new value if the current value is the expected value.
+   * The values are compared using their bitwise representation.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a float
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, float expectedValue, float newValue);
+
+  /**
+   * Atomically sets the long value of a component of a tuple to a new value if the current value is the expected value.
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a long
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, long expectedValue, long newValue);
+
+  /**
+   * Atomically sets the double value of a component of a tuple to a new value if the current value is the expected value.
+   * The values are compared using their bitwise representation.
+   * <pre>
+   *   var factory = TupleFactory.of(Set.of(Option.MUTABLE), long.class, double.class);
+   *   var gauge = factory.tuple(0L, 0.0);
+   *   double max;
+   *   do {
+   *     max = factory.getDouble(gauge, 1);
+   *   } while (value > max &amp;&amp; !factory.compareAndSet(gauge, 1, max, value));
+   * </pre>
+   *
+   * @param tuple a tuple created with the current factory
+   * @param componentIndex an index
+   * @param expectedValue the expected value
+   * @param newValue the new value
+   * @return true if the value of the component was the expected value and has been updated
+   * @throws UnsupportedOperationException if the factory does not use the option {@link Option#MUTABLE}
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the current factory
+   * @throws IndexOutOfBoundsException if the component index if not valid
+   * @throws java.lang.invoke.WrongMethodTypeException if the component is not a double
+   *
+   * @see #compareAndSet(Object, int, Object, Object)
+   */
+  boolean compareAndSet(Object tuple, int componentIndex, double expectedValue, double newValue);
+
+  /**
+   * Returns a new builder of tuples.
+   * A builder stores the values of the components using typed setters and then creates a tuple,
+   * unlike {@link #tuple(Object...)}, the values are neither stored in an array nor boxed.
+   * The class of the builder is generated once for each shape.
+   * <pre>
+   *   var factory = TupleFactory.of(String.class, int.class);
+   *   var builder = factory.builder();
+   *   var tuple = builder.set(0, "foo").setInt(1, 42).build();
+   * </pre>
+   *
+   * A builder is also the way to create a wide tuple without boxing, the builder of a wide tuple stores
+   * the values in arrays allocated once per builder, one array per kind of component,
+   * and passes the arrays to the constructor of the tuple.
+   *
+   * @return a new builder of tuples
+   *
+   * @see TupleBuilder
+   */
+  TupleBuilder builder();
+
+  /**
+   * Returns a projection of the tuples of the current factory on some components.
+   * The projection contains a factory of tuples with the types of the projected components, in the order of
+   * the component indexes, and a copier that creates a tuple of this factory from a tuple of the current factory.
+   * The copier is generated for each shape and each list of component indexes, it reads the values of the
+   * projected components and calls the constructor of the projected tuple without boxing.
+   * <pre>
+   *   var factory = TupleFactory.of(String.class, int.class, long.class, double.class);
+   *   var projection = factory.projection(3, 0);
+   *   var tuple = factory.tuple("foo", 2, 3L, 4.0);
+   *   var tuple2 = projection.project(tuple);  // (4.0, "foo") created by projection.factory()
+   * </pre>
+   *
+   * @param componentIndexes the indexes of the projected components, an index can appear several times
+   * @return a projection of the tuples of the current factory
+   * @throws NullPointerException if componentIndexes is null
+   * @throws IndexOutOfBoundsException if one of the component indexes is not valid
+   * @throws UnsupportedOperationException if the projected tuples are wide
+   */
+  Projection projection(int... componentIndexes);
+
+  /**
+   * Returns a stream of tuples created from arrays storing the values column by column,
+   * the n-th tuple is created with the n-th value of each column.
+   * The type of each array must be the type of the corresponding component followed by {@code []},
+   * so a primitive component is stored in a primitive array ({@code long[]}, {@code int[]}, etc.).
+   * The arrays are not copied, the tuples are created lazily when the stream is consumed
+   * and the values are neither boxed nor stored in an intermediary array.
+   * The stream is {@link java.util.Spliterator#SIZED sized} and
+   * {@link java.util.Spliterator#SUBSIZED subsized}, so a parallel stream splits the rows evenly.
+   * <pre>
+   *   var factory = TupleFactory.of(String.class, int.class);
+   *   var tuples = factory.zip(new String[] { "foo", "bar" }, new int[] { 1, 2 })
+   *       .parallel()
+   *       .toList();   // [("foo", 1), ("bar", 2)]
+   * </pre>
+   *
+   * @param columnArrays an array per component
+   * @return a stream of tuples
+   * @throws NullPointerException if columnArrays or one of the arrays is null
+   * @throws IllegalArgumentException if the number of arrays is not the number of components
+   *         or if the arrays do not have the same length
+   * @throws ClassCastException if the type of an array is not compatible with the type of the component
+   * @throws UnsupportedOperationException if the tuples are wide
+   *
+   * @see #unzip()
+   */
+  Stream<Object> zip(Object... columnArrays);
+
+  /**
+   * Returns a collector that stores the values of the tuples column by column,
+   * the result is an array containing an array per component, the type of each array is
+   * the type of the corresponding component followed by {@code []}.
+   * The values are read using the typed getters so the primitive values are not boxed.
+   * <pre>
+   *   var factory = TupleFactory.of(String.class, int.class);
+   *   var columns = Stream.of(factory.tuple("foo", 1), factory.tuple("bar", 2))
+   *       .collect(factory.unzip());
+   *   var names = (String[]) columns[0];   // ["foo", "bar"]
+   *   var values = (int[]) columns[1];     // [1, 2]
+   * </pre>
+   *
+   * The collector throws a {@link ClassCastException} if a tuple was not created by the current factory.
+   *
+   * @return a collector that stores the values of the tuples column by column.
+   * @throws UnsupportedOperationException if the tuples are wide
+   *
+   * @see #zip(Object...)
+   * @see TupleArray
+   */
+  Collector<Object, ?, Object[]> unzip();
+
+  /**
+   * Returns statistics about the factories and the classes generated by all the factories.
+   * The statistics are cheap to compute, so this method can be called periodically to export metrics.
+   *
+   * @return statistics about the factories and the classes generated by all the factories.
+   */
+  static Statistics statistics() {
+    return TupleFactoryImpl.statistics();
+  }
+
   /**
    * Creates a factory of tuple
    * For good performance, instance of {@link TupleFactory} should be stored as static final constant.
+   * The factories are cached, calling this method several times with the same types returns the same factory
+   * if the types are visible from the class loader of this library.
    *
    * @param types the types of the tuple
    * @return a new factory
@@ -131,7 +974,99 @@ public interface TupleFactory {
    * @see #tuple(Object...)
    */
   static TupleFactory of(Class<?>... types) {
+    return of(Set.of(), types);
+  }
+
+  /**
+   * Creates a factory of tuple with some options.
+   * For good performance, instance of {@link TupleFactory} should be stored as static final constant.
+   *
+   * @param options the options used to generate the tuple class
+   * @param types the types of the tuple
+   * @return a new factory
+   * @throws NullPointerException if either the options, one of the options, types or one of the types is null
+   * @throws IllegalArgumentException if the options are not compatible
+   * @see #of(Class[])
+   */
+  static TupleFactory of(Set<Option> options, Class<?>... types) {
+    requireNonNull(options);
     requireNonNull(types);
-    return TupleFactoryImpl.createTupleFactory(methodType(Object.class, types));
+    var optionSet = EnumSet.noneOf(Option.class);
+    optionSet.addAll(options);
+    return TupleFactoryImpl.createTupleFactory(List.of(types), optionSet);
+  }
+
+  /**
+   * Creates a factory of tuples that implement an interface, the view.
+   * Each abstract method of the view is the accessor of a component, the type of the component is the return type
+   * of the accessor and the components are in the order of declaration of the accessors,
+   * so the accessors of the view can be called instead of the getters of the factory.
+   * <pre>
+   *   public interface Point {
+   *     int x();
+   *     int y();
+   *
+   *     default int distance() { return Math.abs(x()) + Math.abs(y()); }
+   *   }
+   *
+   *   private static final TupleFactory FACTORY = TupleFactory.ofView(Point.class);
+   *   ...
+   *   var point = (Point) FACTORY.tuple(1, 2);
+   *   var x = point.x();   // same as FACTORY.getInt(point, 0)
+   * </pre>
+   *
+   * The accessors of the generated tuple class read the fields directly, so a call to an accessor
+   * can be inlined as long as the call site sees only one implementation of the view.
+   * The factories are cached, calling this method several times with the same view returns the same factory.
+   *
+   * @param view an interface with abstract methods without parameter, the interface must be accessible
+   *             from this library (usually public) and visible from the class loader of this library
+   * @return a new factory
+   * @throws NullPointerException if the view is null
+   * @throws IllegalArgumentException if the view is not an interface accessible and visible from this library,
+   *         if an abstract method of the view has a parameter, returns void or is declared by a super interface,
+   *         or if the class file of the view is not available
+   * @see #ofView(Set, Class)
+   */
+  static TupleFactory ofView(Class<?> view) {
+    return ofView(Set.of(), view);
+  }
+
+  /**
+   * Creates a factory of tuples that implement an interface, the view, with some options.
+   *
+   * @param options the options used to generate the tuple class
+   * @param view an interface with abstract methods without parameter
+   * @return a new factory
+   * @throws NullPointerException if either the options, one of the options or the view is null
+   * @throws IllegalArgumentException if the view is not a valid view or if the options are not compatible
+   * @see #ofView(Class)
+   */
+  static TupleFactory ofView(Set<Option> options, Class<?> view) {
+    requireNonNull(options);
+    requireNonNull(view);
+    var optionSet = EnumSet.noneOf(Option.class);
+    optionSet.addAll(options);
+    return TupleFactoryImpl.createViewFactory(view, optionSet);
+  }
+
+  /**
+   * Returns a method handle with the same type as a method handle that caches the returned values
+   * using the arguments as key, the arguments are stored in a tuple without being boxed.
+   * <pre>
+   *   private static final MethodHandle MEMOIZED_DISTANCE = TupleFactory.memoize(DISTANCE, CacheOptions.bounded(10_000));
+   * </pre>
+   * This method is a shortcut for {@code TupleMemoizer.of(target, options).memoized()},
+   * use a {@link TupleMemoizer} to get the statistics of the cache.
+   *
+   * @param target the method handle to memoize
+   * @param options the options of the cache
+   * @return a method handle that returns the cached value or calls the memoized method handle
+   * @throws NullPointerException if the method handle or the options is null
+   *
+   * @see TupleMemoizer#of(MethodHandle, TupleMemoizer.CacheOptions)
+   */
+  static MethodHandle memoize(MethodHandle target, TupleMemoizer.CacheOptions options) {
+    return TupleMemoizer.of(target, options).memoized();
   }
 }
@@ -1,57 +1,245 @@
 package org.github.forax.tuplefactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.classfile.ClassBuilder;
 import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
 import java.lang.classfile.TypeKind;
+import java.lang.classfile.attribute.NestHostAttribute;
+import java.lang.classfile.attribute.NestMembersAttribute;
 import java.lang.classfile.attribute.RecordAttribute;
 import java.lang.classfile.attribute.RecordComponentInfo;
+import java.lang.classfile.instruction.SwitchCase;
 import java.lang.constant.ClassDesc;
 import java.lang.constant.ConstantDesc;
 import java.lang.constant.DirectMethodHandleDesc;
 import java.lang.constant.DynamicCallSiteDesc;
+import java.lang.constant.DynamicConstantDesc;
 import java.lang.constant.MethodHandleDesc;
 import java.lang.constant.MethodTypeDesc;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
 import java.lang.invoke.ConstantCallSite;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.TypeDescriptor;
+import java.lang.invoke.VarHandle;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.runtime.ObjectMethods;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.lang.classfile.ClassFile.ACC_FINAL;
 import static java.lang.classfile.ClassFile.ACC_PRIVATE;
 import static java.lang.classfile.ClassFile.ACC_PUBLIC;
 import static java.lang.classfile.ClassFile.ACC_STATIC;
 import static java.lang.classfile.ClassFile.JAVA_23_VERSION;
+import static java.lang.constant.ConstantDescs.BSM_CLASS_DATA_AT;
+import static java.lang.constant.ConstantDescs.CD_Boolean;
+import static java.lang.constant.ConstantDescs.CD_Byte;
+import static java.lang.constant.ConstantDescs.CD_Character;
+import static java.lang.constant.ConstantDescs.CD_Class;
+import static java.lang.constant.ConstantDescs.CD_Double;
+import static java.lang.constant.ConstantDescs.CD_Float;
+import static java.lang.constant.ConstantDescs.CD_Integer;
+import static java.lang.constant.ConstantDescs.CD_List;
+import static java.lang.constant.ConstantDescs.CD_Long;
 import static java.lang.constant.ConstantDescs.CD_MethodHandle;
 import static java.lang.constant.ConstantDescs.CD_MethodType;
 import static java.lang.constant.ConstantDescs.CD_Object;
+import static java.lang.constant.ConstantDescs.CD_Short;
 import static java.lang.constant.ConstantDescs.CD_String;
+import static java.lang.constant.ConstantDescs.CD_VarHandle;
 import static java.lang.constant.ConstantDescs.CD_boolean;
+import static java.lang.constant.ConstantDescs.CD_byte;
+import static java.lang.constant.ConstantDescs.CD_char;
+import static java.lang.constant.ConstantDescs.CD_double;
+import static java.lang.constant.ConstantDescs.CD_float;
 import static java.lang.constant.ConstantDescs.CD_int;
+import static java.lang.constant.ConstantDescs.CD_long;
+import static java.lang.constant.ConstantDescs.CD_short;
 import static java.lang.constant.ConstantDescs.CD_void;
+import static java.lang.constant.ConstantDescs.DEFAULT_NAME;
 import static java.lang.constant.ConstantDescs.INIT_NAME;
 import static java.lang.constant.DirectMethodHandleDesc.Kind.GETTER;
+import static java.lang.constant.DirectMethodHandleDesc.Kind.VIRTUAL;
 import static java.lang.invoke.MethodType.methodType;
 import static java.util.Objects.requireNonNull;
 
 @SuppressWarnings("preview")
-record TupleFactoryImpl(Class<?> tupleClass, MethodHandle create, List<MethodHandle> components) implements TupleFactory {
+abstract non-sealed class TupleFactoryImpl implements TupleFactory {
+  /**
+   * Information shared by all the factories of the same erased shape.
+   *
+   * @param tupleClass the generated tuple class
+   * @param constructor the constructor of the tuple class, its return type is Object,
+   *                    the constructor of a wide tuple class takes one array per kind of component
+   * @param components the getters of the components, each one takes an Object as parameter
+   * @param varHandles the var handles of the components if the tuple class is mutable, an empty list otherwise,
+   *                   each one takes an Object as coordinate
+   * @param factoryConstructor the constructor of the generated factory class,
+   *                           a method handle of type (Shape, List)TupleFactoryImpl
+   * @param options the options used to generate the tuple class
+   * @param instanceSize the estimated size of an instance of the tuple class
+   * @param classFileSize the size in bytes of the tuple class and the factory class generated at runtime,
+   *                      0 if the classes are pregenerated
+   */
+  record Shape(Class<?> tupleClass, MethodHandle constructor, List<MethodHandle> components, List<VarHandle> varHandles,
+               MethodHandle factoryConstructor,
+               Set<Option> options, long instanceSize, int classFileSize) {}
+
+  final Shape shape;
+  final List<Class<?>> types;
+  final MethodType methodType;  // null if the shape is wide
+  final MethodHandle constructor;  // null if the shape is wide
+  final MethodHandle create;
+  final int notEncodableComponent;  // -1 if all the components can be encoded
+
+  TupleFactoryImpl(Shape shape, List<Class<?>> types) {
+    this.shape = shape;
+    this.types = types;
+    this.notEncodableComponent = notEncodableComponent(types);
+    if (isWide(types)) {
+      this.methodType = null;
+      this.constructor = null;
+      this.create = CREATE_WIDE.bindTo(this);
+      return;
+    }
+    this.methodType = methodType(Object.class, types);
+    this.constructor = shape.constructor.asType(methodType);
+    this.create = shape.constructor.asSpreader(Object[].class, methodType.parameterCount());
+  }
+
+  /**
+   * The maximum number of parameter slots of the constructor of a tuple class,
+   * the JVM limit is 255 slots, one slot is used by the tuple (or the method handle when the constructor is invoked).
+   */
+  static final int MAX_CONSTRUCTOR_SLOTS = 254;
+
+  /**
+   * Returns true if the shape is wide, i.e. if the constructor of the tuple class can not take
+   * one parameter per component because the long and double components use two parameter slots.
+   * The constructor of a wide tuple class takes one array per kind of component, so a wide factory
+   * has no {@link #constructor()} and the tuples are created using a {@link TupleBuilder}.
+   *
+   * @param types the types of the components
+   * @return true if the shape is wide
+   */
+  static boolean isWide(List<Class<?>> types) {
+    var slots = 0;
+    for(var type : types) {
+      slots += type == long.class || type == double.class ? 2 : 1;
+    }
+    return slots > MAX_CONSTRUCTOR_SLOTS;
+  }
+
+  private UnsupportedOperationException noConstructor() {
+    return new UnsupportedOperationException("a wide tuple has no constructor, the components use more than "
+        + MAX_CONSTRUCTOR_SLOTS + " parameter slots, use a builder instead");
+  }
+
+  // the classes that call the constructor of the tuple class, like TupleArray, do not support a wide factory
+  static TupleFactoryImpl narrow(TupleFactory factory) {
+    var factoryImpl = (TupleFactoryImpl) factory;
+    if (factoryImpl.methodType == null) {
+      throw factoryImpl.noConstructor();
+    }
+    return factoryImpl;
+  }
+
+  // the method type as a string, the types are used if the factory is wide
+  final String methodTypeString() {
+    return methodType == null ? types.toString() : methodType.toString();
+  }
+
+  private static final MethodHandle CREATE_WIDE;
+  static {
+    try {
+      CREATE_WIDE = MethodHandles.lookup().findVirtual(TupleFactoryImpl.class, "createWide", methodType(Object.class, Object[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // (Object)primitive, unboxes and widens the argument like asType() does, e.g. an Integer to a long
+  private static MethodHandle unboxer(Class<?> type) {
+    return MethodHandles.identity(type).asType(methodType(type, Object.class));
+  }
+
+  private static final MethodHandle UNBOX_BOOLEAN = unboxer(boolean.class);
+  private static final MethodHandle UNBOX_BYTE = unboxer(byte.class);
+  private static final MethodHandle UNBOX_SHORT = unboxer(short.class);
+  private static final MethodHandle UNBOX_CHAR = unboxer(char.class);
+  private static final MethodHandle UNBOX_INT = unboxer(int.class);
+  private static final MethodHandle UNBOX_FLOAT = unboxer(float.class);
+  private static final MethodHandle UNBOX_LONG = unboxer(long.class);
+  private static final MethodHandle UNBOX_DOUBLE = unboxer(double.class);
+
+  // a wide tuple is created using a builder, the arguments are converted like with a spreader
+  private Object createWide(Object[] args) throws Throwable {
+    if (args.length != types.size()) {
+      throw new IllegalArgumentException("array is not of length " + types.size());
+    }
+    var builder = builder();
+    for(var i = 0; i < args.length; i++) {
+      var type = types.get(i);
+      var arg = args[i];
+      switch (type.descriptorString()) {
+        case "Z" -> builder.setBoolean(i, (boolean) UNBOX_BOOLEAN.invokeExact(arg));
+        case "B" -> builder.setByte(i, (byte) UNBOX_BYTE.invokeExact(arg));
+        case "S" -> builder.setShort(i, (short) UNBOX_SHORT.invokeExact(arg));
+        case "C" -> builder.setChar(i, (char) UNBOX_CHAR.invokeExact(arg));
+        case "I" -> builder.setInt(i, (int) UNBOX_INT.invokeExact(arg));
+        case "F" -> builder.setFloat(i, (float) UNBOX_FLOAT.invokeExact(arg));
+        case "J" -> builder.setLong(i, (long) UNBOX_LONG.invokeExact(arg));
+        case "D" -> builder.setDouble(i, (double) UNBOX_DOUBLE.invokeExact(arg));
+        default -> builder.set(i, type.cast(arg));
+      }
+    }
+    return builder.build();
+  }
+
   @Override
   public Object requireTuple(Object o) {
     requireNonNull(o);
-    return tupleClass.cast(o);
+    return shape.tupleClass.cast(o);
   }
 
   @SuppressWarnings("unchecked")
-  private static <T extends Throwable> T rethrow(Throwable t) throws T {
+  static <T extends Throwable> T rethrow(Throwable t) throws T {
     throw (T) t;
   }
 
   @Override
   public Object tuple(Object... args) {
+    if (TupleEvents.SAMPLE_RATE != 0) {
+      TupleEvents.sample("tuple", this);
+    }
     try {
       return create.invokeExact(args);
     } catch (Throwable e) {
@@ -60,271 +248,2652 @@ record TupleFactoryImpl(Class<?> tupleClass, MethodHandle create, List<MethodHan
   }
 
   @Override
-  @SuppressWarnings("unchecked")
-  public <R> R get(Object tuple, int componentIndex) {
-    try {
-      return (R) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
+  public MethodHandle constructor() {
+    if (constructor == null) {
+      throw noConstructor();
     }
+    return constructor;
   }
 
   @Override
-  public boolean getBoolean(Object tuple, int componentIndex) {
-    try {
-      return (boolean) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
-    }
+  public Set<Option> options() {
+    return shape.options;
   }
 
   @Override
-  public byte getByte(Object tuple, int componentIndex) {
-    try {
-      return (byte) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
-    }
+  public long estimatedInstanceSize() {
+    return shape.instanceSize;
+  }
+
+  private static ValueLayout valueLayout(Class<?> type) {
+    return switch (type.descriptorString()) {
+      case "Z" -> ValueLayout.JAVA_BOOLEAN;
+      case "B" -> ValueLayout.JAVA_BYTE;
+      case "S" -> ValueLayout.JAVA_SHORT;
+      case "C" -> ValueLayout.JAVA_CHAR;
+      case "I" -> ValueLayout.JAVA_INT;
+      case "F" -> ValueLayout.JAVA_FLOAT;
+      case "J" -> ValueLayout.JAVA_LONG;
+      case "D" -> ValueLayout.JAVA_DOUBLE;
+      default -> throw new UnsupportedOperationException("no layout for " + type.getName());
+    };
   }
 
   @Override
-  public short getShort(Object tuple, int componentIndex) {
-    try {
-      return (short) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
+  public StructLayout layout() {
+    var memberLayouts = new ArrayList<MemoryLayout>();
+    var offset = 0L;
+    var maxAlignment = 1L;
+    for(var i = 0; i < types.size(); i++) {
+      var layout = valueLayout(types.get(i)).withName("_" + i);
+      var alignment = layout.byteAlignment();
+      var padding = (alignment - offset % alignment) % alignment;
+      if (padding != 0) {
+        memberLayouts.add(MemoryLayout.paddingLayout(padding));
+      }
+      memberLayouts.add(layout);
+      offset += padding + layout.byteSize();
+      maxAlignment = Math.max(maxAlignment, alignment);
     }
+    var padding = (maxAlignment - offset % maxAlignment) % maxAlignment;
+    if (padding != 0) {
+      memberLayouts.add(MemoryLayout.paddingLayout(padding));
+    }
+    return MemoryLayout.structLayout(memberLayouts.toArray(MemoryLayout[]::new));
   }
 
   @Override
-  public char getChar(Object tuple, int componentIndex) {
-    try {
-      return (char) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
+  public Comparator<Object> comparator(int... componentIndexes) {
+    requireNonNull(componentIndexes);
+    var componentOrders = new ComponentOrder[componentIndexes.length];
+    for(var i = 0; i < componentIndexes.length; i++) {
+      componentOrders[i] = ComponentOrder.ascending(componentIndexes[i]);
     }
+    return comparator(List.of(componentOrders));
   }
 
   @Override
-  public int getInt(Object tuple, int componentIndex) {
-    try {
-      return (int) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
+  public Comparator<Object> comparator(List<ComponentOrder> componentOrders) {
+    var orders = List.copyOf(componentOrders);
+    for(var order : orders) {
+      Objects.checkIndex(order.componentIndex(), types.size());
     }
+    return comparator(shape, orders);
   }
 
   @Override
-  public float getFloat(Object tuple, int componentIndex) {
+  public TupleBuilder builder() {
     try {
-      return (float) components.get(componentIndex).invokeExact(tuple);
+      return (TupleBuilder) builderConstructor(shape).invokeExact(this);
     } catch (Throwable e) {
       throw rethrow(e);
     }
   }
 
   @Override
-  public long getLong(Object tuple, int componentIndex) {
-    try {
-      return (long) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
+  public Projection projection(int... componentIndexes) {
+    requireNonNull(componentIndexes);
+    var indexes = componentIndexes.clone();
+    var types = new Class<?>[indexes.length];
+    for(var i = 0; i < indexes.length; i++) {
+      types[i] = this.types.get(Objects.checkIndex(indexes[i], this.types.size()));
     }
+    var options = EnumSet.noneOf(Option.class);
+    options.addAll(shape.options);
+    var factory = (TupleFactoryImpl) createTupleFactory(List.of(types), options);
+    if (factory.methodType == null) {
+      // the copier calls the constructor of the projected tuple class
+      throw factory.noConstructor();
+    }
+    return new Projection(factory, copier(shape, factory.shape, indexes));
   }
 
   @Override
-  public double getDouble(Object tuple, int componentIndex) {
-    try {
-      return (double) components.get(componentIndex).invokeExact(tuple);
-    } catch (Throwable e) {
-      throw rethrow(e);
+  public Stream<Object> zip(Object... columnArrays) {
+    var methodType = narrow(this).methodType;
+    var columns = columnArrays.clone();
+    if (columns.length != methodType.parameterCount()) {
+      throw new IllegalArgumentException("wrong number of column arrays, " + columns.length + " instead of " + methodType.parameterCount());
     }
+    var length = -1;
+    for(var i = 0; i < columns.length; i++) {
+      var column = requireNonNull(columns[i]);
+      var arrayType = methodType.parameterType(i).arrayType();
+      if (!arrayType.isInstance(column)) {
+        throw new ClassCastException("column " + i + " is a " + column.getClass().getTypeName() + " not a " + arrayType.getTypeName());
+      }
+      var columnLength = Array.getLength(column);
+      if (length != -1 && columnLength != length) {
+        throw new IllegalArgumentException("column " + i + " has a length " + columnLength + " instead of " + length);
+      }
+      length = columnLength;
+    }
+    var rowConstructor = TupleArray.rowConstructor(shape.constructor());
+    return StreamSupport.stream(new TupleArray.RowSpliterator(rowConstructor, columns, 0, Math.max(length, 0)), false);
   }
 
-  private static RecordComponentInfo[] recordComponentInfos(MethodTypeDesc methodTypedesc) {
-    var parameterCount = methodTypedesc.parameterCount();
-    var infos = new RecordComponentInfo[parameterCount];
-    for(var i = 0; i < parameterCount; i++) {
-      infos[i] = RecordComponentInfo.of("_" + i, methodTypedesc.parameterType(i));
+  @Override
+  public Collector<Object, ?, Object[]> unzip() {
+    var factory = narrow(this);
+    return Collector.of(
+        () -> TupleArray.of(factory),
+        TupleArray::add,
+        (array, array2) -> {
+          array.addAll(array2);
+          return array;
+        },
+        array -> array.columns(methodType));
+  }
+
+  // creates a method handle (container, row)Object that calls the constructor with the values returned
+  // by the element getters (container, row)T, so no array is allocated and no value is boxed
+  static MethodHandle rowConstructor(MethodHandle constructor, MethodHandle[] elementGetters, MethodType rowType) {
+    var target = constructor;
+    for(var i = elementGetters.length; --i >= 0;) {
+      target = MethodHandles.collectArguments(target, i, elementGetters[i]);
     }
-    return infos;
+    var reorder = new int[2 * elementGetters.length];
+    for(var i = 0; i < elementGetters.length; i++) {
+      reorder[2 * i + 1] = 1;
+    }
+    return MethodHandles.permuteArguments(target, rowType, reorder);
   }
 
-  private static void withInit(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc) {
-    b.withMethodBody(INIT_NAME, methodTypedesc, ACC_PUBLIC, cb -> {
-      var slot = 1;
-      for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
-        var desc = methodTypedesc.parameterType(i);
-        var typeKind = TypeKind.from(desc);
-        cb.aload(0);
-        cb.loadLocal(typeKind, slot);
-        cb.putfield(owner, "_" + i, desc);
-        slot += typeKind.slotSize();
+  // index of the first component that is neither a primitive nor a super type of String, -1 otherwise
+  private static int notEncodableComponent(List<Class<?>> types) {
+    for(var i = 0; i < types.size(); i++) {
+      var type = types.get(i);
+      if (!type.isPrimitive() && !type.isAssignableFrom(String.class)) {
+        return i;
       }
-      cb.aload(0);
-      cb.invokespecial(ClassDesc.of("java.lang.Record"), INIT_NAME, MethodTypeDesc.of(CD_void), false);
-      cb.return_();
-    });
+    }
+    return -1;
   }
 
-  private static final DirectMethodHandleDesc OBJECT_METHODS_BOOTSTRAP;
-  static {
-    MethodHandle bootstrap;
-    try {
-      bootstrap = MethodHandles.publicLookup().findStatic(ObjectMethods.class, "bootstrap",
-          methodType(Object.class, MethodHandles.Lookup.class, String.class, TypeDescriptor.class, Class.class, String.class, MethodHandle[].class));
-    } catch (NoSuchMethodException | IllegalAccessException e) {
-      throw new AssertionError(e);
+  private void checkEncodable() {
+    if (notEncodableComponent != -1) {
+      var type = types.get(notEncodableComponent);
+      throw new UnsupportedOperationException("component " + notEncodableComponent + " is a " + type.getName() + " not a primitive type or a String");
     }
-    OBJECT_METHODS_BOOTSTRAP = (DirectMethodHandleDesc) bootstrap.describeConstable().orElseThrow();
   }
 
-  private static void withTrampoline(ClassBuilder b, DirectMethodHandleDesc bootstrap) {
-    b.withMethodBody(bootstrap.methodName(), bootstrap.invocationType(), ACC_PRIVATE|ACC_STATIC, cb -> {
-      var constantCallSiteDesc = ConstantCallSite.class.describeConstable().orElseThrow();
-      cb.new_(constantCallSiteDesc);
-      cb.dup();
-      cb.aload(0);
-      cb.aload(1);
-      cb.ldc(CD_MethodHandle);
-      cb.aload(3);
-      cb.aload(4);
-      cb.aload(5);
-      cb.invokestatic(bootstrap.owner(), bootstrap.methodName(), bootstrap.invocationType(), false);
-      cb.checkcast(CD_MethodHandle);
-      cb.aload(2);
-      cb.checkcast(CD_MethodType);
-      cb.invokevirtual(CD_MethodHandle, "asType", MethodTypeDesc.of(CD_MethodHandle, CD_MethodType));
-      cb.invokespecial(constantCallSiteDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_MethodHandle), false);
-      cb.areturn();
-    });
+  @Override
+  public final void encode(Object tuple, ByteBuffer buffer) {
+    checkEncodable();
+    var position = buffer.position();
+    try {
+      encodeComponents(tuple, buffer);
+    } catch (BufferOverflowException e) {
+      // do not leave the beginning of the tuple in the buffer
+      buffer.position(position);
+      throw e;
+    }
   }
 
-  private static String recipe(int parameterCount) {
-    var builder = new StringBuilder();
-    var separator = "";
-    for(var i = 0; i < parameterCount; i++) {
-      builder.append(separator).append(i);
-      separator = ";";
+  // generated for each shape, writes the components without boxing
+  abstract void encodeComponents(Object tuple, ByteBuffer buffer);
+
+  @Override
+  public int encodeAll(Object[] tuples, int fromIndex, int toIndex, ByteBuffer buffer) {
+    Objects.checkFromToIndex(fromIndex, toIndex, tuples.length);
+    requireNonNull(buffer);
+    checkEncodable();
+    for(var i = fromIndex; i < toIndex; i++) {
+      try {
+        encode(tuples[i], buffer);
+      } catch (BufferOverflowException e) {
+        if (buffer.position() == 0) {
+          throw e;  // the tuple does not fit in an empty buffer, draining the buffer will not help
+        }
+        return i;
+      }
     }
-    return builder.toString();
+    return toIndex;
   }
 
-  private static ConstantDesc[] bootstrapArgs(ClassDesc owner, MethodTypeDesc methodTypeDesc) {
-    var parameterCount = methodTypeDesc.parameterCount();
-    var bootstrapArgs = new ConstantDesc[2 + parameterCount];
-    bootstrapArgs[0] = owner;
-    bootstrapArgs[1] = recipe(parameterCount);
-    for(var i = 0; i < parameterCount; i++) {
-      var desc = methodTypeDesc.parameterType(i);
-      bootstrapArgs[i + 2] = MethodHandleDesc.ofField(GETTER, owner, "_" + i, desc);
+  @Override
+  public int decodeAll(ByteBuffer buffer, Consumer<Object> consumer) {
+    requireNonNull(buffer);
+    requireNonNull(consumer);
+    if (methodType == null) {
+      throw noConstructor();
     }
-    return bootstrapArgs;
+    checkEncodable();
+    var count = 0;
+    while (buffer.hasRemaining()) {
+      var position = buffer.position();
+      Object tuple;
+      try {
+        tuple = decodeComponents(buffer);
+      } catch (BufferUnderflowException e) {
+        buffer.position(position);
+        break;
+      }
+      consumer.accept(tuple);
+      count++;
+    }
+    return count;
   }
 
-  private static void withEqual(ClassBuilder b, DirectMethodHandleDesc trampoline, ConstantDesc[] bootstrapArgs) {
-    b.withMethodBody("equals", MethodTypeDesc.of(CD_boolean, CD_Object), ACC_PUBLIC, cb -> {
-      cb.aload(0);
-      cb.aload(1);
-      cb.invokedynamic(DynamicCallSiteDesc.of(trampoline, "equals", MethodTypeDesc.of(CD_boolean, CD_Object, CD_Object), bootstrapArgs));
-      cb.ireturn();
-    });
+  // called by the generated encodeComponents
+  static void encodeString(ByteBuffer buffer, Object value) {
+    if (value == null) {
+      buffer.putInt(-1);
+      return;
+    }
+    var bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
   }
 
-  private static void withHashCode(ClassBuilder b, DirectMethodHandleDesc trampoline, ConstantDesc[] bootstrapArgs) {
-    b.withMethodBody("hashCode", MethodTypeDesc.of(CD_int), ACC_PUBLIC, cb -> {
-      cb.aload(0);
-      cb.invokedynamic(DynamicCallSiteDesc.of(trampoline, "hashCode", MethodTypeDesc.of(CD_int, CD_Object), bootstrapArgs));
-      cb.ireturn();
-    });
+  // called by the generated decodeComponents
+  static String decodeString(ByteBuffer buffer) {
+    var length = buffer.getInt();
+    if (length == -1) {
+      return null;
+    }
+    if (length < 0 || length > buffer.remaining()) {  // a negative length other than -1 is a corrupted length
+      throw new BufferUnderflowException();
+    }
+    if (!buffer.hasArray()) {
+      var bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+    var string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return string;
   }
 
-  private static void withToString(ClassBuilder b, DirectMethodHandleDesc trampoline, ConstantDesc[] bootstrapArgs) {
-    b.withMethodBody("toString", MethodTypeDesc.of(CD_String), ACC_PUBLIC, cb -> {
-      cb.aload(0);
-      cb.invokedynamic(DynamicCallSiteDesc.of(trampoline, "toString", MethodTypeDesc.of(CD_String, CD_Object), bootstrapArgs));
-      cb.areturn();
-    });
+  // called by the generated getters when there is no component of the right type at componentIndex
+  final RuntimeException invalidComponent(int componentIndex, String typeName) {
+    var componentCount = types.size();
+    if (componentIndex < 0 || componentIndex >= componentCount) {
+      return new IndexOutOfBoundsException("component index " + componentIndex + " out of bounds for length " + componentCount);
+    }
+    return new WrongMethodTypeException("component " + componentIndex + " is a " + types.get(componentIndex).getName() + " not a " + typeName);
   }
 
-  private static byte[] createTupleClass(String packageName, MethodTypeDesc methodTypedesc) {
-    var classfile =  ClassFile.of(ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
-    var owner = ClassDesc.of(packageName, "Tuple");
-    return classfile.build(owner, b -> {
-      b.withVersion(JAVA_23_VERSION, 0);
-      b.withFlags(ACC_PUBLIC | ACC_FINAL);
-      b.withSuperclass(ClassDesc.of("java.lang.Record"));
-      b.with(RecordAttribute.of(recordComponentInfos(methodTypedesc)));
-      for(var i = 0; i < methodTypedesc.parameterCount(); i++) {
-        var desc = methodTypedesc.parameterType(i);
-        b.withField("_" + i, desc, ACC_PRIVATE | ACC_FINAL);
-      }
-      withInit(b, owner, methodTypedesc);
-      var bootstrap = OBJECT_METHODS_BOOTSTRAP;
-      withTrampoline(b, bootstrap);
-      var trampoline = MethodHandleDesc.ofMethod(bootstrap.kind(), owner, bootstrap.methodName(), bootstrap.invocationType());
-      var bootstrapArgs = bootstrapArgs(owner, methodTypedesc);
-      withEqual(b, trampoline, bootstrapArgs);
-      withHashCode(b, trampoline, bootstrapArgs);
-      withToString(b, trampoline, bootstrapArgs);
-    });
+  // called by isNull() if the component is a primitive component or if the component index is out of bounds
+  final boolean isNullPrimitive(Object tuple, int componentIndex) {
+    if (componentIndex < 0 || componentIndex >= types.size()) {
+      throw invalidComponent(componentIndex, "object");
+    }
+    requireTuple(tuple);
+    return false;
   }
 
-  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  static boolean isMutable(Set<Option> options) {
+    return options.contains(Option.MUTABLE) || options.contains(Option.PADDED);
+  }
 
-  private static TupleFactoryImpl createTupleFactoryImpl(MethodType methodType) {
-    var methodTypeDesc = methodType.describeConstable().orElseThrow();
-    var data = createTupleClass(LOOKUP.lookupClass().getPackageName(), methodTypeDesc);
-    MethodHandles.Lookup hiddenLookup;
-    try {
-      hiddenLookup = LOOKUP.defineHiddenClass(data, true, MethodHandles.Lookup.ClassOption.NESTMATE, MethodHandles.Lookup.ClassOption.STRONG);
-    } catch (IllegalAccessException e) {
-      throw new AssertionError(e);
-    }
-    var tupleClass = hiddenLookup.lookupClass();
-    MethodHandle constructor;
-    try {
-      constructor = hiddenLookup.findConstructor(tupleClass, methodType);
-    } catch (NoSuchMethodException | IllegalAccessException e) {
-      throw new AssertionError(e);
+  static void checkOptions(Set<Option> options) {
+    if (!isMutable(options)) {
+      return;
     }
-    var create = constructor.asType(constructor.type().changeReturnType(Object.class));
-    var components = new MethodHandle[methodType.parameterCount()];
-    for(var i = 0; i < components.length; i++) {
-      var parameterType = methodType.parameterType(i);
-      try {
-        components[i] = hiddenLookup.findGetter(tupleClass, "_" + i, parameterType)
-            .asType(methodType(parameterType, Object.class));
-      } catch (NoSuchFieldException | IllegalAccessException e) {
-        throw new AssertionError(e);
+    for(var option : List.of(Option.COMPACT, Option.CACHED_HASH, Option.UNBOXED_WRAPPERS)) {
+      if (options.contains(option)) {
+        throw new IllegalArgumentException("option " + option + " is not compatible with a mutable tuple " + options);
       }
     }
-    return new TupleFactoryImpl(tupleClass, create, List.of(components));
   }
 
-  private static final ConcurrentHashMap<String, TupleFactoryImpl> ERASED_MAP = new ConcurrentHashMap<>();
+  // CACHED_HASH implies INLINE_EQUALS_HASHCODE, adding it before the lookups of the shapes and the factories
+  // avoids to generate the same classes for both sets of options
+  static void addImpliedOptions(EnumSet<Option> options) {
+    if (options.contains(Option.CACHED_HASH)) {
+      options.add(Option.INLINE_EQUALS_HASHCODE);
+    }
+  }
 
-  static TupleFactoryImpl specialize(TupleFactoryImpl erased, MethodType methodType) {
-    var create = erased.create
-        .asSpreader(Object[].class, methodType.parameterCount());
-    var components = new MethodHandle[erased.components.size()];
-    for(var i = 0; i < components.length; i++) {
-      var getterMethodType = methodType(methodType.parameterType(i), Object.class);
-      components[i] = erased.components.get(i)
-          .asType(getterMethodType)
-          .asType(getterMethodType.erase());
+  static void checkWideOptions(Set<Option> options) {
+    for(var option : options) {
+      if (option != Option.INLINE_EQUALS_HASHCODE && option != Option.CACHED_HASH) {
+        throw new IllegalArgumentException("option " + option + " is not supported by a wide tuple " + options);
+      }
     }
-    return new TupleFactoryImpl(erased.tupleClass, create, List.of(components));
   }
 
-  static TupleFactory createTupleFactory(MethodType methodType) {
-    var erased= methodType.erase().changeReturnType(void.class);
-    var descriptor = erased.descriptorString();
-    var impl = ERASED_MAP.get(descriptor);
-    if (impl == null) {
-      impl = createTupleFactoryImpl(erased);
-      ERASED_MAP.putIfAbsent(descriptor, impl);
+  private UnsupportedOperationException notMutable() {
+    return new UnsupportedOperationException("the tuples are not mutable " + shape.options);
+  }
+
+  @Override
+  public VarHandle varHandle(int componentIndex) {
+    if (!isMutable(shape.options)) {
+      throw notMutable();
     }
-    return specialize(impl, methodType);
+    return shape.varHandles.get(Objects.checkIndex(componentIndex, types.size()));
+  }
+
+  // the atomic operations are overridden by the generated factory class if the tuples are mutable
+
+  @Override
+  public int getAndAddInt(Object tuple, int componentIndex, int delta) {
+    throw notMutable();
+  }
+
+  @Override
+  public long getAndAddLong(Object tuple, int componentIndex, long delta) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, Object expectedValue, Object newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, boolean expectedValue, boolean newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, byte expectedValue, byte newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, short expectedValue, short newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, char expectedValue, char newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, int expectedValue, int newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, float expectedValue, float newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, long expectedValue, long newValue) {
+    throw notMutable();
+  }
+
+  @Override
+  public boolean compareAndSet(Object tuple, int componentIndex, double expectedValue, double newValue) {
+    throw notMutable();
+  }
+
+  // with() and decode() are overridden by the generated factory class if the shape is not wide
+
+  @Override
+  public Object with(Object tuple, int componentIndex, Object value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, boolean value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, byte value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, short value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, char value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, int value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, float value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, long value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public Object with(Object tuple, int componentIndex, double value) {
+    throw noConstructor();
+  }
+
+  @Override
+  public final Object decode(ByteBuffer buffer) {
+    requireNonNull(buffer);
+    if (methodType == null) {
+      throw noConstructor();
+    }
+    checkEncodable();
+    return decodeComponents(buffer);
+  }
+
+  // generated for each shape that is not wide, reads the components without boxing
+  Object decodeComponents(ByteBuffer buffer) {
+    throw noConstructor();
+  }
+
+  /**
+   * The packing of the boolean and byte components into int fields named "$bits" + bitsIndex
+   * and the storage of the wrapper components in primitive fields,
+   * the null flags of those components are stored in int fields named "$nulls" + (nullIndex / 32).
+   *
+   * @param bitsIndex for each component, the index of the int field that contains it or -1 if the component
+   *                  is stored in its own field
+   * @param shift for each packed component, the position of its first bit in the int field
+   * @param bitsCount the number of int fields
+   * @param unboxed for each component, the primitive type of the field if the component is a wrapper stored unboxed
+   *                or null
+   * @param nullIndex for each unboxed component, the index of its null flag, -1 otherwise
+   * @param unboxedCount the number of unboxed components
+   */
+  private record Packing(int[] bitsIndex, int[] shift, int bitsCount, ClassDesc[] unboxed, int[] nullIndex, int unboxedCount) {
+    boolean isPacked(int componentIndex) {
+      return bitsIndex[componentIndex] != -1;
+    }
+
+    boolean isUnboxed(int componentIndex) {
+      return unboxed[componentIndex] != null;
+    }
+
+    int nullsCount() {
+      return (unboxedCount + Integer.SIZE - 1) / Integer.SIZE;
+    }
+
+    String nullsField(int componentIndex) {
+      return "$nulls" + (nullIndex[componentIndex] / Integer.SIZE);
+    }
+
+    int nullMask(int componentIndex) {
+      return 1 << (nullIndex[componentIndex] % Integer.SIZE);
+    }
+  }
+
+  private static final Map<ClassDesc, ClassDesc> WRAPPER_TO_PRIMITIVE = Map.of(
+      CD_Boolean, CD_boolean, CD_Byte, CD_byte, CD_Short, CD_short, CD_Character, CD_char,
+      CD_Integer, CD_int, CD_Float, CD_float, CD_Long, CD_long, CD_Double, CD_double);
+
+  private static int bitWidth(ClassDesc desc) {
+    return switch (desc.descriptorString()) {
+      case "Z" -> 1;
+      case "B" -> 8;
+      default -> 0;
+    };
+  }
+
+  // if unboxedWrappers is true, the components typed by a wrapper in methodTypeDesc are stored unboxed
+  private static Packing packing(MethodTypeDesc methodTypeDesc, boolean compact, boolean unboxedWrappers) {
+    var parameterCount = methodTypeDesc.parameterCount();
+    var bitsIndex = new int[parameterCount];
+    var shift = new int[parameterCount];
+    Arrays.fill(bitsIndex, -1);
+    var unboxed = new ClassDesc[parameterCount];
+    var nullIndex = new int[parameterCount];
+    Arrays.fill(nullIndex, -1);
+    var unboxedCount = 0;
+    if (unboxedWrappers) {
+      for(var i = 0; i < parameterCount; i++) {
+        var primitive = WRAPPER_TO_PRIMITIVE.get(methodTypeDesc.parameterType(i));
+        if (primitive != null) {
+          unboxed[i] = primitive;
+          nullIndex[i] = unboxedCount++;
+        }
+      }
+    }
+    if (!compact) {
+      return new Packing(bitsIndex, shift, 0, unboxed, nullIndex, unboxedCount);
+    }
+    // bytes first so they are aligned on 8 bits, then booleans
+    var packables = new ArrayList<Integer>();
+    for(var width : new int[] { 8, 1 }) {
+      for(var i = 0; i < parameterCount; i++) {
+        if (bitWidth(methodTypeDesc.parameterType(i)) == width) {
+          packables.add(i);
+        }
+      }
+    }
+    var groups = new ArrayList<List<Integer>>();
+    var group = new ArrayList<Integer>();
+    var offset = 0;
+    for(var componentIndex : packables) {
+      var width = bitWidth(methodTypeDesc.parameterType(componentIndex));
+      if (offset + width > Integer.SIZE) {
+        groups.add(group);
+        group = new ArrayList<>();
+        offset = 0;
+      }
+      group.add(componentIndex);
+      shift[componentIndex] = offset;
+      offset += width;
+    }
+    groups.add(group);
+    var bitsCount = 0;
+    for(var components : groups) {
+      // a boolean or a byte field uses one byte, an int field uses 4 bytes
+      if (components.size() <= Integer.BYTES) {
+        continue;
+      }
+      for(var componentIndex : components) {
+        bitsIndex[componentIndex] = bitsCount;
+      }
+      bitsCount++;
+    }
+    return new Packing(bitsIndex, shift, bitsCount, unboxed, nullIndex, unboxedCount);
+  }
+
+  // the type of the field of a component that is not packed
+  private static ClassDesc storageType(MethodTypeDesc methodTypeDesc, Packing packing, int componentIndex) {
+    return packing.isUnboxed(componentIndex) ? packing.unboxed[componentIndex] : methodTypeDesc.parameterType(componentIndex);
+  }
+
+  private static int fieldSize(ClassDesc desc) {
+    return switch (desc.descriptorString()) {
+      case "Z", "B" -> 1;
+      case "S", "C" -> 2;
+      case "J", "D" -> 8;
+      default -> 4;  // int, float and compressed references
+    };
+  }
+
+  // 64-bit VM with compressed class pointers and compressed references,
+  // the fields are sorted by size and the small fields can fill the gap between the header and a long field
+  private static long instanceSize(MethodTypeDesc methodTypeDesc, Packing packing, Set<Option> options) {
+    var cachedHash = options.contains(Option.CACHED_HASH);
+    var smallFieldSize = Integer.BYTES * (packing.bitsCount + packing.nullsCount() + (cachedHash ? 1 : 0));
+    var largeFieldSize = 0;
+    for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+      if (packing.isPacked(i)) {
+        continue;
+      }
+      var fieldSize = fieldSize(storageType(methodTypeDesc, packing, i));
+      if (fieldSize == 8) {
+        largeFieldSize += fieldSize;
+      } else {
+        smallFieldSize += fieldSize;
+      }
+    }
+    var size = 12L + smallFieldSize + largeFieldSize;
+    if (largeFieldSize != 0 && smallFieldSize < 4) {
+      size += 4 - smallFieldSize;
+    }
+    if (options.contains(Option.PADDED)) {
+      size += PADDING_SIZE * paddingCount(methodTypeDesc);
+    }
+    return (size + 7) & ~7L;
+  }
+
+  // the size in bytes of a padding, two cache lines because the adjacent cache lines are prefetched together
+  private static final int PADDING_SIZE = 128;
+
+  // the padding fields are grouped by kind: one kind per size of the primitive types and one for the references
+  private static int paddingKind(ClassDesc desc) {
+    return desc.isPrimitive() ? fieldSize(desc) : 0;
+  }
+
+  // a padding is declared before each component and after the last component of each kind
+  private static boolean isLastOfKind(MethodTypeDesc methodTypeDesc, int componentIndex) {
+    var kind = paddingKind(methodTypeDesc.parameterType(componentIndex));
+    for(var i = componentIndex + 1; i < methodTypeDesc.parameterCount(); i++) {
+      if (paddingKind(methodTypeDesc.parameterType(i)) == kind) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int paddingCount(MethodTypeDesc methodTypeDesc) {
+    var count = 0;
+    for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+      count += isLastOfKind(methodTypeDesc, i) ? 2 : 1;
+    }
+    return count;
+  }
+
+  // the VM lays out the fields of the same kind in declaration order,
+  // so the padding fields of a component have the type of the component
+  private static void withPadding(ClassBuilder b, String name, ClassDesc desc) {
+    var type = desc.isPrimitive() ? desc : CD_Object;
+    for(var i = 0; i < PADDING_SIZE / fieldSize(desc); i++) {
+      b.withField(name + "_" + i, type, ACC_PRIVATE);
+    }
+  }
+
+  private static RecordComponentInfo[] recordComponentInfos(MethodTypeDesc methodTypedesc) {
+    var parameterCount = methodTypedesc.parameterCount();
+    var infos = new RecordComponentInfo[parameterCount];
+    for(var i = 0; i < parameterCount; i++) {
+      infos[i] = RecordComponentInfo.of("_" + i, methodTypedesc.parameterType(i));
+    }
+    return infos;
+  }
+
+  private static void withInit(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc, Packing packing) {
+    b.withMethodBody(INIT_NAME, methodTypedesc, ACC_PUBLIC, cb -> {
+      var slots = new int[methodTypedesc.parameterCount()];
+      var slot = 1;
+      for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
+        var desc = methodTypedesc.parameterType(i);
+        var typeKind = TypeKind.from(desc);
+        slots[i] = slot;
+        slot += typeKind.slotSize();
+        if (packing.isPacked(i)) {
+          continue;
+        }
+        if (packing.isUnboxed(i)) {
+          // if (value != null) { _i = ((Wrapper) value).primitiveValue(); }
+          var primitive = packing.unboxed[i];
+          var isNull = cb.newLabel();
+          cb.aload(slots[i]);
+          cb.if_null(isNull);
+          cb.aload(0);
+          cb.aload(slots[i]);
+          var wrapper = wrapperType(primitive);
+          cb.checkcast(wrapper);
+          cb.invokevirtual(wrapper, primitive.displayName() + "Value", MethodTypeDesc.of(primitive));
+          cb.putfield(owner, "_" + i, primitive);
+          cb.labelBinding(isNull);
+          continue;
+        }
+        cb.aload(0);
+        cb.loadLocal(typeKind, slots[i]);
+        cb.putfield(owner, "_" + i, desc);
+      }
+      for(var nullsIndex = 0; nullsIndex < packing.nullsCount(); nullsIndex++) {
+        // $nulls = (value0 == null ? mask0 : 0) | (value1 == null ? mask1 : 0) | ...
+        var nulls = cb.allocateLocal(TypeKind.IntType);
+        cb.iconst_0();
+        cb.istore(nulls);
+        for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
+          if (!packing.isUnboxed(i) || packing.nullIndex[i] / Integer.SIZE != nullsIndex) {
+            continue;
+          }
+          var nonNull = cb.newLabel();
+          cb.aload(slots[i]);
+          cb.if_nonnull(nonNull);
+          cb.iload(nulls);
+          cb.loadConstant(packing.nullMask(i));
+          cb.ior();
+          cb.istore(nulls);
+          cb.labelBinding(nonNull);
+        }
+        cb.aload(0);
+        cb.iload(nulls);
+        cb.putfield(owner, "$nulls" + nullsIndex, CD_int);
+      }
+      for(var bitsIndex = 0; bitsIndex < packing.bitsCount; bitsIndex++) {
+        // $bits = (value0 << shift0) | ((value1 & 0xFF) << shift1) | ...
+        cb.aload(0);
+        cb.iconst_0();
+        for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
+          if (packing.bitsIndex[i] != bitsIndex) {
+            continue;
+          }
+          cb.iload(slots[i]);
+          if (bitWidth(methodTypedesc.parameterType(i)) == 8) {
+            cb.sipush(0xFF);
+            cb.iand();
+          }
+          cb.bipush(packing.shift[i]);
+          cb.ishl();
+          cb.ior();
+        }
+        cb.putfield(owner, "$bits" + bitsIndex, CD_int);
+      }
+      cb.aload(0);
+      cb.invokespecial(ClassDesc.of("java.lang.Record"), INIT_NAME, MethodTypeDesc.of(CD_void), false);
+      cb.return_();
+    });
+  }
+
+  // the kinds of the components of a wide tuple class, all the components of a kind are passed
+  // to the constructor in one array, the arrays are in the order of the kinds
+  private static final List<ClassDesc> WIDE_KINDS = List.of(
+      CD_boolean, CD_byte, CD_short, CD_char, CD_int, CD_float, CD_long, CD_double, CD_Object);
+
+  private static final MethodTypeDesc WIDE_INIT_DESC =
+      MethodTypeDesc.of(CD_void, WIDE_KINDS.stream().map(ClassDesc::arrayType).toArray(ClassDesc[]::new));
+
+  private static boolean isWide(MethodTypeDesc methodTypeDesc) {
+    var slots = 0;
+    for(var desc : methodTypeDesc.parameterList()) {
+      slots += TypeKind.from(desc).slotSize();
+    }
+    return slots > MAX_CONSTRUCTOR_SLOTS;
+  }
+
+  // the index of the kind of a component in WIDE_KINDS, the types of a wide shape are erased
+  private static int wideKind(ClassDesc desc) {
+    return desc.isPrimitive() ? WIDE_KINDS.indexOf(desc) : WIDE_KINDS.size() - 1;
+  }
+
+  // for each component, the index of its value in the array of its kind
+  private static int[] wideOffsets(MethodTypeDesc methodTypeDesc) {
+    var counts = new int[WIDE_KINDS.size()];
+    var offsets = new int[methodTypeDesc.parameterCount()];
+    for(var i = 0; i < offsets.length; i++) {
+      offsets[i] = counts[wideKind(methodTypeDesc.parameterType(i))]++;
+    }
+    return offsets;
+  }
+
+  private static void arrayLoad(CodeBuilder cb, ClassDesc desc) {
+    switch (desc.descriptorString().charAt(0)) {
+      case 'Z', 'B' -> cb.baload();
+      case 'S' -> cb.saload();
+      case 'C' -> cb.caload();
+      case 'I' -> cb.iaload();
+      case 'J' -> cb.laload();
+      case 'F' -> cb.faload();
+      case 'D' -> cb.daload();
+      default -> cb.aaload();
+    }
+  }
+
+  private static void arrayStore(CodeBuilder cb, ClassDesc desc) {
+    switch (desc.descriptorString().charAt(0)) {
+      case 'Z', 'B' -> cb.bastore();
+      case 'S' -> cb.sastore();
+      case 'C' -> cb.castore();
+      case 'I' -> cb.iastore();
+      case 'J' -> cb.lastore();
+      case 'F' -> cb.fastore();
+      case 'D' -> cb.dastore();
+      default -> cb.aastore();
+    }
+  }
+
+  // the constructor of a wide tuple class copies the values from the arrays to the fields,
+  // so the fields are read directly like the fields of the other tuple classes
+  private static void withWideInit(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc) {
+    var offsets = wideOffsets(methodTypedesc);
+    b.withMethodBody(INIT_NAME, WIDE_INIT_DESC, ACC_PUBLIC, cb -> {
+      for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
+        var desc = methodTypedesc.parameterType(i);
+        cb.aload(0);
+        cb.aload(1 + wideKind(desc));
+        cb.loadConstant(offsets[i]);
+        arrayLoad(cb, desc);
+        cb.putfield(owner, "_" + i, desc);
+      }
+      cb.aload(0);
+      cb.invokespecial(ClassDesc.of("java.lang.Record"), INIT_NAME, MethodTypeDesc.of(CD_void), false);
+      cb.return_();
+    });
+  }
+
+  // the accessors _0(), _1(), etc, used to extract the components of a compact tuple
+  private static void withAccessors(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc, Packing packing) {
+    for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
+      if (packing.isUnboxed(i)) {
+        continue;  // see withUnboxedAccessors
+      }
+      var componentIndex = i;
+      var desc = methodTypedesc.parameterType(i);
+      b.withMethodBody("_" + i, MethodTypeDesc.of(desc), ACC_PUBLIC | ACC_FINAL, cb -> {
+        cb.aload(0);
+        if (!packing.isPacked(componentIndex)) {
+          cb.getfield(owner, "_" + componentIndex, desc);
+          returnValue(cb, desc);
+          return;
+        }
+        cb.getfield(owner, "$bits" + packing.bitsIndex[componentIndex], CD_int);
+        cb.bipush(packing.shift[componentIndex]);
+        cb.iushr();
+        if (bitWidth(desc) == 8) {
+          cb.i2b();
+        } else {
+          cb.iconst_1();
+          cb.iand();
+        }
+        cb.ireturn();
+      });
+    }
+  }
+
+  // loads the null flag of an unboxed component of this, 0 if the value is not null
+  private static void loadNullFlag(CodeBuilder cb, ClassDesc owner, Packing packing, int componentIndex) {
+    cb.aload(0);
+    cb.getfield(owner, packing.nullsField(componentIndex), CD_int);
+    cb.loadConstant(packing.nullMask(componentIndex));
+    cb.iand();
+  }
+
+  // for each unboxed component, the accessor _i() that boxes the value or returns null,
+  // the accessor _i$value() that returns the primitive value or throws a NullPointerException
+  // and the accessor _i$isNull()
+  private static void withUnboxedAccessors(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc, Packing packing) {
+    for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
+      if (!packing.isUnboxed(i)) {
+        continue;
+      }
+      var componentIndex = i;
+      var primitive = packing.unboxed[i];
+      var wrapper = wrapperType(primitive);
+      b.withMethodBody("_" + i, MethodTypeDesc.of(CD_Object), ACC_PUBLIC | ACC_FINAL, cb -> {
+        var nonNull = cb.newLabel();
+        loadNullFlag(cb, owner, packing, componentIndex);
+        cb.ifeq(nonNull);
+        cb.aconst_null();
+        cb.areturn();
+        cb.labelBinding(nonNull);
+        cb.aload(0);
+        cb.getfield(owner, "_" + componentIndex, primitive);
+        cb.invokestatic(wrapper, "valueOf", MethodTypeDesc.of(wrapper, primitive));
+        cb.areturn();
+      });
+      b.withMethodBody("_" + i + "$value", MethodTypeDesc.of(primitive), ACC_PUBLIC | ACC_FINAL, cb -> {
+        var nonNull = cb.newLabel();
+        loadNullFlag(cb, owner, packing, componentIndex);
+        cb.ifeq(nonNull);
+        var npe = ClassDesc.of("java.lang.NullPointerException");
+        cb.new_(npe);
+        cb.dup();
+        cb.ldc("component " + componentIndex + " is null");
+        cb.invokespecial(npe, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String), false);
+        cb.athrow();
+        cb.labelBinding(nonNull);
+        cb.aload(0);
+        cb.getfield(owner, "_" + componentIndex, primitive);
+        returnValue(cb, primitive);
+      });
+      b.withMethodBody("_" + i + "$isNull", MethodTypeDesc.of(CD_boolean), ACC_PUBLIC | ACC_FINAL, cb -> {
+        var nonNull = cb.newLabel();
+        loadNullFlag(cb, owner, packing, componentIndex);
+        cb.ifeq(nonNull);
+        cb.iconst_1();
+        cb.ireturn();
+        cb.labelBinding(nonNull);
+        cb.iconst_0();
+        cb.ireturn();
+      });
+    }
+  }
+
+  private static final DirectMethodHandleDesc OBJECT_METHODS_BOOTSTRAP;
+  static {
+    MethodHandle bootstrap;
+    try {
+      bootstrap = MethodHandles.publicLookup().findStatic(ObjectMethods.class, "bootstrap",
+          methodType(Object.class, MethodHandles.Lookup.class, String.class, TypeDescriptor.class, Class.class, String.class, MethodHandle[].class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    OBJECT_METHODS_BOOTSTRAP = (DirectMethodHandleDesc) bootstrap.describeConstable().orElseThrow();
+  }
+
+  private static void withTrampoline(ClassBuilder b, DirectMethodHandleDesc bootstrap) {
+    b.withMethodBody(bootstrap.methodName(), bootstrap.invocationType(), ACC_PRIVATE|ACC_STATIC, cb -> {
+      var constantCallSiteDesc = ConstantCallSite.class.describeConstable().orElseThrow();
+      cb.new_(constantCallSiteDesc);
+      cb.dup();
+      cb.aload(0);
+      cb.aload(1);
+      cb.ldc(CD_MethodHandle);
+      cb.aload(3);
+      cb.aload(4);
+      cb.aload(5);
+      cb.invokestatic(bootstrap.owner(), bootstrap.methodName(), bootstrap.invocationType(), false);
+      cb.checkcast(CD_MethodHandle);
+      cb.aload(2);
+      cb.checkcast(CD_MethodType);
+      cb.invokevirtual(CD_MethodHandle, "asType", MethodTypeDesc.of(CD_MethodHandle, CD_MethodType));
+      cb.invokespecial(constantCallSiteDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_MethodHandle), false);
+      cb.areturn();
+    });
+  }
+
+  private static String recipe(int parameterCount) {
+    var builder = new StringBuilder();
+    var separator = "";
+    for(var i = 0; i < parameterCount; i++) {
+      builder.append(separator).append(i);
+      separator = ";";
+    }
+    return builder.toString();
+  }
+
+  // the components are read with their accessor if accessors is true or if they are unboxed
+  private static ConstantDesc[] bootstrapArgs(ClassDesc owner, MethodTypeDesc methodTypeDesc, Packing packing, boolean accessors) {
+    var parameterCount = methodTypeDesc.parameterCount();
+    var bootstrapArgs = new ConstantDesc[2 + parameterCount];
+    bootstrapArgs[0] = owner;
+    bootstrapArgs[1] = recipe(parameterCount);
+    for(var i = 0; i < parameterCount; i++) {
+      var desc = methodTypeDesc.parameterType(i);
+      bootstrapArgs[i + 2] = accessors || packing.isUnboxed(i) ?
+          MethodHandleDesc.ofMethod(VIRTUAL, owner, "_" + i, MethodTypeDesc.of(desc)) :
+          MethodHandleDesc.ofField(GETTER, owner, "_" + i, desc);
+    }
+    return bootstrapArgs;
+  }
+
+  private static void withEqual(ClassBuilder b, DirectMethodHandleDesc trampoline, ConstantDesc[] bootstrapArgs) {
+    b.withMethodBody("equals", MethodTypeDesc.of(CD_boolean, CD_Object), ACC_PUBLIC, cb -> {
+      cb.aload(0);
+      cb.aload(1);
+      cb.invokedynamic(DynamicCallSiteDesc.of(trampoline, "equals", MethodTypeDesc.of(CD_boolean, CD_Object, CD_Object), bootstrapArgs));
+      cb.ireturn();
+    });
+  }
+
+  private static void withHashCode(ClassBuilder b, DirectMethodHandleDesc trampoline, ConstantDesc[] bootstrapArgs) {
+    b.withMethodBody("hashCode", MethodTypeDesc.of(CD_int), ACC_PUBLIC, cb -> {
+      cb.aload(0);
+      cb.invokedynamic(DynamicCallSiteDesc.of(trampoline, "hashCode", MethodTypeDesc.of(CD_int, CD_Object), bootstrapArgs));
+      cb.ireturn();
+    });
+  }
+
+  private static final ClassDesc CD_TUPLE_HANDLES = TupleHandles.class.describeConstable().orElseThrow();
+
+  // loads the value of the component of the tuple stored in the local variable tupleSlot,
+  // a packed component is loaded using its accessor
+  private static void loadField(CodeBuilder cb, ClassDesc owner, int tupleSlot, int componentIndex, ClassDesc desc, Packing packing) {
+    cb.aload(tupleSlot);
+    if (packing.isPacked(componentIndex)) {
+      cb.invokevirtual(owner, "_" + componentIndex, MethodTypeDesc.of(desc));
+    } else {
+      cb.getfield(owner, "_" + componentIndex, desc);
+    }
+  }
+
+  // compares the fields of this and other, the primitive fields and the packed fields first, then the other fields,
+  // if cachedHash is true, the hashes are compared first if they are both computed
+  private static void withInlineEquals(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc, Packing packing, boolean cachedHash) {
+    b.withMethodBody("equals", MethodTypeDesc.of(CD_boolean, CD_Object), ACC_PUBLIC | ACC_FINAL, cb -> {
+      var notEquals = cb.newLabel();
+      var notSame = cb.newLabel();
+      cb.aload(0);
+      cb.aload(1);
+      cb.if_acmpne(notSame);
+      cb.iconst_1();
+      cb.ireturn();
+      cb.labelBinding(notSame);
+      cb.aload(1);
+      cb.instanceOf(owner);
+      cb.ifeq(notEquals);
+      var other = cb.allocateLocal(TypeKind.ReferenceType);
+      cb.aload(1);
+      cb.checkcast(owner);
+      cb.astore(other);
+      if (cachedHash) {
+        // if (hash != 0 && otherHash != 0 && hash != otherHash) return false
+        var hash = cb.allocateLocal(TypeKind.IntType);
+        var otherHash = cb.allocateLocal(TypeKind.IntType);
+        var compareFields = cb.newLabel();
+        cb.aload(0);
+        cb.getfield(owner, "$hash", CD_int);
+        cb.istore(hash);
+        cb.aload(other);
+        cb.getfield(owner, "$hash", CD_int);
+        cb.istore(otherHash);
+        cb.iload(hash);
+        cb.ifeq(compareFields);
+        cb.iload(otherHash);
+        cb.ifeq(compareFields);
+        cb.iload(hash);
+        cb.iload(otherHash);
+        cb.if_icmpne(notEquals);
+        cb.labelBinding(compareFields);
+      }
+      for(var bitsIndex = 0; bitsIndex < packing.bitsCount; bitsIndex++) {
+        cb.aload(0);
+        cb.getfield(owner, "$bits" + bitsIndex, CD_int);
+        cb.aload(other);
+        cb.getfield(owner, "$bits" + bitsIndex, CD_int);
+        cb.if_icmpne(notEquals);
+      }
+      // the field of an unboxed component is 0 if the value is null, so the null flags are compared first
+      for(var nullsIndex = 0; nullsIndex < packing.nullsCount(); nullsIndex++) {
+        cb.aload(0);
+        cb.getfield(owner, "$nulls" + nullsIndex, CD_int);
+        cb.aload(other);
+        cb.getfield(owner, "$nulls" + nullsIndex, CD_int);
+        cb.if_icmpne(notEquals);
+      }
+      for(var pass = 0; pass < 2; pass++) {
+        for(var i = 0; i < methodTypedesc.parameterCount(); i++) {
+          var desc = storageType(methodTypedesc, packing, i);
+          if (packing.isPacked(i) || desc.isPrimitive() == (pass == 1)) {
+            continue;
+          }
+          cb.aload(0);
+          cb.getfield(owner, "_" + i, desc);
+          if (desc.equals(CD_float)) {
+            cb.invokestatic(CD_Float, "floatToIntBits", MethodTypeDesc.of(CD_int, CD_float));
+          } else if (desc.equals(CD_double)) {
+            cb.invokestatic(CD_Double, "doubleToLongBits", MethodTypeDesc.of(CD_long, CD_double));
+          }
+          cb.aload(other);
+          cb.getfield(owner, "_" + i, desc);
+          switch (desc.descriptorString()) {
+            case "Z", "B", "S", "C", "I" -> cb.if_icmpne(notEquals);
+            case "F" -> {
+              cb.invokestatic(CD_Float, "floatToIntBits", MethodTypeDesc.of(CD_int, CD_float));
+              cb.if_icmpne(notEquals);
+            }
+            case "J" -> {
+              cb.lcmp();
+              cb.ifne(notEquals);
+            }
+            case "D" -> {
+              cb.invokestatic(CD_Double, "doubleToLongBits", MethodTypeDesc.of(CD_long, CD_double));
+              cb.lcmp();
+              cb.ifne(notEquals);
+            }
+            default -> {
+              cb.invokestatic(ClassDesc.of("java.util.Objects"), "equals", MethodTypeDesc.of(CD_boolean, CD_Object, CD_Object));
+              cb.ifeq(notEquals);
+            }
+          }
+        }
+      }
+      cb.iconst_1();
+      cb.ireturn();
+      cb.labelBinding(notEquals);
+      cb.iconst_0();
+      cb.ireturn();
+    });
+  }
+
+  // hash = mix(combine(...combine(combine(0, hash(_0)), hash(_1))..., hash(_n))) using the methods of TupleHandles,
+  // if cachedHash is true, the hash is stored in the field $hash, 0 meaning not yet computed
+  private static void withInlineHashCode(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc, Packing packing, boolean cachedHash) {
+    b.withMethodBody("hashCode", MethodTypeDesc.of(CD_int), ACC_PUBLIC | ACC_FINAL, cb -> {
+      if (cachedHash) {
+        var compute = cb.newLabel();
+        cb.aload(0);
+        cb.getfield(owner, "$hash", CD_int);
+        cb.dup();
+        cb.ifeq(compute);
+        cb.ireturn();
+        cb.labelBinding(compute);
+        cb.pop();
+      }
+      cb.iconst_0();
+      for(var i = 0; i < methodTypedesc.parameterCount(); i++) {
+        if (packing.isUnboxed(i)) {
+          // the hash of a null value is 0, the hash of a primitive value is the hash of the boxed value
+          var primitive = packing.unboxed[i];
+          var nonNull = cb.newLabel();
+          var combine = cb.newLabel();
+          loadNullFlag(cb, owner, packing, i);
+          cb.ifeq(nonNull);
+          cb.iconst_0();
+          cb.goto_(combine);
+          cb.labelBinding(nonNull);
+          cb.aload(0);
+          cb.getfield(owner, "_" + i, primitive);
+          cb.invokestatic(CD_TUPLE_HANDLES, "hash", MethodTypeDesc.of(CD_int, primitive));
+          cb.labelBinding(combine);
+          cb.invokestatic(CD_TUPLE_HANDLES, "combine", MethodTypeDesc.of(CD_int, CD_int, CD_int));
+          continue;
+        }
+        var desc = methodTypedesc.parameterType(i);
+        loadField(cb, owner, 0, i, desc, packing);
+        cb.invokestatic(CD_TUPLE_HANDLES, "hash", MethodTypeDesc.of(CD_int, desc.isPrimitive() ? desc : CD_Object));
+        cb.invokestatic(CD_TUPLE_HANDLES, "combine", MethodTypeDesc.of(CD_int, CD_int, CD_int));
+      }
+      cb.invokestatic(CD_TUPLE_HANDLES, "mix", MethodTypeDesc.of(CD_int, CD_int));
+      if (cachedHash) {
+        var hash = cb.allocateLocal(TypeKind.IntType);
+        cb.dup();
+        cb.istore(hash);
+        cb.aload(0);
+        cb.iload(hash);
+        cb.putfield(owner, "$hash", CD_int);
+      }
+      cb.ireturn();
+    });
+  }
+
+  private static void withToString(ClassBuilder b, DirectMethodHandleDesc trampoline, ConstantDesc[] bootstrapArgs) {
+    b.withMethodBody("toString", MethodTypeDesc.of(CD_String), ACC_PUBLIC, cb -> {
+      cb.aload(0);
+      cb.invokedynamic(DynamicCallSiteDesc.of(trampoline, "toString", MethodTypeDesc.of(CD_String, CD_Object), bootstrapArgs));
+      cb.areturn();
+    });
+  }
+
+  // the method append() of StringBuilder called for a component of type desc
+  private static ClassDesc appendType(ClassDesc desc) {
+    return switch (desc.descriptorString()) {
+      case "B", "S" -> CD_int;
+      default -> desc.isPrimitive() ? desc : CD_Object;
+    };
+  }
+
+  // the same format as the toString() of a record, SimpleName[_0=value0, _1=value1, ...],
+  // the fields are read directly because ObjectMethods would need one bootstrap argument per component
+  private static void withInlineToString(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc) {
+    var stringBuilder = ClassDesc.of("java.lang.StringBuilder");
+    b.withMethodBody("toString", MethodTypeDesc.of(CD_String), ACC_PUBLIC | ACC_FINAL, cb -> {
+      cb.new_(stringBuilder);
+      cb.dup();
+      cb.aload(0);
+      cb.invokevirtual(CD_Object, "getClass", MethodTypeDesc.of(CD_Class));
+      cb.invokevirtual(CD_Class, "getSimpleName", MethodTypeDesc.of(CD_String));
+      cb.invokespecial(stringBuilder, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String), false);
+      for(var i = 0; i < methodTypedesc.parameterCount(); i++) {
+        var desc = methodTypedesc.parameterType(i);
+        cb.ldc((i == 0 ? "[" : ", ") + "_" + i + "=");
+        cb.invokevirtual(stringBuilder, "append", MethodTypeDesc.of(stringBuilder, CD_String));
+        cb.aload(0);
+        cb.getfield(owner, "_" + i, desc);
+        cb.invokevirtual(stringBuilder, "append", MethodTypeDesc.of(stringBuilder, appendType(desc)));
+      }
+      cb.ldc(methodTypedesc.parameterCount() == 0 ? "[]" : "]");
+      cb.invokevirtual(stringBuilder, "append", MethodTypeDesc.of(stringBuilder, CD_String));
+      cb.invokevirtual(stringBuilder, "toString", MethodTypeDesc.of(CD_String));
+      cb.areturn();
+    });
+  }
+
+  /**
+   * An interface implemented by a tuple class.
+   *
+   * @param type the interface
+   * @param accessors the abstract methods of the interface, one per component in the order of the components
+   */
+  private record View(Class<?> type, List<Method> accessors) {}
+
+  // each accessor of the view reads a field (or calls the accessor of a packed component)
+  // and casts the value to the return type of the accessor if the component is not a primitive
+  private static void withViewAccessors(ClassBuilder b, ClassDesc owner, MethodTypeDesc methodTypedesc, Packing packing, View view) {
+    for (var i = 0; i < methodTypedesc.parameterCount(); i++) {
+      var componentIndex = i;
+      var desc = methodTypedesc.parameterType(i);
+      var accessor = view.accessors.get(i);
+      var returnDesc = accessor.getReturnType().describeConstable().orElseThrow();
+      b.withMethodBody(accessor.getName(), MethodTypeDesc.of(returnDesc), ACC_PUBLIC | ACC_FINAL, cb -> {
+        cb.aload(0);
+        if (packing.isPacked(componentIndex) || packing.isUnboxed(componentIndex)) {
+          cb.invokevirtual(owner, "_" + componentIndex, MethodTypeDesc.of(desc));
+        } else {
+          cb.getfield(owner, "_" + componentIndex, desc);
+        }
+        if (!returnDesc.equals(desc)) {
+          cb.checkcast(returnDesc);
+        }
+        returnValue(cb, returnDesc);
+      });
+    }
+  }
+
+  // if nestHost is not null, the tuple class is a pregenerated class, a nest member of the factory class
+  // if view is not null, the tuple class implements the view
+  private static byte[] createTupleClass(ClassDesc owner, ClassDesc nestHost, MethodTypeDesc methodTypedesc, Packing packing,
+                                         Set<Option> options, View view) {
+    var classfile =  ClassFile.of(ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
+    var compact = packing.bitsCount != 0;
+    return classfile.build(owner, b -> {
+      b.withVersion(JAVA_23_VERSION, 0);
+      b.withFlags(ACC_PUBLIC | ACC_FINAL);
+      b.withSuperclass(ClassDesc.of("java.lang.Record"));
+      if (view != null) {
+        b.withInterfaceSymbols(view.type.describeConstable().orElseThrow());
+      }
+      if (nestHost != null) {
+        b.with(NestHostAttribute.of(nestHost));
+      }
+      b.with(RecordAttribute.of(recordComponentInfos(methodTypedesc)));
+      var fieldFlags = isMutable(options) ? ACC_PRIVATE : ACC_PRIVATE | ACC_FINAL;
+      var padded = options.contains(Option.PADDED);
+      for(var i = 0; i < methodTypedesc.parameterCount(); i++) {
+        if (packing.isPacked(i)) {
+          continue;
+        }
+        var desc = storageType(methodTypedesc, packing, i);
+        if (padded) {
+          withPadding(b, "$pad" + i, desc);
+        }
+        b.withField("_" + i, desc, fieldFlags);
+        if (padded && isLastOfKind(methodTypedesc, i)) {
+          withPadding(b, "$pad" + i + "$", desc);
+        }
+      }
+      for(var bitsIndex = 0; bitsIndex < packing.bitsCount; bitsIndex++) {
+        b.withField("$bits" + bitsIndex, CD_int, ACC_PRIVATE | ACC_FINAL);
+      }
+      for(var nullsIndex = 0; nullsIndex < packing.nullsCount(); nullsIndex++) {
+        b.withField("$nulls" + nullsIndex, CD_int, ACC_PRIVATE | ACC_FINAL);
+      }
+      var cachedHash = options.contains(Option.CACHED_HASH);
+      if (cachedHash) {
+        b.withField("$hash", CD_int, ACC_PRIVATE);
+      }
+      var wide = isWide(methodTypedesc);
+      if (wide) {
+        withWideInit(b, owner, methodTypedesc);
+      } else {
+        withInit(b, owner, methodTypedesc, packing);
+      }
+      if (compact) {
+        withAccessors(b, owner, methodTypedesc, packing);
+      }
+      if (packing.unboxedCount != 0) {
+        withUnboxedAccessors(b, owner, methodTypedesc, packing);
+      }
+      if (view != null) {
+        withViewAccessors(b, owner, methodTypedesc, packing, view);
+      }
+      if (wide) {
+        // ObjectMethods would need one bootstrap argument per component, so the methods read the fields directly
+        withInlineEquals(b, owner, methodTypedesc, packing, cachedHash);
+        withInlineHashCode(b, owner, methodTypedesc, packing, cachedHash);
+        withInlineToString(b, owner, methodTypedesc);
+        return;
+      }
+      var bootstrap = OBJECT_METHODS_BOOTSTRAP;
+      withTrampoline(b, bootstrap);
+      var trampoline = MethodHandleDesc.ofMethod(bootstrap.kind(), owner, bootstrap.methodName(), bootstrap.invocationType());
+      var bootstrapArgs = bootstrapArgs(owner, methodTypedesc, packing, compact);
+      if (cachedHash || options.contains(Option.INLINE_EQUALS_HASHCODE)) {
+        withInlineEquals(b, owner, methodTypedesc, packing, cachedHash);
+        withInlineHashCode(b, owner, methodTypedesc, packing, cachedHash);
+      } else {
+        withEqual(b, trampoline, bootstrapArgs);
+        withHashCode(b, trampoline, bootstrapArgs);
+      }
+      withToString(b, trampoline, bootstrapArgs);
+    });
+  }
+
+  private static final ClassDesc CD_TUPLE_FACTORY_IMPL = TupleFactoryImpl.class.describeConstable().orElseThrow();
+  private static final ClassDesc CD_SHAPE = Shape.class.describeConstable().orElseThrow();
+  private static final ClassDesc CD_TUPLE_EVENTS = TupleEvents.class.describeConstable().orElseThrow();
+  private static final ClassDesc CD_RuntimeException = RuntimeException.class.describeConstable().orElseThrow();
+  private static final ClassDesc CD_ByteBuffer = ByteBuffer.class.describeConstable().orElseThrow();
+  private static final ClassDesc CD_TUPLE_VISITOR = TupleVisitor.class.describeConstable().orElseThrow();
+  private static final ClassDesc CD_Objects = Objects.class.describeConstable().orElseThrow();
+  private static final ClassDesc CD_Arrays = Arrays.class.describeConstable().orElseThrow();
+
+  private record Getter(String name, ClassDesc type, String typeName) {}
+
+  private static final List<Getter> GETTERS = List.of(
+      new Getter("get", CD_Object, "object"),
+      new Getter("getBoolean", CD_boolean, "boolean"),
+      new Getter("getByte", CD_byte, "byte"),
+      new Getter("getShort", CD_short, "short"),
+      new Getter("getChar", CD_char, "char"),
+      new Getter("getInt", CD_int, "int"),
+      new Getter("getFloat", CD_float, "float"),
+      new Getter("getLong", CD_long, "long"),
+      new Getter("getDouble", CD_double, "double"));
+
+  // the getter of the component at componentIndex, stored in the class data of the factory class
+  private static DynamicConstantDesc<MethodHandle> componentDesc(int componentIndex) {
+    return DynamicConstantDesc.ofNamed(BSM_CLASS_DATA_AT, DEFAULT_NAME, CD_MethodHandle, componentIndex);
+  }
+
+  // the constructor of the tuple class, stored in the class data of the factory class after the getters
+  private static DynamicConstantDesc<MethodHandle> constructorDesc(MethodTypeDesc methodTypeDesc) {
+    return DynamicConstantDesc.ofNamed(BSM_CLASS_DATA_AT, DEFAULT_NAME, CD_MethodHandle, methodTypeDesc.parameterCount());
+  }
+
+  // the accessor _i$value() or _i$isNull() of an unboxed component, stored in the class data of the factory class
+  // after the constructor, two accessors per unboxed component
+  private static DynamicConstantDesc<MethodHandle> unboxedAccessorDesc(MethodTypeDesc methodTypeDesc, Packing packing, int componentIndex, boolean isNull) {
+    var index = methodTypeDesc.parameterCount() + 1 + 2 * packing.nullIndex[componentIndex] + (isNull ? 1 : 0);
+    return DynamicConstantDesc.ofNamed(BSM_CLASS_DATA_AT, DEFAULT_NAME, CD_MethodHandle, index);
+  }
+
+  /**
+   * How the code of the factory class accesses the tuple class.
+   * A hidden tuple class can not be named, so the factory class uses the method handles stored in its class data,
+   * a pregenerated tuple class is a nest member of the factory class, so the factory class accesses it directly.
+   *
+   * @param tupleClass the tuple class or null if the tuple class is hidden
+   * @param packing the packing of the components of the tuple class
+   */
+  private record TupleAccess(ClassDesc tupleClass, Packing packing) {
+    boolean isHidden() {
+      return tupleClass == null;
+    }
+  }
+
+  // loads the tuple stored in the local variable tupleSlot and extracts the value of a component
+  private static void loadComponent(CodeBuilder cb, TupleAccess access, int tupleSlot, int componentIndex, ClassDesc desc) {
+    if (access.isHidden()) {
+      cb.ldc(componentDesc(componentIndex));
+      cb.aload(tupleSlot);
+      cb.invokevirtual(CD_MethodHandle, "invokeExact", MethodTypeDesc.of(desc, CD_Object));
+      return;
+    }
+    cb.aload(tupleSlot);
+    cb.checkcast(access.tupleClass);
+    if (access.packing.bitsCount != 0 || access.packing.isUnboxed(componentIndex)) {
+      cb.invokevirtual(access.tupleClass, "_" + componentIndex, MethodTypeDesc.of(desc));
+    } else {
+      cb.getfield(access.tupleClass, "_" + componentIndex, desc);
+    }
+  }
+
+  // loads the tuple stored in the local variable tupleSlot and extracts the primitive value
+  // or the null flag (isNull) of an unboxed component
+  private static void loadUnboxed(CodeBuilder cb, TupleAccess access, MethodTypeDesc methodTypeDesc, int tupleSlot, int componentIndex, boolean isNull) {
+    var desc = isNull ? CD_boolean : access.packing.unboxed[componentIndex];
+    if (access.isHidden()) {
+      cb.ldc(unboxedAccessorDesc(methodTypeDesc, access.packing, componentIndex, isNull));
+      cb.aload(tupleSlot);
+      cb.invokevirtual(CD_MethodHandle, "invokeExact", MethodTypeDesc.of(desc, CD_Object));
+      return;
+    }
+    cb.aload(tupleSlot);
+    cb.checkcast(access.tupleClass);
+    cb.invokevirtual(access.tupleClass, "_" + componentIndex + (isNull ? "$isNull" : "$value"), MethodTypeDesc.of(desc));
+  }
+
+  // the code before the instructions that load the values of the components of a new tuple
+  private static void newTuplePrologue(CodeBuilder cb, TupleAccess access, MethodTypeDesc methodTypeDesc) {
+    if (access.isHidden()) {
+      cb.ldc(constructorDesc(methodTypeDesc));
+      return;
+    }
+    cb.new_(access.tupleClass);
+    cb.dup();
+  }
+
+  // the code after the instructions that load the values of the components of a new tuple
+  private static void newTupleEpilogue(CodeBuilder cb, TupleAccess access, MethodTypeDesc methodTypeDesc) {
+    if (access.isHidden()) {
+      cb.invokevirtual(CD_MethodHandle, "invokeExact", methodTypeDesc.changeReturnType(CD_Object));
+      return;
+    }
+    cb.invokespecial(access.tupleClass, INIT_NAME, methodTypeDesc, false);
+  }
+
+  private static void returnValue(CodeBuilder cb, ClassDesc desc) {
+    switch (desc.descriptorString().charAt(0)) {
+      case 'Z', 'B', 'S', 'C', 'I' -> cb.ireturn();
+      case 'J' -> cb.lreturn();
+      case 'F' -> cb.freturn();
+      case 'D' -> cb.dreturn();
+      default -> cb.areturn();
+    }
+  }
+
+  private static void withFactoryInit(ClassBuilder b) {
+    var initDesc = MethodTypeDesc.of(CD_void, CD_SHAPE, CD_List);
+    b.withMethodBody(INIT_NAME, initDesc, ACC_PUBLIC, cb -> {
+      cb.aload(0);
+      cb.aload(1);
+      cb.aload(2);
+      cb.invokespecial(CD_TUPLE_FACTORY_IMPL, INIT_NAME, initDesc, false);
+      cb.return_();
+    });
+  }
+
+  // a tableswitch on the component index, each case extracts the value of a component of the getter type
+  private static void withGetter(ClassBuilder b, Getter getter, MethodTypeDesc methodTypeDesc, TupleAccess access, boolean sampling) {
+    b.withMethodBody(getter.name, MethodTypeDesc.of(getter.type, CD_Object, CD_int), ACC_PUBLIC | ACC_FINAL, cb -> {
+      if (sampling) {
+        cb.ldc(getter.name);
+        cb.aload(0);
+        cb.invokestatic(CD_TUPLE_EVENTS, "sample", MethodTypeDesc.of(CD_void, CD_String, CD_TUPLE_FACTORY_IMPL));
+      }
+      // a primitive getter also reads the unboxed components of the corresponding wrapper type
+      var packing = access.packing;
+      var cases = new ArrayList<SwitchCase>();
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        if (methodTypeDesc.parameterType(i).equals(getter.type) || (packing.isUnboxed(i) && packing.unboxed[i].equals(getter.type))) {
+          cases.add(SwitchCase.of(i, cb.newLabel()));
+        }
+      }
+      if (!cases.isEmpty()) {
+        var defaultLabel = cb.newLabel();
+        cb.iload(2);
+        cb.tableswitch(defaultLabel, cases);
+        for(var switchCase : cases) {
+          cb.labelBinding(switchCase.target());
+          var componentIndex = switchCase.caseValue();
+          if (getter.type.isPrimitive() && packing.isUnboxed(componentIndex)) {
+            loadUnboxed(cb, access, methodTypeDesc, 1, componentIndex, false);
+          } else {
+            loadComponent(cb, access, 1, componentIndex, getter.type);
+          }
+          returnValue(cb, getter.type);
+        }
+        cb.labelBinding(defaultLabel);
+      }
+      cb.aload(0);
+      cb.iload(2);
+      cb.ldc(getter.typeName);
+      cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "invalidComponent", MethodTypeDesc.of(CD_RuntimeException, CD_int, CD_String));
+      cb.athrow();
+    });
+  }
+
+  // a tableswitch on the component index, each case creates a new tuple with the values of the components
+  // of the tuple except the value of the component at the component index which is replaced by the value
+  private static void withWith(ClassBuilder b, Getter getter, MethodTypeDesc methodTypeDesc, TupleAccess access) {
+    b.withMethodBody("with", MethodTypeDesc.of(CD_Object, CD_Object, CD_int, getter.type), ACC_PUBLIC | ACC_FINAL, cb -> {
+      var cases = new ArrayList<SwitchCase>();
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        if (methodTypeDesc.parameterType(i).equals(getter.type)) {
+          cases.add(SwitchCase.of(i, cb.newLabel()));
+        }
+      }
+      if (!cases.isEmpty()) {
+        var defaultLabel = cb.newLabel();
+        cb.iload(2);
+        cb.tableswitch(defaultLabel, cases);
+        for(var switchCase : cases) {
+          cb.labelBinding(switchCase.target());
+          if (methodTypeDesc.parameterCount() == 1) {
+            // no other component is loaded, so the tuple is checked explicitly
+            cb.aload(0);
+            cb.aload(1);
+            cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "requireTuple", MethodTypeDesc.of(CD_Object, CD_Object));
+            cb.pop();
+          }
+          newTuplePrologue(cb, access, methodTypeDesc);
+          for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+            if (i == switchCase.caseValue()) {
+              cb.loadLocal(TypeKind.from(getter.type), 3);
+            } else {
+              loadComponent(cb, access, 1, i, methodTypeDesc.parameterType(i));
+            }
+          }
+          newTupleEpilogue(cb, access, methodTypeDesc);
+          cb.areturn();
+        }
+        cb.labelBinding(defaultLabel);
+      }
+      cb.aload(0);
+      cb.iload(2);
+      cb.ldc(getter.typeName);
+      cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "invalidComponent", MethodTypeDesc.of(CD_RuntimeException, CD_int, CD_String));
+      cb.athrow();
+    });
+  }
+
+  // the name and the descriptor of the method of ByteBuffer that reads (get) or writes (put) a primitive value
+  private static String bufferMethodSuffix(ClassDesc desc) {
+    return switch (desc.descriptorString()) {
+      case "Z", "B" -> "";
+      case "S" -> "Short";
+      case "C" -> "Char";
+      case "I" -> "Int";
+      case "F" -> "Float";
+      case "J" -> "Long";
+      case "D" -> "Double";
+      default -> throw new AssertionError();
+    };
+  }
+
+  private static ClassDesc bufferType(ClassDesc desc) {
+    return desc.equals(CD_boolean) ? CD_byte : desc;
+  }
+
+  private static void withEncode(ClassBuilder b, MethodTypeDesc methodTypeDesc, TupleAccess access) {
+    b.withMethodBody("encodeComponents", MethodTypeDesc.of(CD_void, CD_Object, CD_ByteBuffer), ACC_FINAL, cb -> {
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        var desc = methodTypeDesc.parameterType(i);
+        cb.aload(2);
+        loadComponent(cb, access, 1, i, desc);
+        if (desc.isPrimitive()) {
+          cb.invokevirtual(CD_ByteBuffer, "put" + bufferMethodSuffix(desc), MethodTypeDesc.of(CD_ByteBuffer, bufferType(desc)));
+          cb.pop();
+        } else {
+          cb.invokestatic(CD_TUPLE_FACTORY_IMPL, "encodeString", MethodTypeDesc.of(CD_void, CD_ByteBuffer, CD_Object));
+        }
+      }
+      cb.return_();
+    });
+  }
+
+  private static void withDecode(ClassBuilder b, MethodTypeDesc methodTypeDesc, TupleAccess access) {
+    b.withMethodBody("decodeComponents", MethodTypeDesc.of(CD_Object, CD_ByteBuffer), ACC_FINAL, cb -> {
+      newTuplePrologue(cb, access, methodTypeDesc);
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        var desc = methodTypeDesc.parameterType(i);
+        cb.aload(1);
+        if (desc.isPrimitive()) {
+          cb.invokevirtual(CD_ByteBuffer, "get" + bufferMethodSuffix(desc), MethodTypeDesc.of(bufferType(desc)));
+        } else {
+          cb.invokestatic(CD_TUPLE_FACTORY_IMPL, "decodeString", MethodTypeDesc.of(CD_String, CD_ByteBuffer));
+        }
+      }
+      newTupleEpilogue(cb, access, methodTypeDesc);
+      cb.areturn();
+    });
+  }
+
+  // the name of the method of TupleVisitor called for a component of type desc
+  private static String visitMethodName(ClassDesc desc) {
+    return switch (desc.descriptorString()) {
+      case "Z" -> "visitBoolean";
+      case "B" -> "visitByte";
+      case "S" -> "visitShort";
+      case "C" -> "visitChar";
+      case "I" -> "visitInt";
+      case "F" -> "visitFloat";
+      case "J" -> "visitLong";
+      case "D" -> "visitDouble";
+      default -> "visitObject";
+    };
+  }
+
+  // one call to the visitor per component, no loop, no switch
+  private static void withAccept(ClassBuilder b, MethodTypeDesc methodTypeDesc, TupleAccess access) {
+    b.withMethodBody("accept", MethodTypeDesc.of(CD_void, CD_Object, CD_TUPLE_VISITOR), ACC_PUBLIC | ACC_FINAL, cb -> {
+      cb.aload(2);
+      cb.invokestatic(CD_Objects, "requireNonNull", MethodTypeDesc.of(CD_Object, CD_Object));
+      cb.pop();
+      if (methodTypeDesc.parameterCount() == 0) {
+        // no component is loaded, so the tuple is checked explicitly
+        cb.aload(0);
+        cb.aload(1);
+        cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "requireTuple", MethodTypeDesc.of(CD_Object, CD_Object));
+        cb.pop();
+      }
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        var desc = methodTypeDesc.parameterType(i);
+        var visitDesc = desc.isPrimitive() ? desc : CD_Object;
+        cb.aload(2);
+        cb.loadConstant(i);
+        loadComponent(cb, access, 1, i, desc);
+        cb.invokeinterface(CD_TUPLE_VISITOR, visitMethodName(desc), MethodTypeDesc.of(CD_void, CD_int, visitDesc));
+      }
+      cb.return_();
+    });
+  }
+
+  // a tableswitch on the component index, each case tests if the value of a reference component is null,
+  // an unboxed component is tested using its null flag, a primitive component is never null
+  private static void withIsNull(ClassBuilder b, MethodTypeDesc methodTypeDesc, TupleAccess access) {
+    b.withMethodBody("isNull", MethodTypeDesc.of(CD_boolean, CD_Object, CD_int), ACC_PUBLIC | ACC_FINAL, cb -> {
+      var cases = new ArrayList<SwitchCase>();
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        if (!methodTypeDesc.parameterType(i).isPrimitive()) {
+          cases.add(SwitchCase.of(i, cb.newLabel()));
+        }
+      }
+      if (!cases.isEmpty()) {
+        var defaultLabel = cb.newLabel();
+        cb.iload(2);
+        cb.tableswitch(defaultLabel, cases);
+        for(var switchCase : cases) {
+          cb.labelBinding(switchCase.target());
+          var componentIndex = switchCase.caseValue();
+          if (access.packing.isUnboxed(componentIndex)) {
+            loadUnboxed(cb, access, methodTypeDesc, 1, componentIndex, true);
+            cb.ireturn();
+            continue;
+          }
+          var nullLabel = cb.newLabel();
+          loadComponent(cb, access, 1, componentIndex, CD_Object);
+          cb.if_null(nullLabel);
+          cb.iconst_0();
+          cb.ireturn();
+          cb.labelBinding(nullLabel);
+          cb.iconst_1();
+          cb.ireturn();
+        }
+        cb.labelBinding(defaultLabel);
+      }
+      cb.aload(0);
+      cb.aload(1);
+      cb.iload(2);
+      cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "isNullPrimitive", MethodTypeDesc.of(CD_boolean, CD_Object, CD_int));
+      cb.ireturn();
+    });
+  }
+
+  // the var handle of the field of the component at componentIndex, stored in the class data of the factory class
+  // at the end, the var handles are only available if the tuple class is hidden
+  private static DynamicConstantDesc<VarHandle> varHandleDesc(MethodTypeDesc methodTypeDesc, Packing packing, int componentIndex) {
+    var index = methodTypeDesc.parameterCount() + 1 + 2 * packing.unboxedCount + componentIndex;
+    return DynamicConstantDesc.ofNamed(BSM_CLASS_DATA_AT, DEFAULT_NAME, CD_VarHandle, index);
+  }
+
+  // a tableswitch on the component index, each case calls an access mode of the var handle of a component of type desc,
+  // the parameters of the method after the component index are the arguments of the access mode
+  private static void withVarHandleAccess(ClassBuilder b, String name, String accessMode, MethodTypeDesc accessDesc,
+                                          ClassDesc desc, String typeName, MethodTypeDesc methodTypeDesc, TupleAccess access) {
+    var argumentDescs = accessDesc.parameterList().subList(1, accessDesc.parameterCount());
+    var methodDesc = accessDesc.insertParameterTypes(1, CD_int);
+    b.withMethodBody(name, methodDesc, ACC_PUBLIC | ACC_FINAL, cb -> {
+      var cases = new ArrayList<SwitchCase>();
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        if (methodTypeDesc.parameterType(i).equals(desc)) {
+          cases.add(SwitchCase.of(i, cb.newLabel()));
+        }
+      }
+      if (!cases.isEmpty()) {
+        var defaultLabel = cb.newLabel();
+        cb.iload(2);
+        cb.tableswitch(defaultLabel, cases);
+        for(var switchCase : cases) {
+          cb.labelBinding(switchCase.target());
+          cb.ldc(varHandleDesc(methodTypeDesc, access.packing, switchCase.caseValue()));
+          cb.aload(1);
+          var slot = 3;
+          for(var argumentDesc : argumentDescs) {
+            var typeKind = TypeKind.from(argumentDesc);
+            cb.loadLocal(typeKind, slot);
+            slot += typeKind.slotSize();
+          }
+          cb.invokevirtual(CD_VarHandle, accessMode, accessDesc);
+          returnValue(cb, accessDesc.returnType());
+        }
+        cb.labelBinding(defaultLabel);
+      }
+      cb.aload(0);
+      cb.iload(2);
+      cb.ldc(typeName);
+      cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "invalidComponent", MethodTypeDesc.of(CD_RuntimeException, CD_int, CD_String));
+      cb.athrow();
+    });
+  }
+
+  // getAndAddInt(), getAndAddLong() and the methods compareAndSet()
+  private static void withAtomics(ClassBuilder b, MethodTypeDesc methodTypeDesc, TupleAccess access) {
+    for(var getter : GETTERS) {
+      if (!getter.type.equals(CD_int) && !getter.type.equals(CD_long)) {
+        continue;
+      }
+      var addName = "getAndAdd" + getter.name.substring("get".length());
+      withVarHandleAccess(b, addName, "getAndAdd", MethodTypeDesc.of(getter.type, CD_Object, getter.type),
+          getter.type, getter.typeName, methodTypeDesc, access);
+    }
+    for(var getter : GETTERS) {
+      withVarHandleAccess(b, "compareAndSet", "compareAndSet", MethodTypeDesc.of(CD_boolean, CD_Object, getter.type, getter.type),
+          getter.type, getter.typeName, methodTypeDesc, access);
+    }
+  }
+
+  // if sampling is true, the getters call TupleEvents.sample(),
+  // if mutable is true, the tuple class is hidden and mutable, the atomic operations are generated
+  private static byte[] createFactoryClass(ClassDesc owner, MethodTypeDesc methodTypeDesc, TupleAccess access, boolean sampling, boolean mutable) {
+    var classfile =  ClassFile.of(ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
+    return classfile.build(owner, b -> {
+      b.withVersion(JAVA_23_VERSION, 0);
+      b.withFlags(ACC_PUBLIC | ACC_FINAL);
+      b.withSuperclass(CD_TUPLE_FACTORY_IMPL);
+      if (!access.isHidden()) {
+        b.with(NestMembersAttribute.ofSymbols(access.tupleClass));
+      }
+      withFactoryInit(b);
+      for(var getter : GETTERS) {
+        withGetter(b, getter, methodTypeDesc, access, sampling);
+      }
+      // the constructor of a wide tuple class takes arrays, with() and decode() are not generated
+      var wide = isWide(methodTypeDesc);
+      if (!wide) {
+        for(var getter : GETTERS) {
+          withWith(b, getter, methodTypeDesc, access);
+        }
+      }
+      withEncode(b, methodTypeDesc, access);
+      if (!wide) {
+        withDecode(b, methodTypeDesc, access);
+      }
+      withAccept(b, methodTypeDesc, access);
+      withIsNull(b, methodTypeDesc, access);
+      if (mutable) {
+        withAtomics(b, methodTypeDesc, access);
+      }
+    });
+  }
+
+  private static final ClassDesc CD_TUPLE_BUILDER = TupleBuilder.class.describeConstable().orElseThrow();
+
+  private static void defaultValue(CodeBuilder cb, ClassDesc desc) {
+    switch (desc.descriptorString().charAt(0)) {
+      case 'Z', 'B', 'S', 'C', 'I' -> cb.iconst_0();
+      case 'J' -> cb.lconst_0();
+      case 'F' -> cb.fconst_0();
+      case 'D' -> cb.dconst_0();
+      default -> cb.aconst_null();
+    }
+  }
+
+  // a tableswitch on the component index, each case stores the value in the field of the component
+  private static void withSetter(ClassBuilder b, ClassDesc owner, Getter getter, MethodTypeDesc methodTypeDesc) {
+    var setterName = "set" + getter.name.substring("get".length());
+    b.withMethodBody(setterName, MethodTypeDesc.of(CD_TUPLE_BUILDER, CD_int, getter.type), ACC_PUBLIC | ACC_FINAL, cb -> {
+      var cases = new ArrayList<SwitchCase>();
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        if (methodTypeDesc.parameterType(i).equals(getter.type)) {
+          cases.add(SwitchCase.of(i, cb.newLabel()));
+        }
+      }
+      if (!cases.isEmpty()) {
+        var defaultLabel = cb.newLabel();
+        cb.iload(1);
+        cb.tableswitch(defaultLabel, cases);
+        for(var switchCase : cases) {
+          cb.labelBinding(switchCase.target());
+          cb.aload(0);
+          cb.loadLocal(TypeKind.from(getter.type), 2);
+          cb.putfield(owner, "_" + switchCase.caseValue(), getter.type);
+          cb.aload(0);
+          cb.areturn();
+        }
+        cb.labelBinding(defaultLabel);
+      }
+      cb.aload(0);
+      cb.getfield(CD_TUPLE_BUILDER, "factory", CD_TUPLE_FACTORY_IMPL);
+      cb.iload(1);
+      cb.ldc(getter.typeName);
+      cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "invalidComponent", MethodTypeDesc.of(CD_RuntimeException, CD_int, CD_String));
+      cb.athrow();
+    });
+  }
+
+  // the builder class has one mutable field per component,
+  // the constructor of the tuple class is stored in the class data after the getters, like for the factory class
+  private static byte[] createBuilderClass(ClassDesc owner, MethodTypeDesc methodTypeDesc) {
+    if (isWide(methodTypeDesc)) {
+      return createWideBuilderClass(owner, methodTypeDesc);
+    }
+    var classfile =  ClassFile.of(ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
+    return classfile.build(owner, b -> {
+      b.withVersion(JAVA_23_VERSION, 0);
+      b.withFlags(ACC_PUBLIC | ACC_FINAL);
+      b.withSuperclass(CD_TUPLE_BUILDER);
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        b.withField("_" + i, methodTypeDesc.parameterType(i), ACC_PRIVATE);
+      }
+      var initDesc = MethodTypeDesc.of(CD_void, CD_TUPLE_FACTORY_IMPL);
+      b.withMethodBody(INIT_NAME, initDesc, ACC_PUBLIC, cb -> {
+        cb.aload(0);
+        cb.aload(1);
+        cb.invokespecial(CD_TUPLE_BUILDER, INIT_NAME, initDesc, false);
+        cb.return_();
+      });
+      for(var getter : GETTERS) {
+        withSetter(b, owner, getter, methodTypeDesc);
+      }
+      b.withMethodBody("reset", MethodTypeDesc.of(CD_TUPLE_BUILDER), ACC_PUBLIC | ACC_FINAL, cb -> {
+        for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+          var desc = methodTypeDesc.parameterType(i);
+          cb.aload(0);
+          defaultValue(cb, desc);
+          cb.putfield(owner, "_" + i, desc);
+        }
+        cb.aload(0);
+        cb.areturn();
+      });
+      b.withMethodBody("build", MethodTypeDesc.of(CD_Object), ACC_PUBLIC | ACC_FINAL, cb -> {
+        var access = new TupleAccess(null, null);
+        newTuplePrologue(cb, access, methodTypeDesc);
+        for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+          cb.aload(0);
+          cb.getfield(owner, "_" + i, methodTypeDesc.parameterType(i));
+        }
+        newTupleEpilogue(cb, access, methodTypeDesc);
+        cb.areturn();
+      });
+    });
+  }
+
+  // a tableswitch on the component index, each case stores the value in the array of the kind of the component
+  private static void withWideSetter(ClassBuilder b, ClassDesc owner, Getter getter, MethodTypeDesc methodTypeDesc) {
+    var setterName = "set" + getter.name.substring("get".length());
+    var offsets = wideOffsets(methodTypeDesc);
+    b.withMethodBody(setterName, MethodTypeDesc.of(CD_TUPLE_BUILDER, CD_int, getter.type), ACC_PUBLIC | ACC_FINAL, cb -> {
+      var cases = new ArrayList<SwitchCase>();
+      for(var i = 0; i < methodTypeDesc.parameterCount(); i++) {
+        if (methodTypeDesc.parameterType(i).equals(getter.type)) {
+          cases.add(SwitchCase.of(i, cb.newLabel()));
+        }
+      }
+      if (!cases.isEmpty()) {
+        var arrayDesc = getter.type.arrayType();
+        var defaultLabel = cb.newLabel();
+        cb.iload(1);
+        cb.tableswitch(defaultLabel, cases);
+        for(var switchCase : cases) {
+          cb.labelBinding(switchCase.target());
+          cb.aload(0);
+          cb.getfield(owner, "$values" + wideKind(getter.type), arrayDesc);
+          cb.loadConstant(offsets[switchCase.caseValue()]);
+          cb.loadLocal(TypeKind.from(getter.type), 2);
+          arrayStore(cb, getter.type);
+          cb.aload(0);
+          cb.areturn();
+        }
+        cb.labelBinding(defaultLabel);
+      }
+      cb.aload(0);
+      cb.getfield(CD_TUPLE_BUILDER, "factory", CD_TUPLE_FACTORY_IMPL);
+      cb.iload(1);
+      cb.ldc(getter.typeName);
+      cb.invokevirtual(CD_TUPLE_FACTORY_IMPL, "invalidComponent", MethodTypeDesc.of(CD_RuntimeException, CD_int, CD_String));
+      cb.athrow();
+    });
+  }
+
+  // the builder class of a wide shape has one array per kind of component, named "$values" + kind,
+  // the arrays are passed to the constructor of the tuple class that copies the values,
+  // so a builder can be reused without allocating new arrays
+  private static byte[] createWideBuilderClass(ClassDesc owner, MethodTypeDesc methodTypeDesc) {
+    var counts = new int[WIDE_KINDS.size()];
+    for(var desc : methodTypeDesc.parameterList()) {
+      counts[wideKind(desc)]++;
+    }
+    var classfile =  ClassFile.of(ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
+    return classfile.build(owner, b -> {
+      b.withVersion(JAVA_23_VERSION, 0);
+      b.withFlags(ACC_PUBLIC | ACC_FINAL);
+      b.withSuperclass(CD_TUPLE_BUILDER);
+      for(var kind = 0; kind < counts.length; kind++) {
+        if (counts[kind] != 0) {
+          b.withField("$values" + kind, WIDE_KINDS.get(kind).arrayType(), ACC_PRIVATE | ACC_FINAL);
+        }
+      }
+      var initDesc = MethodTypeDesc.of(CD_void, CD_TUPLE_FACTORY_IMPL);
+      b.withMethodBody(INIT_NAME, initDesc, ACC_PUBLIC, cb -> {
+        for(var kind = 0; kind < counts.length; kind++) {
+          if (counts[kind] == 0) {
+            continue;
+          }
+          var desc = WIDE_KINDS.get(kind);
+          cb.aload(0);
+          cb.loadConstant(counts[kind]);
+          if (desc.isPrimitive()) {
+            cb.newarray(TypeKind.from(desc));
+          } else {
+            cb.anewarray(desc);
+          }
+          cb.putfield(owner, "$values" + kind, desc.arrayType());
+        }
+        cb.aload(0);
+        cb.aload(1);
+        cb.invokespecial(CD_TUPLE_BUILDER, INIT_NAME, initDesc, false);
+        cb.return_();
+      });
+      for(var getter : GETTERS) {
+        withWideSetter(b, owner, getter, methodTypeDesc);
+      }
+      b.withMethodBody("reset", MethodTypeDesc.of(CD_TUPLE_BUILDER), ACC_PUBLIC | ACC_FINAL, cb -> {
+        for(var kind = 0; kind < counts.length; kind++) {
+          if (counts[kind] == 0) {
+            continue;
+          }
+          var desc = WIDE_KINDS.get(kind);
+          cb.aload(0);
+          cb.getfield(owner, "$values" + kind, desc.arrayType());
+          defaultValue(cb, desc);
+          cb.invokestatic(CD_Arrays, "fill", MethodTypeDesc.of(CD_void, desc.arrayType(), desc));
+        }
+        cb.aload(0);
+        cb.areturn();
+      });
+      b.withMethodBody("build", MethodTypeDesc.of(CD_Object), ACC_PUBLIC | ACC_FINAL, cb -> {
+        cb.ldc(constructorDesc(methodTypeDesc));
+        for(var kind = 0; kind < counts.length; kind++) {
+          if (counts[kind] == 0) {
+            cb.aconst_null();
+            continue;
+          }
+          cb.aload(0);
+          cb.getfield(owner, "$values" + kind, WIDE_KINDS.get(kind).arrayType());
+        }
+        cb.invokevirtual(CD_MethodHandle, "invokeExact", WIDE_INIT_DESC.changeReturnType(CD_Object));
+        cb.areturn();
+      });
+    });
+  }
+
+  // the getters of the projected components are stored in the class data of the copier class,
+  // followed by the constructor of the projected tuple class
+  private static byte[] createCopierClass(ClassDesc owner, MethodTypeDesc projectedDesc) {
+    var classfile =  ClassFile.of(ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
+    return classfile.build(owner, b -> {
+      b.withVersion(JAVA_23_VERSION, 0);
+      b.withFlags(ACC_PUBLIC | ACC_FINAL);
+      b.withMethodBody("copy", MethodTypeDesc.of(CD_Object, CD_Object), ACC_PUBLIC | ACC_STATIC, cb -> {
+        var access = new TupleAccess(null, null);
+        newTuplePrologue(cb, access, projectedDesc);
+        for(var i = 0; i < projectedDesc.parameterCount(); i++) {
+          loadComponent(cb, access, 0, i, projectedDesc.parameterType(i));
+        }
+        newTupleEpilogue(cb, access, projectedDesc);
+        cb.areturn();
+      });
+    });
+  }
+
+  private static final ClassDesc CD_Comparable = ClassDesc.of("java.lang.Comparable");
+  private static final ClassDesc CD_Comparator = ClassDesc.of("java.util.Comparator");
+
+  // the wrapper class of a primitive type, it declares the static method compare, null for an object
+  private static ClassDesc wrapperType(ClassDesc desc) {
+    return switch (desc.descriptorString()) {
+      case "Z" -> CD_Boolean;
+      case "B" -> CD_Byte;
+      case "S" -> CD_Short;
+      case "C" -> CD_Character;
+      case "I" -> CD_Integer;
+      case "F" -> CD_Float;
+      case "J" -> CD_Long;
+      case "D" -> CD_Double;
+      default -> null;
+    };
+  }
+
+  // the getters of the compared components are stored in the class data of the comparator class,
+  // in the order of the component orders, a descending order swaps the two tuples
+  private static byte[] createComparatorClass(ClassDesc owner, MethodTypeDesc methodTypeDesc, List<ComponentOrder> orders) {
+    var classfile =  ClassFile.of(ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
+    return classfile.build(owner, b -> {
+      b.withVersion(JAVA_23_VERSION, 0);
+      b.withFlags(ACC_PUBLIC | ACC_FINAL);
+      b.withInterfaceSymbols(CD_Comparator);
+      b.withMethodBody(INIT_NAME, MethodTypeDesc.of(CD_void), ACC_PUBLIC, cb -> {
+        cb.aload(0);
+        cb.invokespecial(CD_Object, INIT_NAME, MethodTypeDesc.of(CD_void), false);
+        cb.return_();
+      });
+      b.withMethodBody("compare", MethodTypeDesc.of(CD_int, CD_Object, CD_Object), ACC_PUBLIC | ACC_FINAL, cb -> {
+        var access = new TupleAccess(null, null);
+        for(var i = 0; i < orders.size(); i++) {
+          var order = orders.get(i);
+          var desc = methodTypeDesc.parameterType(order.componentIndex());
+          var first = order.descending() ? 2 : 1;
+          var second = 3 - first;
+          var next = cb.newLabel();
+          var popNext = cb.newLabel();
+          var compareOwner = wrapperType(desc);
+          if (compareOwner != null) {
+            loadComponent(cb, access, first, i, desc);
+            loadComponent(cb, access, second, i, desc);
+            cb.invokestatic(compareOwner, "compare", MethodTypeDesc.of(CD_int, desc, desc));
+          } else {
+            var firstValue = cb.allocateLocal(TypeKind.ReferenceType);
+            var secondValue = cb.allocateLocal(TypeKind.ReferenceType);
+            loadComponent(cb, access, first, i, desc);
+            cb.astore(firstValue);
+            loadComponent(cb, access, second, i, desc);
+            cb.astore(secondValue);
+
+            // the result if only the first value is null
+            var firstNull = (order.nullsFirst() ? -1 : 1) * (order.descending() ? -1 : 1);
+            var firstNonNull = cb.newLabel();
+            var bothNonNull = cb.newLabel();
+            cb.aload(firstValue);
+            cb.if_nonnull(firstNonNull);
+            cb.aload(secondValue);
+            cb.if_null(next);
+            cb.loadConstant(firstNull);
+            cb.ireturn();
+            cb.labelBinding(firstNonNull);
+            cb.aload(secondValue);
+            cb.if_nonnull(bothNonNull);
+            cb.loadConstant(-firstNull);
+            cb.ireturn();
+            cb.labelBinding(bothNonNull);
+            cb.aload(firstValue);
+            cb.checkcast(CD_Comparable);
+            cb.aload(secondValue);
+            cb.invokeinterface(CD_Comparable, "compareTo", MethodTypeDesc.of(CD_int, CD_Object));
+          }
+          cb.dup();
+          cb.ifeq(popNext);
+          cb.ireturn();
+          cb.labelBinding(popNext);
+          cb.pop();
+          cb.labelBinding(next);
+        }
+        cb.iconst_0();
+        cb.ireturn();
+      });
+    });
+  }
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  // the components are extracted using the accessors if the tuple class is compact, using the fields otherwise
+  private static List<MethodHandle> components(MethodHandles.Lookup tupleLookup, List<Class<?>> types, Packing packing) {
+    var tupleClass = tupleLookup.lookupClass();
+    var components = new MethodHandle[types.size()];
+    for(var i = 0; i < components.length; i++) {
+      var parameterType = types.get(i);
+      try {
+        var component = packing.bitsCount != 0 || packing.isUnboxed(i) ?
+            tupleLookup.findVirtual(tupleClass, "_" + i, methodType(parameterType)) :
+            tupleLookup.findGetter(tupleClass, "_" + i, parameterType);
+        components[i] = component.asType(methodType(parameterType, Object.class));
+      } catch (NoSuchMethodException | NoSuchFieldException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+    return List.of(components);
+  }
+
+  private static MethodHandle factoryConstructor(MethodHandles.Lookup factoryLookup) {
+    try {
+      return factoryLookup.findConstructor(factoryLookup.lookupClass(), methodType(void.class, Shape.class, List.class))
+          .asType(methodType(TupleFactoryImpl.class, Shape.class, List.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // the var handles of the fields of a mutable tuple class
+  private static List<VarHandle> fieldVarHandles(MethodHandles.Lookup tupleLookup, MethodType methodType) {
+    var tupleClass = tupleLookup.lookupClass();
+    var varHandles = new VarHandle[methodType.parameterCount()];
+    for(var i = 0; i < varHandles.length; i++) {
+      try {
+        varHandles[i] = tupleLookup.findVarHandle(tupleClass, "_" + i, methodType.parameterType(i));
+      } catch (NoSuchFieldException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+    return List.of(varHandles);
+  }
+
+  // the tuple class is hidden, so the coordinate of the var handle is typed as an Object
+  private static VarHandle objectCoordinate(VarHandle varHandle, Class<?> tupleClass) {
+    var cast = MethodHandles.identity(Object.class).asType(methodType(tupleClass, Object.class));
+    return MethodHandles.filterCoordinates(varHandle, 0, cast);
+  }
+
+  // for each unboxed component, the accessors _i$value() and _i$isNull(), each one takes an Object as parameter
+  private static List<MethodHandle> unboxedAccessors(MethodHandles.Lookup tupleLookup, Packing packing) {
+    var tupleClass = tupleLookup.lookupClass();
+    var accessors = new ArrayList<MethodHandle>();
+    for(var i = 0; i < packing.unboxed.length; i++) {
+      if (!packing.isUnboxed(i)) {
+        continue;
+      }
+      try {
+        var primitive = (Class<?>) packing.unboxed[i].resolveConstantDesc(tupleLookup);
+        accessors.add(tupleLookup.findVirtual(tupleClass, "_" + i + "$value", methodType(primitive))
+            .asType(methodType(primitive, Object.class)));
+        accessors.add(tupleLookup.findVirtual(tupleClass, "_" + i + "$isNull", methodType(boolean.class))
+            .asType(methodType(boolean.class, Object.class)));
+      } catch (ReflectiveOperationException e) {
+        throw new AssertionError(e);
+      }
+    }
+    return accessors;
+  }
+
+  // the shape type is erased but the wrapper types are kept if the components are stored unboxed,
+  // if view is not null, the tuple class implements the view,
+  // a tuple class that implements a view, that stores the components unboxed or that is mutable is never pregenerated
+  private static Shape createShape(MethodType shapeType, Set<Option> options, View view) {
+    var methodType = shapeType.erase();
+    var unboxedWrappers = options.contains(Option.UNBOXED_WRAPPERS);
+    var mutable = isMutable(options);
+    if (view == null && !unboxedWrappers && !mutable) {
+      var pregeneratedShape = pregeneratedShape(methodType, options);
+      if (pregeneratedShape != null) {
+        return pregeneratedShape;
+      }
+    }
+    var methodTypeDesc = methodType.describeConstable().orElseThrow();
+    var packageName = LOOKUP.lookupClass().getPackageName();
+    var packing = packing(shapeType.describeConstable().orElseThrow(), options.contains(Option.COMPACT), unboxedWrappers);
+    var data = createTupleClass(ClassDesc.of(packageName, "Tuple"), null, methodTypeDesc, packing, options, view);
+    MethodHandles.Lookup hiddenLookup;
+    try {
+      hiddenLookup = defineHiddenClass("Tuple", data, null, MethodHandles.Lookup.ClassOption.NESTMATE, MethodHandles.Lookup.ClassOption.STRONG);
+    } catch (IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    var tupleClass = hiddenLookup.lookupClass();
+    MethodHandle constructor;
+    try {
+      constructor = hiddenLookup.findConstructor(tupleClass, methodType);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    var create = constructor.asType(constructor.type().changeReturnType(Object.class));
+    var componentList = components(hiddenLookup, methodType.parameterList(), packing);
+    var fieldVarHandles = mutable ? fieldVarHandles(hiddenLookup, methodType) : List.<VarHandle>of();
+    var varHandles = fieldVarHandles.stream().map(varHandle -> objectCoordinate(varHandle, tupleClass)).toList();
+
+    // the factory class can not reference the hidden tuple class by its name,
+    // so it accesses the fields and the constructor through the method handles stored as constants in its class data
+    var classData = new ArrayList<Object>(componentList);
+    classData.add(create);
+    classData.addAll(unboxedAccessors(hiddenLookup, packing));
+    classData.addAll(fieldVarHandles);
+    var factoryData = createFactoryClass(ClassDesc.of(packageName, "GeneratedTupleFactory"), methodTypeDesc, new TupleAccess(null, packing),
+        TupleEvents.SAMPLE_RATE != 0, mutable);
+    MethodHandle factoryConstructor;
+    try {
+      var factoryLookup = defineHiddenClass("GeneratedTupleFactory", factoryData, List.copyOf(classData), MethodHandles.Lookup.ClassOption.STRONG);
+      factoryConstructor = factoryConstructor(factoryLookup);
+    } catch (IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    return new Shape(tupleClass, create, componentList, varHandles, factoryConstructor,
+        Collections.unmodifiableSet(options), instanceSize(methodTypeDesc, packing, options), data.length + factoryData.length);
+  }
+
+  // the tuple class of a wide shape is never pregenerated, its types are erased,
+  // the only options supported are INLINE_EQUALS_HASHCODE and CACHED_HASH
+  private static Shape createWideShape(List<Class<?>> erasedTypes, Set<Option> options) {
+    var methodTypeDesc = MethodTypeDesc.of(CD_void, erasedTypes.stream()
+        .map(type -> type.describeConstable().orElseThrow())
+        .toArray(ClassDesc[]::new));
+    var packageName = LOOKUP.lookupClass().getPackageName();
+    var packing = packing(methodTypeDesc, false, false);
+    var data = createTupleClass(ClassDesc.of(packageName, "Tuple"), null, methodTypeDesc, packing, options, null);
+    MethodHandles.Lookup hiddenLookup;
+    try {
+      hiddenLookup = defineHiddenClass("Tuple", data, null, MethodHandles.Lookup.ClassOption.NESTMATE, MethodHandles.Lookup.ClassOption.STRONG);
+    } catch (IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    var tupleClass = hiddenLookup.lookupClass();
+    MethodHandle constructor;
+    try {
+      constructor = hiddenLookup.findConstructor(tupleClass, WIDE_INIT_DESC.resolveConstantDesc(hiddenLookup));
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+    var create = constructor.asType(constructor.type().changeReturnType(Object.class));
+    var componentList = components(hiddenLookup, erasedTypes, packing);
+    var classData = new ArrayList<Object>(componentList);
+    classData.add(create);
+    var factoryData = createFactoryClass(ClassDesc.of(packageName, "GeneratedTupleFactory"), methodTypeDesc, new TupleAccess(null, packing),
+        TupleEvents.SAMPLE_RATE != 0, false);
+    MethodHandle factoryConstructor;
+    try {
+      var factoryLookup = defineHiddenClass("GeneratedTupleFactory", factoryData, List.copyOf(classData), MethodHandles.Lookup.ClassOption.STRONG);
+      factoryConstructor = factoryConstructor(factoryLookup);
+    } catch (IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    return new Shape(tupleClass, create, componentList, List.of(), factoryConstructor,
+        Collections.unmodifiableSet(options), instanceSize(methodTypeDesc, packing, options), data.length + factoryData.length);
+  }
+
+  // the suffix of the names of the pregenerated classes, one letter per component, L for an object,
+  // followed by the names of the options, by example "Tuple$LIZ$COMPACT"
+  private static String pregeneratedSuffix(MethodType methodType, Set<Option> options) {
+    var builder = new StringBuilder();
+    for(var parameterType : methodType.parameterList()) {
+      builder.append(parameterType.isPrimitive() ? parameterType.descriptorString() : "L");
+    }
+    if (builder.isEmpty()) {
+      builder.append('V');
+    }
+    for(var option : options) {
+      builder.append('$').append(option.name());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Generates the tuple class and the factory class of an erased shape, so they can be loaded
+   * by the class loader of this class instead of being generated at runtime.
+   * The tuple class is named {@code Tuple$suffix} and the factory class {@code GeneratedTupleFactory$suffix},
+   * they are nestmates so the factory class accesses the fields of the tuple class directly.
+   *
+   * @param methodType an erased method type, each parameter is either a primitive type or Object
+   * @param options the options of the shape
+   * @return the bytecode of the classes indexed by their binary names
+   *
+   * @see TupleShapeProcessor
+   */
+  static Map<String, byte[]> pregenerate(MethodType methodType, Set<Option> options) {
+    var methodTypeDesc = methodType.describeConstable().orElseThrow();
+    var packageName = TupleFactoryImpl.class.getPackageName();
+    var suffix = pregeneratedSuffix(methodType, options);
+    var tupleDesc = ClassDesc.of(packageName, "Tuple$" + suffix);
+    var factoryDesc = ClassDesc.of(packageName, "GeneratedTupleFactory$" + suffix);
+    var packing = packing(methodTypeDesc, options.contains(Option.COMPACT), false);
+    var classes = new LinkedHashMap<String, byte[]>();
+    classes.put(packageName + ".Tuple$" + suffix, createTupleClass(tupleDesc, factoryDesc, methodTypeDesc, packing, options, null));
+    classes.put(packageName + ".GeneratedTupleFactory$" + suffix, createFactoryClass(factoryDesc, methodTypeDesc, new TupleAccess(tupleDesc, packing), false, false));
+    return classes;
+  }
+
+  // finds the classes generated by pregenerate() if they are available, returns null otherwise
+  private static Shape pregeneratedShape(MethodType methodType, Set<Option> options) {
+    var packageName = LOOKUP.lookupClass().getPackageName();
+    var suffix = pregeneratedSuffix(methodType, options);
+    var loader = LOOKUP.lookupClass().getClassLoader();
+    Class<?> tupleClass, factoryClass;
+    try {
+      tupleClass = Class.forName(packageName + ".Tuple$" + suffix, true, loader);
+      factoryClass = Class.forName(packageName + ".GeneratedTupleFactory$" + suffix, true, loader);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    var methodTypeDesc = methodType.describeConstable().orElseThrow();
+    var packing = packing(methodTypeDesc, options.contains(Option.COMPACT), false);
+    MethodHandles.Lookup tupleLookup, factoryLookup;
+    MethodHandle constructor;
+    try {
+      tupleLookup = MethodHandles.privateLookupIn(tupleClass, LOOKUP);
+      factoryLookup = MethodHandles.privateLookupIn(factoryClass, LOOKUP);
+      constructor = tupleLookup.findConstructor(tupleClass, methodType);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    var create = constructor.asType(constructor.type().changeReturnType(Object.class));
+    return new Shape(tupleClass, create, components(tupleLookup, methodType.parameterList(), packing), List.of(), factoryConstructor(factoryLookup),
+        Collections.unmodifiableSet(options), instanceSize(methodTypeDesc, packing, options), 0);
+  }
+
+  // the shapes indexed by erased descriptor and options,
+  // computeIfAbsent guarantees that the classes of a shape are generated and defined only once
+  private static final ConcurrentHashMap<String, Shape> SHAPE_MAP = new ConcurrentHashMap<>();
+
+  private record FactoryKey(List<Class<?>> types, Set<Option> options) {}
+
+  // the specialized factories indexed by types and options
+  private static final ConcurrentHashMap<FactoryKey, TupleFactoryImpl> FACTORY_MAP = new ConcurrentHashMap<>();
+
+  static TupleFactoryImpl specialize(Shape shape, List<Class<?>> types) {
+    try {
+      return (TupleFactoryImpl) shape.factoryConstructor.invokeExact(shape, types);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static boolean isVisible(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isHidden()) {
+      return false;
+    }
+    var loader = type.getClassLoader();
+    if (loader == null) {
+      return true;
+    }
+    for(var parent = TupleFactoryImpl.class.getClassLoader(); parent != null; parent = parent.getParent()) {
+      if (parent == loader) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // a factory is only cached if all its types are visible from the class loader of this class,
+  // otherwise the cache would keep alive the classes of an unrelated class loader or a hidden class
+  private static boolean isCacheable(List<Class<?>> types) {
+    for(var parameterType : types) {
+      if (!isVisible(parameterType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // defines a hidden class in the package of this class, the definition is counted in the statistics
+  // and recorded as a JFR event
+  private static MethodHandles.Lookup defineHiddenClass(String kind, byte[] data, List<?> classData,
+                                                        MethodHandles.Lookup.ClassOption... options) throws IllegalAccessException {
+    var event = new TupleEvents.HiddenClassDefinitionEvent();
+    event.begin();
+    var lookup = classData == null ?
+        LOOKUP.defineHiddenClass(data, true, options) :
+        LOOKUP.defineHiddenClassWithClassData(data, classData, true, options);
+    TupleEvents.GENERATED_CLASS_COUNT.increment();
+    TupleEvents.GENERATED_CLASS_BYTES.add(data.length);
+    if (event.shouldCommit()) {
+      event.kind = kind;
+      event.definedClass = lookup.lookupClass();
+      event.classFileSize = data.length;
+      event.commit();
+    }
+    return lookup;
+  }
+
+  // the time spent to generate and define classes is counted in the statistics
+  private static <T> T generate(Supplier<? extends T> supplier) {
+    var start = System.nanoTime();
+    try {
+      return supplier.get();
+    } finally {
+      TupleEvents.GENERATION_NANOS.add(System.nanoTime() - start);
+    }
+  }
+
+  private static Shape defineShape(MethodType shapeType, String descriptor, EnumSet<Option> options, View view) {
+    var event = new TupleEvents.ShapeDefinitionEvent();
+    event.begin();
+    var shape = generate(() -> createShape(shapeType, options, view));
+    TupleEvents.SHAPE_COUNT.increment();
+    if (!shape.tupleClass.isHidden()) {
+      TupleEvents.PREGENERATED_SHAPE_COUNT.increment();
+    }
+    if (event.shouldCommit()) {
+      event.descriptor = descriptor;
+      event.options = options.toString();
+      event.pregenerated = !shape.tupleClass.isHidden();
+      event.classFileSize = shape.classFileSize;
+      event.commit();
+    }
+    return shape;
+  }
+
+  // the types of a shape are erased, apart from the wrapper types if the components are stored unboxed
+  private static MethodType shapeType(MethodType methodType, EnumSet<Option> options) {
+    var erased = methodType.erase().changeReturnType(void.class);
+    if (!options.contains(Option.UNBOXED_WRAPPERS)) {
+      return erased;
+    }
+    var shapeType = erased;
+    for(var i = 0; i < methodType.parameterCount(); i++) {
+      var parameterType = methodType.parameterType(i);
+      if (parameterType.describeConstable().filter(WRAPPER_TO_PRIMITIVE::containsKey).isPresent()) {
+        shapeType = shapeType.changeParameterType(i, parameterType);
+      }
+    }
+    return shapeType;
+  }
+
+  private static Shape defineWideShape(List<Class<?>> erasedTypes, String descriptor, EnumSet<Option> options) {
+    var event = new TupleEvents.ShapeDefinitionEvent();
+    event.begin();
+    var shape = generate(() -> createWideShape(erasedTypes, options));
+    TupleEvents.SHAPE_COUNT.increment();
+    if (event.shouldCommit()) {
+      event.descriptor = descriptor;
+      event.options = options.toString();
+      event.pregenerated = false;
+      event.classFileSize = shape.classFileSize;
+      event.commit();
+    }
+    return shape;
+  }
+
+  // a wide shape has no method type, so its descriptor is computed from the erased types
+  private static Shape wideShape(List<Class<?>> types, EnumSet<Option> options) {
+    var erasedTypes = types.stream().<Class<?>>map(type -> type.isPrimitive() ? type : Object.class).toList();
+    var descriptor = erasedTypes.stream().map(Class::descriptorString).collect(Collectors.joining("", "(", ")V")) + options;
+    var shape = SHAPE_MAP.get(descriptor);
+    if (shape != null) {
+      return shape;
+    }
+    return SHAPE_MAP.computeIfAbsent(descriptor, __ -> defineWideShape(erasedTypes, descriptor, options));
+  }
+
+  private static Shape shape(List<Class<?>> types, EnumSet<Option> options) {
+    if (isWide(types)) {
+      return wideShape(types, options);
+    }
+    var shapeType = shapeType(methodType(Object.class, types), options);
+    var descriptor = shapeType.descriptorString() + options;
+    var shape = SHAPE_MAP.get(descriptor);
+    if (shape != null) {
+      return shape;
+    }
+    return SHAPE_MAP.computeIfAbsent(descriptor, __ -> defineShape(shapeType, descriptor, options, null));
+  }
+
+  private static TupleFactoryImpl factory(List<Class<?>> types, EnumSet<Option> options, TupleEvents.FactoryCreationEvent event) {
+    if (!isCacheable(types)) {
+      TupleEvents.FACTORY_CACHE_MISSES.increment();
+      return specialize(shape(types, options), types);
+    }
+    var key = new FactoryKey(types, options);
+    var factory = FACTORY_MAP.get(key);
+    if (factory != null) {
+      TupleEvents.FACTORY_CACHE_HITS.increment();
+      event.cacheHit = true;
+      return factory;
+    }
+    TupleEvents.FACTORY_CACHE_MISSES.increment();
+    var shape = shape(types, options);
+    return FACTORY_MAP.computeIfAbsent(key, __ -> specialize(shape, types));
+  }
+
+  static TupleFactory createTupleFactory(MethodType methodType, EnumSet<Option> options) {
+    return createTupleFactory(methodType.parameterList(), options);
+  }
+
+  static TupleFactory createTupleFactory(List<Class<?>> types, EnumSet<Option> options) {
+    addImpliedOptions(options);
+    checkOptions(options);
+    if (isWide(types)) {
+      checkWideOptions(options);
+    }
+    var event = new TupleEvents.FactoryCreationEvent();
+    event.begin();
+    var factory = factory(types, options, event);
+    if (event.shouldCommit()) {
+      event.methodType = factory.methodTypeString();
+      event.options = options.toString();
+      event.commit();
+    }
+    return factory;
+  }
+
+  // a public method of java.lang.Object like toString() can be redeclared abstract in an interface
+  private static boolean isObjectMethod(Method method) {
+    try {
+      Object.class.getMethod(method.getName(), method.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  // the order of the methods returned by reflection is not specified,
+  // so the order of declaration of the methods is read from the class file of the view
+  private static List<String> methodNamesInDeclarationOrder(Class<?> view) {
+    var resource = view.getName().replace('.', '/') + ".class";
+    var loader = view.getClassLoader();
+    byte[] data;
+    try(var input = loader == null ? ClassLoader.getSystemResourceAsStream(resource) : loader.getResourceAsStream(resource)) {
+      if (input == null) {
+        throw new IllegalArgumentException("the class file of " + view.getName() + " is not available");
+      }
+      data = input.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return ClassFile.of().parse(data).methods().stream().map(method -> method.methodName().stringValue()).toList();
+  }
+
+  private static View view(Class<?> view) {
+    if (!view.isInterface() || view.isAnnotation() || view.isHidden()) {
+      throw new IllegalArgumentException(view.getName() + " is not an interface");
+    }
+    if (!isVisible(view)) {
+      throw new IllegalArgumentException(view.getName() + " is not visible from the class loader of the tuple factory");
+    }
+    try {
+      LOOKUP.accessClass(view);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException(view.getName() + " is not accessible", e);
+    }
+    var accessors = new ArrayList<Method>();
+    for(var method : view.getMethods()) {
+      if (!Modifier.isAbstract(method.getModifiers()) || isObjectMethod(method)) {
+        continue;
+      }
+      if (method.getDeclaringClass() != view) {
+        throw new IllegalArgumentException("the abstract method " + method + " is not declared by " + view.getName());
+      }
+      if (method.getParameterCount() != 0 || method.getReturnType() == void.class) {
+        throw new IllegalArgumentException("the abstract method " + method + " is not an accessor");
+      }
+      accessors.add(method);
+    }
+    var names = methodNamesInDeclarationOrder(view);
+    accessors.sort(Comparator.comparingInt(method -> names.indexOf(method.getName())));
+    return new View(view, List.copyOf(accessors));
+  }
+
+  private static final ClassValue<ConcurrentHashMap<Set<Option>, TupleFactoryImpl>> VIEW_MAP = new ClassValue<>() {
+    @Override
+    protected ConcurrentHashMap<Set<Option>, TupleFactoryImpl> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  // the shape of a view is not shared with the other factories because the tuple class implements the view
+  private static TupleFactoryImpl defineViewFactory(View view, EnumSet<Option> options) {
+    var methodType = methodType(Object.class, view.accessors.stream().<Class<?>>map(Method::getReturnType).toList());
+    var shapeType = shapeType(methodType, options);
+    var descriptor = shapeType.descriptorString() + options + view.type.getName();
+    return specialize(defineShape(shapeType, descriptor, options, view), methodType.parameterList());
+  }
+
+  static TupleFactory createViewFactory(Class<?> view, EnumSet<Option> options) {
+    addImpliedOptions(options);
+    checkOptions(options);
+    var event = new TupleEvents.FactoryCreationEvent();
+    event.begin();
+    var factories = VIEW_MAP.get(view);
+    var factory = factories.get(options);
+    if (factory != null) {
+      TupleEvents.FACTORY_CACHE_HITS.increment();
+      event.cacheHit = true;
+    } else {
+      TupleEvents.FACTORY_CACHE_MISSES.increment();
+      var viewInfo = view(view);
+      factory = factories.computeIfAbsent(options, __ -> defineViewFactory(viewInfo, options));
+    }
+    if (event.shouldCommit()) {
+      event.methodType = factory.methodTypeString();
+      event.options = options.toString();
+      event.commit();
+    }
+    return factory;
+  }
+
+  // the erased types of the components of a shape, the constructor of a wide shape takes arrays instead
+  private static MethodTypeDesc componentsDesc(Shape shape) {
+    var descs = shape.components.stream()
+        .map(component -> component.type().returnType().describeConstable().orElseThrow())
+        .toArray(ClassDesc[]::new);
+    return MethodTypeDesc.of(CD_void, descs);
+  }
+
+  private record ComparatorKey(Shape shape, List<ComponentOrder> orders) {}
+
+  // the comparators indexed by shape and component orders
+  private static final ConcurrentHashMap<ComparatorKey, Comparator<Object>> COMPARATOR_MAP = new ConcurrentHashMap<>();
+
+  @SuppressWarnings("unchecked")
+  private static Comparator<Object> createComparator(Shape shape, List<ComponentOrder> orders) {
+    var getters = new MethodHandle[orders.size()];
+    for(var i = 0; i < getters.length; i++) {
+      getters[i] = shape.components.get(orders.get(i).componentIndex());
+    }
+    var methodTypeDesc = componentsDesc(shape);
+    var data = createComparatorClass(ClassDesc.of(LOOKUP.lookupClass().getPackageName(), "TupleComparator"), methodTypeDesc, orders);
+    try {
+      var comparatorLookup = defineHiddenClass("TupleComparator", data, List.of(getters));
+      return (Comparator<Object>) comparatorLookup.findConstructor(comparatorLookup.lookupClass(), methodType(void.class)).invoke();
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  static Comparator<Object> comparator(Shape shape, List<ComponentOrder> orders) {
+    var key = new ComparatorKey(shape, orders);
+    var comparator = COMPARATOR_MAP.get(key);
+    if (comparator != null) {
+      return comparator;
+    }
+    return COMPARATOR_MAP.computeIfAbsent(key, __ -> generate(() -> createComparator(shape, orders)));
+  }
+
+  // the constructors of the builder classes indexed by shape
+  private static final ConcurrentHashMap<Shape, MethodHandle> BUILDER_MAP = new ConcurrentHashMap<>();
+
+  private static MethodHandle createBuilderConstructor(Shape shape) {
+    var classData = new ArrayList<MethodHandle>(shape.components);
+    classData.add(shape.constructor);
+    var methodTypeDesc = componentsDesc(shape);
+    var data = createBuilderClass(ClassDesc.of(LOOKUP.lookupClass().getPackageName(), "GeneratedTupleBuilder"), methodTypeDesc);
+    try {
+      var builderLookup = defineHiddenClass("GeneratedTupleBuilder", data, List.copyOf(classData));
+      return builderLookup.findConstructor(builderLookup.lookupClass(), methodType(void.class, TupleFactoryImpl.class))
+          .asType(methodType(TupleBuilder.class, TupleFactoryImpl.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static MethodHandle builderConstructor(Shape shape) {
+    var constructor = BUILDER_MAP.get(shape);
+    if (constructor != null) {
+      return constructor;
+    }
+    return BUILDER_MAP.computeIfAbsent(shape, __ -> generate(() -> createBuilderConstructor(shape)));
+  }
+
+  private record CopierKey(Shape shape, List<Integer> indexes) {}
+
+  // the copiers indexed by shape and indexes of the projected components
+  private static final ConcurrentHashMap<CopierKey, MethodHandle> COPIER_MAP = new ConcurrentHashMap<>();
+
+  private static MethodHandle createCopier(Shape shape, Shape projectedShape, int[] indexes) {
+    var classData = new ArrayList<MethodHandle>();
+    for(var index : indexes) {
+      classData.add(shape.components.get(index));
+    }
+    classData.add(projectedShape.constructor);
+    var projectedDesc = projectedShape.constructor.type().changeReturnType(void.class).describeConstable().orElseThrow();
+    var data = createCopierClass(ClassDesc.of(LOOKUP.lookupClass().getPackageName(), "TupleCopier"), projectedDesc);
+    MethodHandle copier;
+    try {
+      var copierLookup = defineHiddenClass("TupleCopier", data, List.copyOf(classData));
+      copier = copierLookup.findStatic(copierLookup.lookupClass(), "copy", methodType(Object.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    if (indexes.length == 0) {
+      // no component is loaded, so the tuple is checked explicitly
+      var check = MethodHandles.filterReturnValue(REQUIRE_NON_NULL,
+          MethodHandles.identity(Object.class).asType(methodType(shape.tupleClass, Object.class)))
+          .asType(methodType(Object.class, Object.class));
+      copier = MethodHandles.filterArguments(copier, 0, check);
+    }
+    return copier;
+  }
+
+  private static final MethodHandle REQUIRE_NON_NULL;
+  static {
+    try {
+      REQUIRE_NON_NULL = MethodHandles.lookup().findStatic(Objects.class, "requireNonNull", methodType(Object.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static MethodHandle copier(Shape shape, Shape projectedShape, int[] indexes) {
+    var key = new CopierKey(shape, Arrays.stream(indexes).boxed().toList());
+    var copier = COPIER_MAP.get(key);
+    if (copier != null) {
+      return copier;
+    }
+    return COPIER_MAP.computeIfAbsent(key, __ -> generate(() -> createCopier(shape, projectedShape, indexes)));
+  }
+
+  static Statistics statistics() {
+    // the shapes of the views are not stored in SHAPE_MAP, so the shapes are counted when defined
+    var shapeCount = TupleEvents.SHAPE_COUNT.intValue();
+    var pregeneratedShapeCount = TupleEvents.PREGENERATED_SHAPE_COUNT.intValue();
+    var generatedClassCount = TupleEvents.GENERATED_CLASS_COUNT.sum();
+    var classFileBytes = TupleEvents.GENERATED_CLASS_BYTES.sum();
+    // the metadata of a class uses roughly twice the size of its class file plus a fixed part
+    var estimatedMetaspaceBytes = 2 * classFileBytes + 1024 * generatedClassCount;
+    return new Statistics(shapeCount, pregeneratedShapeCount, FACTORY_MAP.size(),
+        TupleEvents.FACTORY_CACHE_HITS.sum(), TupleEvents.FACTORY_CACHE_MISSES.sum(),
+        generatedClassCount, classFileBytes, TupleEvents.GENERATION_NANOS.sum(), estimatedMetaspaceBytes,
+        TupleEvents.SAMPLED_CALLS.sum());
   }
 }
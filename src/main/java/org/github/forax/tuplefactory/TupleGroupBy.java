@@ -0,0 +1,669 @@
+package org.github.forax.tuplefactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A group by operation on tuples of the same shape, the tuples are grouped by the values of some components,
+ * the key components, and for each group, aggregates (count, sum, min, max, average) are computed
+ * on the other components.
+ * The result is a {@link TupleArray} with one row per group, the key components first, followed by
+ * the aggregates in the order they were added.
+ * <pre>
+ *   var factory = TupleFactory.of(String.class, int.class, double.class);
+ *   var groupBy = TupleGroupBy.of(factory, 0)     // group by the first component
+ *       .count()
+ *       .sum(1)
+ *       .average(2);
+ *   var result = groupBy.apply(tuples);           // (String, long, long, double)
+ * </pre>
+ *
+ * Each thread aggregates into its own table, the primitive values are read using the typed getters
+ * of the factory and accumulated in primitive arrays, so they are never boxed.
+ * The tables are then merged. With {@link #apply(Iterable)} and {@link #apply(TupleArray)},
+ * the tuples are split across the threads of the common {@link java.util.concurrent.ForkJoinPool}.
+ * With {@link #apply(Stream)} or {@link #collector()}, the work is split if the stream is parallel.
+ *
+ * This class is immutable and thread safe, so an instance can be stored in a static final field.
+ *
+ * @see #of(TupleFactory, int...)
+ */
+public final class TupleGroupBy {
+  private enum Operation { COUNT, SUM, MIN, MAX, AVERAGE }
+
+  // offset is the index of the first accumulator of the aggregate
+  private record Aggregate(Operation operation, int componentIndex, char kind, int offset) {
+    boolean isFloatingPoint() {
+      return kind == 'F' || kind == 'D';
+    }
+
+    Class<?> resultType() {
+      return switch (operation) {
+        case COUNT -> long.class;
+        case SUM -> isFloatingPoint() ? double.class : long.class;
+        case MIN, MAX -> primitiveType(kind);
+        case AVERAGE -> double.class;
+      };
+    }
+
+    int width() {
+      return operation == Operation.AVERAGE ? 2 : 1;
+    }
+  }
+
+  private final TupleFactoryImpl factory;
+  private final char[] kinds;
+  private final int[] keyIndices;
+  private final TupleFactory keyFactory;
+  private final List<Aggregate> aggregates;
+  private final int width;
+  private final TupleFactory resultFactory;
+
+  private TupleGroupBy(TupleFactoryImpl factory, char[] kinds, int[] keyIndices, TupleFactory keyFactory,
+                       List<Aggregate> aggregates) {
+    var types = new ArrayList<Class<?>>();
+    for(var keyIndex : keyIndices) {
+      types.add(factory.methodType.parameterType(keyIndex));
+    }
+    for(var aggregate : aggregates) {
+      types.add(aggregate.resultType());
+    }
+    this.factory = factory;
+    this.kinds = kinds;
+    this.keyIndices = keyIndices;
+    this.keyFactory = keyFactory;
+    this.aggregates = aggregates;
+    this.width = aggregates.stream().mapToInt(Aggregate::width).sum();
+    this.resultFactory = TupleFactory.of(types.toArray(Class<?>[]::new));
+  }
+
+  /**
+   * Creates a group by operation on the tuples of a factory with no aggregate.
+   * @param factory the factory of the tuples to group
+   * @param keyComponentIndices the indices of the components used as key
+   * @return a new group by operation
+   * @throws NullPointerException if either the factory or the key component indices are null
+   * @throws IndexOutOfBoundsException if one of the key component indices is not valid
+   * @throws IllegalArgumentException if a key component index is specified more than once
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  public static TupleGroupBy of(TupleFactory factory, int... keyComponentIndices) {
+    requireNonNull(factory);
+    requireNonNull(keyComponentIndices);
+    var factoryImpl = TupleFactoryImpl.narrow(factory);
+    var erased = factoryImpl.shape.constructor().type();
+    var kinds = new char[erased.parameterCount()];
+    for(var i = 0; i < kinds.length; i++) {
+      kinds[i] = erased.parameterType(i).descriptorString().charAt(0);
+    }
+    var keyIndices = keyComponentIndices.clone();
+    var keyTypes = new Class<?>[keyIndices.length];
+    for(var i = 0; i < keyIndices.length; i++) {
+      var keyIndex = Objects.checkIndex(keyIndices[i], kinds.length);
+      for(var j = 0; j < i; j++) {
+        if (keyIndices[j] == keyIndex) {
+          throw new IllegalArgumentException("key component " + keyIndex + " specified twice");
+        }
+      }
+      keyTypes[i] = erased.parameterType(keyIndex);
+    }
+    return new TupleGroupBy(factoryImpl, kinds, keyIndices, TupleFactory.of(keyTypes), List.of());
+  }
+
+  private TupleGroupBy with(Operation operation, int componentIndex) {
+    var aggregates = new ArrayList<>(this.aggregates);
+    aggregates.add(new Aggregate(operation, componentIndex, componentIndex == -1 ? 'J' : kinds[componentIndex], width));
+    return new TupleGroupBy(factory, kinds, keyIndices, keyFactory, List.copyOf(aggregates));
+  }
+
+  private int checkNumeric(int componentIndex) {
+    var kind = kinds[Objects.checkIndex(componentIndex, kinds.length)];
+    if (kind == 'Z' || kind == 'L' || kind == '[') {
+      throw new IllegalArgumentException("component " + componentIndex + " is not numeric");
+    }
+    return componentIndex;
+  }
+
+  /**
+   * Returns a new group by operation that also counts the number of tuples of each group.
+   * The type of the aggregate is long.
+   * @return a new group by operation
+   */
+  public TupleGroupBy count() {
+    return with(Operation.COUNT, -1);
+  }
+
+  /**
+   * Returns a new group by operation that also computes the sum of a component for each group.
+   * The type of the aggregate is double if the component is a float or a double, long otherwise.
+   * @param componentIndex the index of a numeric component
+   * @return a new group by operation
+   * @throws IndexOutOfBoundsException if the component index is not valid
+   * @throws IllegalArgumentException if the component is neither a numeric primitive type nor a char
+   */
+  public TupleGroupBy sum(int componentIndex) {
+    return with(Operation.SUM, checkNumeric(componentIndex));
+  }
+
+  /**
+   * Returns a new group by operation that also computes the minimum of a component for each group.
+   * The type of the aggregate is the type of the component.
+   * @param componentIndex the index of a numeric component
+   * @return a new group by operation
+   * @throws IndexOutOfBoundsException if the component index is not valid
+   * @throws IllegalArgumentException if the component is neither a numeric primitive type nor a char
+   */
+  public TupleGroupBy min(int componentIndex) {
+    return with(Operation.MIN, checkNumeric(componentIndex));
+  }
+
+  /**
+   * Returns a new group by operation that also computes the maximum of a component for each group.
+   * The type of the aggregate is the type of the component.
+   * @param componentIndex the index of a numeric component
+   * @return a new group by operation
+   * @throws IndexOutOfBoundsException if the component index is not valid
+   * @throws IllegalArgumentException if the component is neither a numeric primitive type nor a char
+   */
+  public TupleGroupBy max(int componentIndex) {
+    return with(Operation.MAX, checkNumeric(componentIndex));
+  }
+
+  /**
+   * Returns a new group by operation that also computes the average of a component for each group.
+   * The type of the aggregate is double.
+   * @param componentIndex the index of a numeric component
+   * @return a new group by operation
+   * @throws IndexOutOfBoundsException if the component index is not valid
+   * @throws IllegalArgumentException if the component is neither a numeric primitive type nor a char
+   */
+  public TupleGroupBy average(int componentIndex) {
+    return with(Operation.AVERAGE, checkNumeric(componentIndex));
+  }
+
+  /**
+   * Returns the factory of the tuples to group.
+   * @return the factory of the tuples to group.
+   */
+  public TupleFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Returns the factory of the rows of the result, the types of the key components followed
+   * by the types of the aggregates.
+   * @return the factory of the rows of the result.
+   */
+  public TupleFactory resultFactory() {
+    return resultFactory;
+  }
+
+  /**
+   * Returns a collector that groups the tuples of a stream.
+   * @return a collector that groups the tuples of a stream.
+   * @see #apply(Stream)
+   */
+  public Collector<Object, ?, TupleArray> collector() {
+    return Collector.of(Table::new, Table::accumulate, Table::merge, Table::result, Collector.Characteristics.UNORDERED);
+  }
+
+  /**
+   * Groups the tuples of a stream, the groups are computed in parallel if the stream is parallel.
+   * @param tuples a stream of tuples created by a factory compatible with the factory of this operation
+   * @return an array of tuples of the {@link #resultFactory() result factory}, one row per group
+   * @throws NullPointerException if the stream or a tuple is null
+   * @throws ClassCastException if a tuple is not compatible with the factory of this operation
+   */
+  public TupleArray apply(Stream<?> tuples) {
+    return tuples.collect(collector());
+  }
+
+  /**
+   * Groups the tuples of an iterable in parallel.
+   * @param tuples tuples created by a factory compatible with the factory of this operation
+   * @return an array of tuples of the {@link #resultFactory() result factory}, one row per group
+   * @throws NullPointerException if the iterable or a tuple is null
+   * @throws ClassCastException if a tuple is not compatible with the factory of this operation
+   */
+  public TupleArray apply(Iterable<?> tuples) {
+    return apply(StreamSupport.stream(tuples.spliterator(), true));
+  }
+
+  /**
+   * Groups the rows of an array of tuples in parallel.
+   * The values are read directly from the columns of the array, no tuple is created.
+   * @param array an array of tuples with a factory compatible with the factory of this operation
+   * @return an array of tuples of the {@link #resultFactory() result factory}, one row per group
+   * @throws NullPointerException if the array is null
+   * @throws IllegalArgumentException if the factory of the array is not compatible with the factory of this operation
+   */
+  public TupleArray apply(TupleArray array) {
+    requireNonNull(array);
+    if (((TupleFactoryImpl) array.factory()).shape != factory.shape) {
+      throw new IllegalArgumentException("the factory of the array is not compatible");
+    }
+    return IntStream.range(0, array.size())
+        .parallel()
+        .collect(Table::new, (table, row) -> table.accumulate(array, row), Table::merge)
+        .result();
+  }
+
+  private static Class<?> primitiveType(char kind) {
+    return switch (kind) {
+      case 'B' -> byte.class;
+      case 'S' -> short.class;
+      case 'C' -> char.class;
+      case 'I' -> int.class;
+      case 'F' -> float.class;
+      case 'J' -> long.class;
+      case 'D' -> double.class;
+      default -> throw new AssertionError();
+    };
+  }
+
+  // read the components either of a tuple or of a row of an array
+  private static abstract sealed class Cursor {
+    abstract boolean getBoolean(int componentIndex);
+    abstract byte getByte(int componentIndex);
+    abstract short getShort(int componentIndex);
+    abstract char getChar(int componentIndex);
+    abstract int getInt(int componentIndex);
+    abstract float getFloat(int componentIndex);
+    abstract long getLong(int componentIndex);
+    abstract double getDouble(int componentIndex);
+    abstract Object get(int componentIndex);
+
+    long longValue(int componentIndex, char kind) {
+      return switch (kind) {
+        case 'B' -> getByte(componentIndex);
+        case 'S' -> getShort(componentIndex);
+        case 'C' -> getChar(componentIndex);
+        case 'I' -> getInt(componentIndex);
+        case 'J' -> getLong(componentIndex);
+        default -> throw new AssertionError();
+      };
+    }
+
+    double doubleValue(int componentIndex, char kind) {
+      return kind == 'F' ? getFloat(componentIndex) : getDouble(componentIndex);
+    }
+  }
+
+  private static final class TupleCursor extends Cursor {
+    private final TupleFactoryImpl factory;
+    private Object tuple;
+
+    private TupleCursor(TupleFactoryImpl factory) {
+      this.factory = factory;
+    }
+
+    @Override
+    boolean getBoolean(int componentIndex) {
+      return factory.getBoolean(tuple, componentIndex);
+    }
+    @Override
+    byte getByte(int componentIndex) {
+      return factory.getByte(tuple, componentIndex);
+    }
+    @Override
+    short getShort(int componentIndex) {
+      return factory.getShort(tuple, componentIndex);
+    }
+    @Override
+    char getChar(int componentIndex) {
+      return factory.getChar(tuple, componentIndex);
+    }
+    @Override
+    int getInt(int componentIndex) {
+      return factory.getInt(tuple, componentIndex);
+    }
+    @Override
+    float getFloat(int componentIndex) {
+      return factory.getFloat(tuple, componentIndex);
+    }
+    @Override
+    long getLong(int componentIndex) {
+      return factory.getLong(tuple, componentIndex);
+    }
+    @Override
+    double getDouble(int componentIndex) {
+      return factory.getDouble(tuple, componentIndex);
+    }
+    @Override
+    Object get(int componentIndex) {
+      return factory.get(tuple, componentIndex);
+    }
+  }
+
+  private static final class ArrayCursor extends Cursor {
+    private TupleArray array;
+    private int row;
+
+    @Override
+    boolean getBoolean(int componentIndex) {
+      return array.getBoolean(row, componentIndex);
+    }
+    @Override
+    byte getByte(int componentIndex) {
+      return array.getByte(row, componentIndex);
+    }
+    @Override
+    short getShort(int componentIndex) {
+      return array.getShort(row, componentIndex);
+    }
+    @Override
+    char getChar(int componentIndex) {
+      return array.getChar(row, componentIndex);
+    }
+    @Override
+    int getInt(int componentIndex) {
+      return array.getInt(row, componentIndex);
+    }
+    @Override
+    float getFloat(int componentIndex) {
+      return array.getFloat(row, componentIndex);
+    }
+    @Override
+    long getLong(int componentIndex) {
+      return array.getLong(row, componentIndex);
+    }
+    @Override
+    double getDouble(int componentIndex) {
+      return array.getDouble(row, componentIndex);
+    }
+    @Override
+    Object get(int componentIndex) {
+      return array.get(row, componentIndex);
+    }
+  }
+
+  // the groups of one thread, the keys are stored in a TupleArray, the accumulators of the group g
+  // are stored in accumulators[g * width .. (g + 1) * width[ and the index is an open addressing table
+  // of group + 1
+  private final class Table {
+    private final TupleArray keys = TupleArray.of(keyFactory);
+    private final TupleCursor tupleCursor = new TupleCursor(factory);
+    private final ArrayCursor arrayCursor = new ArrayCursor();
+    private int[] hashes = new int[16];
+    private long[] accumulators = new long[16 * width];
+    private int[] index = new int[32];
+
+    private int hash(Cursor cursor, int[] componentIndices) {
+      var hash = 0;
+      for(var i = 0; i < componentIndices.length; i++) {
+        var componentIndex = componentIndices[i];
+        var componentHash = switch (kinds[keyIndices[i]]) {
+          case 'Z' -> TupleHandles.hash(cursor.getBoolean(componentIndex));
+          case 'B' -> TupleHandles.hash(cursor.getByte(componentIndex));
+          case 'S' -> TupleHandles.hash(cursor.getShort(componentIndex));
+          case 'C' -> TupleHandles.hash(cursor.getChar(componentIndex));
+          case 'I' -> TupleHandles.hash(cursor.getInt(componentIndex));
+          case 'F' -> TupleHandles.hash(cursor.getFloat(componentIndex));
+          case 'J' -> TupleHandles.hash(cursor.getLong(componentIndex));
+          case 'D' -> TupleHandles.hash(cursor.getDouble(componentIndex));
+          default -> TupleHandles.hash(cursor.get(componentIndex));
+        };
+        hash = TupleHandles.combine(hash, componentHash);
+      }
+      return TupleHandles.mix(hash);
+    }
+
+    private boolean keyEquals(int group, Cursor cursor, int[] componentIndices) {
+      for(var i = 0; i < componentIndices.length; i++) {
+        var componentIndex = componentIndices[i];
+        var equals = switch (kinds[keyIndices[i]]) {
+          case 'Z' -> keys.getBoolean(group, i) == cursor.getBoolean(componentIndex);
+          case 'B' -> keys.getByte(group, i) == cursor.getByte(componentIndex);
+          case 'S' -> keys.getShort(group, i) == cursor.getShort(componentIndex);
+          case 'C' -> keys.getChar(group, i) == cursor.getChar(componentIndex);
+          case 'I' -> keys.getInt(group, i) == cursor.getInt(componentIndex);
+          case 'F' -> Float.floatToIntBits(keys.getFloat(group, i)) == Float.floatToIntBits(cursor.getFloat(componentIndex));
+          case 'J' -> keys.getLong(group, i) == cursor.getLong(componentIndex);
+          case 'D' -> Double.doubleToLongBits(keys.getDouble(group, i)) == Double.doubleToLongBits(cursor.getDouble(componentIndex));
+          default -> Objects.equals(keys.get(group, i), cursor.get(componentIndex));
+        };
+        if (!equals) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int addGroup(int hash, Cursor cursor, int[] componentIndices) {
+      var group = keys.addRow();
+      for(var i = 0; i < componentIndices.length; i++) {
+        var componentIndex = componentIndices[i];
+        switch (kinds[keyIndices[i]]) {
+          case 'Z' -> keys.setBoolean(group, i, cursor.getBoolean(componentIndex));
+          case 'B' -> keys.setByte(group, i, cursor.getByte(componentIndex));
+          case 'S' -> keys.setShort(group, i, cursor.getShort(componentIndex));
+          case 'C' -> keys.setChar(group, i, cursor.getChar(componentIndex));
+          case 'I' -> keys.setInt(group, i, cursor.getInt(componentIndex));
+          case 'F' -> keys.setFloat(group, i, cursor.getFloat(componentIndex));
+          case 'J' -> keys.setLong(group, i, cursor.getLong(componentIndex));
+          case 'D' -> keys.setDouble(group, i, cursor.getDouble(componentIndex));
+          default -> keys.set(group, i, cursor.get(componentIndex));
+        }
+      }
+      if (group == hashes.length) {
+        hashes = Arrays.copyOf(hashes, group << 1);
+        accumulators = Arrays.copyOf(accumulators, (group << 1) * width);
+      }
+      hashes[group] = hash;
+      var base = group * width;
+      for(var aggregate : aggregates) {
+        var offset = base + aggregate.offset;
+        accumulators[offset] = switch (aggregate.operation) {
+          case COUNT -> 0L;
+          case SUM -> aggregate.isFloatingPoint() ? Double.doubleToRawLongBits(0.0) : 0L;
+          case AVERAGE -> {
+            accumulators[offset + 1] = 0L;
+            yield Double.doubleToRawLongBits(0.0);
+          }
+          case MIN -> aggregate.isFloatingPoint() ? Double.doubleToRawLongBits(Double.POSITIVE_INFINITY) : Long.MAX_VALUE;
+          case MAX -> aggregate.isFloatingPoint() ? Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY) : Long.MIN_VALUE;
+        };
+      }
+      return group;
+    }
+
+    private int findOrAddGroup(int hash, Cursor cursor, int[] componentIndices) {
+      var mask = index.length - 1;
+      for(var slot = hash & mask;; slot = (slot + 1) & mask) {
+        var entry = index[slot];
+        if (entry == 0) {
+          var group = addGroup(hash, cursor, componentIndices);
+          index[slot] = group + 1;
+          if (keys.size() == index.length >> 1) {
+            rehash();
+          }
+          return group;
+        }
+        var group = entry - 1;
+        if (hashes[group] == hash && keyEquals(group, cursor, componentIndices)) {
+          return group;
+        }
+      }
+    }
+
+    private void rehash() {
+      var index = new int[this.index.length << 1];
+      var mask = index.length - 1;
+      for(var group = 0; group < keys.size(); group++) {
+        var slot = hashes[group] & mask;
+        while (index[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        index[slot] = group + 1;
+      }
+      this.index = index;
+    }
+
+    private void accumulate(Cursor cursor) {
+      var group = findOrAddGroup(hash(cursor, keyIndices), cursor, keyIndices);
+      var base = group * width;
+      for(var aggregate : aggregates) {
+        var offset = base + aggregate.offset;
+        var componentIndex = aggregate.componentIndex;
+        switch (aggregate.operation) {
+          case COUNT -> accumulators[offset]++;
+          case SUM -> {
+            if (aggregate.isFloatingPoint()) {
+              addDouble(offset, cursor.doubleValue(componentIndex, aggregate.kind));
+            } else {
+              accumulators[offset] += cursor.longValue(componentIndex, aggregate.kind);
+            }
+          }
+          case MIN -> {
+            if (aggregate.isFloatingPoint()) {
+              minDouble(offset, cursor.doubleValue(componentIndex, aggregate.kind));
+            } else {
+              accumulators[offset] = Math.min(accumulators[offset], cursor.longValue(componentIndex, aggregate.kind));
+            }
+          }
+          case MAX -> {
+            if (aggregate.isFloatingPoint()) {
+              maxDouble(offset, cursor.doubleValue(componentIndex, aggregate.kind));
+            } else {
+              accumulators[offset] = Math.max(accumulators[offset], cursor.longValue(componentIndex, aggregate.kind));
+            }
+          }
+          case AVERAGE -> {
+            addDouble(offset, aggregate.isFloatingPoint()
+                ? cursor.doubleValue(componentIndex, aggregate.kind)
+                : cursor.longValue(componentIndex, aggregate.kind));
+            accumulators[offset + 1]++;
+          }
+        }
+      }
+    }
+
+    private void addDouble(int offset, double value) {
+      accumulators[offset] = Double.doubleToRawLongBits(Double.longBitsToDouble(accumulators[offset]) + value);
+    }
+
+    private void minDouble(int offset, double value) {
+      accumulators[offset] = Double.doubleToRawLongBits(Math.min(Double.longBitsToDouble(accumulators[offset]), value));
+    }
+
+    private void maxDouble(int offset, double value) {
+      accumulators[offset] = Double.doubleToRawLongBits(Math.max(Double.longBitsToDouble(accumulators[offset]), value));
+    }
+
+    void accumulate(Object tuple) {
+      factory.requireTuple(tuple);
+      tupleCursor.tuple = tuple;
+      accumulate(tupleCursor);
+    }
+
+    void accumulate(TupleArray array, int row) {
+      arrayCursor.array = array;
+      arrayCursor.row = row;
+      accumulate(arrayCursor);
+    }
+
+    Table merge(Table table) {
+      var cursor = new ArrayCursor();
+      cursor.array = table.keys;
+      var componentIndices = IntStream.range(0, keyIndices.length).toArray();
+      for(var otherGroup = 0; otherGroup < table.keys.size(); otherGroup++) {
+        cursor.row = otherGroup;
+        var group = findOrAddGroup(table.hashes[otherGroup], cursor, componentIndices);
+        var base = group * width;
+        var otherBase = otherGroup * width;
+        for(var aggregate : aggregates) {
+          var offset = base + aggregate.offset;
+          var otherValue = table.accumulators[otherBase + aggregate.offset];
+          switch (aggregate.operation) {
+            case COUNT -> accumulators[offset] += otherValue;
+            case SUM -> {
+              if (aggregate.isFloatingPoint()) {
+                addDouble(offset, Double.longBitsToDouble(otherValue));
+              } else {
+                accumulators[offset] += otherValue;
+              }
+            }
+            case MIN -> {
+              if (aggregate.isFloatingPoint()) {
+                minDouble(offset, Double.longBitsToDouble(otherValue));
+              } else {
+                accumulators[offset] = Math.min(accumulators[offset], otherValue);
+              }
+            }
+            case MAX -> {
+              if (aggregate.isFloatingPoint()) {
+                maxDouble(offset, Double.longBitsToDouble(otherValue));
+              } else {
+                accumulators[offset] = Math.max(accumulators[offset], otherValue);
+              }
+            }
+            case AVERAGE -> {
+              addDouble(offset, Double.longBitsToDouble(otherValue));
+              accumulators[offset + 1] += table.accumulators[otherBase + aggregate.offset + 1];
+            }
+          }
+        }
+      }
+      return this;
+    }
+
+    TupleArray result() {
+      var result = TupleArray.of(resultFactory, keys.size());
+      for(var group = 0; group < keys.size(); group++) {
+        var row = result.addRow();
+        for(var i = 0; i < keyIndices.length; i++) {
+          switch (kinds[keyIndices[i]]) {
+            case 'Z' -> result.setBoolean(row, i, keys.getBoolean(group, i));
+            case 'B' -> result.setByte(row, i, keys.getByte(group, i));
+            case 'S' -> result.setShort(row, i, keys.getShort(group, i));
+            case 'C' -> result.setChar(row, i, keys.getChar(group, i));
+            case 'I' -> result.setInt(row, i, keys.getInt(group, i));
+            case 'F' -> result.setFloat(row, i, keys.getFloat(group, i));
+            case 'J' -> result.setLong(row, i, keys.getLong(group, i));
+            case 'D' -> result.setDouble(row, i, keys.getDouble(group, i));
+            default -> result.set(row, i, keys.get(group, i));
+          }
+        }
+        var base = group * width;
+        for(var a = 0; a < aggregates.size(); a++) {
+          var aggregate = aggregates.get(a);
+          var column = keyIndices.length + a;
+          var value = accumulators[base + aggregate.offset];
+          switch (aggregate.operation) {
+            case COUNT -> result.setLong(row, column, value);
+            case SUM -> {
+              if (aggregate.isFloatingPoint()) {
+                result.setDouble(row, column, Double.longBitsToDouble(value));
+              } else {
+                result.setLong(row, column, value);
+              }
+            }
+            case MIN, MAX -> {
+              switch (aggregate.kind) {
+                case 'B' -> result.setByte(row, column, (byte) value);
+                case 'S' -> result.setShort(row, column, (short) value);
+                case 'C' -> result.setChar(row, column, (char) value);
+                case 'I' -> result.setInt(row, column, (int) value);
+                case 'J' -> result.setLong(row, column, value);
+                case 'F' -> result.setFloat(row, column, (float) Double.longBitsToDouble(value));
+                case 'D' -> result.setDouble(row, column, Double.longBitsToDouble(value));
+                default -> throw new AssertionError();
+              }
+            }
+            case AVERAGE -> result.setDouble(row, column,
+                Double.longBitsToDouble(value) / accumulators[base + aggregate.offset + 1]);
+          }
+        }
+      }
+      return result;
+    }
+  }
+}
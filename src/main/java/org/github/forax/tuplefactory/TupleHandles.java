@@ -0,0 +1,206 @@
+package org.github.forax.tuplefactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Objects;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Hash functions on the components of a tuple, and method handles that compute the same hash
+ * from the components without creating a tuple.
+ * Those are used by the data structures that look up tuples by their components.
+ */
+final class TupleHandles {
+  private TupleHandles() {
+    throw new AssertionError();
+  }
+
+  static int hash(boolean value) {
+    return Boolean.hashCode(value);
+  }
+  static int hash(byte value) {
+    return value;
+  }
+  static int hash(short value) {
+    return value;
+  }
+  static int hash(char value) {
+    return value;
+  }
+  static int hash(int value) {
+    return value;
+  }
+  static int hash(float value) {
+    return Float.hashCode(value);
+  }
+  static int hash(long value) {
+    return Long.hashCode(value);
+  }
+  static int hash(double value) {
+    return Double.hashCode(value);
+  }
+  static int hash(Object value) {
+    return Objects.hashCode(value);
+  }
+
+  // multiplying by the golden ratio instead of 31, so tuples of small values do not collide before being mixed
+  static int combine(int hash, int componentHash) {
+    return (hash + componentHash) * 0x9e3779b9;
+  }
+
+  // the finalizer of murmur3, so consecutive values are spread
+  static int mix(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  static boolean not(boolean value) {
+    return !value;
+  }
+
+  static boolean equals(boolean value1, boolean value2) {
+    return value1 == value2;
+  }
+  static boolean equals(byte value1, byte value2) {
+    return value1 == value2;
+  }
+  static boolean equals(short value1, short value2) {
+    return value1 == value2;
+  }
+  static boolean equals(char value1, char value2) {
+    return value1 == value2;
+  }
+  static boolean equals(int value1, int value2) {
+    return value1 == value2;
+  }
+  static boolean equals(float value1, float value2) {
+    return Float.floatToIntBits(value1) == Float.floatToIntBits(value2);
+  }
+  static boolean equals(long value1, long value2) {
+    return value1 == value2;
+  }
+  static boolean equals(double value1, double value2) {
+    return Double.doubleToLongBits(value1) == Double.doubleToLongBits(value2);
+  }
+  static boolean equals(Object value1, Object value2) {
+    return Objects.equals(value1, value2);
+  }
+
+  /**
+   * Computes the hash of some components of a tuple.
+   * @param factory the factory of the tuple
+   * @param tuple the tuple
+   * @param componentIndices the indices of the components
+   * @return the same value as the method handle returned by {@link #hash(List)}
+   *         called with the values of the components
+   */
+  static int hash(TupleFactoryImpl factory, Object tuple, int[] componentIndices) {
+    var erased = factory.shape.constructor().type();
+    var hash = 0;
+    for(var componentIndex : componentIndices) {
+      var componentHash = switch (erased.parameterType(componentIndex).descriptorString()) {
+        case "Z" -> hash(factory.getBoolean(tuple, componentIndex));
+        case "B" -> hash(factory.getByte(tuple, componentIndex));
+        case "S" -> hash(factory.getShort(tuple, componentIndex));
+        case "C" -> hash(factory.getChar(tuple, componentIndex));
+        case "I" -> hash(factory.getInt(tuple, componentIndex));
+        case "F" -> hash(factory.getFloat(tuple, componentIndex));
+        case "J" -> hash(factory.getLong(tuple, componentIndex));
+        case "D" -> hash(factory.getDouble(tuple, componentIndex));
+        default -> hash((Object) factory.get(tuple, componentIndex));
+      };
+      hash = combine(hash, componentHash);
+    }
+    return mix(hash);
+  }
+
+  private static final MethodHandle COMBINE, MIX, NOT;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      COMBINE = lookup.findStatic(TupleHandles.class, "combine", methodType(int.class, int.class, int.class));
+      MIX = lookup.findStatic(TupleHandles.class, "mix", methodType(int.class, int.class));
+      NOT = lookup.findStatic(TupleHandles.class, "not", methodType(boolean.class, boolean.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static MethodHandle componentHash(Class<?> type) {
+    var erasedType = type.isPrimitive() ? type : Object.class;
+    try {
+      return MethodHandles.lookup().findStatic(TupleHandles.class, "hash", methodType(int.class, erasedType))
+          .asType(methodType(int.class, type));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Returns a method handle that tests if two values of a component are equals,
+   * using the same semantics as the method {@code equals} of a record.
+   * @param type the type of the component
+   * @return a method handle of type (type, type)boolean
+   */
+  static MethodHandle equals(Class<?> type) {
+    var erasedType = type.isPrimitive() ? type : Object.class;
+    try {
+      return MethodHandles.lookup().findStatic(TupleHandles.class, "equals", methodType(boolean.class, erasedType, erasedType))
+          .asType(methodType(boolean.class, type, type));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Returns a method handle that computes the hash of the components.
+   * @param types the types of the components
+   * @return a method handle of type (types)int
+   */
+  static MethodHandle hash(List<Class<?>> types) {
+    var hashType = methodType(int.class, types);
+    var target = MethodHandles.dropArguments(MethodHandles.constant(int.class, 0), 0, types);
+    var reorder = new int[types.size() + 1];
+    for(var i = 0; i < types.size(); i++) {
+      reorder[i] = i;
+    }
+    for(var i = 0; i < types.size(); i++) {
+      // hash = combine(hash, componentHash(value_i))
+      var step = MethodHandles.filterArguments(COMBINE, 1, componentHash(types.get(i)));
+      reorder[types.size()] = i;
+      target = MethodHandles.permuteArguments(MethodHandles.collectArguments(step, 0, target), hashType, reorder);
+    }
+    return MethodHandles.filterReturnValue(target, MIX);
+  }
+
+  /**
+   * Returns a method handle that returns true if all the tests return true.
+   * @param type the type of the tests
+   * @param tests method handles that returns a boolean, all with the same type
+   * @return a method handle that evaluates the tests in order until one returns false
+   */
+  static MethodHandle and(MethodType type, List<MethodHandle> tests) {
+    var falseHandle = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, type.parameterList());
+    var target = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, type.parameterList());
+    for(var i = tests.size(); --i >= 0;) {
+      target = MethodHandles.guardWithTest(tests.get(i), target, falseHandle);
+    }
+    return target;
+  }
+
+  /**
+   * Returns a method handle that negates the result of a test.
+   * @param test a method handle that returns a boolean
+   * @return a method handle that negates the result of the test
+   */
+  static MethodHandle not(MethodHandle test) {
+    return MethodHandles.filterReturnValue(test, NOT);
+  }
+}
@@ -0,0 +1,390 @@
+package org.github.forax.tuplefactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A hash map with tuples of the same shape as keys.
+ * The components of the keys are stored column by column like in a {@link TupleArray},
+ * the table uses open addressing with linear probing, so there is no entry object per mapping.
+ *
+ * A value can be looked up either by a tuple or by the components of a tuple
+ * using the method handle returned by {@link #getter()}, in that case no tuple is created.
+ * <pre>
+ *   var factory = TupleFactory.of(int.class, String.class);
+ *   var map = TupleHashMap.&lt;String&gt;of(factory);
+ *   map.put(factory.tuple(42, "foo"), "bar");
+ *   ...
+ *   private static final MethodHandle GETTER = map.getter();   // (int, String)Object
+ *   ...
+ *   var value = (String) GETTER.invokeExact(42, "foo");
+ * </pre>
+ *
+ * The hash of a key is computed from the hash of its components, using the primitive value of each component,
+ * so the hash of a key is not necessarily the value returned by the method {@code hashCode()} of the tuple.
+ *
+ * This class is not thread safe.
+ *
+ * @param <V> the type of the values
+ * @see #of(TupleFactory)
+ */
+public final class TupleHashMap<V> {
+  private final TupleFactoryImpl factory;
+  private final int[] componentIndices;
+  private Object[] keys;
+  private int[] hashes;
+  private boolean[] used;
+  private Object[] values;
+  private int size;
+  private MethodHandle getter;
+
+  private TupleHashMap(TupleFactoryImpl factory) {
+    this.factory = factory;
+    this.componentIndices = IntStream.range(0, factory.methodType.parameterCount()).toArray();
+    allocate(16);
+  }
+
+  /**
+   * Creates an empty map with tuples of a factory as keys.
+   * @param factory the factory of the keys
+   * @return a new empty map
+   * @param <V> the type of the values
+   * @throws NullPointerException if the factory is null
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  public static <V> TupleHashMap<V> of(TupleFactory factory) {
+    requireNonNull(factory);
+    return new TupleHashMap<>(TupleFactoryImpl.narrow(factory));
+  }
+
+  private void allocate(int capacity) {
+    var erased = factory.shape.constructor().type();
+    var keys = new Object[erased.parameterCount()];
+    for(var i = 0; i < keys.length; i++) {
+      keys[i] = Array.newInstance(erased.parameterType(i), capacity);
+    }
+    this.keys = keys;
+    hashes = new int[capacity];
+    used = new boolean[capacity];
+    values = new Object[capacity];
+  }
+
+  /**
+   * Returns the factory of the keys.
+   * @return the factory of the keys.
+   */
+  public TupleFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Returns the number of mappings.
+   * @return the number of mappings.
+   */
+  public int size() {
+    return size;
+  }
+
+  private boolean keyEquals(int slot, Object tuple) {
+    for(var i = 0; i < keys.length; i++) {
+      var equals = switch (keys[i]) {
+        case boolean[] column -> column[slot] == factory.getBoolean(tuple, i);
+        case byte[] column -> column[slot] == factory.getByte(tuple, i);
+        case short[] column -> column[slot] == factory.getShort(tuple, i);
+        case char[] column -> column[slot] == factory.getChar(tuple, i);
+        case int[] column -> column[slot] == factory.getInt(tuple, i);
+        case float[] column -> Float.floatToIntBits(column[slot]) == Float.floatToIntBits(factory.getFloat(tuple, i));
+        case long[] column -> column[slot] == factory.getLong(tuple, i);
+        case double[] column -> Double.doubleToLongBits(column[slot]) == Double.doubleToLongBits(factory.getDouble(tuple, i));
+        case Object[] column -> Objects.equals(column[slot], factory.get(tuple, i));
+        default -> throw new AssertionError();
+      };
+      if (!equals) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void storeKey(int slot, Object tuple) {
+    for(var i = 0; i < keys.length; i++) {
+      switch (keys[i]) {
+        case boolean[] column -> column[slot] = factory.getBoolean(tuple, i);
+        case byte[] column -> column[slot] = factory.getByte(tuple, i);
+        case short[] column -> column[slot] = factory.getShort(tuple, i);
+        case char[] column -> column[slot] = factory.getChar(tuple, i);
+        case int[] column -> column[slot] = factory.getInt(tuple, i);
+        case float[] column -> column[slot] = factory.getFloat(tuple, i);
+        case long[] column -> column[slot] = factory.getLong(tuple, i);
+        case double[] column -> column[slot] = factory.getDouble(tuple, i);
+        case Object[] column -> column[slot] = factory.get(tuple, i);
+        default -> throw new AssertionError();
+      }
+    }
+  }
+
+  // returns the slot of the key or the empty slot where the key should be inserted
+  private int findSlot(int hash, Object tuple) {
+    var mask = hashes.length - 1;
+    for(var slot = hash & mask;; slot = (slot + 1) & mask) {
+      if (!used[slot] || (hashes[slot] == hash && keyEquals(slot, tuple))) {
+        return slot;
+      }
+    }
+  }
+
+  /**
+   * Returns the value associated to a key.
+   * @param tuple a tuple created by a factory compatible with the factory of this map
+   * @return the value associated to the key or null if there is no mapping
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the factory of this map
+   */
+  @SuppressWarnings("unchecked")
+  public V get(Object tuple) {
+    factory.requireTuple(tuple);
+    var slot = findSlot(TupleHandles.hash(factory, tuple, componentIndices), tuple);
+    return (V) values[slot];
+  }
+
+  /**
+   * Returns true if there is a mapping for a key.
+   * @param tuple a tuple created by a factory compatible with the factory of this map
+   * @return true if there is a mapping for the key
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the factory of this map
+   */
+  public boolean containsKey(Object tuple) {
+    factory.requireTuple(tuple);
+    var slot = findSlot(TupleHandles.hash(factory, tuple, componentIndices), tuple);
+    return used[slot];
+  }
+
+  /**
+   * Associates a value to a key, the components of the key are copied into the map.
+   * @param tuple a tuple created by a factory compatible with the factory of this map
+   * @param value the new value
+   * @return the value previously associated to the key or null
+   * @throws NullPointerException if the tuple or the value is null
+   * @throws ClassCastException if the tuple is not compatible with the factory of this map
+   */
+  @SuppressWarnings("unchecked")
+  public V put(Object tuple, V value) {
+    factory.requireTuple(tuple);
+    requireNonNull(value);
+    var hash = TupleHandles.hash(factory, tuple, componentIndices);
+    var slot = findSlot(hash, tuple);
+    if (used[slot]) {
+      var oldValue = (V) values[slot];
+      values[slot] = value;
+      return oldValue;
+    }
+    storeKey(slot, tuple);
+    hashes[slot] = hash;
+    used[slot] = true;
+    values[slot] = value;
+    if (++size == hashes.length - (hashes.length >> 2)) {
+      rehash();
+    }
+    return null;
+  }
+
+  /**
+   * Removes the mapping of a key.
+   * @param tuple a tuple created by a factory compatible with the factory of this map
+   * @return the value previously associated to the key or null
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the factory of this map
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(Object tuple) {
+    factory.requireTuple(tuple);
+    var slot = findSlot(TupleHandles.hash(factory, tuple, componentIndices), tuple);
+    if (!used[slot]) {
+      return null;
+    }
+    var oldValue = (V) values[slot];
+    // backward shift, move the next keys of the same cluster that can be moved into the hole
+    var mask = hashes.length - 1;
+    var hole = slot;
+    for(var next = (hole + 1) & mask; used[next]; next = (next + 1) & mask) {
+      var home = hashes[next] & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        move(next, hole);
+        hole = next;
+      }
+    }
+    clearSlot(hole);
+    size--;
+    return oldValue;
+  }
+
+  private void move(int from, int to) {
+    for(var column : keys) {
+      System.arraycopy(column, from, column, to, 1);
+    }
+    hashes[to] = hashes[from];
+    values[to] = values[from];
+  }
+
+  private void clearSlot(int slot) {
+    for(var column : keys) {
+      if (column instanceof Object[] objects) {
+        objects[slot] = null;
+      }
+    }
+    used[slot] = false;
+    values[slot] = null;
+  }
+
+  /**
+   * Removes all the mappings.
+   */
+  public void clear() {
+    for(var column : keys) {
+      if (column instanceof Object[] objects) {
+        Arrays.fill(objects, null);
+      }
+    }
+    Arrays.fill(used, false);
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  private void rehash() {
+    var oldKeys = keys;
+    var oldHashes = hashes;
+    var oldUsed = used;
+    var oldValues = values;
+    var newCapacity = oldHashes.length << 1;
+    if (newCapacity < 0) {
+      throw new OutOfMemoryError("map too big");
+    }
+    allocate(newCapacity);
+    var mask = newCapacity - 1;
+    for(var oldSlot = 0; oldSlot < oldHashes.length; oldSlot++) {
+      if (!oldUsed[oldSlot]) {
+        continue;
+      }
+      var hash = oldHashes[oldSlot];
+      var slot = hash & mask;
+      while (used[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      for(var i = 0; i < keys.length; i++) {
+        System.arraycopy(oldKeys[i], oldSlot, keys[i], slot, 1);
+      }
+      hashes[slot] = hash;
+      used[slot] = true;
+      values[slot] = oldValues[oldSlot];
+    }
+  }
+
+  /**
+   * Returns a method handle that takes the components of a key and returns the associated value or null.
+   * The type of the method handle is the type of the {@link TupleFactory#constructor() constructor}
+   * of the factory of this map, the lookup does not create a tuple.
+   * The method handle stays valid when the map is modified.
+   *
+   * @return a method handle that takes the components of a key and returns the associated value.
+   */
+  public MethodHandle getter() {
+    if (getter != null) {
+      return getter;
+    }
+    return getter = createGetter();
+  }
+
+  private MethodHandle createGetter() {
+    var erased = factory.shape.constructor().type();
+    var types = erased.parameterList();
+    var lookup = MethodHandles.lookup();
+    MethodHandle firstSlot, isUsed, nextSlot, valueAt;
+    var keyEqualsList = new ArrayList<MethodHandle>();
+    try {
+      firstSlot = lookup.findVirtual(TupleHashMap.class, "firstSlot", methodType(int.class, int.class)).bindTo(this);
+      isUsed = lookup.findVirtual(TupleHashMap.class, "isUsed", methodType(boolean.class, int.class)).bindTo(this);
+      nextSlot = lookup.findVirtual(TupleHashMap.class, "nextSlot", methodType(int.class, int.class)).bindTo(this);
+      valueAt = lookup.findVirtual(TupleHashMap.class, "valueAt", methodType(Object.class, int.class)).bindTo(this);
+      for(var i = 0; i < types.size(); i++) {
+        var type = types.get(i);
+        var keyEquals = lookup.findVirtual(TupleHashMap.class, "keyEquals", methodType(boolean.class, int.class, int.class, type))
+            .bindTo(this);
+        // (int slot, A0 ... An)boolean
+        keyEquals = MethodHandles.insertArguments(keyEquals, 1, i);
+        keyEquals = MethodHandles.dropArguments(keyEquals, 1, types.subList(0, i));
+        keyEquals = MethodHandles.dropArguments(keyEquals, i + 2, types.subList(i + 1, types.size()));
+        keyEqualsList.add(keyEquals);
+      }
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+
+    // slot = firstSlot(hash(A0 ... An))
+    // while(used[slot] && !keyEquals(slot, A0 ... An)) { slot = nextSlot(slot); }
+    // return valueAt(slot)
+    var init = MethodHandles.filterReturnValue(TupleHandles.hash(types), firstSlot);
+    var predicateType = methodType(boolean.class, int.class).appendParameterTypes(types);
+    var matches = TupleHandles.and(predicateType, keyEqualsList);
+    var falseHandle = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, predicateType.parameterList());
+    var predicate = MethodHandles.guardWithTest(
+        MethodHandles.dropArguments(isUsed, 1, types),
+        TupleHandles.not(matches),
+        falseHandle);
+    var body = MethodHandles.dropArguments(nextSlot, 1, types);
+    var loop = MethodHandles.whileLoop(init, predicate, body);
+    return MethodHandles.filterReturnValue(loop, valueAt).asType(factory.methodType);
+  }
+
+  private int firstSlot(int hash) {
+    return hash & (hashes.length - 1);
+  }
+
+  private boolean isUsed(int slot) {
+    return used[slot];
+  }
+
+  private int nextSlot(int slot) {
+    return (slot + 1) & (hashes.length - 1);
+  }
+
+  private Object valueAt(int slot) {
+    return values[slot];
+  }
+
+  private boolean keyEquals(int slot, int componentIndex, boolean value) {
+    return ((boolean[]) keys[componentIndex])[slot] == value;
+  }
+  private boolean keyEquals(int slot, int componentIndex, byte value) {
+    return ((byte[]) keys[componentIndex])[slot] == value;
+  }
+  private boolean keyEquals(int slot, int componentIndex, short value) {
+    return ((short[]) keys[componentIndex])[slot] == value;
+  }
+  private boolean keyEquals(int slot, int componentIndex, char value) {
+    return ((char[]) keys[componentIndex])[slot] == value;
+  }
+  private boolean keyEquals(int slot, int componentIndex, int value) {
+    return ((int[]) keys[componentIndex])[slot] == value;
+  }
+  private boolean keyEquals(int slot, int componentIndex, float value) {
+    return Float.floatToIntBits(((float[]) keys[componentIndex])[slot]) == Float.floatToIntBits(value);
+  }
+  private boolean keyEquals(int slot, int componentIndex, long value) {
+    return ((long[]) keys[componentIndex])[slot] == value;
+  }
+  private boolean keyEquals(int slot, int componentIndex, double value) {
+    return Double.doubleToLongBits(((double[]) keys[componentIndex])[slot]) == Double.doubleToLongBits(value);
+  }
+  private boolean keyEquals(int slot, int componentIndex, Object value) {
+    return Objects.equals(((Object[]) keys[componentIndex])[slot], value);
+  }
+}
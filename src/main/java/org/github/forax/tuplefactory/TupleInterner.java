@@ -0,0 +1,420 @@
+package org.github.forax.tuplefactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An interner of tuples of the same shape, for equal tuples, it returns the same instance, the canonical tuple.
+ * <pre>
+ *   var factory = TupleFactory.of(String.class, int.class);
+ *   var interner = TupleInterner.weak(factory);
+ *   var tuple = interner.intern(factory.tuple("foo", 42));
+ *   ...
+ *   private static final MethodHandle INTERNER = interner.interner();   // (String, int)Object
+ *   ...
+ *   var tuple = INTERNER.invokeExact("foo", 42);   // only creates a tuple if there is no canonical tuple
+ * </pre>
+ *
+ * There are two kinds of interners
+ * <ul>
+ *   <li>a {@link #weak(TupleFactory) weak} interner references the canonical tuples weakly,
+ *       so a canonical tuple is evicted when it is not used anymore.
+ *   <li>a {@link #bounded(TupleFactory, int) bounded} interner keeps at most a maximum number of canonical tuples,
+ *       when there is no room, a tuple that was not recently used is evicted.
+ * </ul>
+ *
+ * The interner is split in segments, each segment has its own lock which is only taken when a tuple
+ * is not found, so finding a canonical tuple does not require any lock.
+ *
+ * This class is thread safe.
+ *
+ * @see #weak(TupleFactory)
+ * @see #bounded(TupleFactory, int)
+ */
+public final class TupleInterner {
+  private static final int MAX_SEGMENT_COUNT = 16;
+
+  private static final class Entry extends WeakReference<Object> {
+    private final int hash;
+    private final Object strong;  // null if the interner is weak
+    private volatile Entry next;
+    private boolean referenced;   // used by the clock algorithm, racy by design
+
+    private Entry(Object tuple, int hash, boolean bounded, Entry next, ReferenceQueue<Object> queue) {
+      super(tuple, queue);
+      this.hash = hash;
+      this.strong = bounded ? tuple : null;
+      this.next = next;
+    }
+  }
+
+  // an open hash table with a chain of entries per bucket, mutations are done under the lock
+  // lookups are done without the lock and may miss an entry that is being moved, in that case
+  // the lookup is done again under the lock
+  private final class Segment extends ReentrantLock {
+    private final ReferenceQueue<Object> queue;
+    private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(16);
+    private int count;
+    // clock of the bounded interner
+    private final Entry[] clock;
+    private int clockSize;
+    private int hand;
+
+    private Segment(int maximumSize) {
+      this.queue = maximumSize == -1 ? new ReferenceQueue<>() : null;
+      this.clock = maximumSize == -1 ? null : new Entry[maximumSize];
+    }
+
+    private Entry firstEntry(int hash) {
+      var table = this.table;
+      return table.get(hash & (table.length() - 1));
+    }
+
+    private Object find(int hash, Object tuple) {
+      for(var entry = firstEntry(hash); entry != null; entry = entry.next) {
+        if (entry.hash == hash) {
+          var canonical = entry.get();
+          if (tuple.equals(canonical)) {
+            entry.referenced = true;
+            return canonical;
+          }
+        }
+      }
+      return null;
+    }
+
+    private Object intern(int hash, Object tuple) {
+      lock();
+      try {
+        if (queue != null) {
+          expungeStaleEntries();
+        }
+        var canonical = find(hash, tuple);
+        if (canonical != null) {
+          hits.increment();
+          return canonical;
+        }
+        misses.increment();
+        // evict before reading the bucket, the victim may be the first entry of the bucket
+        var slot = clock == null ? -1 : evictIfFull();
+        var table = this.table;
+        var index = hash & (table.length() - 1);
+        var entry = new Entry(tuple, hash, clock != null, table.get(index), queue);
+        if (clock != null) {
+          clock[slot] = entry;
+        }
+        table.set(index, entry);
+        if (++count > (table.length() >> 1) + (table.length() >> 2)) {
+          resize();
+        }
+        return tuple;
+      } finally {
+        unlock();
+      }
+    }
+
+    private void remove(Entry entry) {
+      var table = this.table;
+      var index = entry.hash & (table.length() - 1);
+      var first = table.get(index);
+      if (first == entry) {
+        table.set(index, entry.next);
+        count--;
+        return;
+      }
+      for(var previous = first; previous != null; previous = previous.next) {
+        if (previous.next == entry) {
+          previous.next = entry.next;
+          count--;
+          return;
+        }
+      }
+    }
+
+    private void expungeStaleEntries() {
+      Entry entry;
+      while ((entry = (Entry) queue.poll()) != null) {
+        remove(entry);
+        evictions.increment();
+      }
+    }
+
+    // returns the index of a free slot of the clock, the entry of the slot is evicted if there is no room
+    private int evictIfFull() {
+      if (clockSize < clock.length) {
+        return clockSize++;
+      }
+      for(;;) {
+        var victim = clock[hand];
+        if (victim.referenced) {
+          victim.referenced = false;
+          hand = (hand + 1) % clock.length;
+          continue;
+        }
+        remove(victim);
+        evictions.increment();
+        var slot = hand;
+        hand = (hand + 1) % clock.length;
+        return slot;
+      }
+    }
+
+    private void resize() {
+      var table = this.table;
+      var newTable = new AtomicReferenceArray<Entry>(table.length() << 1);
+      var mask = newTable.length() - 1;
+      for(var i = 0; i < table.length(); i++) {
+        Entry next;
+        for(var entry = table.get(i); entry != null; entry = next) {
+          next = entry.next;
+          var index = entry.hash & mask;
+          entry.next = newTable.get(index);
+          newTable.set(index, entry);
+        }
+      }
+      this.table = newTable;
+    }
+
+    private int size() {
+      lock();
+      try {
+        if (queue != null) {
+          expungeStaleEntries();
+        }
+        return count;
+      } finally {
+        unlock();
+      }
+    }
+  }
+
+  private final TupleFactoryImpl factory;
+  private final int[] componentIndices;
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final MethodHandle interner;
+
+  private TupleInterner(TupleFactoryImpl factory, int segmentCount, int maximumSize) {
+    var segments = new Segment[segmentCount];
+    for(var i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(maximumSize == -1 ? -1 : maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+    }
+    this.factory = factory;
+    this.componentIndices = IntStream.range(0, factory.methodType.parameterCount()).toArray();
+    this.segments = segments;
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    this.interner = createInterner();
+  }
+
+  /**
+   * Creates an interner that references the canonical tuples weakly.
+   * @param factory the factory of the tuples
+   * @return a new interner
+   * @throws NullPointerException if the factory is null
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  public static TupleInterner weak(TupleFactory factory) {
+    requireNonNull(factory);
+    return new TupleInterner(TupleFactoryImpl.narrow(factory), MAX_SEGMENT_COUNT, -1);
+  }
+
+  /**
+   * Creates an interner that keeps at most a maximum number of canonical tuples.
+   * The tuples to evict are chosen using the clock algorithm, an approximation of least recently used,
+   * for each segment.
+   * @param factory the factory of the tuples
+   * @param maximumSize the maximum number of canonical tuples
+   * @return a new interner
+   * @throws NullPointerException if the factory is null
+   * @throws IllegalArgumentException if the maximum size is not positive
+   * @throws UnsupportedOperationException if the tuples are wide
+   */
+  public static TupleInterner bounded(TupleFactory factory, int maximumSize) {
+    requireNonNull(factory);
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize <= 0");
+    }
+    return new TupleInterner(TupleFactoryImpl.narrow(factory), Math.min(MAX_SEGMENT_COUNT, Integer.highestOneBit(maximumSize)), maximumSize);
+  }
+
+  /**
+   * Returns the factory of the tuples.
+   * @return the factory of the tuples.
+   */
+  public TupleFactory factory() {
+    return factory;
+  }
+
+  private Segment segment(int hash) {
+    return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+  }
+
+  /**
+   * Returns the canonical tuple equals to a tuple.
+   * If there is no canonical tuple, the tuple becomes the canonical tuple.
+   * @param tuple a tuple created by a factory compatible with the factory of this interner
+   * @return the canonical tuple equals to the tuple
+   * @throws NullPointerException if the tuple is null
+   * @throws ClassCastException if the tuple is not compatible with the factory of this interner
+   */
+  public Object intern(Object tuple) {
+    factory.requireTuple(tuple);
+    var hash = TupleHandles.hash(factory, tuple, componentIndices);
+    var segment = segment(hash);
+    var canonical = segment.find(hash, tuple);
+    if (canonical != null) {
+      hits.increment();
+      return canonical;
+    }
+    return segment.intern(hash, tuple);
+  }
+
+  /**
+   * Returns a method handle that takes the components of a tuple and returns the canonical tuple.
+   * The type of the method handle is the type of the {@link TupleFactory#constructor() constructor}
+   * of the factory of this interner, a tuple is only created if there is no canonical tuple.
+   *
+   * @return a method handle that takes the components of a tuple and returns the canonical tuple.
+   */
+  public MethodHandle interner() {
+    return interner;
+  }
+
+  /**
+   * Returns the number of canonical tuples.
+   * Because of the concurrent updates, the value returned is an approximation.
+   * @return the number of canonical tuples.
+   */
+  public int size() {
+    var size = 0;
+    for(var segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of calls that found a canonical tuple.
+   * @return the number of calls that found a canonical tuple.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of calls that did not find a canonical tuple.
+   * @return the number of calls that did not find a canonical tuple.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of canonical tuples evicted, either because they were not used anymore
+   * for a weak interner or because there was no room for a bounded interner.
+   * @return the number of canonical tuples evicted.
+   */
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  private Entry firstEntry(int hash) {
+    return segment(hash).firstEntry(hash);
+  }
+
+  private static Object tupleIfHash(Entry entry, int hash) {
+    return entry.hash == hash ? entry.get() : null;
+  }
+
+  private Object hit(Entry entry) {
+    if (entry == null) {
+      return null;
+    }
+    var canonical = entry.get();
+    if (canonical != null) {
+      entry.referenced = true;
+      hits.increment();
+    }
+    return canonical;
+  }
+
+  private Object miss(int hash, Object tuple) {
+    return segment(hash).intern(hash, tuple);
+  }
+
+  private MethodHandle createInterner() {
+    var erased = factory.shape.constructor().type();
+    var types = erased.parameterList();
+    var lookup = MethodHandles.lookup();
+    MethodHandle firstEntry, next, tupleIfHash, hit, miss, isNull;
+    try {
+      firstEntry = lookup.findVirtual(TupleInterner.class, "firstEntry", methodType(Entry.class, int.class)).bindTo(this);
+      next = lookup.findGetter(Entry.class, "next", Entry.class);
+      tupleIfHash = lookup.findStatic(TupleInterner.class, "tupleIfHash", methodType(Object.class, Entry.class, int.class));
+      hit = lookup.findVirtual(TupleInterner.class, "hit", methodType(Object.class, Entry.class)).bindTo(this);
+      miss = lookup.findVirtual(TupleInterner.class, "miss", methodType(Object.class, int.class, Object.class)).bindTo(this);
+      isNull = lookup.findStatic(Objects.class, "isNull", methodType(boolean.class, Object.class));
+    } catch (NoSuchMethodException | NoSuchFieldException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+
+    // matches(Object tuple, A0 ... An)boolean
+    var components = factory.shape.components();
+    var tests = new ArrayList<MethodHandle>();
+    for(var i = 0; i < types.size(); i++) {
+      var test = MethodHandles.filterArguments(TupleHandles.equals(types.get(i)), 0, components.get(i));
+      test = MethodHandles.dropArguments(test, 1, types.subList(0, i));
+      test = MethodHandles.dropArguments(test, i + 2, types.subList(i + 1, types.size()));
+      tests.add(test);
+    }
+    var matchesType = methodType(boolean.class, Object.class).appendParameterTypes(types);
+    var matches = TupleHandles.and(matchesType, tests);
+    var falseHandle = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, matchesType.parameterList());
+    matches = MethodHandles.guardWithTest(isNull.asType(methodType(boolean.class, Object.class)), falseHandle, matches);
+
+    // entry = firstEntry(hash)
+    // while(entry != null && !matches(tupleIfHash(entry, hash), A0 ... An)) { entry = entry.next; }
+    var entryType = methodType(boolean.class, Entry.class, int.class).appendParameterTypes(types);
+    var entryMatches = MethodHandles.collectArguments(matches, 0, tupleIfHash);
+    var init = MethodHandles.dropArguments(firstEntry, 1, types);
+    var predicate = MethodHandles.guardWithTest(
+        MethodHandles.dropArguments(isNull.asType(methodType(boolean.class, Entry.class)), 1, entryType.parameterList().subList(1, entryType.parameterCount())),
+        MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, entryType.parameterList()),
+        TupleHandles.not(entryMatches));
+    var body = MethodHandles.dropArguments(next, 1, entryType.parameterList().subList(1, entryType.parameterCount()));
+    var loop = MethodHandles.whileLoop(init, predicate, body);
+
+    // canonical = hit(entry)
+    // return canonical != null ? canonical : miss(hash, new Tuple(A0 ... An))
+    var missWithComponents = MethodHandles.collectArguments(miss, 1, factory.shape.constructor());
+    var finisher = MethodHandles.guardWithTest(
+        isNull.asType(methodType(boolean.class, Object.class)),
+        MethodHandles.dropArguments(missWithComponents, 0, Object.class),
+        MethodHandles.dropArguments(MethodHandles.identity(Object.class), 1, entryType.parameterList().subList(1, entryType.parameterCount())));
+    finisher = MethodHandles.filterArguments(finisher, 0, hit);
+
+    // (int hash, A0 ... An)Object
+    var hashType = methodType(Object.class, int.class).appendParameterTypes(types);
+    var reorder = new int[2 * hashType.parameterCount()];
+    for(var i = 0; i < hashType.parameterCount(); i++) {
+      reorder[i] = i;
+      reorder[hashType.parameterCount() + i] = i;
+    }
+    var target = MethodHandles.permuteArguments(MethodHandles.collectArguments(finisher, 0, loop), hashType, reorder);
+    return MethodHandles.foldArguments(target, TupleHandles.hash(types)).asType(factory.methodType);
+  }
+}
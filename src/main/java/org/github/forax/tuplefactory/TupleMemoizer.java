@@ -0,0 +1,332 @@
+package org.github.forax.tuplefactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A memoizer caches the values returned by a function, a method handle, using the arguments as key.
+ * The keys are tuples created by a factory of tuples with the parameter types of the method handle,
+ * the key is created from the arguments using the {@link TupleFactory#constructor() constructor} of the factory,
+ * so no array is allocated and the primitive arguments are not boxed.
+ * <pre>
+ *   private static final MethodHandle DISTANCE = ...   // (String, String)int
+ *   private static final TupleMemoizer MEMOIZER = TupleMemoizer.of(DISTANCE, CacheOptions.bounded(10_000));
+ *   private static final MethodHandle MEMOIZED_DISTANCE = MEMOIZER.memoized();   // (String, String)int
+ *   ...
+ *   var distance = (int) MEMOIZED_DISTANCE.invokeExact("kitten", "sitting");
+ * </pre>
+ *
+ * The cache is bounded, when there is no room, a value that was not recently used is evicted,
+ * the values can also be evicted after a duration.
+ * If several threads call the memoized method handle with the same arguments and the value is not cached,
+ * only one thread calls the method handle, the other threads wait for the value.
+ * If the method handle throws an exception, the exception is propagated to all the waiting threads
+ * and no value is cached.
+ *
+ * This class is thread safe.
+ *
+ * @see #of(MethodHandle, CacheOptions)
+ */
+public final class TupleMemoizer {
+  /**
+   * The options of the cache of a memoizer.
+   *
+   * @param maximumSize the maximum number of values cached
+   * @param expireAfterWrite the duration after which a value is evicted or null if the values do not expire
+   *
+   * @see #bounded(int)
+   */
+  public record CacheOptions(int maximumSize, Duration expireAfterWrite) {
+    /**
+     * Creates options of a cache.
+     * @param maximumSize the maximum number of values cached
+     * @param expireAfterWrite the duration after which a value is evicted or null if the values do not expire
+     * @throws IllegalArgumentException if the maximum size or the duration is not positive
+     */
+    public CacheOptions {
+      if (maximumSize <= 0) {
+        throw new IllegalArgumentException("maximumSize <= 0");
+      }
+      if (expireAfterWrite != null && (expireAfterWrite.isNegative() || expireAfterWrite.isZero())) {
+        throw new IllegalArgumentException("expireAfterWrite is not positive " + expireAfterWrite);
+      }
+    }
+
+    /**
+     * Returns the options of a cache that keeps at most a maximum number of values that do not expire.
+     * @param maximumSize the maximum number of values cached
+     * @return the options of a cache that keeps at most a maximum number of values.
+     * @throws IllegalArgumentException if the maximum size is not positive
+     */
+    public static CacheOptions bounded(int maximumSize) {
+      return new CacheOptions(maximumSize, null);
+    }
+
+    /**
+     * Returns the same options with the values evicted after a duration.
+     * @param expireAfterWrite the duration after which a value is evicted
+     * @return the same options with the values evicted after a duration.
+     * @throws NullPointerException if the duration is null
+     * @throws IllegalArgumentException if the duration is not positive
+     */
+    public CacheOptions withExpireAfterWrite(Duration expireAfterWrite) {
+      requireNonNull(expireAfterWrite);
+      return new CacheOptions(maximumSize, expireAfterWrite);
+    }
+  }
+
+  // the value is computed by the owner thread, the other threads wait for the future
+  private static final class Entry {
+    private final Object key;
+    private final CompletableFuture<Object> future = new CompletableFuture<>();
+    private volatile Thread owner;
+    private volatile long expiration;  // in nanoseconds, only if the values expire
+    private volatile boolean referenced;  // used by the clock algorithm, racy by design
+
+    private Entry(Object key, Thread owner) {
+      this.key = key;
+      this.owner = owner;
+    }
+  }
+
+  private final MethodHandle target;
+  private final TupleFactory factory;
+  private final int maximumSize;
+  private final long expireAfterWriteNanos;  // -1 if the values do not expire
+  private final ConcurrentHashMap<Object, Entry> map = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  // clock of the keys, mutations are done under the lock,
+  // a key is tracked by at most one slot of the clock, clockKeys contains the keys of the clock
+  private final ReentrantLock lock = new ReentrantLock();
+  private final ArrayList<Object> clock = new ArrayList<>();
+  private final HashSet<Object> clockKeys = new HashSet<>();
+  private int hand;
+  private final MethodHandle memoized;
+
+  private TupleMemoizer(MethodHandle target, CacheOptions options) {
+    this.target = target;
+    this.factory = TupleFactoryImpl.createTupleFactory(target.type().changeReturnType(Object.class),
+        EnumSet.of(TupleFactory.Option.INLINE_EQUALS_HASHCODE));
+    this.maximumSize = options.maximumSize;
+    this.expireAfterWriteNanos = options.expireAfterWrite == null ? -1 : options.expireAfterWrite.toNanos();
+    this.memoized = createMemoized();
+  }
+
+  /**
+   * Creates a memoizer of a method handle.
+   * The tuples used as keys use the option {@link TupleFactory.Option#INLINE_EQUALS_HASHCODE}
+   * so the hash of the arguments is spread.
+   *
+   * @param target the method handle to memoize
+   * @param options the options of the cache
+   * @return a new memoizer
+   * @throws NullPointerException if the method handle or the options is null
+   */
+  public static TupleMemoizer of(MethodHandle target, CacheOptions options) {
+    requireNonNull(target);
+    requireNonNull(options);
+    return new TupleMemoizer(target, options);
+  }
+
+  /**
+   * Returns the factory of the tuples used as keys.
+   * @return the factory of the tuples used as keys.
+   */
+  public TupleFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Returns a method handle with the same type as the memoized method handle that returns
+   * the cached value if the arguments are equal to the arguments of a previous call.
+   * For good performance, the method handle should be stored as static final constant.
+   *
+   * @return a method handle that returns the cached value or calls the memoized method handle.
+   */
+  public MethodHandle memoized() {
+    return memoized;
+  }
+
+  /**
+   * Returns the number of values cached, including the values being computed.
+   * Because of the concurrent updates, the value returned is an approximation.
+   * @return the number of values cached.
+   */
+  public int size() {
+    return map.size();
+  }
+
+  /**
+   * Returns the number of calls that found a cached value or a value being computed.
+   * @return the number of calls that found a cached value or a value being computed.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of calls that called the memoized method handle.
+   * @return the number of calls that called the memoized method handle.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of values evicted, either because there was no room or because the value has expired.
+   * @return the number of values evicted.
+   */
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  private boolean isExpired(Entry entry) {
+    return expireAfterWriteNanos != -1 && entry.future.isDone() && System.nanoTime() - entry.expiration > 0;
+  }
+
+  // returns the entry of the key, if there is no entry or if the entry has expired,
+  // a new entry owned by the current thread is inserted
+  private Entry entry(Object key) {
+    var entry = map.get(key);
+    if (entry != null && !isExpired(entry)) {
+      entry.referenced = true;
+      hits.increment();
+      return entry;
+    }
+    var newEntry = new Entry(key, Thread.currentThread());
+    for(;;) {
+      if (entry == null) {
+        entry = map.putIfAbsent(key, newEntry);
+        if (entry == null) {
+          misses.increment();
+          evictIfFull(key);
+          return newEntry;
+        }
+      }
+      if (!isExpired(entry)) {
+        entry.referenced = true;
+        hits.increment();
+        return entry;
+      }
+      if (map.replace(key, entry, newEntry)) {
+        misses.increment();
+        evictions.increment();
+        return newEntry;
+      }
+      entry = map.get(key);
+    }
+  }
+
+  // the clock algorithm, an approximation of least recently used
+  private void evictIfFull(Object key) {
+    lock.lock();
+    try {
+      if (clockKeys.contains(key)) {
+        return;  // the key was removed by fail() and inserted again, it is still in the clock
+      }
+      if (clock.size() < maximumSize) {
+        clockKeys.add(key);
+        clock.add(key);
+        return;
+      }
+      for(;;) {
+        var victimKey = clock.get(hand);
+        var victim = map.get(victimKey);
+        if (victim != null) {
+          if (victim.referenced) {
+            victim.referenced = false;
+            hand = (hand + 1) % maximumSize;
+            continue;
+          }
+          if (!map.remove(victimKey, victim)) {
+            continue;  // the entry was replaced concurrently, read the new entry
+          }
+          evictions.increment();
+        }
+        // the victim is not in the map anymore, the slot can be reused
+        clockKeys.remove(victimKey);
+        clockKeys.add(key);
+        clock.set(hand, key);
+        hand = (hand + 1) % maximumSize;
+        return;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static boolean isOwner(Entry entry) {
+    return entry.owner == Thread.currentThread();
+  }
+
+  private Object complete(Entry entry, Object value) {
+    if (expireAfterWriteNanos != -1) {
+      entry.expiration = System.nanoTime() + expireAfterWriteNanos;
+    }
+    entry.owner = null;
+    entry.future.complete(value);
+    return value;
+  }
+
+  private Object fail(Throwable throwable, Entry entry) throws Throwable {
+    map.remove(entry.key, entry);
+    entry.owner = null;
+    entry.future.completeExceptionally(throwable);
+    throw throwable;
+  }
+
+  private static Object await(Entry entry) throws Throwable {
+    var future = entry.future;
+    if (future.state() == CompletableFuture.State.SUCCESS) {
+      return future.resultNow();
+    }
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw e.getCause();
+    }
+  }
+
+  private MethodHandle createMemoized() {
+    var types = target.type().parameterList();
+    var lookup = MethodHandles.lookup();
+    MethodHandle entry, isOwner, complete, fail, await;
+    try {
+      entry = lookup.findVirtual(TupleMemoizer.class, "entry", methodType(Entry.class, Object.class)).bindTo(this);
+      isOwner = lookup.findStatic(TupleMemoizer.class, "isOwner", methodType(boolean.class, Entry.class));
+      complete = lookup.findVirtual(TupleMemoizer.class, "complete", methodType(Object.class, Entry.class, Object.class)).bindTo(this);
+      fail = lookup.findVirtual(TupleMemoizer.class, "fail", methodType(Object.class, Throwable.class, Entry.class)).bindTo(this);
+      await = lookup.findStatic(TupleMemoizer.class, "await", methodType(Object.class, Entry.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+
+    // try { return complete(entry, target(A0 ... An)); } catch(Throwable t) { return fail(t, entry); }
+    var compute = MethodHandles.collectArguments(complete, 1, target.asType(target.type().changeReturnType(Object.class)));
+    compute = MethodHandles.catchException(compute, Throwable.class, MethodHandles.dropArguments(fail, 2, types));
+
+    // isOwner(entry) ? compute(entry, A0 ... An) : await(entry)
+    var value = MethodHandles.guardWithTest(
+        MethodHandles.dropArguments(isOwner, 1, types),
+        compute,
+        MethodHandles.dropArguments(await, 1, types));
+
+    // entry = entry(new Tuple(A0 ... An))
+    var keyEntry = MethodHandles.filterReturnValue(factory.constructor(), entry);
+    return MethodHandles.foldArguments(value, keyEntry).asType(target.type());
+  }
+}
@@ -0,0 +1,528 @@
+package org.github.forax.tuplefactory;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A parser of delimited text (CSV, TSV, etc.) that creates one tuple per line,
+ * the type of each column is the type of the corresponding component of the factory.
+ * The numeric columns are parsed directly from the bytes, without creating a String,
+ * and the values are sent to the constructor of the tuple without being boxed.
+ * <pre>
+ *   var factory = TupleFactory.of(long.class, int.class, double.class, String.class);
+ *   var parser = TupleParser.of(factory, ',');
+ *   try(var channel = FileChannel.open(path);
+ *       var arena = Arena.ofShared()) {
+ *     var segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+ *     var count = parser.parse(segment, ForkJoinPool.commonPool(), tuple -> ...);
+ *   }
+ * </pre>
+ *
+ * The text is encoded in UTF-8, the lines are separated by {@code '\n'} or {@code "\r\n"}, the empty lines are skipped.
+ * A value can not be quoted so it can not contain the delimiter or a line separator.
+ * A boolean column contains either {@code true} or {@code false} (ignoring case),
+ * a char column contains exactly one character and a String column can be empty.
+ *
+ * This class is thread safe.
+ *
+ * @see #of(TupleFactory, char)
+ */
+public final class TupleParser {
+  private static final int BUFFER_SIZE = 8_192;
+  private static final long CHUNK_SIZE = 1 << 20;
+
+  private final TupleFactoryImpl factory;
+  private final byte delimiter;
+  private final MethodHandle rowConstructor;
+
+  private TupleParser(TupleFactoryImpl factory, byte delimiter) {
+    this.factory = factory;
+    this.delimiter = delimiter;
+    this.rowConstructor = rowConstructor(factory.shape.constructor());
+  }
+
+  /**
+   * Creates a parser of delimited text.
+   * @param factory the factory of the tuples
+   * @param delimiter the delimiter of the values of a line, an ASCII character
+   * @return a new parser
+   * @throws NullPointerException if the factory is null
+   * @throws IllegalArgumentException if the delimiter is not an ASCII character or is a line separator
+   * @throws UnsupportedOperationException if one of the components of the factory is
+   *         neither a primitive type nor a super type of String or if the tuples are wide
+   */
+  public static TupleParser of(TupleFactory factory, char delimiter) {
+    requireNonNull(factory);
+    if (delimiter >= 0x80 || delimiter == '\n' || delimiter == '\r') {
+      throw new IllegalArgumentException("invalid delimiter " + (int) delimiter);
+    }
+    var factoryImpl = TupleFactoryImpl.narrow(factory);
+    var methodType = factoryImpl.methodType;
+    for(var i = 0; i < methodType.parameterCount(); i++) {
+      var type = methodType.parameterType(i);
+      if (!type.isPrimitive() && !type.isAssignableFrom(String.class)) {
+        throw new UnsupportedOperationException("component " + i + " is a " + type.getName() + " not a primitive type or a String");
+      }
+    }
+    return new TupleParser(factoryImpl, (byte) delimiter);
+  }
+
+  /**
+   * Returns the factory of the tuples created by this parser.
+   * @return the factory of the tuples created by this parser.
+   */
+  public TupleFactory factory() {
+    return factory;
+  }
+
+  /**
+   * The position of the parser inside a line, each parse method reads the value at the current position
+   * and moves the position after the next delimiter.
+   */
+  private static final class Cursor {
+    private final MemorySegment segment;
+    private final byte delimiter;
+    private final long base;
+    private long position;
+
+    private Cursor(MemorySegment segment, byte delimiter, long base) {
+      this.segment = segment;
+      this.delimiter = delimiter;
+      this.base = base;
+    }
+
+    private byte get(long offset) {
+      return segment.get(JAVA_BYTE, offset);
+    }
+
+    // returns the end of the current value
+    private long valueEnd(long lineEnd) {
+      if (position > lineEnd) {
+        throw new IllegalArgumentException("missing value at offset " + (base + lineEnd));
+      }
+      var offset = position;
+      while (offset < lineEnd && get(offset) != delimiter) {
+        offset++;
+      }
+      return offset;
+    }
+
+    private IllegalArgumentException invalid(String typeName, long start) {
+      return new IllegalArgumentException("invalid " + typeName + " at offset " + (base + start));
+    }
+
+    private String string(long start, long end) {
+      var bytes = segment.asSlice(start, end - start).toArray(JAVA_BYTE);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  // creates a method handle (Cursor cursor, long lineEnd)Object that parses the values of a line
+  private static MethodHandle rowConstructor(MethodHandle constructor) {
+    var elementGetters = new MethodHandle[constructor.type().parameterCount()];
+    for(var i = 0; i < elementGetters.length; i++) {
+      var type = constructor.type().parameterType(i);
+      var name = type.isPrimitive() ? "parse" + Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1) : "parseString";
+      var returnType = type.isPrimitive() ? type : String.class;
+      try {
+        elementGetters[i] = LOOKUP.findStatic(TupleParser.class, name, methodType(returnType, Cursor.class, long.class))
+            .asType(methodType(type, Cursor.class, long.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+    return TupleFactoryImpl.rowConstructor(constructor, elementGetters, methodType(Object.class, Cursor.class, long.class));
+  }
+
+  private static boolean parseBoolean(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var end = cursor.valueEnd(lineEnd);
+    cursor.position = end + 1;
+    var length = end - start;
+    if (length == 4 && matches(cursor, start, "true")) {
+      return true;
+    }
+    if (length == 5 && matches(cursor, start, "false")) {
+      return false;
+    }
+    throw cursor.invalid("boolean", start);
+  }
+
+  // ASCII case-insensitive comparison with a lower case text
+  private static boolean matches(Cursor cursor, long start, String text) {
+    for(var i = 0; i < text.length(); i++) {
+      if ((cursor.get(start + i) | 0x20) != text.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte parseByte(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var value = parseInteger(cursor, lineEnd, "byte");
+    if (value != (byte) value) {
+      throw cursor.invalid("byte", start);
+    }
+    return (byte) value;
+  }
+
+  private static short parseShort(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var value = parseInteger(cursor, lineEnd, "short");
+    if (value != (short) value) {
+      throw cursor.invalid("short", start);
+    }
+    return (short) value;
+  }
+
+  private static char parseChar(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var end = cursor.valueEnd(lineEnd);
+    cursor.position = end + 1;
+    if (end - start == 1) {
+      var b = cursor.get(start);
+      if (b >= 0) {  // ASCII, the common case
+        return (char) b;
+      }
+    }
+    var string = cursor.string(start, end);
+    if (string.length() != 1) {
+      throw cursor.invalid("char", start);
+    }
+    return string.charAt(0);
+  }
+
+  private static int parseInt(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var value = parseInteger(cursor, lineEnd, "int");
+    if (value != (int) value) {
+      throw cursor.invalid("int", start);
+    }
+    return (int) value;
+  }
+
+  private static long parseLong(Cursor cursor, long lineEnd) {
+    return parseInteger(cursor, lineEnd, "long");
+  }
+
+  // the value is accumulated as a negative number, so Long.MIN_VALUE can be parsed
+  private static long parseInteger(Cursor cursor, long lineEnd, String typeName) {
+    var start = cursor.position;
+    var end = cursor.valueEnd(lineEnd);
+    cursor.position = end + 1;
+    var offset = start;
+    var negative = false;
+    if (offset < end) {
+      var b = cursor.get(offset);
+      if (b == '-' || b == '+') {
+        negative = b == '-';
+        offset++;
+      }
+    }
+    if (offset == end) {
+      throw cursor.invalid(typeName, start);
+    }
+    var value = 0L;
+    for(; offset < end; offset++) {
+      var digit = cursor.get(offset) - '0';
+      if (digit < 0 || digit > 9 || value < Long.MIN_VALUE / 10) {
+        throw cursor.invalid(typeName, start);
+      }
+      value *= 10;
+      if (value < Long.MIN_VALUE + digit) {
+        throw cursor.invalid(typeName, start);
+      }
+      value -= digit;
+    }
+    if (negative) {
+      return value;
+    }
+    if (value == Long.MIN_VALUE) {
+      throw cursor.invalid(typeName, start);
+    }
+    return -value;
+  }
+
+  private static float parseFloat(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var end = cursor.valueEnd(lineEnd);
+    cursor.position = end + 1;
+    return (float) parseDecimal(cursor, start, end, true);
+  }
+
+  private static double parseDouble(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var end = cursor.valueEnd(lineEnd);
+    cursor.position = end + 1;
+    return parseDecimal(cursor, start, end, false);
+  }
+
+  private static final double[] DOUBLE_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+      1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+  private static final float[] FLOAT_POWERS_OF_TEN = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+  // the fast path (Clinger's algorithm) is used if the decimal significand and the power of ten
+  // are both exactly representable, so the result of the multiplication or the division is correctly rounded,
+  // otherwise (too many digits, large exponent, NaN, Infinity, hexadecimal, etc.) Double.parseDouble()
+  // or Float.parseFloat() is called. If asFloat is true, the result is a float value.
+  private static double parseDecimal(Cursor cursor, long start, long end, boolean asFloat) {
+    var offset = start;
+    var negative = false;
+    if (offset < end) {
+      var b = cursor.get(offset);
+      if (b == '-' || b == '+') {
+        negative = b == '-';
+        offset++;
+      }
+    }
+    var significand = 0L;
+    var significantDigits = 0;
+    var exponent = 0;
+    var hasDigit = false;
+    var truncated = false;
+    for(; offset < end; offset++) {
+      var digit = cursor.get(offset) - '0';
+      if (digit < 0 || digit > 9) {
+        break;
+      }
+      hasDigit = true;
+      if (significantDigits < 18) {
+        significand = significand * 10 + digit;
+        significantDigits += significand == 0 ? 0 : 1;
+      } else {
+        exponent++;
+        truncated |= digit != 0;
+      }
+    }
+    if (offset < end && cursor.get(offset) == '.') {
+      for(offset++; offset < end; offset++) {
+        var digit = cursor.get(offset) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        hasDigit = true;
+        if (significantDigits < 18) {
+          significand = significand * 10 + digit;
+          significantDigits += significand == 0 ? 0 : 1;
+          exponent--;
+        } else {
+          truncated |= digit != 0;
+        }
+      }
+    }
+    if (hasDigit && offset < end && (cursor.get(offset) | 0x20) == 'e') {
+      offset++;
+      var negativeExponent = false;
+      if (offset < end) {
+        var b = cursor.get(offset);
+        if (b == '-' || b == '+') {
+          negativeExponent = b == '-';
+          offset++;
+        }
+      }
+      var exponentStart = offset;
+      var exponentValue = 0;
+      for(; offset < end; offset++) {
+        var digit = cursor.get(offset) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        exponentValue = Math.min(exponentValue * 10 + digit, 100_000);
+      }
+      if (offset == exponentStart) {
+        hasDigit = false;  // no digit after 'e'
+      }
+      exponent += negativeExponent ? -exponentValue : exponentValue;
+    }
+    if (hasDigit && offset == end && !truncated) {
+      if (asFloat) {
+        if (significand <= 1 << 24 && exponent >= -10 && exponent <= 10) {
+          var value = exponent >= 0 ? significand * FLOAT_POWERS_OF_TEN[exponent] : significand / FLOAT_POWERS_OF_TEN[-exponent];
+          return negative ? -value : value;
+        }
+      } else {
+        if (significand <= 1L << 53 && exponent >= -22 && exponent <= 22) {
+          var value = exponent >= 0 ? significand * DOUBLE_POWERS_OF_TEN[exponent] : significand / DOUBLE_POWERS_OF_TEN[-exponent];
+          return negative ? -value : value;
+        }
+      }
+    }
+    var text = cursor.string(start, end);
+    try {
+      return asFloat ? Float.parseFloat(text) : Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw cursor.invalid(asFloat ? "float" : "double", start);
+    }
+  }
+
+  private static String parseString(Cursor cursor, long lineEnd) {
+    var start = cursor.position;
+    var end = cursor.valueEnd(lineEnd);
+    cursor.position = end + 1;
+    return cursor.string(start, end);
+  }
+
+  private static long indexOfNewLine(MemorySegment segment, long start, long end) {
+    for(var offset = start; offset < end; offset++) {
+      if (segment.get(JAVA_BYTE, offset) == '\n') {
+        return offset;
+      }
+    }
+    return end;
+  }
+
+  // parses the lines between start and end, end is either the end of the text or just after a '\n'
+  private long parseLines(MemorySegment segment, long base, long start, long end, Consumer<Object> consumer) {
+    var cursor = new Cursor(segment, delimiter, base);
+    var count = 0L;
+    var offset = start;
+    while (offset < end) {
+      var newLine = indexOfNewLine(segment, offset, end);
+      var lineEnd = newLine;
+      if (lineEnd > offset && segment.get(JAVA_BYTE, lineEnd - 1) == '\r') {
+        lineEnd--;
+      }
+      if (lineEnd > offset) {
+        cursor.position = offset;
+        Object tuple;
+        try {
+          tuple = (Object) rowConstructor.invokeExact(cursor, lineEnd);
+        } catch (Throwable e) {
+          throw TupleFactoryImpl.rethrow(e);
+        }
+        if (cursor.position <= lineEnd) {
+          throw new IllegalArgumentException("too many values at offset " + (base + cursor.position));
+        }
+        consumer.accept(tuple);
+        count++;
+      }
+      offset = newLine + 1;
+    }
+    return count;
+  }
+
+  /**
+   * Parses all the lines of a memory segment, for example a memory mapped file,
+   * and sends the tuples to a consumer in the order of the lines.
+   * @param segment the memory segment containing the text
+   * @param consumer the consumer of the tuples
+   * @return the number of tuples
+   * @throws NullPointerException if either the segment or the consumer is null
+   * @throws IllegalArgumentException if a line can not be parsed
+   */
+  public long parse(MemorySegment segment, Consumer<Object> consumer) {
+    requireNonNull(segment);
+    requireNonNull(consumer);
+    return parseLines(segment, 0, 0, segment.byteSize(), consumer);
+  }
+
+  /**
+   * Parses all the lines of a memory segment, for example a memory mapped file,
+   * by splitting the segment in chunks of lines parsed in parallel in a fork join pool.
+   * The consumer is called by several threads and the tuples are not sent in the order of the lines.
+   * @param segment the memory segment containing the text, it should be accessible from the threads of the pool
+   * @param pool the fork join pool
+   * @param consumer a thread safe consumer of the tuples
+   * @return the number of tuples
+   * @throws NullPointerException if either the segment, the pool or the consumer is null
+   * @throws IllegalArgumentException if a line can not be parsed
+   */
+  public long parse(MemorySegment segment, ForkJoinPool pool, Consumer<Object> consumer) {
+    requireNonNull(segment);
+    requireNonNull(pool);
+    requireNonNull(consumer);
+    return pool.invoke(new ParseTask(this, segment, 0, segment.byteSize(), consumer));
+  }
+
+  private static final class ParseTask extends RecursiveTask<Long> {
+    private final TupleParser parser;
+    private final MemorySegment segment;
+    private final long start;
+    private final long end;
+    private final Consumer<Object> consumer;
+
+    private ParseTask(TupleParser parser, MemorySegment segment, long start, long end, Consumer<Object> consumer) {
+      this.parser = parser;
+      this.segment = segment;
+      this.start = start;
+      this.end = end;
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected Long compute() {
+      if (end - start > CHUNK_SIZE) {
+        // split after the first '\n' following the middle
+        var middle = indexOfNewLine(segment, start + (end - start) / 2, end) + 1;
+        if (middle < end) {
+          var left = new ParseTask(parser, segment, start, middle, consumer);
+          left.fork();
+          var right = new ParseTask(parser, segment, middle, end, consumer).compute();
+          return left.join() + right;
+        }
+      }
+      return parser.parseLines(segment, 0, start, end, consumer);
+    }
+  }
+
+  /**
+   * Reads and parses all the lines of a channel and sends the tuples to a consumer in the order of the lines.
+   * The bytes are read in a buffer which is enlarged if a line is bigger than the buffer.
+   * @param channel a blocking channel
+   * @param consumer the consumer of the tuples
+   * @return the number of tuples
+   * @throws NullPointerException if either the channel or the consumer is null
+   * @throws IllegalArgumentException if a line can not be parsed
+   * @throws IOException if an I/O error occurs
+   */
+  public long parse(ReadableByteChannel channel, Consumer<Object> consumer) throws IOException {
+    requireNonNull(channel);
+    requireNonNull(consumer);
+    var array = new byte[BUFFER_SIZE];
+    var limit = 0;
+    var base = 0L;
+    var count = 0L;
+    for(;;) {
+      if (limit == array.length) {
+        array = Arrays.copyOf(array, array.length << 1);
+      }
+      var read = channel.read(ByteBuffer.wrap(array, limit, array.length - limit));
+      if (read == -1) {
+        return count + parseLines(MemorySegment.ofArray(array), base, 0, limit, consumer);
+      }
+      // only the bytes just read can contain a '\n', the bytes before are the beginning of a line
+      var lastNewLine = limit + read - 1;
+      while (lastNewLine >= limit && array[lastNewLine] != '\n') {
+        lastNewLine--;
+      }
+      var hasNewLine = lastNewLine >= limit;
+      limit += read;
+      if (!hasNewLine) {
+        continue;
+      }
+      var lineCount = lastNewLine + 1;
+      count += parseLines(MemorySegment.ofArray(array), base, 0, lineCount, consumer);
+      System.arraycopy(array, lineCount, array, 0, limit - lineCount);
+      limit -= lineCount;
+      base += lineCount;
+    }
+  }
+}
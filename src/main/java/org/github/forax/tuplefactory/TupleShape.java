@@ -0,0 +1,50 @@
+package org.github.forax.tuplefactory;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a shape of tuples whose classes should be generated at compile time
+ * by the annotation processor {@link TupleShapeProcessor}, instead of being generated at runtime
+ * the first time {@link TupleFactory#of(java.util.Set, Class[])} is called with that shape.
+ * <pre>
+ *   &#64;TupleShape({String.class, int.class})
+ *   &#64;TupleShape(value = {boolean.class, boolean.class, long.class}, options = TupleFactory.Option.COMPACT)
+ *   class Shapes {}
+ * </pre>
+ * Only the erasure of the types matters, all the types that are not primitive types are equivalent to Object.
+ *
+ * @see TupleShapeProcessor
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.PACKAGE})
+@Repeatable(TupleShape.List.class)
+public @interface TupleShape {
+  /**
+   * Returns the types of the components of the tuple.
+   * @return the types of the components of the tuple.
+   */
+  Class<?>[] value();
+
+  /**
+   * Returns the options used to generate the tuple class.
+   * @return the options used to generate the tuple class.
+   */
+  TupleFactory.Option[] options() default {};
+
+  /**
+   * The container of several {@link TupleShape} annotations.
+   */
+  @Retention(RetentionPolicy.SOURCE)
+  @Target({ElementType.TYPE, ElementType.PACKAGE})
+  @interface List {
+    /**
+     * Returns the tuple shapes.
+     * @return the tuple shapes.
+     */
+    TupleShape[] value();
+  }
+}
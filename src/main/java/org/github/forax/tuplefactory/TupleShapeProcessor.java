@@ -0,0 +1,136 @@
+package org.github.forax.tuplefactory;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An annotation processor that generates the classes of the shapes declared with {@link TupleShape},
+ * so {@link TupleFactory#of(Set, Class[])} loads them instead of generating them at runtime.
+ * Unlike the classes generated at runtime, the pregenerated classes are not hidden classes,
+ * so they can be stored in a CDS archive or an AOT cache.
+ *
+ * The processor is not registered as a service, it has to be enabled explicitly and because the classes
+ * are generated using the ClassFile API, javac has to run with the preview features enabled
+ * <pre>
+ *   javac -J--enable-preview -processor org.github.forax.tuplefactory.TupleShapeProcessor ...
+ * </pre>
+ *
+ * The generated classes are in the package {@code org.github.forax.tuplefactory},
+ * they must be loaded by the same class loader as the classes of this library,
+ * by example, by adding the output directory of the compilation to the class path.
+ *
+ * @see TupleShape
+ */
+@SupportedAnnotationTypes({"org.github.forax.tuplefactory.TupleShape", "org.github.forax.tuplefactory.TupleShape.List"})
+public final class TupleShapeProcessor extends AbstractProcessor {
+  private final HashSet<String> generated = new HashSet<>();
+
+  /**
+   * Creates an annotation processor.
+   */
+  public TupleShapeProcessor() {}
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for(var annotation : annotations) {
+      for(var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        for(var annotationMirror : element.getAnnotationMirrors()) {
+          var name = ((TypeElement) annotationMirror.getAnnotationType().asElement()).getQualifiedName().toString();
+          switch (name) {
+            case "org.github.forax.tuplefactory.TupleShape" -> processShape(element, annotationMirror);
+            case "org.github.forax.tuplefactory.TupleShape.List" -> {
+              for(var value : (List<?>) annotationValue(annotationMirror, "value")) {
+                processShape(element, (AnnotationMirror) ((AnnotationValue) value).getValue());
+              }
+            }
+            default -> {}
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private Object annotationValue(AnnotationMirror annotationMirror, String name) {
+    var values = processingEnv.getElementUtils().getElementValuesWithDefaults(annotationMirror);
+    for(var entry : values.entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue().getValue();
+      }
+    }
+    throw new AssertionError("no value " + name);
+  }
+
+  private static Class<?> erasedType(TypeMirror type) {
+    return switch (type.getKind()) {
+      case BOOLEAN -> boolean.class;
+      case BYTE -> byte.class;
+      case SHORT -> short.class;
+      case CHAR -> char.class;
+      case INT -> int.class;
+      case FLOAT -> float.class;
+      case LONG -> long.class;
+      case DOUBLE -> double.class;
+      default -> Object.class;
+    };
+  }
+
+  private void processShape(Element element, AnnotationMirror annotationMirror) {
+    var types = ((List<?>) annotationValue(annotationMirror, "value")).stream()
+        .map(value -> erasedType((TypeMirror) ((AnnotationValue) value).getValue()))
+        .toArray(Class<?>[]::new);
+    var options = EnumSet.noneOf(TupleFactory.Option.class);
+    for(var value : (List<?>) annotationValue(annotationMirror, "options")) {
+      var optionName = ((VariableElement) ((AnnotationValue) value).getValue()).getSimpleName().toString();
+      options.add(TupleFactory.Option.valueOf(optionName));
+    }
+    TupleFactoryImpl.addImpliedOptions(options);
+    for(var option : List.of(TupleFactory.Option.UNBOXED_WRAPPERS, TupleFactory.Option.MUTABLE, TupleFactory.Option.PADDED)) {
+      if (options.contains(option)) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+            "a shape with the option " + option + " can not be pregenerated", element, annotationMirror);
+        return;
+      }
+    }
+    if (TupleFactoryImpl.isWide(List.of(types))) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "a wide shape, with more than " + TupleFactoryImpl.MAX_CONSTRUCTOR_SLOTS + " parameter slots, can not be pregenerated",
+          element, annotationMirror);
+      return;
+    }
+    var classes = TupleFactoryImpl.pregenerate(MethodType.methodType(void.class, types), options);
+    var filer = processingEnv.getFiler();
+    for(var entry : classes.entrySet()) {
+      var className = entry.getKey();
+      if (!generated.add(className)) {
+        continue;
+      }
+      try(var output = filer.createClassFile(className, element).openOutputStream()) {
+        output.write(entry.getValue());
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+            "can not generate " + className + ": " + e.getMessage(), element, annotationMirror);
+      }
+    }
+  }
+}
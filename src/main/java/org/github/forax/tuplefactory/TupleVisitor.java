@@ -0,0 +1,100 @@
+package org.github.forax.tuplefactory;
+
+/**
+ * A visitor of the components of a tuple, the method {@code visit} of the type of each component
+ * is called in the order of the components.
+ * <pre>
+ *   var factory = TupleFactory.of(String.class, int.class, long.class);
+ *   var tuple = factory.tuple("foo", 42, 3L);
+ *   factory.accept(tuple, new TupleVisitor() {
+ *     public void visitObject(int componentIndex, Object value) { ... }
+ *     public void visitInt(int componentIndex, int value) { ... }
+ *     public void visitLong(int componentIndex, long value) { ... }
+ *   });
+ * </pre>
+ *
+ * By default, the values of the primitive components are boxed and sent to {@link #visitObject(int, Object)},
+ * so a visitor that wants to avoid boxing should override the methods of all the primitive types it can see.
+ *
+ * @see TupleFactory#accept(Object, TupleVisitor)
+ */
+public interface TupleVisitor {
+  /**
+   * Visits a component which is not a primitive.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  void visitObject(int componentIndex, Object value);
+
+  /**
+   * Visits a boolean component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitBoolean(int componentIndex, boolean value) {
+    visitObject(componentIndex, value);
+  }
+
+  /**
+   * Visits a byte component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitByte(int componentIndex, byte value) {
+    visitObject(componentIndex, value);
+  }
+
+  /**
+   * Visits a short component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitShort(int componentIndex, short value) {
+    visitObject(componentIndex, value);
+  }
+
+  /**
+   * Visits a char component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitChar(int componentIndex, char value) {
+    visitObject(componentIndex, value);
+  }
+
+  /**
+   * Visits an int component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitInt(int componentIndex, int value) {
+    visitObject(componentIndex, value);
+  }
+
+  /**
+   * Visits a float component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitFloat(int componentIndex, float value) {
+    visitObject(componentIndex, value);
+  }
+
+  /**
+   * Visits a long component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitLong(int componentIndex, long value) {
+    visitObject(componentIndex, value);
+  }
+
+  /**
+   * Visits a double component, by default calls {@link #visitObject(int, Object)} with the boxed value.
+   * @param componentIndex the index of the component
+   * @param value the value of the component
+   */
+  default void visitDouble(int componentIndex, double value) {
+    visitObject(componentIndex, value);
+  }
+}
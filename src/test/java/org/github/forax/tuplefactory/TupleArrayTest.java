@@ -0,0 +1,134 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleArrayTest {
+  @Test
+  public void addRowAndSet() {
+    var factory = TupleFactory.of(long.class, int.class, double.class);
+    var array = TupleArray.of(factory);
+    var row = array.addRow();
+    array.setLong(row, 0, 42L);
+    array.setInt(row, 1, 7);
+    array.setDouble(row, 2, 3.5);
+    assertAll(
+        () -> assertEquals(0, row),
+        () -> assertEquals(1, array.size()),
+        () -> assertEquals(42L, array.getLong(row, 0)),
+        () -> assertEquals(7, array.getInt(row, 1)),
+        () -> assertEquals(3.5, array.getDouble(row, 2))
+    );
+  }
+
+  @Test
+  public void addTuple() {
+    var factory = TupleFactory.of(String.class, boolean.class, byte.class, short.class, char.class, float.class);
+    var array = TupleArray.of(factory);
+    array.add(factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 4f));
+    assertAll(
+        () -> assertEquals("foo", array.get(0, 0)),
+        () -> assertTrue(array.getBoolean(0, 1)),
+        () -> assertEquals((byte) 1, array.getByte(0, 2)),
+        () -> assertEquals((short) 2, array.getShort(0, 3)),
+        () -> assertEquals('c', array.getChar(0, 4)),
+        () -> assertEquals(4f, array.getFloat(0, 5))
+    );
+  }
+
+  @Test
+  public void tuple() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var array = TupleArray.of(factory);
+    array.add(factory.tuple("foo", 1));
+    array.add(factory.tuple("bar", 2));
+    assertAll(
+        () -> assertEquals(factory.tuple("foo", 1), array.tuple(0)),
+        () -> assertEquals(factory.tuple("bar", 2), array.tuple(1))
+    );
+  }
+
+  @Test
+  public void grow() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var array = TupleArray.of(factory, 0);
+    for(var i = 0; i < 1_000; i++) {
+      array.add(factory.tuple(i, "" + i));
+    }
+    assertEquals(1_000, array.size());
+    for(var i = 0; i < 1_000; i++) {
+      assertEquals(i, array.getInt(i, 0));
+      assertEquals("" + i, array.get(i, 1));
+    }
+  }
+
+  @Test
+  public void rowOutOfBounds() {
+    var factory = TupleFactory.of(int.class);
+    var array = TupleArray.of(factory);
+    array.addRow();
+    assertAll(
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> array.getInt(1, 0)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> array.getInt(-1, 0)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> array.getInt(0, 1)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> array.tuple(1))
+    );
+  }
+
+  @Test
+  public void wrongType() {
+    var factory = TupleFactory.of(int.class);
+    var array = TupleArray.of(factory);
+    array.addRow();
+    assertThrows(ClassCastException.class, () -> array.getLong(0, 0));
+  }
+
+  @Test
+  public void addNotCompatible() {
+    var array = TupleArray.of(TupleFactory.of(int.class));
+    var tuple = TupleFactory.of(long.class).tuple(3L);
+    assertThrows(ClassCastException.class, () -> array.add(tuple));
+  }
+
+  @Test
+  public void ofPreconditions() {
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> TupleArray.of(null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleArray.of(TupleFactory.of(int.class), -1))
+    );
+  }
+
+  @Test
+  public void parallelSort() {
+    var factory = TupleFactory.of(long.class, int.class, String.class);
+    var array = TupleArray.of(factory);
+    for(var i = 0; i < 10_000; i++) {
+      array.add(factory.tuple((long) (i % 100), i, "" + i));
+    }
+    array.parallelSort(factory.comparator(List.of(TupleFactory.ComponentOrder.descending(0), TupleFactory.ComponentOrder.ascending(1))));
+    assertAll(
+        () -> assertEquals(10_000, array.size()),
+        () -> assertEquals(factory.tuple(99L, 99, "99"), array.tuple(0)),
+        () -> assertEquals(factory.tuple(99L, 199, "199"), array.tuple(1)),
+        () -> assertEquals(factory.tuple(0L, 9_900, "9900"), array.tuple(9_999))
+    );
+    for(var row = 1; row < array.size(); row++) {
+      assertTrue(array.getLong(row - 1, 0) > array.getLong(row, 0) ||
+          (array.getLong(row - 1, 0) == array.getLong(row, 0) && array.getInt(row - 1, 1) < array.getInt(row, 1)));
+    }
+  }
+
+  @Test
+  public void parallelSortEmpty() {
+    var factory = TupleFactory.of(int.class);
+    var array = TupleArray.of(factory);
+    array.parallelSort(factory.comparator(0));
+    assertAll(
+        () -> assertEquals(0, array.size()),
+        () -> assertThrows(NullPointerException.class, () -> array.parallelSort(null))
+    );
+  }
+}
@@ -0,0 +1,152 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.WrongMethodTypeException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleBufferTest {
+  @Test
+  public void layout() {
+    var factory = TupleFactory.of(byte.class, long.class, int.class);
+    var layout = factory.layout();
+    assertAll(
+        () -> assertEquals(24, layout.byteSize()),
+        () -> assertEquals(8, layout.byteAlignment()),
+        () -> assertEquals(0, layout.byteOffset(MemoryLayout.PathElement.groupElement("_0"))),
+        () -> assertEquals(8, layout.byteOffset(MemoryLayout.PathElement.groupElement("_1"))),
+        () -> assertEquals(16, layout.byteOffset(MemoryLayout.PathElement.groupElement("_2")))
+    );
+  }
+
+  @Test
+  public void layoutNotPrimitive() {
+    var factory = TupleFactory.of(String.class, int.class);
+    assertThrows(UnsupportedOperationException.class, factory::layout);
+  }
+
+  @Test
+  public void setAndGet() {
+    var factory = TupleFactory.of(long.class, int.class, double.class);
+    try(var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.allocate(factory, arena, 10);
+      buffer.setLong(3, 0, 42L);
+      buffer.setInt(3, 1, 7);
+      buffer.setDouble(3, 2, 2.5);
+      assertAll(
+          () -> assertEquals(10, buffer.capacity()),
+          () -> assertEquals(42L, buffer.getLong(3, 0)),
+          () -> assertEquals(7, buffer.getInt(3, 1)),
+          () -> assertEquals(2.5, buffer.getDouble(3, 2)),
+          () -> assertEquals(0L, buffer.getLong(2, 0))
+      );
+    }
+  }
+
+  @Test
+  public void storeAndTuple() {
+    var factory = TupleFactory.of(boolean.class, byte.class, short.class, char.class, float.class, long.class);
+    try(var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.allocate(factory, arena, 2);
+      var tuple = factory.tuple(true, (byte) 1, (short) 2, 'c', 4f, 5L);
+      buffer.store(1, tuple);
+      assertAll(
+          () -> assertEquals(tuple, buffer.tuple(1)),
+          () -> assertTrue(buffer.getBoolean(1, 0)),
+          () -> assertEquals('c', buffer.getChar(1, 3))
+      );
+    }
+  }
+
+  @Test
+  public void copy() {
+    var factory = TupleFactory.of(int.class, double.class);
+    try(var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.allocate(factory, arena, 4);
+      for(var i = 0; i < 4; i++) {
+        buffer.store(i, factory.tuple(i, i * 1.5));
+      }
+      var buffer2 = TupleBuffer.allocate(factory, arena, 8);
+      buffer.copy(1, buffer2, 5, 3);
+      assertAll(
+          () -> assertEquals(factory.tuple(1, 1.5), buffer2.tuple(5)),
+          () -> assertEquals(factory.tuple(3, 4.5), buffer2.tuple(7)),
+          () -> assertEquals(factory.tuple(0, 0.0), buffer2.tuple(4))
+      );
+    }
+  }
+
+  @Test
+  public void copyIncompatible() {
+    try(var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.allocate(TupleFactory.of(int.class), arena, 4);
+      var buffer2 = TupleBuffer.allocate(TupleFactory.of(long.class), arena, 4);
+      assertThrows(IllegalArgumentException.class, () -> buffer.copy(0, buffer2, 0, 1));
+    }
+  }
+
+  @Test
+  public void varHandle() {
+    var factory = TupleFactory.of(int.class, long.class);
+    var varHandle = TupleBuffer.varHandle(factory, 1);
+    try(var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.allocate(factory, arena, 4);
+      varHandle.set(buffer.segment(), 0L, 2L, 42L);
+      assertEquals(42L, buffer.getLong(2, 1));
+    }
+  }
+
+  @Test
+  public void wrongTypeAndOutOfBounds() {
+    var factory = TupleFactory.of(int.class);
+    try(var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.allocate(factory, arena, 4);
+      assertAll(
+          () -> assertThrows(WrongMethodTypeException.class, () -> buffer.getLong(0, 0)),
+          () -> assertThrows(IndexOutOfBoundsException.class, () -> buffer.getInt(4, 0)),
+          () -> assertThrows(IndexOutOfBoundsException.class, () -> buffer.getInt(0, 1))
+      );
+    }
+  }
+
+  @Test
+  public void wrap() {
+    var factory = TupleFactory.of(int.class, int.class);
+    try(var arena = Arena.ofConfined()) {
+      var segment = arena.allocate(ValueLayout.JAVA_INT, 6);
+      segment.setAtIndex(ValueLayout.JAVA_INT, 5, 42);
+      var buffer = TupleBuffer.wrap(factory, segment);
+      assertAll(
+          () -> assertEquals(3, buffer.capacity()),
+          () -> assertEquals(42, buffer.getInt(2, 1))
+      );
+    }
+  }
+
+  @Test
+  public void mappedFile(@TempDir Path directory) throws IOException {
+    var factory = TupleFactory.of(long.class, double.class);
+    var path = directory.resolve("tuples");
+    try(var channel = FileChannel.open(path, CREATE, READ, WRITE);
+        var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.map(factory, channel, FileChannel.MapMode.READ_WRITE, arena, 100);
+      buffer.store(99, factory.tuple(42L, 3.0));
+    }
+    try(var channel = FileChannel.open(path, READ);
+        var arena = Arena.ofConfined()) {
+      var buffer = TupleBuffer.map(factory, channel, FileChannel.MapMode.READ_ONLY, arena, 100);
+      assertEquals(factory.tuple(42L, 3.0), buffer.tuple(99));
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleBuilderTest {
+  @Test
+  public void build() {
+    var factory = TupleFactory.of(String.class, int.class, long.class);
+    var builder = factory.builder();
+    var tuple = builder.set(0, "foo").setInt(1, 42).setLong(2, 3L).build();
+    assertAll(
+        () -> assertEquals(factory.tuple("foo", 42, 3L), tuple),
+        () -> assertSame(factory, builder.factory())
+    );
+  }
+
+  @Test
+  public void buildAllTypes() {
+    var factory = TupleFactory.of(String.class, boolean.class, byte.class, short.class, char.class,
+        int.class, float.class, long.class, double.class);
+    var tuple = factory.builder()
+        .set(0, "foo")
+        .setBoolean(1, true)
+        .setByte(2, (byte) 1)
+        .setShort(3, (short) 2)
+        .setChar(4, 'c')
+        .setInt(5, 3)
+        .setFloat(6, 4f)
+        .setLong(7, 5L)
+        .setDouble(8, 6.0)
+        .build();
+    assertEquals(factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0), tuple);
+  }
+
+  @Test
+  public void defaultValues() {
+    var factory = TupleFactory.of(String.class, boolean.class, int.class, double.class);
+    assertEquals(factory.tuple(null, false, 0, 0.0), factory.builder().build());
+  }
+
+  @Test
+  public void buildSeveralTimesAndReset() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var builder = factory.builder();
+    var tuples = new ArrayList<Object>();
+    for(var i = 0; i < 3; i++) {
+      tuples.add(builder.setInt(0, i).build());
+    }
+    builder.set(1, "foo");
+    var tuple = builder.build();
+    var resetTuple = builder.reset().build();
+    assertAll(
+        () -> assertEquals(factory.tuple(0, null), tuples.get(0)),
+        () -> assertEquals(factory.tuple(2, null), tuples.get(2)),
+        () -> assertEquals(factory.tuple(2, "foo"), tuple),
+        () -> assertEquals(factory.tuple(0, null), resetTuple),
+        () -> assertNotSame(tuple, builder.build())
+    );
+  }
+
+  @Test
+  public void buildCompact() {
+    var types = new Class<?>[9];
+    Arrays.fill(types, boolean.class);
+    types[8] = byte.class;
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), types);
+    var tuple = factory.builder().setBoolean(3, true).setByte(8, (byte) -7).build();
+    assertAll(
+        () -> assertTrue(factory.getBoolean(tuple, 3)),
+        () -> assertFalse(factory.getBoolean(tuple, 4)),
+        () -> assertEquals((byte) -7, factory.getByte(tuple, 8))
+    );
+  }
+
+  @Test
+  public void buildEmpty() {
+    var factory = TupleFactory.of();
+    assertEquals(factory.tuple(), factory.builder().build());
+  }
+
+  @Test
+  public void setWrongTypeOrIndex() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var builder = factory.builder();
+    assertAll(
+        () -> assertThrows(WrongMethodTypeException.class, () -> builder.setInt(0, 3)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> builder.set(1, "foo")),
+        () -> assertThrows(WrongMethodTypeException.class, () -> builder.setLong(1, 3L)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> builder.setInt(2, 3)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> builder.set(-1, "foo"))
+    );
+  }
+}
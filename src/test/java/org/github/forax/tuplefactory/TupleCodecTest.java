@@ -0,0 +1,167 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleCodecTest {
+  @Test
+  public void encodeDecode() {
+    var factory = TupleFactory.of(long.class, int.class, double.class, String.class);
+    var tuple = factory.tuple(42L, 7, 3.5, "été");
+    var buffer = ByteBuffer.allocate(1024);
+    factory.encode(tuple, buffer);
+    assertEquals(8 + 4 + 8 + 4 + 5, buffer.position());
+    buffer.flip();
+    assertAll(
+        () -> assertEquals(tuple, factory.decode(buffer)),
+        () -> assertFalse(buffer.hasRemaining())
+    );
+  }
+
+  @Test
+  public void encodeDecodeAllPrimitives() {
+    var factory = TupleFactory.of(boolean.class, byte.class, short.class, char.class, int.class, float.class, long.class, double.class);
+    var tuple = factory.tuple(true, (byte) 1, (short) 2, 'c', 4, 5f, 6L, 7.0);
+    var buffer = ByteBuffer.allocate(1024);
+    factory.encode(tuple, buffer);
+    buffer.flip();
+    assertEquals(tuple, factory.decode(buffer));
+  }
+
+  @Test
+  public void encodeDecodeNull() {
+    var factory = TupleFactory.of(String.class);
+    var tuple = factory.tuple((Object) null);
+    var buffer = ByteBuffer.allocate(16);
+    factory.encode(tuple, buffer);
+    buffer.flip();
+    assertEquals(tuple, factory.decode(buffer));
+  }
+
+  @Test
+  public void encodeDecodeMemorySegment() {
+    var factory = TupleFactory.of(String.class, long.class);
+    var tuple = factory.tuple("foo", 42L);
+    try(var arena = Arena.ofConfined()) {
+      var buffer = arena.allocate(64).asByteBuffer();
+      factory.encode(tuple, buffer);
+      buffer.flip();
+      assertEquals(tuple, factory.decode(buffer));
+    }
+  }
+
+  @Test
+  public void encodeNotAString() {
+    var factory = TupleFactory.of(Object.class);
+    var tuple = factory.tuple(42);
+    assertThrows(ClassCastException.class, () -> factory.encode(tuple, ByteBuffer.allocate(16)));
+  }
+
+  @Test
+  public void encodeOverflow() {
+    var factory = TupleFactory.of(long.class);
+    assertThrows(BufferOverflowException.class, () -> factory.encode(factory.tuple(42L), ByteBuffer.allocate(4)));
+  }
+
+  @Test
+  public void encodeOverflowKeepsPosition() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var buffer = ByteBuffer.allocate(16);
+    buffer.putInt(42);
+    assertAll(
+        () -> assertThrows(BufferOverflowException.class, () -> factory.encode(factory.tuple(1, "a string too long"), buffer)),
+        () -> assertEquals(4, buffer.position())
+    );
+  }
+
+  @Test
+  public void encodeAllTupleLargerThanBuffer() {
+    var factory = TupleFactory.of(String.class);
+    var tuples = new Object[] { factory.tuple("foo"), factory.tuple("a string too long") };
+    var buffer = ByteBuffer.allocate(16);
+    assertAll(
+        () -> assertEquals(1, factory.encodeAll(tuples, 0, 2, buffer)),
+        () -> assertEquals(7, buffer.position()),
+        () -> assertThrows(BufferOverflowException.class, () -> factory.encodeAll(tuples, 1, 2, buffer.clear())),
+        () -> assertEquals(0, buffer.position())
+    );
+  }
+
+  @Test
+  public void decodeUnderflow() {
+    var factory = TupleFactory.of(long.class);
+    assertThrows(BufferUnderflowException.class, () -> factory.decode(ByteBuffer.allocate(4)));
+  }
+
+  @Test
+  public void decodeCorruptedLength() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var buffer = ByteBuffer.allocate(64).putInt(42).putInt(-5).put(new byte[8]).flip();
+    var tuples = new ArrayList<>();
+    assertAll(
+        () -> assertThrows(BufferUnderflowException.class, () -> factory.decode(buffer.duplicate())),
+        () -> assertEquals(0, factory.decodeAll(buffer, tuples::add)),
+        () -> assertEquals(0, buffer.position()),
+        () -> assertEquals(List.of(), tuples)
+    );
+  }
+
+  @Test
+  public void notEncodable() {
+    var factory = TupleFactory.of(Integer.class, int.class);
+    var tuple = factory.tuple(1, 2);
+    var buffer = ByteBuffer.allocate(64).putInt(3).put("foo".getBytes()).putInt(2).flip();
+    var listFactory = TupleFactory.of(int.class, List.class);
+    assertAll(
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.encode(tuple, ByteBuffer.allocate(64))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.decode(buffer)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.encodeAll(new Object[0], 0, 0, ByteBuffer.allocate(64))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.decodeAll(ByteBuffer.allocate(0), __ -> {})),
+        () -> assertThrows(UnsupportedOperationException.class, () -> listFactory.encode(listFactory.tuple(1, List.of()), ByteBuffer.allocate(64))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> listFactory.decode(ByteBuffer.allocate(64))),
+        () -> assertEquals(0, buffer.position())
+    );
+  }
+
+  @Test
+  public void encodeAllDecodeAll() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var tuples = new Object[100];
+    for(var i = 0; i < tuples.length; i++) {
+      tuples[i] = factory.tuple(i, "" + i);
+    }
+    var buffer = ByteBuffer.allocate(64);
+    var decoded = new ArrayList<>();
+    var index = 0;
+    while (index < tuples.length) {
+      index = factory.encodeAll(tuples, index, tuples.length, buffer);
+      buffer.flip();
+      factory.decodeAll(buffer, decoded::add);
+      buffer.compact();
+    }
+    assertEquals(List.of(tuples), decoded);
+  }
+
+  @Test
+  public void decodeAllPartial() {
+    var factory = TupleFactory.of(int.class, long.class);
+    var buffer = ByteBuffer.allocate(64);
+    factory.encode(factory.tuple(1, 2L), buffer);
+    buffer.putInt(3);
+    buffer.flip();
+    var decoded = new ArrayList<>();
+    assertAll(
+        () -> assertEquals(1, factory.decodeAll(buffer, decoded::add)),
+        () -> assertEquals(4, buffer.remaining()),
+        () -> assertEquals(List.of(factory.tuple(1, 2L)), decoded)
+    );
+  }
+}
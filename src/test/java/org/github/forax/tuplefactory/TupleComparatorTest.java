@@ -0,0 +1,133 @@
+package org.github.forax.tuplefactory;
+
+import org.github.forax.tuplefactory.TupleFactory.ComponentOrder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleComparatorTest {
+  @Test
+  public void compareAscending() {
+    var factory = TupleFactory.of(long.class, int.class, String.class);
+    var comparator = factory.comparator(0, 1, 2);
+    assertAll(
+        () -> assertTrue(comparator.compare(factory.tuple(1L, 2, "a"), factory.tuple(2L, 1, "a")) < 0),
+        () -> assertTrue(comparator.compare(factory.tuple(2L, 2, "a"), factory.tuple(2L, 1, "a")) > 0),
+        () -> assertTrue(comparator.compare(factory.tuple(2L, 1, "a"), factory.tuple(2L, 1, "b")) < 0),
+        () -> assertEquals(0, comparator.compare(factory.tuple(2L, 1, "a"), factory.tuple(2L, 1, "a")))
+    );
+  }
+
+  @Test
+  public void compareDescending() {
+    var factory = TupleFactory.of(long.class, int.class, String.class);
+    var comparator = factory.comparator(List.of(ComponentOrder.descending(1), ComponentOrder.ascending(0)));
+    assertAll(
+        () -> assertTrue(comparator.compare(factory.tuple(1L, 2, "a"), factory.tuple(2L, 1, "a")) < 0),
+        () -> assertTrue(comparator.compare(factory.tuple(1L, 2, "a"), factory.tuple(2L, 2, "a")) < 0),
+        () -> assertEquals(0, comparator.compare(factory.tuple(1L, 2, "a"), factory.tuple(1L, 2, "b")))
+    );
+  }
+
+  @Test
+  public void comparePrimitives() {
+    var factory = TupleFactory.of(boolean.class, byte.class, short.class, char.class, float.class, double.class);
+    var tuple = factory.tuple(false, (byte) 1, (short) 2, 'c', 1f, -0.0);
+    assertAll(
+        () -> assertTrue(factory.comparator(0).compare(tuple, factory.tuple(true, (byte) 1, (short) 2, 'c', 1f, -0.0)) < 0),
+        () -> assertTrue(factory.comparator(1).compare(tuple, factory.tuple(false, (byte) -1, (short) 2, 'c', 1f, -0.0)) > 0),
+        () -> assertTrue(factory.comparator(2).compare(tuple, factory.tuple(false, (byte) 1, (short) 3, 'c', 1f, -0.0)) < 0),
+        () -> assertTrue(factory.comparator(3).compare(tuple, factory.tuple(false, (byte) 1, (short) 2, 'b', 1f, -0.0)) > 0),
+        () -> assertTrue(factory.comparator(4).compare(tuple, factory.tuple(false, (byte) 1, (short) 2, 'c', Float.NaN, -0.0)) < 0),
+        () -> assertTrue(factory.comparator(5).compare(tuple, factory.tuple(false, (byte) 1, (short) 2, 'c', 1f, 0.0)) < 0),
+        () -> assertEquals(0, factory.comparator(0, 1, 2, 3, 4, 5).compare(tuple, factory.tuple(false, (byte) 1, (short) 2, 'c', 1f, -0.0)))
+    );
+  }
+
+  @Test
+  public void compareNulls() {
+    var factory = TupleFactory.of(String.class);
+    var nullsLast = factory.comparator(0);
+    var nullsFirst = factory.comparator(List.of(ComponentOrder.ascending(0).withNullsFirst()));
+    var descendingNullsLast = factory.comparator(List.of(ComponentOrder.descending(0)));
+    var descendingNullsFirst = factory.comparator(List.of(ComponentOrder.descending(0).withNullsFirst()));
+    var foo = factory.tuple("foo");
+    var none = factory.tuple((Object) null);
+    assertAll(
+        () -> assertTrue(nullsLast.compare(none, foo) > 0),
+        () -> assertTrue(nullsLast.compare(foo, none) < 0),
+        () -> assertTrue(nullsFirst.compare(none, foo) < 0),
+        () -> assertTrue(nullsFirst.compare(foo, none) > 0),
+        () -> assertTrue(descendingNullsLast.compare(none, foo) > 0),
+        () -> assertTrue(descendingNullsLast.compare(foo, none) < 0),
+        () -> assertTrue(descendingNullsFirst.compare(none, foo) < 0),
+        () -> assertTrue(descendingNullsFirst.compare(foo, none) > 0),
+        () -> assertEquals(0, nullsLast.compare(none, none)),
+        () -> assertEquals(0, descendingNullsFirst.compare(none, none))
+    );
+  }
+
+  @Test
+  public void sameAsARecordComparator() {
+    record Key(long id, int count, String name) {}
+    var factory = TupleFactory.of(long.class, int.class, String.class);
+    var random = new Random(0);
+    var keys = new ArrayList<Key>();
+    var tuples = new Object[10_000];
+    for(var i = 0; i < tuples.length; i++) {
+      var key = new Key(random.nextInt(100), random.nextInt(100), random.nextInt(10) == 0 ? null : "" + random.nextInt(100));
+      keys.add(key);
+      tuples[i] = factory.tuple(key.id, key.count, key.name);
+    }
+    keys.sort(Comparator.comparingLong(Key::id).reversed()
+        .thenComparingInt(Key::count)
+        .thenComparing(Key::name, Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+    Arrays.parallelSort(tuples, factory.comparator(List.of(
+        ComponentOrder.descending(0), ComponentOrder.ascending(1), ComponentOrder.ascending(2).withNullsFirst())));
+    for(var i = 0; i < tuples.length; i++) {
+      var key = keys.get(i);
+      assertEquals(factory.tuple(key.id, key.count, key.name), tuples[i]);
+    }
+  }
+
+  @Test
+  public void comparatorIsCached() {
+    var factory = TupleFactory.of(int.class, String.class);
+    assertSame(factory.comparator(1, 0), factory.comparator(List.of(ComponentOrder.ascending(1), ComponentOrder.ascending(0))));
+  }
+
+  @Test
+  public void compareNotComparable() {
+    var factory = TupleFactory.of(Object.class);
+    var comparator = factory.comparator(0);
+    assertThrows(ClassCastException.class, () -> comparator.compare(factory.tuple(new Object()), factory.tuple(new Object())));
+  }
+
+  @Test
+  public void compareWrongTuples() {
+    var factory = TupleFactory.of(int.class);
+    var comparator = factory.comparator(0);
+    assertAll(
+        () -> assertThrows(ClassCastException.class, () -> comparator.compare(TupleFactory.of(long.class).tuple(1L), factory.tuple(1))),
+        () -> assertThrows(NullPointerException.class, () -> comparator.compare(null, factory.tuple(1)))
+    );
+  }
+
+  @Test
+  public void comparatorPreconditions() {
+    var factory = TupleFactory.of(int.class, String.class);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> factory.comparator((int[]) null)),
+        () -> assertThrows(NullPointerException.class, () -> factory.comparator((List<ComponentOrder>) null)),
+        () -> assertThrows(NullPointerException.class, () -> factory.comparator(Arrays.asList(ComponentOrder.ascending(0), null))),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.comparator(2)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.comparator(List.of(ComponentOrder.descending(-1))))
+    );
+  }
+}
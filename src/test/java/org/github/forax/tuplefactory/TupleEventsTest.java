@@ -0,0 +1,97 @@
+package org.github.forax.tuplefactory;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleEventsTest {
+  // the recording also contains the events of the JDK that are always enabled, only the events named are returned
+  private static List<RecordedEvent> record(Runnable runnable, String... eventNames) throws IOException {
+    try(var recording = new Recording()) {
+      for(var eventName : eventNames) {
+        recording.enable(eventName);
+      }
+      recording.start();
+      runnable.run();
+      recording.stop();
+      var path = Files.createTempFile("tuple-events", ".jfr");
+      try {
+        recording.dump(path);
+        var names = Set.of(eventNames);
+        return RecordingFile.readAllEvents(path).stream()
+            .filter(event -> names.contains(event.getEventType().getName()))
+            .toList();
+      } finally {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  public void shapeDefinitionAndFactoryCreation() throws IOException {
+    var events = record(() -> {
+          TupleFactory.of(char.class, long.class, char.class, String.class);
+          TupleFactory.of(char.class, long.class, char.class, String.class);
+        },
+        "org.github.forax.tuplefactory.ShapeDefinition", "org.github.forax.tuplefactory.FactoryCreation");
+    var shapeDefinitions = events.stream()
+        .filter(event -> event.getEventType().getName().equals("org.github.forax.tuplefactory.ShapeDefinition"))
+        .toList();
+    var factoryCreations = events.stream()
+        .filter(event -> event.getEventType().getName().equals("org.github.forax.tuplefactory.FactoryCreation"))
+        .toList();
+    assertAll(
+        () -> assertEquals(1, shapeDefinitions.size()),
+        () -> assertEquals("(CJCLjava/lang/Object;)V[]", shapeDefinitions.getFirst().getString("descriptor")),
+        () -> assertEquals(2, factoryCreations.size()),
+        () -> assertFalse(factoryCreations.get(0).getBoolean("cacheHit")),
+        () -> assertTrue(factoryCreations.get(1).getBoolean("cacheHit")),
+        () -> assertEquals("(char,long,char,String)Object", factoryCreations.get(1).getString("methodType"))
+    );
+  }
+
+  @Test
+  public void hiddenClassDefinition() throws IOException {
+    var events = record(() -> TupleFactory.of(short.class, long.class, short.class, String.class),
+        "org.github.forax.tuplefactory.HiddenClassDefinition");
+    var kinds = events.stream().map(event -> event.getString("kind")).toList();
+    assertEquals(List.of("Tuple", "GeneratedTupleFactory"), kinds);
+  }
+
+  @Test
+  public void statistics() {
+    var before = TupleFactory.statistics();
+    TupleFactory.of(byte.class, long.class, byte.class, String.class);
+    TupleFactory.of(byte.class, long.class, byte.class, String.class);
+    var after = TupleFactory.statistics();
+    assertAll(
+        () -> assertEquals(before.factoryCacheMisses() + 1, after.factoryCacheMisses()),
+        () -> assertEquals(before.factoryCacheHits() + 1, after.factoryCacheHits()),
+        () -> assertTrue(after.generatedClassCount() >= before.generatedClassCount()),
+        () -> assertTrue(after.classFileBytes() >= before.classFileBytes()),
+        () -> assertTrue(after.generationNanos() >= before.generationNanos()),
+        () -> assertTrue(after.estimatedMetaspaceBytes() >= after.classFileBytes())
+    );
+  }
+
+  public interface Temperature {
+    double celsius();
+    String city();
+  }
+
+  @Test
+  public void statisticsView() {
+    var before = TupleFactory.statistics();
+    TupleFactory.ofView(Temperature.class);
+    var after = TupleFactory.statistics();
+    assertEquals(before.shapeCount() + 1, after.shapeCount());
+  }
+}
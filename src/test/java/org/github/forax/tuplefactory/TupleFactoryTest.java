@@ -2,6 +2,16 @@ package org.github.forax.tuplefactory;
 
 import org.junit.jupiter.api.Test;
 
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodType.methodType;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TupleFactoryTest {
@@ -162,4 +172,477 @@ public class TupleFactoryTest {
     var tuple = factory.tuple(0.123456789);
     assertEquals(0.123456789, factory.getDouble(tuple, 0));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void constructor() throws Throwable {
+    var factory = TupleFactory.of(String.class, int.class);
+    var constructor = factory.constructor();
+    var tuple = (Object) constructor.invokeExact("foo", 2);
+    assertAll(
+        () -> assertEquals(methodType(Object.class, String.class, int.class), constructor.type()),
+        () -> assertEquals("foo", factory.get(tuple, 0)),
+        () -> assertEquals(2, factory.getInt(tuple, 1)),
+        () -> assertEquals(factory.tuple("foo", 2), tuple)
+    );
+  }
+
+  @Test
+  public void constructorAndErasure() throws Throwable {
+    var factory = TupleFactory.of(String.class, long.class);
+    var factory2 = TupleFactory.of(Object.class, long.class);
+    var tuple = (Object) factory.constructor().invokeExact("foo", 42L);
+    assertAll(
+        () -> assertDoesNotThrow(() -> factory2.requireTuple(tuple)),
+        () -> assertEquals(42L, factory2.getLong(tuple, 1))
+    );
+  }
+
+  @Test
+  public void getSeveralComponentsOfTheSameType() {
+    var factory = TupleFactory.of(int.class, String.class, int.class, long.class, int.class);
+    var tuple = factory.tuple(1, "foo", 2, 3L, 4);
+    assertAll(
+        () -> assertEquals(1, factory.getInt(tuple, 0)),
+        () -> assertEquals("foo", factory.get(tuple, 1)),
+        () -> assertEquals(2, factory.getInt(tuple, 2)),
+        () -> assertEquals(3L, factory.getLong(tuple, 3)),
+        () -> assertEquals(4, factory.getInt(tuple, 4))
+    );
+  }
+
+  @Test
+  public void getWithANonConstantIndex() {
+    var factory = TupleFactory.of(long.class, long.class, long.class);
+    var tuple = factory.tuple(10L, 20L, 30L);
+    var sum = 0L;
+    for(var i = 0; i < 3; i++) {
+      sum += factory.getLong(tuple, i);
+    }
+    assertEquals(60L, sum);
+  }
+
+  @Test
+  public void getWrongType() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var tuple = factory.tuple("foo", 2);
+    assertAll(
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.getInt(tuple, 0)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.get(tuple, 1)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.getDouble(tuple, 1))
+    );
+  }
+
+  @Test
+  public void getOutOfBounds() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var tuple = factory.tuple("foo", 2);
+    assertAll(
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.get(tuple, -1)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.getInt(tuple, 2)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.getBoolean(tuple, 3))
+    );
+  }
+
+  @Test
+  public void getNotATuple() {
+    var factory = TupleFactory.of(String.class, int.class);
+    assertThrows(ClassCastException.class, () -> factory.getInt("foo", 1));
+  }
+
+  @Test
+  public void compact() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT),
+        boolean.class, byte.class, boolean.class, String.class, boolean.class, byte.class, boolean.class, boolean.class);
+    var tuple = factory.tuple(true, (byte) -1, false, "foo", true, (byte) 42, false, true);
+    assertAll(
+        () -> assertTrue(factory.getBoolean(tuple, 0)),
+        () -> assertEquals((byte) -1, factory.getByte(tuple, 1)),
+        () -> assertFalse(factory.getBoolean(tuple, 2)),
+        () -> assertEquals("foo", factory.get(tuple, 3)),
+        () -> assertTrue(factory.getBoolean(tuple, 4)),
+        () -> assertEquals((byte) 42, factory.getByte(tuple, 5)),
+        () -> assertFalse(factory.getBoolean(tuple, 6)),
+        () -> assertTrue(factory.getBoolean(tuple, 7))
+    );
+  }
+
+  @Test
+  public void compactObjectMethods() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT),
+        boolean.class, boolean.class, boolean.class, boolean.class, boolean.class, int.class);
+    var tuple = factory.tuple(true, false, true, false, true, 3);
+    assertAll(
+        () -> assertEquals(factory.tuple(true, false, true, false, true, 3), tuple),
+        () -> assertNotEquals(factory.tuple(true, false, true, false, false, 3), tuple),
+        () -> assertEquals(factory.tuple(true, false, true, false, true, 3).hashCode(), tuple.hashCode()),
+        () -> assertTrue(tuple.toString().contains("_0=true, _1=false, _2=true, _3=false, _4=true, _5=3"))
+    );
+  }
+
+  @Test
+  public void compactOptions() {
+    var compactFactory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), boolean.class);
+    var factory = TupleFactory.of(boolean.class);
+    assertAll(
+        () -> assertEquals(Set.of(TupleFactory.Option.COMPACT), compactFactory.options()),
+        () -> assertEquals(Set.of(), factory.options()),
+        () -> assertThrows(ClassCastException.class, () -> compactFactory.requireTuple(factory.tuple(true))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.options().add(TupleFactory.Option.COMPACT)),
+        () -> assertThrows(NullPointerException.class, () -> TupleFactory.of((Set<TupleFactory.Option>) null, int.class)),
+        () -> assertThrows(NullPointerException.class, () -> TupleFactory.of(Collections.singleton(null), int.class))
+    );
+  }
+
+  @Test
+  public void estimatedInstanceSize() {
+    var types = new Class<?>[16];
+    Arrays.fill(types, boolean.class);
+    assertAll(
+        () -> assertEquals(16, TupleFactory.of().estimatedInstanceSize()),
+        () -> assertEquals(16, TupleFactory.of(int.class).estimatedInstanceSize()),
+        () -> assertEquals(24, TupleFactory.of(long.class).estimatedInstanceSize()),
+        () -> assertEquals(24, TupleFactory.of(int.class, long.class).estimatedInstanceSize()),
+        () -> assertEquals(32, TupleFactory.of(String.class, int.class, long.class, byte.class).estimatedInstanceSize()),
+        () -> assertEquals(32, TupleFactory.of(types).estimatedInstanceSize()),
+        () -> assertEquals(16, TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), types).estimatedInstanceSize()),
+        () -> assertEquals(16, TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), boolean.class).estimatedInstanceSize())
+    );
+  }
+
+  @Test
+  public void factoriesAreCached() {
+    assertAll(
+        () -> assertSame(TupleFactory.of(String.class, int.class), TupleFactory.of(String.class, int.class)),
+        () -> assertSame(TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), boolean.class),
+            TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), boolean.class)),
+        () -> assertNotSame(TupleFactory.of(String.class, int.class), TupleFactory.of(Object.class, int.class)),
+        () -> assertNotSame(TupleFactory.of(boolean.class), TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), boolean.class))
+    );
+  }
+
+  @Test
+  public void sameErasureSameShape() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var factory2 = TupleFactory.of(Integer.class, int.class);
+    assertEquals(factory.tuple(null, 3), factory2.tuple(null, 3));
+  }
+
+  @Test
+  public void concurrentCreationDefinesOneShape() {
+    var before = TupleFactory.statistics();
+    var factories = ConcurrentHashMap.<TupleFactory>newKeySet();
+    IntStream.range(0, 64).parallel().forEach(__ ->
+        factories.add(TupleFactory.of(short.class, double.class, char.class, float.class, short.class, double.class)));
+    var after = TupleFactory.statistics();
+    assertAll(
+        () -> assertEquals(1, factories.size()),
+        () -> assertEquals(before.shapeCount() + 1, after.shapeCount()),
+        () -> assertEquals(before.factoryCount() + 1, after.factoryCount())
+    );
+  }
+
+  @Test
+  public void statistics() {
+    TupleFactory.of(String.class, long.class);
+    var statistics = TupleFactory.statistics();
+    assertAll(
+        () -> assertTrue(statistics.shapeCount() >= 1),
+        () -> assertTrue(statistics.factoryCount() >= 1),
+        () -> assertTrue(statistics.pregeneratedShapeCount() <= statistics.shapeCount()),
+        () -> assertTrue(statistics.classFileBytes() >= 0)
+    );
+  }
+
+  @Test
+  public void with() {
+    var factory = TupleFactory.of(String.class, boolean.class, byte.class, short.class, char.class,
+        int.class, float.class, long.class, double.class);
+    var tuple = factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0);
+    assertAll(
+        () -> assertEquals(factory.tuple("bar", true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0), factory.with(tuple, 0, "bar")),
+        () -> assertEquals(factory.tuple("foo", false, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0), factory.with(tuple, 1, false)),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 10, (short) 2, 'c', 3, 4f, 5L, 6.0), factory.with(tuple, 2, (byte) 10)),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 1, (short) 20, 'c', 3, 4f, 5L, 6.0), factory.with(tuple, 3, (short) 20)),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 1, (short) 2, 'z', 3, 4f, 5L, 6.0), factory.with(tuple, 4, 'z')),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 30, 4f, 5L, 6.0), factory.with(tuple, 5, 30)),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 3, 40f, 5L, 6.0), factory.with(tuple, 6, 40f)),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 3, 4f, 50L, 6.0), factory.with(tuple, 7, 50L)),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 60.0), factory.with(tuple, 8, 60.0)),
+        () -> assertEquals(factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0), tuple)
+    );
+  }
+
+  @Test
+  public void withCompact() {
+    var types = new Class<?>[8];
+    Arrays.fill(types, boolean.class);
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), types);
+    var tuple = factory.tuple(false, false, false, false, false, false, false, false);
+    var tuple2 = factory.with(tuple, 6, true);
+    assertAll(
+        () -> assertTrue(factory.getBoolean(tuple2, 6)),
+        () -> assertFalse(factory.getBoolean(tuple2, 5)),
+        () -> assertFalse(factory.getBoolean(tuple2, 7)),
+        () -> assertEquals(factory.tuple(false, false, false, false, false, false, true, false), tuple2)
+    );
+  }
+
+  @Test
+  public void withWrongTypeOrIndex() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var tuple = factory.tuple("foo", 3);
+    assertAll(
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.with(tuple, 0, 3)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.with(tuple, 1, "bar")),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.with(tuple, 1, 3L)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.with(tuple, 2, 3)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.with(tuple, -1, "bar"))
+    );
+  }
+
+  @Test
+  public void withNotATuple() {
+    var factory = TupleFactory.of(int.class);
+    var factory2 = TupleFactory.of(String.class, int.class);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> factory.with(null, 0, 3)),
+        () -> assertThrows(ClassCastException.class, () -> factory.with("foo", 0, 3)),
+        () -> assertThrows(NullPointerException.class, () -> factory2.with(null, 1, 3)),
+        () -> assertThrows(ClassCastException.class, () -> factory2.with(factory.tuple(2), 1, 3))
+    );
+  }
+
+  @Test
+  public void projection() {
+    var factory = TupleFactory.of(String.class, int.class, long.class, double.class);
+    var projection = factory.projection(3, 0);
+    var tuple = factory.tuple("foo", 2, 3L, 4.0);
+    var projected = projection.project(tuple);
+    assertAll(
+        () -> assertSame(TupleFactory.of(double.class, String.class), projection.factory()),
+        () -> assertEquals(projection.factory().tuple(4.0, "foo"), projected),
+        () -> assertEquals(4.0, projection.factory().getDouble(projected, 0)),
+        () -> assertEquals("foo", projection.factory().get(projected, 1)),
+        () -> assertEquals(projected, (Object) projection.copier().invokeExact(tuple))
+    );
+  }
+
+  @Test
+  public void projectionDuplicateAndEmpty() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var tuple = factory.tuple(1, "foo");
+    var duplicate = factory.projection(1, 1, 0);
+    var empty = factory.projection();
+    assertAll(
+        () -> assertEquals(duplicate.factory().tuple("foo", "foo", 1), duplicate.project(tuple)),
+        () -> assertEquals(TupleFactory.of().tuple(), empty.project(tuple)),
+        () -> assertThrows(NullPointerException.class, () -> empty.project(null)),
+        () -> assertThrows(ClassCastException.class, () -> empty.project("foo"))
+    );
+  }
+
+  @Test
+  public void projectionOptions() {
+    var types = new Class<?>[10];
+    Arrays.fill(types, boolean.class);
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), types);
+    var projection = factory.projection(9, 8, 7, 6, 5, 4);
+    var tuple = factory.tuple(false, false, false, false, false, false, false, false, true, false);
+    assertAll(
+        () -> assertEquals(Set.of(TupleFactory.Option.COMPACT), projection.factory().options()),
+        () -> assertEquals(projection.factory().tuple(false, true, false, false, false, false), projection.project(tuple))
+    );
+  }
+
+  @Test
+  public void projectionPreconditions() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var projection = factory.projection(0);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> factory.projection((int[]) null)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.projection(2)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.projection(0, -1)),
+        () -> assertThrows(NullPointerException.class, () -> projection.project(null)),
+        () -> assertThrows(ClassCastException.class, () -> projection.project(TupleFactory.of(int.class).tuple(1)))
+    );
+  }
+
+  @Test
+  public void inlineEqualsHashCode() {
+    for(var option : List.of(TupleFactory.Option.INLINE_EQUALS_HASHCODE, TupleFactory.Option.CACHED_HASH)) {
+      var factory = TupleFactory.of(Set.of(option), String.class, int.class, double.class, float.class, long.class);
+      var tuple = factory.tuple("foo", 1, Double.NaN, -0f, 2L);
+      assertAll(
+          () -> assertEquals(tuple, tuple),
+          () -> assertEquals(factory.tuple("foo", 1, Double.NaN, -0f, 2L), tuple),
+          () -> assertEquals(factory.tuple("foo", 1, Double.NaN, -0f, 2L).hashCode(), tuple.hashCode()),
+          () -> assertEquals(factory.tuple(null, 1, 0.0, 0f, 2L), factory.tuple(null, 1, 0.0, 0f, 2L)),
+          () -> assertNotEquals(factory.tuple("bar", 1, Double.NaN, -0f, 2L), tuple),
+          () -> assertNotEquals(factory.tuple(null, 1, Double.NaN, -0f, 2L), tuple),
+          () -> assertNotEquals(factory.tuple("foo", 2, Double.NaN, -0f, 2L), tuple),
+          () -> assertNotEquals(factory.tuple("foo", 1, 0.0, -0f, 2L), tuple),
+          () -> assertNotEquals(factory.tuple("foo", 1, Double.NaN, 0f, 2L), tuple),
+          () -> assertNotEquals(factory.tuple("foo", 1, Double.NaN, -0f, 3L), tuple),
+          () -> assertNotEquals(tuple, null),
+          () -> assertNotEquals(tuple, "foo"),
+          () -> assertNotEquals(TupleFactory.of(String.class, int.class, double.class, float.class, long.class)
+              .tuple("foo", 1, Double.NaN, -0f, 2L), tuple),
+          () -> assertEquals(TupleHandles.hash((TupleFactoryImpl) factory, tuple, new int[] { 0, 1, 2, 3, 4 }), tuple.hashCode()),
+          () -> assertTrue(factory.options().contains(option)),
+          () -> assertTrue(factory.options().contains(TupleFactory.Option.INLINE_EQUALS_HASHCODE))
+      );
+    }
+  }
+
+  @Test
+  public void inlineEqualsHashCodeCompact() {
+    var options = Set.of(TupleFactory.Option.COMPACT, TupleFactory.Option.CACHED_HASH);
+    var factory = TupleFactory.of(options, boolean.class, boolean.class, boolean.class, boolean.class, byte.class, String.class);
+    var tuple = factory.tuple(true, false, true, false, (byte) -3, "foo");
+    assertAll(
+        () -> assertEquals(factory.tuple(true, false, true, false, (byte) -3, "foo"), tuple),
+        () -> assertNotEquals(factory.tuple(true, false, true, true, (byte) -3, "foo"), tuple),
+        () -> assertNotEquals(factory.tuple(true, false, true, false, (byte) 3, "foo"), tuple),
+        () -> assertEquals(TupleHandles.hash((TupleFactoryImpl) factory, tuple, new int[] { 0, 1, 2, 3, 4, 5 }), tuple.hashCode())
+    );
+  }
+
+  @Test
+  public void cachedHashImpliesInlineEqualsHashCode() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.CACHED_HASH), String.class, int.class);
+    assertAll(
+        () -> assertEquals(Set.of(TupleFactory.Option.CACHED_HASH, TupleFactory.Option.INLINE_EQUALS_HASHCODE), factory.options()),
+        () -> assertSame(factory, TupleFactory.of(Set.of(TupleFactory.Option.CACHED_HASH, TupleFactory.Option.INLINE_EQUALS_HASHCODE), String.class, int.class))
+    );
+  }
+
+  @Test
+  public void cachedHash() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.CACHED_HASH), String.class, String.class);
+    var tuple = factory.tuple("foo", "bar");
+    var tuple2 = factory.tuple("foo", "bar");
+    var tuple3 = factory.tuple("foo", "baz");
+    var hash = tuple.hashCode();
+    assertAll(
+        () -> assertEquals(hash, tuple.hashCode()),
+        () -> assertEquals(tuple, tuple2),
+        () -> assertEquals(hash, tuple2.hashCode()),
+        () -> assertEquals(tuple, tuple2),
+        () -> assertNotEquals(tuple, tuple3),
+        () -> assertNotEquals(hash, tuple3.hashCode()),
+        () -> assertNotEquals(tuple, tuple3)
+    );
+  }
+
+  @Test
+  public void inlineHashCodeIsSpread() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.INLINE_EQUALS_HASHCODE), int.class, int.class);
+    var buckets = new HashSet<Integer>();
+    for(var i = 0; i < 64; i++) {
+      for(var j = 0; j < 64; j++) {
+        buckets.add(factory.tuple(i, j).hashCode() & 1023);
+      }
+    }
+    assertTrue(buckets.size() > 900, "" + buckets.size());
+  }
+
+  @Test
+  public void estimatedInstanceSizeCachedHash() {
+    assertAll(
+        () -> assertEquals(24, TupleFactory.of(Set.of(TupleFactory.Option.CACHED_HASH), String.class).estimatedInstanceSize()),
+        () -> assertEquals(16, TupleFactory.of(Set.of(TupleFactory.Option.INLINE_EQUALS_HASHCODE), String.class).estimatedInstanceSize()),
+        () -> assertEquals(24, TupleFactory.of(Set.of(TupleFactory.Option.CACHED_HASH), String.class, String.class).estimatedInstanceSize()),
+        () -> assertEquals(24, TupleFactory.of(Set.of(TupleFactory.Option.CACHED_HASH), long.class).estimatedInstanceSize())
+    );
+  }
+
+  @Test
+  public void unboxedWrappers() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class, String.class, Double.class, Boolean.class);
+    var tuple = factory.tuple(42, "foo", 2.5, true);
+    assertAll(
+        () -> assertEquals(42, (Integer) factory.get(tuple, 0)),
+        () -> assertEquals("foo", factory.get(tuple, 1)),
+        () -> assertEquals(2.5, (Double) factory.get(tuple, 2)),
+        () -> assertEquals(true, factory.get(tuple, 3)),
+        () -> assertEquals(42, factory.getInt(tuple, 0)),
+        () -> assertEquals(2.5, factory.getDouble(tuple, 2)),
+        () -> assertTrue(factory.getBoolean(tuple, 3)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.getLong(tuple, 0)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.getInt(tuple, 1)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.getInt(tuple, 4)),
+        () -> assertEquals(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), factory.options())
+    );
+  }
+
+  @Test
+  public void unboxedWrappersNull() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class, Long.class);
+    var tuple = factory.tuple(null, 3L);
+    assertAll(
+        () -> assertNull(factory.get(tuple, 0)),
+        () -> assertEquals(3L, (Long) factory.get(tuple, 1)),
+        () -> assertThrows(NullPointerException.class, () -> factory.getInt(tuple, 0)),
+        () -> assertEquals(3L, factory.getLong(tuple, 1)),
+        () -> assertTrue(factory.isNull(tuple, 0)),
+        () -> assertFalse(factory.isNull(tuple, 1)),
+        () -> assertEquals(factory.tuple(null, 3L), tuple),
+        () -> assertNotEquals(factory.tuple(0, 3L), tuple),
+        () -> assertNotEquals(factory.tuple(null, null), tuple)
+    );
+  }
+
+  @Test
+  public void unboxedWrappersEqualsHashCode() {
+    for(var option : List.of(TupleFactory.Option.INLINE_EQUALS_HASHCODE, TupleFactory.Option.CACHED_HASH)) {
+      var factory = TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS, option), Integer.class, Double.class, String.class);
+      var boxedFactory = TupleFactory.of(Set.of(option), Integer.class, Double.class, String.class);
+      assertAll(
+          () -> assertEquals(factory.tuple(1, Double.NaN, "foo"), factory.tuple(1, Double.NaN, "foo")),
+          () -> assertNotEquals(factory.tuple(1, 0.0, "foo"), factory.tuple(1, -0.0, "foo")),
+          () -> assertNotEquals(factory.tuple(1, null, "foo"), factory.tuple(1, 0.0, "foo")),
+          () -> assertEquals(boxedFactory.tuple(1, Double.NaN, "foo").hashCode(), factory.tuple(1, Double.NaN, "foo").hashCode()),
+          () -> assertEquals(boxedFactory.tuple(null, null, null).hashCode(), factory.tuple(null, null, null).hashCode())
+      );
+    }
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class, Double.class);
+    var boxedFactory = TupleFactory.of(Integer.class, Double.class);
+    assertAll(
+        () -> assertEquals(factory.tuple(1, 2.0), factory.tuple(1, 2.0)),
+        () -> assertNotEquals(factory.tuple(1, null), factory.tuple(1, 0.0)),
+        () -> assertEquals(boxedFactory.tuple(1, 2.0).hashCode(), factory.tuple(1, 2.0).hashCode()),
+        () -> assertEquals(boxedFactory.tuple(null, 2.0).hashCode(), factory.tuple(null, 2.0).hashCode())
+    );
+  }
+
+  @Test
+  public void unboxedWrappersSameErasureDifferentShape() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class);
+    var factory2 = TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Long.class);
+    assertThrows(ClassCastException.class, () -> factory.get(factory2.tuple(1L), 0));
+  }
+
+  @Test
+  public void isNull() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var tuple = factory.tuple(null, 1);
+    assertAll(
+        () -> assertTrue(factory.isNull(tuple, 0)),
+        () -> assertFalse(factory.isNull(tuple, 1)),
+        () -> assertFalse(factory.isNull(factory.tuple("foo", 1), 0)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.isNull(tuple, 2)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.isNull(tuple, -1)),
+        () -> assertThrows(NullPointerException.class, () -> factory.isNull(null, 0)),
+        () -> assertThrows(ClassCastException.class, () -> factory.isNull(TupleFactory.of(long.class).tuple(1L), 1))
+    );
+  }
+
+  @Test
+  public void estimatedInstanceSizeUnboxedWrappers() {
+    assertAll(
+        () -> assertEquals(24, TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class).estimatedInstanceSize()),
+        () -> assertEquals(24, TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class, Integer.class).estimatedInstanceSize()),
+        () -> assertEquals(24, TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Double.class).estimatedInstanceSize())
+    );
+  }
+}
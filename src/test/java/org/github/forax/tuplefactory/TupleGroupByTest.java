@@ -0,0 +1,132 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleGroupByTest {
+  private static Set<Object> toSet(TupleArray result) {
+    var set = new HashSet<>();
+    for(var row = 0; row < result.size(); row++) {
+      set.add(result.tuple(row));
+    }
+    assertEquals(result.size(), set.size());
+    return set;
+  }
+
+  @Test
+  public void countSumAverage() {
+    var factory = TupleFactory.of(String.class, int.class, double.class);
+    var groupBy = TupleGroupBy.of(factory, 0).count().sum(1).average(2);
+    var tuples = List.of(
+        factory.tuple("foo", 1, 2.0),
+        factory.tuple("bar", 10, 1.0),
+        factory.tuple("foo", 2, 4.0));
+    var resultFactory = groupBy.resultFactory();
+    assertEquals(
+        Set.of(resultFactory.tuple("foo", 2L, 3L, 3.0), resultFactory.tuple("bar", 1L, 10L, 1.0)),
+        toSet(groupBy.apply(tuples)));
+  }
+
+  @Test
+  public void minMax() {
+    var factory = TupleFactory.of(int.class, short.class, float.class, long.class);
+    var groupBy = TupleGroupBy.of(factory, 0).min(1).max(1).min(2).max(3);
+    var tuples = List.of(
+        factory.tuple(1, (short) 3, 2f, 7L),
+        factory.tuple(1, (short) -3, 5f, 8L),
+        factory.tuple(2, (short) 4, -1f, 9L));
+    var resultFactory = groupBy.resultFactory();
+    assertEquals(
+        Set.of(resultFactory.tuple(1, (short) -3, (short) 3, 2f, 8L), resultFactory.tuple(2, (short) 4, (short) 4, -1f, 9L)),
+        toSet(groupBy.apply(tuples.stream())));
+  }
+
+  @Test
+  public void severalKeys() {
+    var factory = TupleFactory.of(int.class, String.class, long.class);
+    var groupBy = TupleGroupBy.of(factory, 1, 0).sum(2);
+    var tuples = List.of(
+        factory.tuple(1, "foo", 1L),
+        factory.tuple(1, "bar", 2L),
+        factory.tuple(1, "foo", 3L),
+        factory.tuple(2, "foo", 4L));
+    var resultFactory = groupBy.resultFactory();
+    assertEquals(
+        Set.of(resultFactory.tuple("foo", 1, 4L), resultFactory.tuple("bar", 1, 2L), resultFactory.tuple("foo", 2, 4L)),
+        toSet(groupBy.apply(tuples)));
+  }
+
+  @Test
+  public void parallelStream() {
+    var factory = TupleFactory.of(int.class, long.class);
+    var groupBy = TupleGroupBy.of(factory, 0).count().sum(1);
+    var result = toSet(IntStream.range(0, 100_000)
+        .parallel()
+        .mapToObj(i -> factory.tuple(i % 100, (long) i))
+        .collect(groupBy.collector()));
+    var expected = new HashSet<>();
+    for(var key = 0; key < 100; key++) {
+      var expectedSum = 0L;
+      for(var i = key; i < 100_000; i += 100) {
+        expectedSum += i;
+      }
+      expected.add(groupBy.resultFactory().tuple(key, 1_000L, expectedSum));
+    }
+    assertEquals(expected, result);
+  }
+
+  @Test
+  public void tupleArray() {
+    var factory = TupleFactory.of(char.class, double.class);
+    var array = TupleArray.of(factory);
+    for(var i = 0; i < 10_000; i++) {
+      array.add(factory.tuple((char) ('a' + i % 3), (double) i));
+    }
+    var groupBy = TupleGroupBy.of(factory, 0).count().max(1);
+    var resultFactory = groupBy.resultFactory();
+    assertEquals(
+        Set.of(
+            resultFactory.tuple('a', 3_334L, 9_999.0),
+            resultFactory.tuple('b', 3_333L, 9_997.0),
+            resultFactory.tuple('c', 3_333L, 9_998.0)),
+        toSet(groupBy.apply(array)));
+  }
+
+  @Test
+  public void resultFactory() {
+    var factory = TupleFactory.of(String.class, byte.class, float.class);
+    var groupBy = TupleGroupBy.of(factory, 0).count().sum(1).sum(2).min(1).average(1);
+    var resultFactory = groupBy.resultFactory();
+    var tuple = resultFactory.tuple("foo", 1L, 2L, 3.0, (byte) 4, 5.0);
+    assertAll(
+        () -> assertEquals(1L, resultFactory.getLong(tuple, 1)),
+        () -> assertEquals(2L, resultFactory.getLong(tuple, 2)),
+        () -> assertEquals(3.0, resultFactory.getDouble(tuple, 3)),
+        () -> assertEquals((byte) 4, resultFactory.getByte(tuple, 4)),
+        () -> assertEquals(5.0, resultFactory.getDouble(tuple, 5))
+    );
+  }
+
+  @Test
+  public void wrongArguments() {
+    var factory = TupleFactory.of(String.class, boolean.class, int.class);
+    var groupBy = TupleGroupBy.of(factory, 2);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> TupleGroupBy.of(null, 0)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> TupleGroupBy.of(factory, 3)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleGroupBy.of(factory, 0, 0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> groupBy.sum(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> groupBy.max(1)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> groupBy.min(-1)),
+        () -> assertThrows(ClassCastException.class, () -> groupBy.apply(List.of("foo"))),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> groupBy.apply(TupleArray.of(TupleFactory.of(int.class))))
+    );
+  }
+}
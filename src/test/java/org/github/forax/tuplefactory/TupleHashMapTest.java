@@ -0,0 +1,122 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleHashMapTest {
+  @Test
+  public void putAndGet() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var map = TupleHashMap.<String>of(factory);
+    assertAll(
+        () -> assertNull(map.put(factory.tuple(1, "foo"), "one")),
+        () -> assertNull(map.put(factory.tuple(2, "foo"), "two")),
+        () -> assertEquals("one", map.put(factory.tuple(1, "foo"), "un")),
+        () -> assertEquals(2, map.size()),
+        () -> assertEquals("un", map.get(factory.tuple(1, "foo"))),
+        () -> assertEquals("two", map.get(factory.tuple(2, "foo"))),
+        () -> assertNull(map.get(factory.tuple(1, "bar"))),
+        () -> assertTrue(map.containsKey(factory.tuple(2, "foo"))),
+        () -> assertFalse(map.containsKey(factory.tuple(3, "foo")))
+    );
+  }
+
+  @Test
+  public void allPrimitiveTypes() {
+    var factory = TupleFactory.of(boolean.class, byte.class, short.class, char.class,
+        int.class, float.class, long.class, double.class, Object.class);
+    var map = TupleHashMap.<Integer>of(factory);
+    map.put(factory.tuple(true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0, null), 1);
+    map.put(factory.tuple(true, (byte) 1, (short) 2, 'c', 3, Float.NaN, 5L, Double.NaN, "foo"), 2);
+    assertAll(
+        () -> assertEquals(1, map.get(factory.tuple(true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0, null))),
+        () -> assertEquals(2, map.get(factory.tuple(true, (byte) 1, (short) 2, 'c', 3, Float.NaN, 5L, Double.NaN, "foo"))),
+        () -> assertNull(map.get(factory.tuple(false, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0, null)))
+    );
+  }
+
+  @Test
+  public void remove() {
+    var factory = TupleFactory.of(int.class, int.class);
+    var map = TupleHashMap.<Integer>of(factory);
+    for(var i = 0; i < 1_000; i++) {
+      map.put(factory.tuple(i, i % 7), i);
+    }
+    for(var i = 0; i < 1_000; i += 2) {
+      assertEquals(i, map.remove(factory.tuple(i, i % 7)));
+    }
+    assertEquals(500, map.size());
+    for(var i = 0; i < 1_000; i++) {
+      assertEquals(i % 2 == 0 ? null : i, map.get(factory.tuple(i, i % 7)));
+    }
+    assertNull(map.remove(factory.tuple(0, 0)));
+  }
+
+  @Test
+  public void clear() {
+    var factory = TupleFactory.of(String.class);
+    var map = TupleHashMap.<String>of(factory);
+    map.put(factory.tuple("foo"), "bar");
+    map.clear();
+    assertAll(
+        () -> assertEquals(0, map.size()),
+        () -> assertNull(map.get(factory.tuple("foo")))
+    );
+  }
+
+  @Test
+  public void rehash() {
+    var factory = TupleFactory.of(long.class, String.class);
+    var map = TupleHashMap.<Long>of(factory);
+    for(var i = 0L; i < 10_000L; i++) {
+      map.put(factory.tuple(i, "" + i), i);
+    }
+    assertEquals(10_000, map.size());
+    for(var i = 0L; i < 10_000L; i++) {
+      assertEquals(i, map.get(factory.tuple(i, "" + i)));
+    }
+  }
+
+  @Test
+  public void getter() throws Throwable {
+    var factory = TupleFactory.of(int.class, String.class);
+    var map = TupleHashMap.<String>of(factory);
+    var getter = map.getter();
+    for(var i = 0; i < 100; i++) {
+      map.put(factory.tuple(i, "" + i), "value" + i);
+    }
+    assertEquals(MethodType.methodType(Object.class, int.class, String.class), getter.type());
+    for(var i = 0; i < 100; i++) {
+      assertEquals("value" + i, (Object) getter.invokeExact(i, "" + i));
+    }
+    assertNull((Object) getter.invokeExact(100, "100"));
+    assertNull((Object) getter.invokeExact(1, (String) null));
+  }
+
+  @Test
+  public void getterFloatingPoint() throws Throwable {
+    var factory = TupleFactory.of(double.class, float.class);
+    var map = TupleHashMap.<String>of(factory);
+    map.put(factory.tuple(Double.NaN, -0f), "nan");
+    var getter = map.getter();
+    assertAll(
+        () -> assertEquals("nan", (Object) getter.invokeExact(Double.NaN, -0f)),
+        () -> assertNull((Object) getter.invokeExact(Double.NaN, 0f))
+    );
+  }
+
+  @Test
+  public void wrongTuple() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var map = TupleHashMap.<String>of(factory);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> map.get(null)),
+        () -> assertThrows(NullPointerException.class, () -> map.put(factory.tuple(1, "foo"), null)),
+        () -> assertThrows(ClassCastException.class, () -> map.get("foo")),
+        () -> assertThrows(NullPointerException.class, () -> TupleHashMap.of(null))
+    );
+  }
+}
@@ -0,0 +1,173 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleInternerTest {
+  @Test
+  public void intern() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var interner = TupleInterner.weak(factory);
+    var tuple = factory.tuple("foo", 42);
+    assertAll(
+        () -> assertSame(tuple, interner.intern(tuple)),
+        () -> assertSame(tuple, interner.intern(factory.tuple("foo", 42))),
+        () -> assertNotSame(tuple, interner.intern(factory.tuple("foo", 43))),
+        () -> assertEquals(2, interner.size()),
+        () -> assertEquals(1, interner.hitCount()),
+        () -> assertEquals(2, interner.missCount())
+    );
+  }
+
+  @Test
+  public void interner() throws Throwable {
+    var factory = TupleFactory.of(String.class, int.class, double.class);
+    var interner = TupleInterner.weak(factory);
+    var mh = interner.interner();
+    var tuple = (Object) mh.invokeExact("foo", 42, Double.NaN);
+    assertAll(
+        () -> assertEquals(MethodType.methodType(Object.class, String.class, int.class, double.class), mh.type()),
+        () -> assertEquals(factory.tuple("foo", 42, Double.NaN), tuple),
+        () -> assertSame(tuple, (Object) mh.invokeExact("foo", 42, Double.NaN)),
+        () -> assertSame(tuple, interner.intern(factory.tuple("foo", 42, Double.NaN))),
+        () -> assertNotSame(tuple, (Object) mh.invokeExact((String) null, 42, Double.NaN)),
+        () -> assertEquals(2, interner.hitCount()),
+        () -> assertEquals(2, interner.missCount())
+    );
+  }
+
+  @Test
+  public void manyTuples() throws Throwable {
+    var factory = TupleFactory.of(int.class, long.class);
+    var interner = TupleInterner.weak(factory);
+    var tuples = new ArrayList<>();
+    for(var i = 0; i < 10_000; i++) {
+      tuples.add(interner.intern(factory.tuple(i, (long) i)));
+    }
+    var mh = interner.interner();
+    for(var i = 0; i < 10_000; i++) {
+      assertSame(tuples.get(i), (Object) mh.invokeExact(i, (long) i));
+    }
+    assertEquals(10_000, interner.size());
+  }
+
+  @Test
+  public void bounded() {
+    var factory = TupleFactory.of(int.class);
+    var interner = TupleInterner.bounded(factory, 100);
+    for(var i = 0; i < 1_000; i++) {
+      interner.intern(factory.tuple(i));
+    }
+    assertAll(
+        () -> assertEquals(100, interner.size()),
+        () -> assertEquals(900, interner.evictionCount()),
+        () -> assertEquals(1_000, interner.missCount())
+    );
+  }
+
+  @Test
+  public void boundedKeepsRecentlyUsed() {
+    var factory = TupleFactory.of(int.class);
+    var interner = TupleInterner.bounded(factory, 1);
+    var tuple = interner.intern(factory.tuple(1));
+    interner.intern(factory.tuple(1));
+    interner.intern(factory.tuple(2));   // second chance for 1, evicted
+    assertAll(
+        () -> assertEquals(1, interner.size()),
+        () -> assertNotSame(tuple, interner.intern(factory.tuple(1)))
+    );
+  }
+
+  @Test
+  public void boundedEvictsFirstEntryOfTheSameBucket() {
+    var factory = TupleFactory.of(int.class);
+    var interner = TupleInterner.bounded(factory, 1);
+    var tuple = factory.tuple(0);
+    var bucket = TupleHandles.hash((TupleFactoryImpl) factory, tuple, new int[] { 0 }) & 15;
+    var other = IntStream.range(1, 1_000)
+        .mapToObj(factory::tuple)
+        .filter(t -> (TupleHandles.hash((TupleFactoryImpl) factory, t, new int[] { 0 }) & 15) == bucket)
+        .findFirst()
+        .orElseThrow();
+    interner.intern(tuple);
+    interner.intern(other);   // evicts tuple, the first entry of the bucket
+    assertAll(
+        () -> assertEquals(1, interner.size()),
+        () -> assertEquals(1, interner.evictionCount()),
+        () -> assertSame(other, interner.intern(factory.tuple(factory.getInt(other, 0)))),
+        () -> assertNotSame(tuple, interner.intern(factory.tuple(0)))
+    );
+  }
+
+  @Test
+  public void weakEviction() throws InterruptedException {
+    var factory = TupleFactory.of(String.class);
+    var interner = TupleInterner.weak(factory);
+    for(var i = 0; i < 1_000; i++) {
+      interner.intern(factory.tuple("" + i));
+    }
+    for(var i = 0; i < 10 && interner.size() != 0; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertAll(
+        () -> assertEquals(0, interner.size()),
+        () -> assertEquals(1_000, interner.evictionCount())
+    );
+  }
+
+  private static Object intern(MethodHandle mh, int value, String text) {
+    try {
+      return (Object) mh.invokeExact(value, text);
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Test
+  public void concurrentIntern() throws Exception {
+    var factory = TupleFactory.of(int.class, String.class);
+    var interner = TupleInterner.weak(factory);
+    var mh = interner.interner();
+    var canonicals = new ArrayList<>();
+    for(var i = 0; i < 1_000; i++) {
+      canonicals.add(interner.intern(factory.tuple(i, "" + i)));
+    }
+    try(var executor = Executors.newFixedThreadPool(4)) {
+      var futures = new ArrayList<Future<?>>();
+      for(var t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          for(var i = 0; i < 1_000; i++) {
+            assertSame(canonicals.get(i), intern(mh, i, "" + i));
+            interner.intern(factory.tuple(-i, "" + i));
+          }
+          return null;
+        }));
+      }
+      for(var future : futures) {
+        future.get();
+      }
+    }
+    assertEquals(1_000 + 1_000 - 1, interner.size());
+  }
+
+  @Test
+  public void wrongArguments() {
+    var factory = TupleFactory.of(int.class);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> TupleInterner.weak(null)),
+        () -> assertThrows(NullPointerException.class, () -> TupleInterner.bounded(null, 10)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleInterner.bounded(factory, 0)),
+        () -> assertThrows(NullPointerException.class, () -> TupleInterner.weak(factory).intern(null)),
+        () -> assertThrows(ClassCastException.class, () -> TupleInterner.weak(factory).intern("foo"))
+    );
+  }
+}
@@ -0,0 +1,186 @@
+package org.github.forax.tuplefactory;
+
+import org.github.forax.tuplefactory.TupleMemoizer.CacheOptions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleMemoizerTest {
+  private static final AtomicInteger CALLS = new AtomicInteger();
+
+  private static long distance(String s, int x, double y) {
+    CALLS.incrementAndGet();
+    return s.length() + x + (long) y;
+  }
+
+  private static String concat(String s, String s2) throws IOException {
+    CALLS.incrementAndGet();
+    if (s == null) {
+      throw new IOException("null");
+    }
+    return s + s2;
+  }
+
+  private static MethodHandle findStatic(String name, MethodType type) {
+    try {
+      return MethodHandles.lookup().findStatic(TupleMemoizerTest.class, name, type);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final MethodHandle DISTANCE = findStatic("distance", methodType(long.class, String.class, int.class, double.class));
+  private static final MethodHandle CONCAT = findStatic("concat", methodType(String.class, String.class, String.class));
+
+  @Test
+  public void memoized() throws Throwable {
+    CALLS.set(0);
+    var memoizer = TupleMemoizer.of(DISTANCE, CacheOptions.bounded(16));
+    var mh = memoizer.memoized();
+    assertAll(
+        () -> assertEquals(DISTANCE.type(), mh.type()),
+        () -> assertEquals(6L, (long) mh.invokeExact("foo", 2, 1.5)),
+        () -> assertEquals(6L, (long) mh.invokeExact("foo", 2, 1.5)),
+        () -> assertEquals(7L, (long) mh.invokeExact("foo", 3, 1.5)),
+        () -> assertEquals(2, CALLS.get()),
+        () -> assertEquals(2, memoizer.size()),
+        () -> assertEquals(1, memoizer.hitCount()),
+        () -> assertEquals(2, memoizer.missCount()),
+        () -> assertEquals(0, memoizer.evictionCount()),
+        () -> assertEquals(methodType(Object.class, String.class, int.class, double.class), memoizer.factory().constructor().type())
+    );
+  }
+
+  @Test
+  public void memoizedNullArgument() throws Throwable {
+    CALLS.set(0);
+    var mh = TupleMemoizer.of(CONCAT, CacheOptions.bounded(16)).memoized();
+    assertAll(
+        () -> assertEquals("foonull", (String) mh.invokeExact("foo", (String) null)),
+        () -> assertEquals("foonull", (String) mh.invokeExact("foo", (String) null)),
+        () -> assertEquals(1, CALLS.get())
+    );
+  }
+
+  @Test
+  public void memoizedException() {
+    CALLS.set(0);
+    var memoizer = TupleMemoizer.of(CONCAT, CacheOptions.bounded(16));
+    var mh = memoizer.memoized();
+    assertAll(
+        () -> assertThrows(IOException.class, () -> { var __ = (String) mh.invokeExact((String) null, "foo"); }),
+        () -> assertThrows(IOException.class, () -> { var __ = (String) mh.invokeExact((String) null, "foo"); }),
+        () -> assertEquals(2, CALLS.get()),
+        () -> assertEquals(0, memoizer.size())
+    );
+  }
+
+  @Test
+  public void memoizedBounded() throws Throwable {
+    CALLS.set(0);
+    var memoizer = TupleMemoizer.of(DISTANCE, CacheOptions.bounded(10));
+    var mh = memoizer.memoized();
+    for(var i = 0; i < 100; i++) {
+      assertEquals(3L + i, (long) mh.invokeExact("foo", i, 0.0));
+    }
+    assertAll(
+        () -> assertEquals(10, memoizer.size()),
+        () -> assertEquals(90, memoizer.evictionCount()),
+        () -> assertEquals(100, memoizer.missCount()),
+        () -> assertEquals(102L, (long) mh.invokeExact("foo", 99, 0.0)),
+        () -> assertEquals(1, memoizer.hitCount())
+    );
+  }
+
+  @Test
+  public void memoizedExpireAfterWrite() throws Throwable {
+    CALLS.set(0);
+    var memoizer = TupleMemoizer.of(DISTANCE, CacheOptions.bounded(10).withExpireAfterWrite(Duration.ofMillis(1)));
+    var mh = memoizer.memoized();
+    assertEquals(3L, (long) mh.invokeExact("foo", 0, 0.0));
+    Thread.sleep(10);
+    assertAll(
+        () -> assertEquals(3L, (long) mh.invokeExact("foo", 0, 0.0)),
+        () -> assertEquals(2, CALLS.get()),
+        () -> assertEquals(1, memoizer.evictionCount()),
+        () -> assertEquals(1, memoizer.size())
+    );
+  }
+
+  private static final CountDownLatch LATCH = new CountDownLatch(1);
+
+  private static int slow(int value) throws InterruptedException {
+    CALLS.incrementAndGet();
+    LATCH.await();
+    return value * 2;
+  }
+
+  @Test
+  public void concurrentMissesComputeOnce() throws Exception {
+    CALLS.set(0);
+    var memoizer = TupleMemoizer.of(findStatic("slow", methodType(int.class, int.class)), CacheOptions.bounded(16));
+    var mh = memoizer.memoized();
+    var futures = new ArrayList<Future<Integer>>();
+    try(var executor = Executors.newFixedThreadPool(8)) {
+      for(var i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          try {
+            return (int) mh.invokeExact(21);
+          } catch (Throwable e) {
+            throw new AssertionError(e);
+          }
+        }));
+      }
+      while (memoizer.hitCount() + memoizer.missCount() != 8) {
+        Thread.onSpinWait();
+      }
+      LATCH.countDown();
+      for(var future : futures) {
+        assertEquals(42, future.get());
+      }
+    }
+    assertAll(
+        () -> assertEquals(1, CALLS.get()),
+        () -> assertEquals(1, memoizer.missCount()),
+        () -> assertEquals(7, memoizer.hitCount())
+    );
+  }
+
+  @Test
+  public void memoize() throws Throwable {
+    CALLS.set(0);
+    var mh = TupleFactory.memoize(DISTANCE, CacheOptions.bounded(1));
+    assertAll(
+        () -> assertEquals(4L, (long) mh.invokeExact("a", 2, 1.0)),
+        () -> assertEquals(4L, (long) mh.invokeExact("a", 2, 1.0)),
+        () -> assertEquals(1, CALLS.get())
+    );
+  }
+
+  @Test
+  public void cacheOptions() {
+    var options = CacheOptions.bounded(10).withExpireAfterWrite(Duration.ofSeconds(1));
+    assertAll(
+        () -> assertEquals(new CacheOptions(10, Duration.ofSeconds(1)), options),
+        () -> assertNull(CacheOptions.bounded(10).expireAfterWrite()),
+        () -> assertThrows(IllegalArgumentException.class, () -> CacheOptions.bounded(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> CacheOptions.bounded(10).withExpireAfterWrite(Duration.ZERO)),
+        () -> assertThrows(IllegalArgumentException.class, () -> CacheOptions.bounded(10).withExpireAfterWrite(Duration.ofSeconds(-1))),
+        () -> assertThrows(NullPointerException.class, () -> CacheOptions.bounded(10).withExpireAfterWrite(null)),
+        () -> assertThrows(NullPointerException.class, () -> TupleMemoizer.of(null, options)),
+        () -> assertThrows(NullPointerException.class, () -> TupleMemoizer.of(DISTANCE, null))
+    );
+  }
+}
@@ -0,0 +1,169 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleMutableTest {
+  @Test
+  public void getAndAdd() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), String.class, int.class, long.class);
+    var tuple = factory.tuple("foo", 1, 10L);
+    assertAll(
+        () -> assertEquals(1, factory.getAndAddInt(tuple, 1, 2)),
+        () -> assertEquals(3, factory.getInt(tuple, 1)),
+        () -> assertEquals(10L, factory.getAndAddLong(tuple, 2, -4L)),
+        () -> assertEquals(6L, factory.getLong(tuple, 2)),
+        () -> assertEquals("foo", factory.get(tuple, 0)),
+        () -> assertEquals(factory.tuple("foo", 3, 6L), tuple),
+        () -> assertEquals(factory.tuple("foo", 3, 6L).hashCode(), tuple.hashCode()),
+        () -> assertEquals(Set.of(TupleFactory.Option.MUTABLE), factory.options())
+    );
+  }
+
+  @Test
+  public void getAndAddConcurrently() throws InterruptedException {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), long.class, int.class);
+    var tuple = factory.tuple(0L, 0);
+    var threads = new ArrayList<Thread>();
+    for(var i = 0; i < 4; i++) {
+      threads.add(Thread.ofPlatform().start(() -> {
+        for(var j = 0; j < 10_000; j++) {
+          factory.getAndAddLong(tuple, 0, 1L);
+          factory.getAndAddInt(tuple, 1, 2);
+        }
+      }));
+    }
+    for(var thread : threads) {
+      thread.join();
+    }
+    assertAll(
+        () -> assertEquals(40_000L, factory.getLong(tuple, 0)),
+        () -> assertEquals(80_000, factory.getInt(tuple, 1))
+    );
+  }
+
+  @Test
+  public void compareAndSet() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), boolean.class, char.class, double.class, String.class);
+    var foo = "foo";
+    var tuple = factory.tuple(false, 'a', 1.5, foo);
+    assertAll(
+        () -> assertTrue(factory.compareAndSet(tuple, 0, false, true)),
+        () -> assertFalse(factory.compareAndSet(tuple, 0, false, true)),
+        () -> assertTrue(factory.getBoolean(tuple, 0)),
+        () -> assertTrue(factory.compareAndSet(tuple, 1, 'a', 'b')),
+        () -> assertEquals('b', factory.getChar(tuple, 1)),
+        () -> assertFalse(factory.compareAndSet(tuple, 2, 2.0, 3.0)),
+        () -> assertTrue(factory.compareAndSet(tuple, 2, 1.5, 3.0)),
+        () -> assertEquals(3.0, factory.getDouble(tuple, 2)),
+        () -> assertTrue(factory.compareAndSet(tuple, 3, foo, "bar")),
+        () -> assertFalse(factory.compareAndSet(tuple, 3, foo, "baz")),
+        () -> assertEquals("bar", factory.get(tuple, 3))
+    );
+  }
+
+  @Test
+  public void compareAndSetMax() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), long.class, double.class);
+    var gauge = factory.tuple(0L, 0.0);
+    for(var value : new double[] { 3.0, 1.0, 7.0, 5.0 }) {
+      factory.getAndAddLong(gauge, 0, 1L);
+      double max;
+      do {
+        max = factory.getDouble(gauge, 1);
+      } while (value > max && !factory.compareAndSet(gauge, 1, max, value));
+    }
+    assertEquals(factory.tuple(4L, 7.0), gauge);
+  }
+
+  @Test
+  public void varHandle() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), long.class, String.class);
+    var tuple = factory.tuple(1L, "foo");
+    var count = factory.varHandle(0);
+    var name = factory.varHandle(1);
+    assertAll(
+        () -> assertEquals(long.class, count.varType()),
+        () -> assertEquals(List.of(Object.class), count.coordinateTypes()),
+        () -> assertEquals(1L, (long) count.getAcquire(tuple)),
+        () -> assertEquals(1L, (long) count.getOpaque(tuple)),
+        () -> assertEquals(1L, (long) count.getAndAdd(tuple, 2L)),
+        () -> {
+          count.setRelease(tuple, 42L);
+          assertEquals(42L, factory.getLong(tuple, 0));
+        },
+        () -> {
+          name.setVolatile(tuple, "bar");
+          assertEquals("bar", factory.get(tuple, 1));
+        },
+        () -> assertThrows(ClassCastException.class, () -> count.getAcquire(TupleFactory.of(long.class).tuple(1L))),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.varHandle(2)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.varHandle(-1))
+    );
+  }
+
+  @Test
+  public void wrongTypeOrIndex() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), int.class, long.class);
+    var tuple = factory.tuple(1, 2L);
+    assertAll(
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.getAndAddLong(tuple, 0, 1L)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.getAndAddInt(tuple, 1, 1)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.compareAndSet(tuple, 0, 1L, 2L)),
+        () -> assertThrows(WrongMethodTypeException.class, () -> factory.compareAndSet(tuple, 0, "foo", "bar")),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.getAndAddInt(tuple, 2, 1)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.compareAndSet(tuple, -1, 1, 2)),
+        () -> assertThrows(NullPointerException.class, () -> factory.getAndAddInt(null, 0, 1)),
+        () -> assertThrows(ClassCastException.class, () -> factory.getAndAddInt(TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), int.class).tuple(1), 0, 1))
+    );
+  }
+
+  @Test
+  public void notMutable() {
+    var factory = TupleFactory.of(int.class, long.class);
+    var tuple = factory.tuple(1, 2L);
+    assertAll(
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.varHandle(0)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.getAndAddInt(tuple, 0, 1)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.getAndAddLong(tuple, 1, 1L)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.compareAndSet(tuple, 0, 1, 2))
+    );
+  }
+
+  @Test
+  public void incompatibleOptions() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE, TupleFactory.Option.COMPACT), boolean.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE, TupleFactory.Option.CACHED_HASH), String.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.of(Set.of(TupleFactory.Option.PADDED, TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class)),
+        () -> assertDoesNotThrow(() -> TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE, TupleFactory.Option.INLINE_EQUALS_HASHCODE), String.class))
+    );
+  }
+
+  @Test
+  public void padded() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.PADDED), long.class, long.class);
+    var tuple = factory.tuple(1L, 2L);
+    assertAll(
+        () -> assertEquals(1L, factory.getAndAddLong(tuple, 0, 1L)),
+        () -> assertTrue(factory.compareAndSet(tuple, 1, 2L, 3L)),
+        () -> assertEquals(factory.tuple(2L, 3L), tuple),
+        () -> assertEquals(Set.of(TupleFactory.Option.PADDED), factory.options())
+    );
+  }
+
+  @Test
+  public void estimatedInstanceSizePadded() {
+    assertAll(
+        () -> assertEquals(32, TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), long.class, long.class).estimatedInstanceSize()),
+        () -> assertEquals(32 + 3 * 128, TupleFactory.of(Set.of(TupleFactory.Option.PADDED), long.class, long.class).estimatedInstanceSize()),
+        () -> assertEquals(24 + 4 * 128, TupleFactory.of(Set.of(TupleFactory.Option.PADDED), long.class, int.class).estimatedInstanceSize())
+    );
+  }
+}
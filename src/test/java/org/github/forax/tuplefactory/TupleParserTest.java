@@ -0,0 +1,194 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleParserTest {
+  private static MemorySegment segment(String text) {
+    return MemorySegment.ofArray(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static List<Object> parse(TupleParser parser, String text) {
+    var tuples = new ArrayList<Object>();
+    parser.parse(segment(text), tuples::add);
+    return tuples;
+  }
+
+  @Test
+  public void parseSegment() {
+    var factory = TupleFactory.of(long.class, int.class, double.class, String.class);
+    var parser = TupleParser.of(factory, ',');
+    var tuples = parse(parser, """
+        1,2,3.5,foo
+        -4,5,-6.25,bar
+        """);
+    assertAll(
+        () -> assertSame(factory, parser.factory()),
+        () -> assertEquals(List.of(factory.tuple(1L, 2, 3.5, "foo"), factory.tuple(-4L, 5, -6.25, "bar")), tuples)
+    );
+  }
+
+  @Test
+  public void parseAllTypes() {
+    var factory = TupleFactory.of(boolean.class, byte.class, short.class, char.class,
+        int.class, float.class, long.class, double.class, String.class, Object.class);
+    var parser = TupleParser.of(factory, '\t');
+    var tuples = parse(parser, "TRUE\t-128\t32767\tx\t-2147483648\t1.5\t9223372036854775807\t1e3\tfoo\t\n"
+        + "false\t+1\t-2\té\t3\t-0.0\t-9223372036854775808\tNaN\tbar\tbaz\n");
+    assertEquals(List.of(
+        factory.tuple(true, (byte) -128, (short) 32767, 'x', Integer.MIN_VALUE, 1.5f, Long.MAX_VALUE, 1000.0, "foo", ""),
+        factory.tuple(false, (byte) 1, (short) -2, 'é', 3, -0.0f, Long.MIN_VALUE, Double.NaN, "bar", "baz")), tuples);
+  }
+
+  @Test
+  public void parseLineSeparators() {
+    var factory = TupleFactory.of(int.class, String.class);
+    var parser = TupleParser.of(factory, ';');
+    var tuples = parse(parser, "1;foo\r\n\n2;\r\n\r\n3;bar");
+    assertEquals(List.of(factory.tuple(1, "foo"), factory.tuple(2, ""), factory.tuple(3, "bar")), tuples);
+  }
+
+  @Test
+  public void parseDoubles() {
+    var factory = TupleFactory.of(double.class, float.class);
+    var parser = TupleParser.of(factory, ',');
+    var random = new Random(0);
+    var builder = new StringBuilder();
+    var expected = new ArrayList<Object>();
+    var texts = new ArrayList<String>(List.of("0", "0.1", "-.5", "5.", "1e22", "1e23", "123456789012345678901234",
+        "0.000000000000000000000000001", "4.9e-324", "1.7976931348623157e308", "1e400", "12345678.9", "3.4028235e38"));
+    for(var i = 0; i < 1_000; i++) {
+      texts.add(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)));
+      texts.add(Long.toString(random.nextLong(1_000_000)) + "." + random.nextInt(1_000));
+    }
+    for(var text : texts) {
+      builder.append(text).append(',').append(text).append('\n');
+      expected.add(factory.tuple(Double.parseDouble(text), Float.parseFloat(text)));
+    }
+    assertEquals(expected, parse(parser, builder.toString()));
+  }
+
+  @Test
+  public void parseChannel() throws IOException {
+    var factory = TupleFactory.of(int.class, String.class);
+    var parser = TupleParser.of(factory, ',');
+    var builder = new StringBuilder();
+    var expected = new ArrayList<Object>();
+    for(var i = 0; i < 10_000; i++) {
+      var text = "v".repeat(i % 7) + (i == 5_000 ? "x".repeat(20_000) : "");  // a line bigger than the buffer
+      builder.append(i).append(',').append(text).append('\n');
+      expected.add(factory.tuple(i, text));
+    }
+    builder.append("10000,end");  // no line separator at the end
+    expected.add(factory.tuple(10_000, "end"));
+    var channel = Channels.newChannel(new ByteArrayInputStream(builder.toString().getBytes(StandardCharsets.UTF_8)));
+    var tuples = new ArrayList<Object>();
+    var count = parser.parse(channel, tuples::add);
+    assertAll(
+        () -> assertEquals(10_001, count),
+        () -> assertEquals(expected, tuples)
+    );
+  }
+
+  @Test
+  public void parseChannelError() {
+    var factory = TupleFactory.of(int.class);
+    var parser = TupleParser.of(factory, ',');
+    var channel = Channels.newChannel(new ByteArrayInputStream("1\n2\nfoo\n".getBytes(StandardCharsets.UTF_8)));
+    var e = assertThrows(IllegalArgumentException.class, () -> parser.parse(channel, __ -> {}));
+    assertEquals("invalid int at offset 4", e.getMessage());
+  }
+
+  @Test
+  public void parseParallel() {
+    var factory = TupleFactory.of(long.class, int.class);
+    var parser = TupleParser.of(factory, ',');
+    var builder = new StringBuilder();
+    var expectedSum = 0L;
+    for(var i = 0; i < 300_000; i++) {
+      builder.append(i).append(',').append(i % 10).append('\n');
+      expectedSum += i + i % 10;
+    }
+    var sum = new LongAdder();
+    var count = parser.parse(segment(builder.toString()), ForkJoinPool.commonPool(),
+        tuple -> sum.add(factory.getLong(tuple, 0) + factory.getInt(tuple, 1)));
+    var finalExpectedSum = expectedSum;
+    assertAll(
+        () -> assertEquals(300_000, count),
+        () -> assertEquals(finalExpectedSum, sum.sum())
+    );
+  }
+
+  @Test
+  public void parseMappedFile() throws IOException {
+    var factory = TupleFactory.of(String.class, double.class);
+    var parser = TupleParser.of(factory, ',');
+    var path = Files.createTempFile("tuple-parser", ".csv");
+    try {
+      Files.writeString(path, "foo,1.5\nbar,2.5\n");
+      var tuples = new ArrayList<Object>();
+      try(var channel = FileChannel.open(path);
+          var arena = Arena.ofShared()) {
+        var segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        parser.parse(segment, tuples::add);
+      }
+      assertEquals(List.of(factory.tuple("foo", 1.5), factory.tuple("bar", 2.5)), tuples);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void parseInvalidValues() {
+    var parser = TupleParser.of(TupleFactory.of(byte.class, int.class, boolean.class, char.class, double.class), ',');
+    assertAll(
+        () -> assertEquals("invalid byte at offset 0",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "128,1,true,c,1.0")).getMessage()),
+        () -> assertEquals("invalid int at offset 2",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,99999999999999999999,true,c,1.0")).getMessage()),
+        () -> assertEquals("invalid int at offset 2",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,,true,c,1.0")).getMessage()),
+        () -> assertEquals("invalid int at offset 2",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,2147483648,true,c,1.0")).getMessage()),
+        () -> assertEquals("invalid boolean at offset 4",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,2,yes,c,1.0")).getMessage()),
+        () -> assertEquals("invalid char at offset 9",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,2,true,cc,1.0")).getMessage()),
+        () -> assertEquals("invalid double at offset 11",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,2,true,c,1.0.0")).getMessage()),
+        () -> assertEquals("missing value at offset 10",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,2,true,c")).getMessage()),
+        () -> assertEquals("too many values at offset 15",
+            assertThrows(IllegalArgumentException.class, () -> parse(parser, "1,2,true,c,1.0,3")).getMessage())
+    );
+  }
+
+  @Test
+  public void ofPreconditions() {
+    var factory = TupleFactory.of(int.class);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> TupleParser.of(null, ',')),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleParser.of(factory, '\n')),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleParser.of(factory, 'é')),
+        () -> assertThrows(UnsupportedOperationException.class, () -> TupleParser.of(TupleFactory.of(Integer.class), ',')),
+        () -> assertThrows(NullPointerException.class, () -> TupleParser.of(factory, ',').parse((MemorySegment) null, __ -> {})),
+        () -> assertThrows(NullPointerException.class, () -> TupleParser.of(factory, ',').parse(segment("1"), null))
+    );
+  }
+}
@@ -0,0 +1,92 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleShapeProcessorTest {
+  @Test
+  public void processor(@TempDir Path directory) throws IOException {
+    var source = directory.resolve("Shapes.java");
+    Files.writeString(source, """
+        import org.github.forax.tuplefactory.TupleFactory;
+        import org.github.forax.tuplefactory.TupleShape;
+
+        @TupleShape({String.class, int.class})
+        @TupleShape({Object.class, int.class})
+        @TupleShape(value = {boolean.class, long.class}, options = TupleFactory.Option.COMPACT)
+        class Shapes {}
+        """);
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    var exitCode = compiler.run(null, null, null,
+        "-classpath", System.getProperty("java.class.path"),
+        "-processor", TupleShapeProcessor.class.getName(),
+        "-d", directory.toString(),
+        source.toString());
+    var packageDirectory = directory.resolve("org/github/forax/tuplefactory");
+    assertAll(
+        () -> assertEquals(0, exitCode),
+        () -> assertTrue(Files.exists(packageDirectory.resolve("Tuple$LI.class"))),
+        () -> assertTrue(Files.exists(packageDirectory.resolve("GeneratedTupleFactory$LI.class"))),
+        () -> assertTrue(Files.exists(packageDirectory.resolve("Tuple$ZJ$COMPACT.class"))),
+        () -> assertTrue(Files.exists(packageDirectory.resolve("GeneratedTupleFactory$ZJ$COMPACT.class")))
+    );
+  }
+
+  @Test
+  public void pregeneratedClassesAreUsed() throws IllegalAccessException {
+    // a shape not used by the other tests, defined as if the classes were on the class path
+    var methodType = MethodType.methodType(void.class, char.class, Object.class, short.class, float.class, byte.class);
+    var classes = TupleFactoryImpl.pregenerate(methodType, EnumSet.noneOf(TupleFactory.Option.class));
+    var lookup = MethodHandles.lookup();
+    for(var bytes : classes.values()) {
+      lookup.defineClass(bytes);
+    }
+
+    var factory = TupleFactory.of(char.class, String.class, short.class, float.class, byte.class);
+    var tuple = factory.tuple('a', "foo", (short) 2, 3f, (byte) 4);
+    assertAll(
+        () -> assertFalse(tuple.getClass().isHidden()),
+        () -> assertEquals("org.github.forax.tuplefactory.Tuple$CLSFB", tuple.getClass().getName()),
+        () -> assertTrue(tuple.getClass().isRecord()),
+        () -> assertEquals('a', factory.getChar(tuple, 0)),
+        () -> assertEquals("foo", factory.get(tuple, 1)),
+        () -> assertEquals((short) 2, factory.getShort(tuple, 2)),
+        () -> assertEquals(3f, factory.getFloat(tuple, 3)),
+        () -> assertEquals((byte) 4, factory.getByte(tuple, 4)),
+        () -> assertEquals(factory.tuple('a', "foo", (short) 2, 3f, (byte) 4), tuple),
+        () -> assertThrows(ClassCastException.class, () -> factory.getChar("foo", 0))
+    );
+  }
+
+  @Test
+  public void pregeneratedCompactClassesAreUsed() throws Throwable {
+    var methodType = MethodType.methodType(void.class, boolean.class, boolean.class, boolean.class, boolean.class, boolean.class, double.class);
+    var options = EnumSet.of(TupleFactory.Option.COMPACT);
+    var classes = TupleFactoryImpl.pregenerate(methodType, options);
+    var lookup = MethodHandles.lookup();
+    for(var bytes : classes.values()) {
+      lookup.defineClass(bytes);
+    }
+
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), boolean.class, boolean.class, boolean.class, boolean.class, boolean.class, double.class);
+    var tuple = (Object) factory.constructor().invokeExact(true, false, true, true, false, 2.0);
+    assertAll(
+        () -> assertEquals("org.github.forax.tuplefactory.Tuple$ZZZZZD$COMPACT", tuple.getClass().getName()),
+        () -> assertTrue(factory.getBoolean(tuple, 0)),
+        () -> assertFalse(factory.getBoolean(tuple, 1)),
+        () -> assertFalse(factory.getBoolean(tuple, 4)),
+        () -> assertEquals(2.0, factory.getDouble(tuple, 5))
+    );
+  }
+}
@@ -0,0 +1,141 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleViewTest {
+  public interface Point {
+    int x();
+    int y();
+
+    default int distance() {
+      return Math.abs(x()) + Math.abs(y());
+    }
+  }
+
+  @Test
+  public void view() throws Throwable {
+    var factory = TupleFactory.ofView(Point.class);
+    var point = (Point) factory.tuple(1, -2);
+    var point2 = (Point) (Object) factory.constructor().invokeExact(1, -2);
+    assertAll(
+        () -> assertEquals(1, point.x()),
+        () -> assertEquals(-2, point.y()),
+        () -> assertEquals(3, point.distance()),
+        () -> assertEquals(1, factory.getInt(point, 0)),
+        () -> assertEquals(-2, factory.getInt(point, 1)),
+        () -> assertEquals(point, point2),
+        () -> assertEquals(point.hashCode(), point2.hashCode()),
+        () -> assertSame(factory, TupleFactory.ofView(Point.class))
+    );
+  }
+
+  public interface Person {
+    String name();
+    List<String> tags();
+    double weight();
+    String toString();
+  }
+
+  @Test
+  public void viewWithObjects() {
+    var factory = TupleFactory.ofView(Person.class);
+    var person = (Person) factory.tuple("Bob", List.of("admin"), 70.5);
+    var unknown = (Person) factory.tuple(null, null, 0.0);
+    assertAll(
+        () -> assertEquals("Bob", person.name()),
+        () -> assertEquals(List.of("admin"), person.tags()),
+        () -> assertEquals(70.5, person.weight()),
+        () -> assertNull(unknown.name()),
+        () -> assertEquals("Bob", factory.get(person, 0)),
+        () -> assertThrows(ClassCastException.class, () -> ((Person) factory.tuple("Bob", "admin", 70.5)).tags())
+    );
+  }
+
+  public interface Reversed {
+    long z();
+    String a();
+  }
+
+  @Test
+  public void viewDeclarationOrder() {
+    var factory = TupleFactory.ofView(Reversed.class);
+    var tuple = (Reversed) factory.tuple(42L, "foo");
+    assertAll(
+        () -> assertEquals(42L, tuple.z()),
+        () -> assertEquals("foo", tuple.a()),
+        () -> assertEquals(42L, factory.getLong(tuple, 0)),
+        () -> assertEquals("foo", factory.get(tuple, 1))
+    );
+  }
+
+  public interface Flags {
+    boolean enabled();
+    byte level();
+    boolean visible();
+  }
+
+  @Test
+  public void viewCompact() {
+    var factory = TupleFactory.ofView(Set.of(TupleFactory.Option.COMPACT), Flags.class);
+    var flags = (Flags) factory.tuple(true, (byte) -3, false);
+    assertAll(
+        () -> assertTrue(flags.enabled()),
+        () -> assertEquals((byte) -3, flags.level()),
+        () -> assertFalse(flags.visible()),
+        () -> assertEquals(Set.of(TupleFactory.Option.COMPACT), factory.options()),
+        () -> assertNotSame(factory, TupleFactory.ofView(Flags.class))
+    );
+  }
+
+  @Test
+  public void viewWith() {
+    var factory = TupleFactory.ofView(Point.class);
+    var point = (Point) factory.tuple(1, 2);
+    var point2 = (Point) factory.with(point, 1, 5);
+    assertAll(
+        () -> assertEquals(1, point2.x()),
+        () -> assertEquals(5, point2.y()),
+        () -> assertEquals(2, point.y())
+    );
+  }
+
+  @Test
+  public void viewIsNotCompatibleWithAnotherFactory() {
+    var factory = TupleFactory.ofView(Point.class);
+    var point = factory.tuple(1, 2);
+    var other = TupleFactory.of(int.class, int.class);
+    assertAll(
+        () -> assertThrows(ClassCastException.class, () -> other.requireTuple(point)),
+        () -> assertThrows(ClassCastException.class, () -> factory.requireTuple(other.tuple(1, 2))),
+        () -> assertNotEquals(other.tuple(1, 2), point)
+    );
+  }
+
+  public interface NotAnAccessor {
+    int x(int y);
+  }
+  public interface VoidAccessor {
+    void x();
+  }
+  public interface SubView extends Point {
+    int z();
+  }
+
+  @Test
+  public void invalidViews() {
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> TupleFactory.ofView(null)),
+        () -> assertThrows(NullPointerException.class, () -> TupleFactory.ofView(null, Point.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.ofView(String.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.ofView(Override.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.ofView(NotAnAccessor.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.ofView(VoidAccessor.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.ofView(SubView.class))
+    );
+  }
+}
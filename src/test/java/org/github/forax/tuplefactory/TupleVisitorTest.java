@@ -0,0 +1,128 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleVisitorTest {
+  private static final class RecordingVisitor implements TupleVisitor {
+    private final ArrayList<String> calls = new ArrayList<>();
+
+    @Override
+    public void visitObject(int componentIndex, Object value) {
+      calls.add("object " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitBoolean(int componentIndex, boolean value) {
+      calls.add("boolean " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitByte(int componentIndex, byte value) {
+      calls.add("byte " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitShort(int componentIndex, short value) {
+      calls.add("short " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitChar(int componentIndex, char value) {
+      calls.add("char " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitInt(int componentIndex, int value) {
+      calls.add("int " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitFloat(int componentIndex, float value) {
+      calls.add("float " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitLong(int componentIndex, long value) {
+      calls.add("long " + componentIndex + " " + value);
+    }
+    @Override
+    public void visitDouble(int componentIndex, double value) {
+      calls.add("double " + componentIndex + " " + value);
+    }
+  }
+
+  @Test
+  public void acceptAllTypes() {
+    var factory = TupleFactory.of(String.class, boolean.class, byte.class, short.class, char.class,
+        int.class, float.class, long.class, double.class);
+    var tuple = factory.tuple("foo", true, (byte) 1, (short) 2, 'c', 3, 4f, 5L, 6.0);
+    var visitor = new RecordingVisitor();
+    factory.accept(tuple, visitor);
+    assertEquals(List.of(
+        "object 0 foo", "boolean 1 true", "byte 2 1", "short 3 2", "char 4 c",
+        "int 5 3", "float 6 4.0", "long 7 5", "double 8 6.0"), visitor.calls);
+  }
+
+  @Test
+  public void acceptDefaultMethodsBox() {
+    var factory = TupleFactory.of(int.class, String.class, double.class);
+    var tuple = factory.tuple(42, "foo", 2.0);
+    var values = new ArrayList<Object>();
+    factory.accept(tuple, (componentIndex, value) -> values.add(value));
+    assertEquals(List.of(42, "foo", 2.0), values);
+  }
+
+  @Test
+  public void acceptCompact() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), boolean.class, byte.class, boolean.class, int.class);
+    var tuple = factory.tuple(true, (byte) -3, false, 7);
+    var visitor = new RecordingVisitor();
+    factory.accept(tuple, visitor);
+    assertEquals(List.of("boolean 0 true", "byte 1 -3", "boolean 2 false", "int 3 7"), visitor.calls);
+  }
+
+  @Test
+  public void acceptSumWithoutBoxing() {
+    var factory = TupleFactory.of(int.class, long.class, int.class);
+    var tuple = factory.tuple(1, 2L, 3);
+    var sum = new long[1];
+    factory.accept(tuple, new TupleVisitor() {
+      @Override
+      public void visitObject(int componentIndex, Object value) {
+        fail();
+      }
+      @Override
+      public void visitInt(int componentIndex, int value) {
+        sum[0] += value;
+      }
+      @Override
+      public void visitLong(int componentIndex, long value) {
+        sum[0] += value;
+      }
+    });
+    assertEquals(6L, sum[0]);
+  }
+
+  @Test
+  public void acceptEmpty() {
+    var factory = TupleFactory.of();
+    var visitor = new RecordingVisitor();
+    factory.accept(factory.tuple(), visitor);
+    assertAll(
+        () -> assertTrue(visitor.calls.isEmpty()),
+        () -> assertThrows(NullPointerException.class, () -> factory.accept(null, visitor)),
+        () -> assertThrows(ClassCastException.class, () -> factory.accept("foo", visitor))
+    );
+  }
+
+  @Test
+  public void acceptNullOrWrongTuple() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var tuple = factory.tuple("foo", 2);
+    var otherTuple = TupleFactory.of(long.class).tuple(3L);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> factory.accept(tuple, null)),
+        () -> assertThrows(NullPointerException.class, () -> factory.accept(null, new RecordingVisitor())),
+        () -> assertThrows(ClassCastException.class, () -> factory.accept(otherTuple, new RecordingVisitor()))
+    );
+  }
+}
@@ -0,0 +1,169 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleWideTest {
+  // 200 longs and 10 Strings, 410 parameter slots
+  private static final Class<?>[] TYPES = Stream.concat(
+      Collections.<Class<?>>nCopies(200, long.class).stream(),
+      Collections.<Class<?>>nCopies(10, String.class).stream()).toArray(Class<?>[]::new);
+
+  private static Object[] values(int base) {
+    return IntStream.range(0, 210)
+        .mapToObj(i -> i < 200 ? (Object) (long) (base + i) : "s" + (base + i))
+        .toArray();
+  }
+
+  @Test
+  public void tuple() {
+    var factory = TupleFactory.of(TYPES);
+    var tuple = factory.tuple(values(0));
+    assertAll(
+        () -> assertEquals(0L, factory.getLong(tuple, 0)),
+        () -> assertEquals(199L, factory.getLong(tuple, 199)),
+        () -> assertEquals("s200", factory.get(tuple, 200)),
+        () -> assertEquals("s209", factory.get(tuple, 209)),
+        () -> assertEquals(factory.tuple(values(0)), tuple),
+        () -> assertEquals(factory.tuple(values(0)).hashCode(), tuple.hashCode()),
+        () -> assertNotEquals(factory.tuple(values(1)), tuple),
+        () -> assertTrue(tuple.toString().contains("_0=0, _1=1")),
+        () -> assertTrue(tuple.toString().contains("_209=s209]")),
+        () -> assertSame(tuple, factory.requireTuple(tuple)),
+        () -> assertThrows(IllegalArgumentException.class, () -> factory.tuple(1L, 2L)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> factory.getLong(tuple, 210))
+    );
+  }
+
+  @Test
+  public void tupleConversions() {
+    var types = Stream.concat(
+        Collections.<Class<?>>nCopies(200, long.class).stream(),
+        Stream.of(double.class, int.class, Object.class)).toArray(Class<?>[]::new);
+    var factory = TupleFactory.of(types);
+    var values = IntStream.range(0, 203).<Object>mapToObj(i -> i < 200 ? i : null).toArray();
+    values[200] = 'a';
+    values[201] = (short) 3;
+    values[202] = 4;
+    var tuple = factory.tuple(values);
+    assertAll(
+        () -> assertEquals(42L, factory.getLong(tuple, 42)),
+        () -> assertEquals(97.0, factory.getDouble(tuple, 200)),
+        () -> assertEquals(3, factory.getInt(tuple, 201)),
+        () -> assertEquals(4, (Integer) factory.get(tuple, 202)),
+        () -> {
+          values[201] = 3L;
+          assertThrows(ClassCastException.class, () -> factory.tuple(values));
+        },
+        () -> {
+          values[201] = null;
+          assertThrows(NullPointerException.class, () -> factory.tuple(values));
+        }
+    );
+  }
+
+  @Test
+  public void builder() {
+    var factory = TupleFactory.of(TYPES);
+    var builder = factory.builder();
+    var values = values(0);
+    for(var i = 0; i < 200; i++) {
+      builder.setLong(i, (long) values[i]);
+    }
+    for(var i = 200; i < 210; i++) {
+      builder.set(i, values[i]);
+    }
+    var tuple = builder.build();
+    builder.reset();
+    var empty = builder.build();
+    assertAll(
+        () -> assertEquals(factory.tuple(values), tuple),
+        () -> assertEquals(0L, factory.getLong(empty, 42)),
+        () -> assertNull(factory.get(empty, 205))
+    );
+  }
+
+  @Test
+  public void mixedKinds() {
+    var types = Stream.concat(
+        Collections.<Class<?>>nCopies(150, double.class).stream(),
+        Stream.of(boolean.class, byte.class, short.class, char.class, int.class, float.class, Object.class)).toArray(Class<?>[]::new);
+    var factory = TupleFactory.of(types);
+    var tuple = factory.builder()
+        .setDouble(149, 1.5)
+        .setBoolean(150, true)
+        .setByte(151, (byte) 2)
+        .setShort(152, (short) 3)
+        .setChar(153, 'a')
+        .setInt(154, 4)
+        .setFloat(155, 5f)
+        .set(156, "foo")
+        .build();
+    assertAll(
+        () -> assertEquals(1.5, factory.getDouble(tuple, 149)),
+        () -> assertTrue(factory.getBoolean(tuple, 150)),
+        () -> assertEquals((byte) 2, factory.getByte(tuple, 151)),
+        () -> assertEquals((short) 3, factory.getShort(tuple, 152)),
+        () -> assertEquals('a', factory.getChar(tuple, 153)),
+        () -> assertEquals(4, factory.getInt(tuple, 154)),
+        () -> assertEquals(5f, factory.getFloat(tuple, 155)),
+        () -> assertEquals("foo", factory.get(tuple, 156))
+    );
+  }
+
+  @Test
+  public void projection() {
+    var factory = TupleFactory.of(TYPES);
+    var projection = factory.projection(0, 199, 209);
+    var tuple = factory.tuple(values(0));
+    assertAll(
+        () -> assertEquals(projection.factory().tuple(0L, 199L, "s209"), projection.project(tuple)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.projection(IntStream.range(0, 200).toArray()))
+    );
+  }
+
+  @Test
+  public void unsupportedOperations() {
+    var factory = TupleFactory.of(TYPES);
+    var tuple = factory.tuple(values(0));
+    assertAll(
+        () -> assertThrows(UnsupportedOperationException.class, factory::constructor),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.with(tuple, 0, 1L)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.with(tuple, 200, "foo")),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.decode(ByteBuffer.allocate(8))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> factory.zip()),
+        () -> assertThrows(UnsupportedOperationException.class, factory::unzip),
+        () -> assertThrows(UnsupportedOperationException.class, () -> TupleArray.of(factory)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> TupleHashMap.of(factory)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> TupleInterner.weak(factory))
+    );
+  }
+
+  @Test
+  public void options() {
+    assertAll(
+        () -> assertEquals(Set.of(TupleFactory.Option.CACHED_HASH, TupleFactory.Option.INLINE_EQUALS_HASHCODE), TupleFactory.of(Set.of(TupleFactory.Option.CACHED_HASH), TYPES).options()),
+        () -> assertDoesNotThrow(() -> TupleFactory.of(Set.of(TupleFactory.Option.INLINE_EQUALS_HASHCODE), TYPES)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.of(Set.of(TupleFactory.Option.COMPACT), TYPES)),
+        () -> assertThrows(IllegalArgumentException.class, () -> TupleFactory.of(Set.of(TupleFactory.Option.MUTABLE), TYPES))
+    );
+  }
+
+  @Test
+  public void isWide() {
+    assertAll(
+        () -> assertFalse(TupleFactoryImpl.isWide(Collections.<Class<?>>nCopies(127, long.class))),
+        () -> assertTrue(TupleFactoryImpl.isWide(Collections.<Class<?>>nCopies(128, long.class))),
+        () -> assertFalse(TupleFactoryImpl.isWide(Collections.<Class<?>>nCopies(254, int.class))),
+        () -> assertTrue(TupleFactoryImpl.isWide(Collections.<Class<?>>nCopies(255, Object.class))),
+        () -> assertDoesNotThrow(() -> TupleFactory.of(Collections.nCopies(127, long.class).toArray(Class<?>[]::new)).constructor())
+    );
+  }
+}
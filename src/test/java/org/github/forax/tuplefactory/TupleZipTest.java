@@ -0,0 +1,146 @@
+package org.github.forax.tuplefactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleZipTest {
+  @Test
+  public void zip() {
+    var factory = TupleFactory.of(String.class, int.class, double.class);
+    var tuples = factory.zip(new String[] { "foo", "bar" }, new int[] { 1, 2 }, new double[] { 1.5, 2.5 }).toList();
+    assertEquals(List.of(factory.tuple("foo", 1, 1.5), factory.tuple("bar", 2, 2.5)), tuples);
+  }
+
+  @Test
+  public void zipEmpty() {
+    var factory = TupleFactory.of(long.class, Object.class);
+    assertAll(
+        () -> assertEquals(0, factory.zip(new long[0], new Object[0]).count()),
+        () -> assertEquals(0, TupleFactory.of().zip().count())
+    );
+  }
+
+  @Test
+  public void zipParallel() {
+    var factory = TupleFactory.of(int.class, long.class);
+    var ints = IntStream.range(0, 100_000).toArray();
+    var longs = IntStream.range(0, 100_000).asLongStream().map(v -> v * 2).toArray();
+    var sum = factory.zip(ints, longs)
+        .parallel()
+        .mapToLong(tuple -> factory.getInt(tuple, 0) + factory.getLong(tuple, 1))
+        .sum();
+    var tuples = factory.zip(ints, longs).parallel().toList();
+    assertAll(
+        () -> assertEquals(3L * 99_999 * 100_000 / 2, sum),
+        () -> assertEquals(100_000, tuples.size()),
+        () -> assertEquals(factory.tuple(54_321, 108_642L), tuples.get(54_321))
+    );
+  }
+
+  @Test
+  public void zipSpliterator() {
+    var factory = TupleFactory.of(int.class);
+    var spliterator = factory.zip((Object) new int[] { 1, 2, 3, 4, 5 }).spliterator();
+    var prefix = spliterator.trySplit();
+    assertAll(
+        () -> assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED)),
+        () -> assertEquals(2, prefix.getExactSizeIfKnown()),
+        () -> assertEquals(3, spliterator.getExactSizeIfKnown()),
+        () -> assertTrue(prefix.tryAdvance(tuple -> assertEquals(factory.tuple(1), tuple)))
+    );
+  }
+
+  @Test
+  public void zipUnboxedWrappers() {
+    var factory = TupleFactory.of(Set.of(TupleFactory.Option.UNBOXED_WRAPPERS), Integer.class, String.class);
+    var tuples = factory.zip(new Integer[] { 1, null }, new String[] { "foo", "bar" }).toList();
+    assertEquals(List.of(factory.tuple(1, "foo"), factory.tuple(null, "bar")), tuples);
+  }
+
+  @Test
+  public void zipWrongColumns() {
+    var factory = TupleFactory.of(String.class, int.class);
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> factory.zip(new String[1])),
+        () -> assertThrows(IllegalArgumentException.class, () -> factory.zip(new String[1], new int[2])),
+        () -> assertThrows(ClassCastException.class, () -> factory.zip(new String[1], new long[1])),
+        () -> assertThrows(ClassCastException.class, () -> factory.zip(new Object[1], new int[1])),
+        () -> assertThrows(ClassCastException.class, () -> factory.zip(new String[1], new Integer[1])),
+        () -> assertThrows(NullPointerException.class, () -> factory.zip(new String[1], null)),
+        () -> assertThrows(NullPointerException.class, () -> factory.zip((Object[]) null))
+    );
+  }
+
+  @Test
+  public void unzip() {
+    var factory = TupleFactory.of(String.class, int.class, boolean.class);
+    var columns = Stream.of(factory.tuple("foo", 1, true), factory.tuple("bar", 2, false))
+        .collect(factory.unzip());
+    assertAll(
+        () -> assertEquals(3, columns.length),
+        () -> assertArrayEquals(new String[] { "foo", "bar" }, (String[]) columns[0]),
+        () -> assertArrayEquals(new int[] { 1, 2 }, (int[]) columns[1]),
+        () -> assertArrayEquals(new boolean[] { true, false }, (boolean[]) columns[2])
+    );
+  }
+
+  @Test
+  public void unzipParallel() {
+    var factory = TupleFactory.of(long.class, String.class);
+    var columns = IntStream.range(0, 10_000)
+        .parallel()
+        .mapToObj(i -> factory.tuple((long) i, "" + i))
+        .collect(factory.unzip());
+    var longs = (long[]) columns[0];
+    var strings = (String[]) columns[1];
+    assertAll(
+        () -> assertEquals(10_000, longs.length),
+        () -> assertEquals(10_000, strings.length),
+        () -> assertTrue(IntStream.range(0, 10_000).allMatch(i -> longs[i] == i && strings[i].equals("" + i)))
+    );
+  }
+
+  @Test
+  public void zipUnzip() {
+    var factory = TupleFactory.of(double.class, char.class);
+    var doubles = new double[] { 1.0, 2.0, 3.0 };
+    var chars = new char[] { 'a', 'b', 'c' };
+    var columns = factory.zip(doubles, chars).collect(factory.unzip());
+    assertAll(
+        () -> assertArrayEquals(doubles, (double[]) columns[0]),
+        () -> assertArrayEquals(chars, (char[]) columns[1])
+    );
+  }
+
+  @Test
+  public void unzipWrongTuple() {
+    var factory = TupleFactory.of(int.class);
+    var tuple = TupleFactory.of(long.class).tuple(1L);
+    assertThrows(ClassCastException.class, () -> Stream.of(tuple).collect(factory.unzip()));
+  }
+
+  @Test
+  public void addAll() {
+    var factory = TupleFactory.of(String.class, int.class);
+    var array = TupleArray.of(factory, 1);
+    array.add(factory.tuple("foo", 1));
+    var array2 = TupleArray.of(factory);
+    array2.add(factory.tuple("bar", 2));
+    array2.add(factory.tuple("baz", 3));
+    array.addAll(array2);
+    assertAll(
+        () -> assertEquals(3, array.size()),
+        () -> assertEquals(factory.tuple("foo", 1), array.tuple(0)),
+        () -> assertEquals(factory.tuple("baz", 3), array.tuple(2)),
+        () -> assertThrows(ClassCastException.class, () -> array.addAll(TupleArray.of(TupleFactory.of(int.class)))),
+        () -> assertThrows(NullPointerException.class, () -> array.addAll(null))
+    );
+  }
+}